@@ -13,6 +13,8 @@ import br.ufal.ic.p2.jackut.Exceptions.Comunidade.*;
 
 import br.ufal.ic.p2.jackut.Utilidade.*;
 
+import static br.ufal.ic.p2.jackut.tipos.TiposOperacao.*;
+
 
 /**
  * Classe Facade que implementa a interface do sistema.
@@ -48,6 +50,7 @@ public class Facade {
         User user = new User(login, senha, nome);
 
         this.sessionService.setUsuario(user);
+        this.sessionService.registrarOperacao(CRIAR_USUARIO, login, senha, nome);
     }
 
     /**
@@ -84,6 +87,67 @@ public class Facade {
         return user.getAtributo(atributo);
     }
 
+    /**
+     * Busca os usuários cujo atributo de perfil é igual ao valor especificado.
+     * Os logins são retornados em ordem de cadastro, uma página por vez.
+     *
+     * @param atributo  Atributo do perfil
+     * @param valor     Valor procurado
+     * @param pagina    Número da página, a partir de 1
+     * @param tamanho   Quantidade de usuários por página
+     * @return          Lista de logins da página formatada em uma String
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos
+     *
+     * @see UtilidadeString
+     */
+
+    public String buscarUsuarios(String atributo, String valor, int pagina, int tamanho)
+            throws PaginaInvalidaException {
+        return this.sessionService.buscarUsuarios(atributo, valor, pagina, tamanho);
+    }
+
+    /**
+     * Busca os usuários cujo atributo de perfil está entre dois valores (inclusive).
+     * Os logins são retornados em ordem de valor, uma página por vez.
+     *
+     * @param atributo  Atributo do perfil
+     * @param de        Menor valor aceito
+     * @param ate       Maior valor aceito
+     * @param pagina    Número da página, a partir de 1
+     * @param tamanho   Quantidade de usuários por página
+     * @return          Lista de logins da página formatada em uma String
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos
+     *
+     * @see UtilidadeString
+     */
+
+    public String buscarUsuariosPorIntervalo(String atributo, String de, String ate, int pagina, int tamanho)
+            throws PaginaInvalidaException {
+        return this.sessionService.buscarUsuariosPorIntervalo(atributo, de, ate, pagina, tamanho);
+    }
+
+    /**
+     * Busca os usuários cujo atributo de perfil começa pelo prefixo especificado.
+     * Os logins são retornados em ordem de valor, uma página por vez.
+     *
+     * @param atributo  Atributo do perfil
+     * @param prefixo   Prefixo procurado
+     * @param pagina    Número da página, a partir de 1
+     * @param tamanho   Quantidade de usuários por página
+     * @return          Lista de logins da página formatada em uma String
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos
+     *
+     * @see UtilidadeString
+     */
+
+    public String buscarUsuariosPorPrefixo(String atributo, String prefixo, int pagina, int tamanho)
+            throws PaginaInvalidaException {
+        return this.sessionService.buscarUsuariosPorPrefixo(atributo, prefixo, pagina, tamanho);
+    }
+
     /**
      * Modifica o valor de um atributo do perfil de um usuário para o valor especificado.
      * Uma sessão válida <b>(identificada por id)</b> deve estar aberta para o usuário
@@ -100,7 +164,8 @@ public class Facade {
             throws UsuarioNaoRegistradoException {
         User user = this.sessionService.getSessaoUsuario(id);
 
-        user.getPerfil().setAtributo(atributo, valor);
+        this.sessionService.editarPerfil(user, atributo, valor);
+        this.sessionService.registrarOperacao(EDITAR_PERFIL, user.getLogin(), atributo, valor);
     }
 
     /**
@@ -121,6 +186,7 @@ public class Facade {
         User amigoUser = this.sessionService.getUsuario(amigo);
 
         this.sessionService.adicionarAmigo(user, amigoUser);
+        this.sessionService.registrarOperacao(ADICIONAR_AMIGO, user.getLogin(), amigo);
     }
 
     /**
@@ -157,6 +223,137 @@ public class Facade {
         return user.getAmigosString();
     }
 
+    /**
+     * Retorna sugestões de amizade para o usuário especificado: amigos dos seus amigos que ainda
+     * não são seus amigos, inimigos ou solicitações pendentes, dos com mais amigos em comum para
+     * os com menos.
+     *
+     * @param login       Login do usuário
+     * @param quantidade  Quantidade máxima de sugestões
+     * @return            Lista de logins sugeridos formatada em uma String
+     *
+     * @throws UsuarioNaoRegistradoException Exceção lançada caso o usuário não esteja cadastrado
+     * @throws QuantidadeInvalidaException   Exceção lançada caso a quantidade não seja positiva
+     *
+     * @see UtilidadeString
+     */
+
+    public String getSugestoesDeAmizade(String login, int quantidade)
+            throws UsuarioNaoRegistradoException, QuantidadeInvalidaException {
+        User user = this.sessionService.getUsuario(login);
+
+        return this.sessionService.getSugestoesDeAmizade(user, quantidade);
+    }
+
+    /**
+     * Retorna os amigos que dois usuários têm em comum.
+     *
+     * @param login1  Login do primeiro usuário
+     * @param login2  Login do segundo usuário
+     * @return        Lista de amigos em comum formatada em uma String
+     *
+     * @throws UsuarioNaoRegistradoException Exceção lançada caso algum dos usuários não esteja cadastrado
+     *
+     * @see UtilidadeString
+     */
+
+    public String getAmigosEmComum(String login1, String login2) throws UsuarioNaoRegistradoException {
+        User user1 = this.sessionService.getUsuario(login1);
+        User user2 = this.sessionService.getUsuario(login2);
+
+        return this.sessionService.getAmigosEmComum(user1, user2);
+    }
+
+    /**
+     * Retorna o menor caminho de amizades entre dois usuários ("como eu chego até fulano").
+     * A busca desiste depois de {@code jackut.caminho.profundidade} amizades ou de
+     * {@code jackut.caminho.tempo} milissegundos.
+     *
+     * @param login1  Login do usuário de origem
+     * @param login2  Login do usuário de destino
+     * @return        Lista de logins do caminho, da origem ao destino, formatada em uma String;
+     *                "{}" caso não exista caminho dentro desses limites
+     *
+     * @throws UsuarioNaoRegistradoException Exceção lançada caso algum dos usuários não esteja cadastrado
+     *
+     * @see UtilidadeString
+     */
+
+    public String getCaminhoDeAmizade(String login1, String login2) throws UsuarioNaoRegistradoException {
+        User user1 = this.sessionService.getUsuario(login1);
+        User user2 = this.sessionService.getUsuario(login2);
+
+        return this.sessionService.getCaminhoDeAmizade(user1, user2);
+    }
+
+    /**
+     * Retorna o menor caminho de amizades entre dois usuários, desistindo depois da profundidade
+     * e do tempo especificados em vez dos configurados no sistema.
+     *
+     * @param login1        Login do usuário de origem
+     * @param login2        Login do usuário de destino
+     * @param profundidade  Quantidade máxima de amizades no caminho
+     * @param tempo         Tempo máximo da busca, em milissegundos (0 encontra apenas amigos diretos)
+     * @return              Lista de logins do caminho, da origem ao destino, formatada em uma String;
+     *                      "{}" caso não exista caminho dentro desses limites
+     *
+     * @throws UsuarioNaoRegistradoException Exceção lançada caso algum dos usuários não esteja cadastrado
+     * @throws QuantidadeInvalidaException   Exceção lançada caso a profundidade não seja positiva ou o tempo seja negativo
+     *
+     * @see UtilidadeString
+     */
+
+    public String getCaminhoDeAmizade(String login1, String login2, int profundidade, long tempo)
+            throws UsuarioNaoRegistradoException, QuantidadeInvalidaException {
+        User user1 = this.sessionService.getUsuario(login1);
+        User user2 = this.sessionService.getUsuario(login2);
+
+        return this.sessionService.getCaminhoDeAmizade(user1, user2, profundidade, tempo);
+    }
+
+    /**
+     * Retorna o coeficiente de agrupamento do usuário especificado: a fração dos pares de
+     * amigos dele que também são amigos entre si.
+     *
+     * @param login  Login do usuário
+     * @return       Coeficiente entre 0 e 1 (0 caso o usuário tenha menos de dois amigos)
+     *
+     * @throws UsuarioNaoRegistradoException Exceção lançada caso o usuário não esteja cadastrado
+     */
+
+    public double getCoeficienteDeAgrupamento(String login) throws UsuarioNaoRegistradoException {
+        User user = this.sessionService.getUsuario(login);
+
+        return this.sessionService.getCoeficienteDeAgrupamento(user);
+    }
+
+    /**
+     * Grava na pasta BaseDeDados/Relatorios um relatório com a quantidade de amigos, de triângulos
+     * e o coeficiente de agrupamento de cada usuário. Os triângulos são contados em paralelo.
+     *
+     * @param arquivo Nome do arquivo do relatório
+     *
+     * @throws NomeDeArquivoInvalidoException Exceção lançada caso o nome seja vazio ou contenha um separador de pastas
+     */
+
+    public void gerarRelatorioDeAmizades(String arquivo) throws NomeDeArquivoInvalidoException {
+        this.sessionService.gerarRelatorioDeAmizades(arquivo);
+    }
+
+    /**
+     * Calcula de uma vez as sugestões de amizade de todos os usuários, em paralelo.
+     * As chamadas seguintes a {@link #getSugestoesDeAmizade(String, int)} usam as sugestões
+     * calculadas enquanto as amizades não mudarem.
+     *
+     * @param quantidade Quantidade máxima de sugestões por usuário
+     *
+     * @throws QuantidadeInvalidaException Exceção lançada caso a quantidade não seja positiva
+     */
+
+    public void precalcularSugestoesDeAmizade(int quantidade) throws QuantidadeInvalidaException {
+        this.sessionService.precalcularSugestoesDeAmizade(quantidade);
+    }
+
     /**
      * Envia o recado especificado ao destinatário especificado.
      * Uma sessão válida <b>(identificada por id)</b> deve estar aberta
@@ -175,6 +372,7 @@ public class Facade {
         User destinatarioUser = this.sessionService.getUsuario(destinatario);
 
         this.sessionService.enviarRecado(user, destinatarioUser, recado);
+        this.sessionService.registrarOperacao(ENVIAR_RECADO, user.getLogin(), destinatario, recado);
     }
 
     /**
@@ -191,7 +389,10 @@ public class Facade {
     public String lerRecado(String id) throws UsuarioNaoRegistradoException, SemRecadosException {
         User user = this.sessionService.getSessaoUsuario(id);
 
-        return this.sessionService.lerRecado(user);
+        String recado = this.sessionService.lerRecado(user);
+        this.sessionService.registrarOperacao(LER_RECADO, user.getLogin());
+
+        return recado;
     }
 
     /**
@@ -210,6 +411,7 @@ public class Facade {
         User user = this.sessionService.getSessaoUsuario(id);
 
         sessionService.criarComunidade(user, nome, descricao);
+        this.sessionService.registrarOperacao(CRIAR_COMUNIDADE, user.getLogin(), nome, descricao);
     }
 
     /**
@@ -253,6 +455,64 @@ public class Facade {
         return this.sessionService.getMembrosComunidade(nome);
     }
 
+    /**
+     * Retorna os membros que duas comunidades têm em comum.
+     *
+     * @param comunidade1  Nome da primeira comunidade
+     * @param comunidade2  Nome da segunda comunidade
+     * @return             Lista de membros em comum formatada em uma String
+     *
+     * @throws ComunidadeNaoExisteException Exceção lançada caso alguma das comunidades não exista
+     *
+     * @see UtilidadeString
+     */
+
+    public String getMembrosEmComum(String comunidade1, String comunidade2) throws ComunidadeNaoExisteException {
+        return this.sessionService.getMembrosEmComum(comunidade1, comunidade2);
+    }
+
+    /**
+     * Busca comunidades por palavras do nome ou da descrição, sem diferenciar acentos e maiúsculas.
+     * As comunidades são retornadas da maior para a menor (em quantidade de membros), uma página por vez.
+     *
+     * @param consulta  Palavras procuradas
+     * @param operador  "e" para exigir todas as palavras, "ou" para aceitar qualquer uma
+     * @param pagina    Número da página, a partir de 1
+     * @param tamanho   Quantidade de comunidades por página
+     * @return          Lista de nomes das comunidades da página formatada em uma String
+     *
+     * @throws OperadorDeBuscaInvalidoException Exceção lançada caso o operador não seja "e" nem "ou"
+     * @throws PaginaInvalidaException          Exceção lançada caso a página ou o tamanho não sejam positivos
+     *
+     * @see UtilidadeString
+     */
+
+    public String buscarComunidades(String consulta, String operador, int pagina, int tamanho)
+            throws OperadorDeBuscaInvalidoException, PaginaInvalidaException {
+        return this.sessionService.buscarComunidades(consulta, operador, pagina, tamanho);
+    }
+
+    /**
+     * Recomenda comunidades para o usuário especificado: as que têm os membros mais parecidos
+     * (similaridade de Jaccard estimada por MinHash) com os das comunidades de que ele já participa.
+     *
+     * @param login       Login do usuário
+     * @param quantidade  Quantidade máxima de recomendações
+     * @return            Lista de nomes das comunidades recomendadas formatada em uma String
+     *
+     * @throws UsuarioNaoRegistradoException Exceção lançada caso o usuário não esteja cadastrado
+     * @throws QuantidadeInvalidaException   Exceção lançada caso a quantidade não seja positiva
+     *
+     * @see UtilidadeString
+     */
+
+    public String getComunidadesRecomendadas(String login, int quantidade)
+            throws UsuarioNaoRegistradoException, QuantidadeInvalidaException {
+        User user = this.sessionService.getUsuario(login);
+
+        return this.sessionService.getComunidadesRecomendadas(user, quantidade);
+    }
+
     /**
      * Retorna a lista de comunidades do usuário especificado.
      *
@@ -286,6 +546,7 @@ public class Facade {
         User user = this.sessionService.getSessaoUsuario(id);
 
         this.sessionService.adicionarComunidade(user, nome);
+        this.sessionService.registrarOperacao(ADICIONAR_COMUNIDADE, user.getLogin(), nome);
     }
 
     /**
@@ -301,7 +562,10 @@ public class Facade {
     public String lerMensagem(String id) throws UsuarioNaoRegistradoException, SemMensagensException {
         User user = this.sessionService.getSessaoUsuario(id);
 
-        return this.sessionService.lerMensagem(user);
+        String mensagem = this.sessionService.lerMensagem(user);
+        this.sessionService.registrarOperacao(LER_MENSAGEM, user.getLogin());
+
+        return mensagem;
     }
 
     /**
@@ -321,6 +585,7 @@ public class Facade {
         Comunidade comunidadeAlvo = this.sessionService.getComunidade(comunidade);
 
         this.sessionService.enviarMensagem(comunidadeAlvo, mensagem);
+        this.sessionService.registrarOperacao(ENVIAR_MENSAGEM, comunidade, mensagem);
     }
 
     /**
@@ -354,6 +619,7 @@ public class Facade {
         User idolo = this.sessionService.getUsuario(loginIdolo);
 
         this.sessionService.adicionarIdolo(user, idolo);
+        this.sessionService.registrarOperacao(ADICIONAR_IDOLO, user.getLogin(), loginIdolo);
     }
 
     /**
@@ -408,6 +674,7 @@ public class Facade {
         User paquera = this.sessionService.getUsuario(loginPaquera);
 
         this.sessionService.adicionarPaquera(user, paquera);
+        this.sessionService.registrarOperacao(ADICIONAR_PAQUERA, user.getLogin(), loginPaquera);
     }
 
     /**
@@ -444,6 +711,7 @@ public class Facade {
         User inimigo = this.sessionService.getUsuario(loginInimigo);
 
         this.sessionService.adicionarInimigo(user, inimigo);
+        this.sessionService.registrarOperacao(ADICIONAR_INIMIGO, user.getLogin(), loginInimigo);
     }
 
     /**
@@ -458,11 +726,14 @@ public class Facade {
         User user = this.sessionService.getSessaoUsuario(id);
 
         this.sessionService.removerUsuario(user, id);
+        this.sessionService.registrarOperacao(REMOVER_USUARIO, user.getLogin());
     }
 
     /**
-     * Grava o cadastro em arquivo e encerra o programa.
-     * Salva usuários cadastrados.
+     * Encerra o programa.
+     * As operações já estão gravadas no diário de operações, que é fechado aqui.
+     *
+     * @see DiarioDeOperacoes
      */
 
     public void encerrarSistema() {
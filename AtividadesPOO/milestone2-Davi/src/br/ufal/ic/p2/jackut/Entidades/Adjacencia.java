@@ -0,0 +1,494 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.Arrays;
+
+
+/**
+ * Estrutura de adjacência de um tipo de relação, guardando apenas os ids inteiros dos usuários.
+ *
+ * Cada linha guarda, na ordem de inserção, os ids relacionados a um usuário. Uma remoção apenas
+ * marca a posição como removida; a linha é reorganizada quando metade dela está marcada.
+ * Linhas com muitas relações ganham um índice (id → posição), então verificar, adicionar e
+ * remover uma relação não dependem da quantidade de relações.
+ *
+ * {@link #compactar()} junta todas as linhas em dois vetores no formato CSR (compressed sparse
+ * row): {@code inicios[u]} até {@code inicios[u + 1]} delimitam as relações do usuário u em
+ * {@code destinos}. Uma linha compactada só volta a ter um vetor próprio quando é alterada.
+ *
+ * Cada linha tem uma versão, incrementada sempre que uma relação é adicionada ou removida,
+ * que permite guardar em cache o que é gerado a partir da linha.
+ *
+ * {@link #congelar()} cria uma cópia somente leitura que compartilha os vetores CSR, que nunca são
+ * alterados, e copia apenas as linhas próprias. A cópia pode ser lida e compactada em outra thread,
+ * e a compactação volta para a estrutura original por {@link #instalar(Adjacencia)}.
+ *
+ * @see GrafoDeRelacoes
+ */
+
+public class Adjacencia {
+    private static final int LIMITE_INDICE = 32;
+    private static final int REMOVIDO = -1;
+    private static final int[] VAZIA = new int[0];
+
+    private int[] inicios = {0};
+    private int[] destinos = VAZIA;
+    private int linhasCompactadas;
+
+    private int[][] linhas = new int[0][];
+    private int[] tamanhos = VAZIA;
+    private int[] removidos = VAZIA;
+    private IndiceDePosicoes[] indices = new IndiceDePosicoes[0];
+    private int[] versoes = VAZIA;
+
+    private long arestas;
+
+    /**
+     * Retorna a quantidade de relações guardadas.
+     *
+     * @return Quantidade de relações.
+     */
+
+    public long getArestas() {
+        return this.arestas;
+    }
+
+    /**
+     * Retorna a versão da linha de um usuário.
+     *
+     * @param origem  Id do usuário.
+     * @return        Quantidade de alterações feitas na linha do usuário.
+     *
+     * @see br.ufal.ic.p2.jackut.Utilidade.CacheDeTexto
+     */
+
+    public int getVersao(int origem) {
+        return origem < this.versoes.length ? this.versoes[origem] : 0;
+    }
+
+    /**
+     * Retorna a quantidade de relações de um usuário.
+     *
+     * @param origem  Id do usuário.
+     * @return        Quantidade de relações do usuário.
+     */
+
+    public int tamanho(int origem) {
+        if (this.temLinhaPropria(origem)) {
+            return this.tamanhos[origem] - this.removidos[origem];
+        }
+        return this.tamanhoCompactado(origem);
+    }
+
+    /**
+     * Retorna a quantidade de posições da linha de um usuário, incluindo as marcadas como removidas.
+     *
+     * @param origem  Id do usuário.
+     * @return        Quantidade de posições da linha.
+     *
+     * @see #valor(int, int)
+     */
+
+    public int posicoes(int origem) {
+        return this.temLinhaPropria(origem) ? this.tamanhos[origem] : this.tamanhoCompactado(origem);
+    }
+
+    /**
+     * Retorna o id guardado em uma posição da linha de um usuário.
+     *
+     * @param origem   Id do usuário.
+     * @param posicao  Posição na linha.
+     * @return         Id relacionado, ou -1 caso a posição tenha sido removida.
+     */
+
+    public int valor(int origem, int posicao) {
+        if (this.temLinhaPropria(origem)) {
+            return this.linhas[origem][posicao];
+        }
+        return this.destinos[this.inicios[origem] + posicao];
+    }
+
+    /**
+     * Verifica se existe a relação entre dois usuários.
+     *
+     * @param origem   Id do usuário de origem.
+     * @param destino  Id do usuário de destino.
+     * @return         True se a relação existir, false caso contrário.
+     */
+
+    public boolean contem(int origem, int destino) {
+        return this.posicao(origem, destino) >= 0;
+    }
+
+    /**
+     * Adiciona uma relação ao fim da linha do usuário de origem.
+     *
+     * @param origem   Id do usuário de origem.
+     * @param destino  Id do usuário de destino.
+     * @return         True se a relação foi adicionada, false se ela já existia.
+     */
+
+    public boolean adicionar(int origem, int destino) {
+        if (this.contem(origem, destino)) {
+            return false;
+        }
+
+        this.materializar(origem);
+
+        int[] linha = this.linhas[origem];
+        int posicao = this.tamanhos[origem];
+        if (posicao == linha.length) {
+            linha = Arrays.copyOf(linha, Math.max(4, linha.length * 2));
+            this.linhas[origem] = linha;
+        }
+
+        linha[posicao] = destino;
+        this.tamanhos[origem]++;
+        this.arestas++;
+        this.alterarVersao(origem);
+
+        if (this.indices[origem] != null) {
+            this.indices[origem].colocar(destino, posicao);
+        } else if (this.tamanhos[origem] > LIMITE_INDICE) {
+            this.criarIndice(origem);
+        }
+        return true;
+    }
+
+    /**
+     * Remove uma relação, marcando a sua posição na linha do usuário de origem.
+     *
+     * @param origem   Id do usuário de origem.
+     * @param destino  Id do usuário de destino.
+     * @return         True se a relação foi removida, false se ela não existia.
+     */
+
+    public boolean remover(int origem, int destino) {
+        int posicao = this.posicao(origem, destino);
+        if (posicao < 0) {
+            return false;
+        }
+
+        this.materializar(origem);
+
+        this.linhas[origem][posicao] = REMOVIDO;
+        this.removidos[origem]++;
+        this.arestas--;
+        this.alterarVersao(origem);
+
+        if (this.indices[origem] != null) {
+            this.indices[origem].remover(destino);
+        }
+
+        if (this.removidos[origem] * 2 > this.tamanhos[origem]) {
+            this.reorganizarLinha(origem);
+        }
+        return true;
+    }
+
+    /**
+     * Remove todas as relações de um usuário.
+     *
+     * @param origem Id do usuário.
+     */
+
+    public void esvaziar(int origem) {
+        int quantidade = this.tamanho(origem);
+        if (quantidade == 0) {
+            return;
+        }
+
+        this.garantirLinha(origem);
+        this.linhas[origem] = VAZIA;
+        this.tamanhos[origem] = 0;
+        this.removidos[origem] = 0;
+        this.indices[origem] = null;
+        this.arestas -= quantidade;
+        this.alterarVersao(origem);
+    }
+
+    /**
+     * Junta todas as linhas no formato CSR, descartando as posições removidas
+     * e a capacidade sobrando dos vetores de cada linha. Os vetores de controle das
+     * linhas próprias só voltam a ser alocados quando uma linha é alterada ou indexada.
+     */
+
+    public void compactar() {
+        int quantidadeLinhas = Math.max(this.linhas.length, this.linhasCompactadas);
+
+        int[] novosInicios = new int[quantidadeLinhas + 1];
+        int[] novosDestinos = new int[(int) this.arestas];
+        int total = 0;
+
+        for (int origem = 0; origem < quantidadeLinhas; origem++) {
+            novosInicios[origem] = total;
+            int posicoes = this.posicoes(origem);
+            for (int i = 0; i < posicoes; i++) {
+                int destino = this.valor(origem, i);
+                if (destino != REMOVIDO) {
+                    novosDestinos[total++] = destino;
+                }
+            }
+        }
+        novosInicios[quantidadeLinhas] = total;
+
+        this.inicios = novosInicios;
+        this.destinos = novosDestinos;
+        this.linhasCompactadas = quantidadeLinhas;
+
+        this.linhas = new int[0][];
+        this.tamanhos = VAZIA;
+        this.removidos = VAZIA;
+        this.indices = new IndiceDePosicoes[0];
+
+        for (int origem = 0; origem < quantidadeLinhas; origem++) {
+            if (this.tamanhoCompactado(origem) > LIMITE_INDICE) {
+                this.criarIndice(origem);
+            }
+        }
+    }
+
+    /**
+     * Cria uma cópia somente leitura da estrutura, que não é afetada pelas alterações seguintes.
+     * Os vetores CSR são compartilhados; apenas as linhas próprias (alteradas desde a última
+     * compactação) e as versões são copiadas.
+     *
+     * @return Cópia congelada da estrutura.
+     */
+
+    public Adjacencia congelar() {
+        Adjacencia copia = new Adjacencia();
+        copia.inicios = this.inicios;
+        copia.destinos = this.destinos;
+        copia.linhasCompactadas = this.linhasCompactadas;
+
+        copia.linhas = new int[this.linhas.length][];
+        for (int origem = 0; origem < this.linhas.length; origem++) {
+            if (this.linhas[origem] != null) {
+                copia.linhas[origem] = Arrays.copyOf(this.linhas[origem], this.tamanhos[origem]);
+            }
+        }
+        copia.tamanhos = this.tamanhos.clone();
+        copia.removidos = this.removidos.clone();
+        copia.indices = new IndiceDePosicoes[this.linhas.length];
+        copia.versoes = this.versoes.clone();
+        copia.arestas = this.arestas;
+        return copia;
+    }
+
+    /**
+     * Passa a usar os vetores CSR de uma cópia congelada desta estrutura que foi compactada.
+     * As linhas alteradas depois do congelamento (versão diferente da cópia) continuam com o
+     * seu vetor próprio; as demais passam para o formato CSR, com o índice criado na compactação.
+     *
+     * @param compactada Cópia congelada desta estrutura, já compactada.
+     *
+     * @see #congelar()
+     */
+
+    void instalar(Adjacencia compactada) {
+        int[][] novasLinhas = compactada.linhas;
+        int[] novosTamanhos = compactada.tamanhos;
+        int[] novosRemovidos = compactada.removidos;
+        IndiceDePosicoes[] novosIndices = compactada.indices;
+
+        for (int origem = 0; origem < this.linhas.length; origem++) {
+            if (this.linhas[origem] == null || this.getVersao(origem) == compactada.getVersao(origem)) {
+                continue;
+            }
+
+            if (origem >= novasLinhas.length) {
+                int capacidade = this.linhas.length;
+                novasLinhas = Arrays.copyOf(novasLinhas, capacidade);
+                novosTamanhos = Arrays.copyOf(novosTamanhos, capacidade);
+                novosRemovidos = Arrays.copyOf(novosRemovidos, capacidade);
+                novosIndices = Arrays.copyOf(novosIndices, capacidade);
+            }
+
+            novasLinhas[origem] = this.linhas[origem];
+            novosTamanhos[origem] = this.tamanhos[origem];
+            novosRemovidos[origem] = this.removidos[origem];
+            novosIndices[origem] = this.indices[origem];
+        }
+
+        this.inicios = compactada.inicios;
+        this.destinos = compactada.destinos;
+        this.linhasCompactadas = compactada.linhasCompactadas;
+        this.linhas = novasLinhas;
+        this.tamanhos = novosTamanhos;
+        this.removidos = novosRemovidos;
+        this.indices = novosIndices;
+    }
+
+    /**
+     * Estima a memória ocupada pela estrutura, em bytes.
+     *
+     * @return Quantidade aproximada de bytes.
+     */
+
+    public long getBytes() {
+        long bytes = 4L * this.inicios.length + 4L * this.destinos.length;
+        bytes += 8L * this.linhas.length + 4L * this.tamanhos.length + 4L * this.removidos.length + 8L * this.indices.length;
+        bytes += 4L * this.versoes.length;
+
+        for (int[] linha : this.linhas) {
+            if (linha != null && linha != VAZIA) {
+                bytes += 16 + 4L * linha.length;
+            }
+        }
+
+        for (IndiceDePosicoes indice : this.indices) {
+            if (indice != null) {
+                bytes += indice.getBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Procura a posição de uma relação na linha do usuário de origem.
+     *
+     * @param origem   Id do usuário de origem.
+     * @param destino  Id do usuário de destino.
+     * @return         Posição da relação, ou -1 caso ela não exista.
+     */
+
+    private int posicao(int origem, int destino) {
+        if (origem < this.indices.length && this.indices[origem] != null) {
+            return this.indices[origem].buscar(destino);
+        }
+
+        int posicoes = this.posicoes(origem);
+        for (int i = 0; i < posicoes; i++) {
+            if (this.valor(origem, i) == destino) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Verifica se a linha do usuário tem um vetor próprio, fora do formato CSR.
+     *
+     * @param origem  Id do usuário.
+     * @return        True se a linha tiver um vetor próprio.
+     */
+
+    private boolean temLinhaPropria(int origem) {
+        return origem < this.linhas.length && this.linhas[origem] != null;
+    }
+
+    /**
+     * Retorna a quantidade de relações da linha do usuário no formato CSR.
+     *
+     * @param origem  Id do usuário.
+     * @return        Quantidade de relações compactadas.
+     */
+
+    private int tamanhoCompactado(int origem) {
+        return origem < this.linhasCompactadas ? this.inicios[origem + 1] - this.inicios[origem] : 0;
+    }
+
+    /**
+     * Incrementa a versão da linha de um usuário.
+     * O vetor de versões não é descartado por {@link #compactar()}, pois compactar não altera as relações.
+     *
+     * @param origem Id do usuário.
+     */
+
+    private void alterarVersao(int origem) {
+        if (origem >= this.versoes.length) {
+            this.versoes = Arrays.copyOf(this.versoes, Math.max(origem + 1, Math.max(16, this.versoes.length * 2)));
+        }
+        this.versoes[origem]++;
+    }
+
+    /**
+     * Garante que os vetores de controle das linhas comportem o usuário especificado.
+     *
+     * @param origem Id do usuário.
+     */
+
+    private void garantirLinha(int origem) {
+        if (origem < this.linhas.length) {
+            return;
+        }
+
+        int capacidade = Math.max(origem + 1, Math.max(16, this.linhas.length * 2));
+        this.linhas = Arrays.copyOf(this.linhas, capacidade);
+        this.tamanhos = Arrays.copyOf(this.tamanhos, capacidade);
+        this.removidos = Arrays.copyOf(this.removidos, capacidade);
+        this.indices = Arrays.copyOf(this.indices, capacidade);
+    }
+
+    /**
+     * Copia a linha compactada do usuário para um vetor próprio, que pode ser alterado.
+     * As posições continuam as mesmas, então o índice da linha continua válido.
+     *
+     * @param origem Id do usuário.
+     */
+
+    private void materializar(int origem) {
+        this.garantirLinha(origem);
+        if (this.linhas[origem] != null) {
+            return;
+        }
+
+        int quantidade = this.tamanhoCompactado(origem);
+        int[] linha = quantidade == 0 ? VAZIA : new int[quantidade + (quantidade >> 1) + 1];
+        if (quantidade > 0) {
+            System.arraycopy(this.destinos, this.inicios[origem], linha, 0, quantidade);
+        }
+
+        this.linhas[origem] = linha;
+        this.tamanhos[origem] = quantidade;
+        this.removidos[origem] = 0;
+    }
+
+    /**
+     * Descarta as posições removidas da linha do usuário, mantendo a ordem das relações.
+     *
+     * @param origem Id do usuário.
+     */
+
+    private void reorganizarLinha(int origem) {
+        int[] linha = this.linhas[origem];
+        int quantidade = this.tamanhos[origem] - this.removidos[origem];
+        int[] nova = quantidade == 0 ? VAZIA : new int[Math.max(4, quantidade + (quantidade >> 1))];
+
+        int total = 0;
+        for (int i = 0; i < this.tamanhos[origem]; i++) {
+            if (linha[i] != REMOVIDO) {
+                nova[total++] = linha[i];
+            }
+        }
+
+        this.linhas[origem] = nova;
+        this.tamanhos[origem] = total;
+        this.removidos[origem] = 0;
+        this.indices[origem] = null;
+
+        if (total > LIMITE_INDICE) {
+            this.criarIndice(origem);
+        }
+    }
+
+    /**
+     * Cria o índice (id → posição) da linha do usuário.
+     *
+     * @param origem Id do usuário.
+     */
+
+    private void criarIndice(int origem) {
+        this.garantirLinha(origem);
+
+        int posicoes = this.posicoes(origem);
+        IndiceDePosicoes indice = new IndiceDePosicoes(posicoes);
+        for (int i = 0; i < posicoes; i++) {
+            int destino = this.valor(origem, i);
+            if (destino != REMOVIDO) {
+                indice.colocar(destino, i);
+            }
+        }
+        this.indices[origem] = indice;
+    }
+}
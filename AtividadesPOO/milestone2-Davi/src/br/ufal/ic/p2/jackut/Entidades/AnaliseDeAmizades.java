@@ -0,0 +1,371 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Análises sobre as amizades do {@link GrafoDeRelacoes}: amigos em comum, triângulos
+ * (três usuários amigos entre si) e coeficiente de agrupamento.
+ *
+ * Tudo se reduz a interseções entre listas de amigos, e cada par de listas escolhe a forma mais
+ * barata de cruzá-las:
+ * <ul>
+ *     <li>listas pequenas e de tamanhos parecidos são intercaladas já ordenadas;</li>
+ *     <li>quando uma das listas tem pelo menos {@link #LIMITE_BITS} amigos, uma delas é marcada
+ *         em um vetor de bits reaproveitado pela thread e a outra só consulta os bits, sem precisar
+ *         ser ordenada;</li>
+ *     <li>quando uma lista é {@link #RAZAO_BUSCA} vezes maior que a outra, os amigos da menor são
+ *         procurados por busca binária na maior.</li>
+ * </ul>
+ * A contagem de triângulos do grafo inteiro é dividida entre as threads do {@link ForkJoinPool}.
+ */
+
+public class AnaliseDeAmizades {
+    public static final int LIMITE_BITS = 128;
+    public static final int RAZAO_BUSCA = 16;
+    private static final int LOTE = 512;
+
+    private final GrafoDeRelacoes grafo;
+    private final ThreadLocal<long[]> bits = ThreadLocal.withInitial(() -> new long[0]);
+
+    /**
+     * Cria as análises sobre as amizades de um grafo.
+     *
+     * @param grafo Grafo com as amizades.
+     */
+
+    public AnaliseDeAmizades(GrafoDeRelacoes grafo) {
+        this.grafo = grafo;
+    }
+
+    /**
+     * Retorna os amigos que dois usuários têm em comum.
+     *
+     * Com um usuário popular, só a lista menor é ordenada e marcada nos bits da thread; a linha do
+     * popular é percorrida como está guardada no grafo, sem ser copiada nem ordenada.
+     *
+     * @param id1  Id do primeiro usuário.
+     * @param id2  Id do segundo usuário.
+     * @return     Ids dos amigos em comum, em ordem crescente.
+     */
+
+    public int[] amigosEmComum(int id1, int id2) {
+        Adjacencia amigos = this.grafo.getAmigos();
+        if (amigos.tamanho(id1) > amigos.tamanho(id2)) {
+            int troca = id1;
+            id1 = id2;
+            id2 = troca;
+        }
+
+        int[] menor = this.amigosOrdenados(id1);
+        int[] comuns = new int[menor.length];
+        int quantidade = 0;
+
+        if (amigos.tamanho(id2) >= LIMITE_BITS) {
+            long[] bits = this.bitsDaThread(this.grafo.getQuantidade());
+            marcar(bits, menor, true);
+
+            int posicoes = amigos.posicoes(id2);
+            for (int i = 0; i < posicoes && quantidade < menor.length; i++) {
+                int amigo = amigos.valor(id2, i);
+                if (amigo >= 0 && ((bits[amigo >>> 6] >>> amigo) & 1L) != 0) {
+                    comuns[quantidade++] = amigo;
+                }
+            }
+
+            marcar(bits, menor, false);
+            Arrays.sort(comuns, 0, quantidade);
+        } else {
+            int[] maior = this.amigosOrdenados(id2);
+            int i = 0;
+            int j = 0;
+            while (i < menor.length && j < maior.length) {
+                if (menor[i] < maior[j]) {
+                    i++;
+                } else if (menor[i] > maior[j]) {
+                    j++;
+                } else {
+                    comuns[quantidade++] = menor[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(comuns, quantidade);
+    }
+
+    /**
+     * Conta os triângulos de que um usuário participa, ou seja, os pares de amigos dele que
+     * também são amigos entre si.
+     *
+     * @param id  Id do usuário.
+     * @return    Quantidade de triângulos.
+     */
+
+    public long triangulos(int id) {
+        Adjacencia amigos = this.grafo.getAmigos();
+        MapaDeBits bits = new MapaDeBits();
+        int posicoes = amigos.posicoes(id);
+        for (int i = 0; i < posicoes; i++) {
+            int amigo = amigos.valor(id, i);
+            if (amigo >= 0) {
+                bits.adicionar(amigo);
+            }
+        }
+
+        long pares = 0;
+        for (int i = 0; i < posicoes; i++) {
+            int amigo = amigos.valor(id, i);
+            if (amigo < 0) {
+                continue;
+            }
+            int posicoesAmigo = amigos.posicoes(amigo);
+            for (int j = 0; j < posicoesAmigo; j++) {
+                int outro = amigos.valor(amigo, j);
+                if (outro >= 0 && bits.contem(outro)) {
+                    pares++;
+                }
+            }
+        }
+        return pares / 2;
+    }
+
+    /**
+     * Conta os triângulos de todos os usuários do grafo, em paralelo.
+     *
+     * @return Quantidade de triângulos de cada usuário, indexada pelo id.
+     */
+
+    public long[] triangulosDoGrafo() {
+        int total = this.grafo.getQuantidade();
+        int[][] linhas = new int[total][];
+        long[] triangulos = new long[total];
+
+        ForkJoinPool.commonPool().invoke(new Lote(linhas, null, 0, total));
+        ForkJoinPool.commonPool().invoke(new Lote(linhas, triangulos, 0, total));
+        return triangulos;
+    }
+
+    /**
+     * Calcula o coeficiente de agrupamento de um usuário: a fração dos pares de amigos dele que
+     * também são amigos entre si.
+     *
+     * @param triangulos  Quantidade de triângulos do usuário.
+     * @param amigos      Quantidade de amigos do usuário.
+     * @return            Coeficiente entre 0 e 1, ou 0 caso o usuário tenha menos de dois amigos.
+     */
+
+    public static double coeficiente(long triangulos, int amigos) {
+        if (amigos < 2) {
+            return 0.0;
+        }
+        return 2.0 * triangulos / ((long) amigos * (amigos - 1));
+    }
+
+    /**
+     * Retorna os amigos de um usuário em ordem crescente de id.
+     *
+     * @param id  Id do usuário.
+     * @return    Ids dos amigos.
+     */
+
+    private int[] amigosOrdenados(int id) {
+        Adjacencia amigos = this.grafo.getAmigos();
+        int posicoes = amigos.posicoes(id);
+        int[] ids = new int[posicoes];
+        int quantidade = 0;
+        for (int i = 0; i < posicoes; i++) {
+            int amigo = amigos.valor(id, i);
+            if (amigo >= 0) {
+                ids[quantidade++] = amigo;
+            }
+        }
+
+        ids = Arrays.copyOf(ids, quantidade);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Retorna o vetor de bits zerado da thread atual, com pelo menos um bit por id.
+     *
+     * @param ids  Quantidade de ids.
+     * @return     Vetor de bits.
+     */
+
+    private long[] bitsDaThread(int ids) {
+        long[] bits = this.bits.get();
+        if (bits.length < (ids + 63) >>> 6) {
+            bits = new long[(ids + 63) >>> 6];
+            this.bits.set(bits);
+        }
+        return bits;
+    }
+
+    /**
+     * Conta os triângulos de um usuário a partir das listas de amigos já ordenadas, escolhendo
+     * para cada amigo a forma de cruzar as duas listas.
+     *
+     * @param id      Id do usuário.
+     * @param linhas  Listas de amigos ordenadas, indexadas pelo id.
+     * @param bits    Vetor de bits zerado, com um bit por id, reaproveitado entre usuários.
+     * @return        Quantidade de triângulos do usuário.
+     */
+
+    private static long contarTriangulos(int id, int[][] linhas, long[] bits) {
+        int[] amigos = linhas[id];
+        if (amigos.length < 2) {
+            return 0;
+        }
+
+        boolean marcado = false;
+        long pares = 0;
+        for (int amigo : amigos) {
+            int[] outros = linhas[amigo];
+            if (outros.length >= RAZAO_BUSCA * amigos.length) {
+                pares += buscarComuns(amigos, outros);
+            } else if (marcado || amigos.length >= LIMITE_BITS) {
+                if (!marcado) {
+                    marcar(bits, amigos, true);
+                    marcado = true;
+                }
+                pares += contarMarcados(bits, outros);
+            } else {
+                pares += intercalarComuns(amigos, outros);
+            }
+        }
+
+        if (marcado) {
+            marcar(bits, amigos, false);
+        }
+        return pares / 2;
+    }
+
+    /**
+     * Conta os ids em comum de duas listas ordenadas percorrendo as duas ao mesmo tempo.
+     *
+     * @param a  Primeira lista ordenada.
+     * @param b  Segunda lista ordenada.
+     * @return   Quantidade de ids em comum.
+     */
+
+    private static long intercalarComuns(int[] a, int[] b) {
+        long comuns = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                comuns++;
+                i++;
+                j++;
+            }
+        }
+        return comuns;
+    }
+
+    /**
+     * Conta os ids em comum procurando cada id da lista menor na maior por busca binária.
+     *
+     * @param menor  Lista ordenada menor.
+     * @param maior  Lista ordenada maior.
+     * @return       Quantidade de ids em comum.
+     */
+
+    private static long buscarComuns(int[] menor, int[] maior) {
+        long comuns = 0;
+        int inicio = 0;
+        for (int id : menor) {
+            int posicao = Arrays.binarySearch(maior, inicio, maior.length, id);
+            if (posicao >= 0) {
+                comuns++;
+                inicio = posicao + 1;
+            } else {
+                inicio = -posicao - 1;
+            }
+        }
+        return comuns;
+    }
+
+    /**
+     * Liga os bits dos ids especificados, ou zera as palavras que os contêm.
+     *
+     * @param bits   Vetor de bits.
+     * @param ids    Ids a marcar.
+     * @param ligar  True para ligar os bits, false para zerá-los.
+     */
+
+    private static void marcar(long[] bits, int[] ids, boolean ligar) {
+        for (int id : ids) {
+            if (ligar) {
+                bits[id >>> 6] |= 1L << id;
+            } else {
+                bits[id >>> 6] = 0;
+            }
+        }
+    }
+
+    /**
+     * Conta quantos dos ids especificados estão com o bit ligado.
+     *
+     * @param bits  Vetor de bits.
+     * @param ids   Ids consultados.
+     * @return      Quantidade de ids marcados.
+     */
+
+    private static long contarMarcados(long[] bits, int[] ids) {
+        long comuns = 0;
+        for (int id : ids) {
+            comuns += (bits[id >>> 6] >>> id) & 1L;
+        }
+        return comuns;
+    }
+
+    /**
+     * Tarefa que processa um intervalo de ids, dividindo-o em lotes de {@link #LOTE}.
+     * Sem o vetor de triângulos, ordena as listas de amigos; com ele, conta os triângulos.
+     */
+
+    private class Lote extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] linhas;
+        private final long[] triangulos;
+        private final int inicio;
+        private final int fim;
+
+        private Lote(int[][] linhas, long[] triangulos, int inicio, int fim) {
+            this.linhas = linhas;
+            this.triangulos = triangulos;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.fim - this.inicio > LOTE) {
+                int meio = (this.inicio + this.fim) >>> 1;
+                invokeAll(new Lote(this.linhas, this.triangulos, this.inicio, meio),
+                        new Lote(this.linhas, this.triangulos, meio, this.fim));
+                return;
+            }
+
+            if (this.triangulos == null) {
+                for (int id = this.inicio; id < this.fim; id++) {
+                    this.linhas[id] = amigosOrdenados(id);
+                }
+                return;
+            }
+
+            long[] bits = bitsDaThread(this.linhas.length);
+            for (int id = this.inicio; id < this.fim; id++) {
+                this.triangulos[id] = contarTriangulos(id, this.linhas, bits);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+
+/**
+ * Assinaturas MinHash dos conjuntos de membros das comunidades, usadas para recomendar
+ * comunidades parecidas com as que o usuário já participa.
+ *
+ * A assinatura de uma comunidade guarda, para cada uma das {@link #FUNCOES} funções de hash, o
+ * menor hash entre os ids dos seus membros. A fração de posições iguais entre duas assinaturas
+ * estima a similaridade de Jaccard entre os dois conjuntos de membros. Para não comparar todas
+ * as comunidades entre si, as assinaturas são divididas em {@link #BANDAS} bandas de
+ * {@link #LINHAS} posições, e cada banda é guardada em um balde: só as comunidades que caem no
+ * mesmo balde em alguma banda são comparadas.
+ *
+ * Um novo membro só pode diminuir os mínimos, então a assinatura é atualizada na hora. Quando um
+ * membro sai, a assinatura da comunidade é recalculada antes da próxima recomendação.
+ */
+
+public class AssinaturasDeComunidades {
+    public static final int BANDAS = 32;
+    public static final int LINHAS = 2;
+    public static final int FUNCOES = BANDAS * LINHAS;
+
+    private static final long[] SEMENTES = new Random(0x4A4B).longs(FUNCOES).toArray();
+
+    private final HashMap<Comunidade, Assinatura> assinaturas = new HashMap<>();
+    private final List<HashMap<Long, List<Comunidade>>> baldes = new ArrayList<>(BANDAS);
+    private final Set<Comunidade> desatualizadas = new HashSet<>();
+    private boolean suspensa;
+
+    /**
+     * Cria um conjunto de assinaturas vazio.
+     */
+
+    public AssinaturasDeComunidades() {
+        for (int i = 0; i < BANDAS; i++) {
+            this.baldes.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Calcula a assinatura de uma comunidade nova.
+     *
+     * @param comunidade Comunidade criada.
+     */
+
+    public void adicionar(Comunidade comunidade) {
+        if (this.suspensa) {
+            return;
+        }
+
+        Assinatura assinatura = new Assinatura(comunidade);
+        this.assinaturas.put(comunidade, assinatura);
+        this.guardarNosBaldes(comunidade, assinatura);
+    }
+
+    /**
+     * Atualiza a assinatura de uma comunidade com um novo membro.
+     *
+     * @param comunidade  Comunidade que recebeu o membro.
+     * @param user        Novo membro.
+     */
+
+    public void adicionarMembro(Comunidade comunidade, User user) {
+        Assinatura assinatura = this.assinaturas.get(comunidade);
+        if (this.suspensa || assinatura == null || this.desatualizadas.contains(comunidade)) {
+            return;
+        }
+
+        long[] chavesAntigas = assinatura.chaves.clone();
+        if (assinatura.acrescentar(user.getId())) {
+            this.trocarDeBaldes(comunidade, chavesAntigas, assinatura.chaves);
+        }
+    }
+
+    /**
+     * Marca a assinatura de uma comunidade para ser recalculada, depois que um membro saiu.
+     *
+     * @param comunidade Comunidade que perdeu um membro.
+     */
+
+    public void removerMembro(Comunidade comunidade) {
+        if (!this.suspensa && this.assinaturas.containsKey(comunidade)) {
+            this.desatualizadas.add(comunidade);
+        }
+    }
+
+    /**
+     * Retira uma comunidade removida do sistema.
+     *
+     * @param comunidade Comunidade removida.
+     */
+
+    public void remover(Comunidade comunidade) {
+        Assinatura assinatura = this.assinaturas.remove(comunidade);
+        this.desatualizadas.remove(comunidade);
+        if (assinatura != null) {
+            this.tirarDosBaldes(comunidade, assinatura.chaves);
+        }
+    }
+
+    /**
+     * Deixa de atualizar as assinaturas a cada alteração, até {@link #reconstruir(Collection)}.
+     * Usado durante a leitura dos arquivos.
+     */
+
+    public void suspender() {
+        this.suspensa = true;
+    }
+
+    /**
+     * Recalcula as assinaturas de todas as comunidades e os baldes de cada banda, em paralelo.
+     *
+     * @param comunidades Todas as comunidades do sistema.
+     */
+
+    public void reconstruir(Collection<Comunidade> comunidades) {
+        Map<Comunidade, Assinatura> calculadas = comunidades.parallelStream()
+                .collect(Collectors.toConcurrentMap(comunidade -> comunidade, Assinatura::new));
+
+        List<HashMap<Long, List<Comunidade>>> novos = IntStream.range(0, BANDAS).parallel()
+                .mapToObj(banda -> {
+                    HashMap<Long, List<Comunidade>> baldesDaBanda = new HashMap<>();
+                    calculadas.forEach((comunidade, assinatura) -> {
+                        if (!comunidade.getMapaDeMembros().isVazio()) {
+                            baldesDaBanda.computeIfAbsent(assinatura.chaves[banda], chave -> new ArrayList<>()).add(comunidade);
+                        }
+                    });
+                    return baldesDaBanda;
+                })
+                .collect(Collectors.toList());
+
+        this.assinaturas.clear();
+        this.assinaturas.putAll(calculadas);
+        this.baldes.clear();
+        this.baldes.addAll(novos);
+        this.desatualizadas.clear();
+        this.suspensa = false;
+    }
+
+    /**
+     * Recomenda comunidades parecidas com as que o usuário participa.
+     * Cada candidata recebe a maior similaridade estimada com alguma comunidade do usuário; as
+     * empatadas são ordenadas pela quantidade de membros e depois pelo nome.
+     *
+     * @param user        Usuário que receberá as recomendações.
+     * @param quantidade  Quantidade máxima de recomendações.
+     * @return            Comunidades recomendadas, da mais para a menos parecida.
+     */
+
+    public List<Comunidade> recomendar(User user, int quantidade) {
+        this.recalcularDesatualizadas();
+
+        Set<Comunidade> minhas = user.getComunidadesParticipantes();
+        HashMap<Comunidade, Integer> semelhancas = new HashMap<>();
+
+        for (Comunidade minha : minhas) {
+            Assinatura assinatura = this.assinaturas.get(minha);
+            if (assinatura == null) {
+                continue;
+            }
+
+            for (int banda = 0; banda < BANDAS; banda++) {
+                List<Comunidade> balde = this.baldes.get(banda).get(assinatura.chaves[banda]);
+                if (balde == null) {
+                    continue;
+                }
+
+                for (Comunidade candidata : balde) {
+                    if (!minhas.contains(candidata)) {
+                        int iguais = assinatura.posicoesIguais(this.assinaturas.get(candidata));
+                        semelhancas.merge(candidata, iguais, Math::max);
+                    }
+                }
+            }
+        }
+
+        List<Comunidade> recomendadas = new ArrayList<>(semelhancas.keySet());
+        recomendadas.sort(Comparator.<Comunidade>comparingInt(semelhancas::get).reversed()
+                .thenComparing(Comparator.comparingLong(
+                        (Comunidade comunidade) -> comunidade.getMapaDeMembros().cardinalidade()).reversed())
+                .thenComparing(Comunidade::getNome));
+        return recomendadas.size() > quantidade ? recomendadas.subList(0, quantidade) : recomendadas;
+    }
+
+    /**
+     * Recalcula as assinaturas das comunidades que perderam membros.
+     */
+
+    private void recalcularDesatualizadas() {
+        for (Comunidade comunidade : this.desatualizadas) {
+            Assinatura antiga = this.assinaturas.get(comunidade);
+            Assinatura nova = new Assinatura(comunidade);
+            this.tirarDosBaldes(comunidade, antiga.chaves);
+            this.assinaturas.put(comunidade, nova);
+            this.guardarNosBaldes(comunidade, nova);
+        }
+        this.desatualizadas.clear();
+    }
+
+    /**
+     * Coloca uma comunidade no balde de cada banda da sua assinatura.
+     *
+     * @param comunidade  Comunidade.
+     * @param assinatura  Assinatura da comunidade.
+     */
+
+    private void guardarNosBaldes(Comunidade comunidade, Assinatura assinatura) {
+        if (comunidade.getMapaDeMembros().isVazio()) {
+            return;
+        }
+        for (int banda = 0; banda < BANDAS; banda++) {
+            this.baldes.get(banda).computeIfAbsent(assinatura.chaves[banda], chave -> new ArrayList<>()).add(comunidade);
+        }
+    }
+
+    /**
+     * Tira uma comunidade dos baldes de todas as bandas.
+     *
+     * @param comunidade  Comunidade.
+     * @param chaves      Chaves das bandas em que a comunidade foi guardada.
+     */
+
+    private void tirarDosBaldes(Comunidade comunidade, long[] chaves) {
+        for (int banda = 0; banda < BANDAS; banda++) {
+            this.tirarDoBalde(banda, chaves[banda], comunidade);
+        }
+    }
+
+    /**
+     * Move uma comunidade para os baldes das bandas cuja chave mudou.
+     *
+     * @param comunidade  Comunidade.
+     * @param antigas     Chaves das bandas antes da alteração.
+     * @param novas       Chaves das bandas depois da alteração.
+     */
+
+    private void trocarDeBaldes(Comunidade comunidade, long[] antigas, long[] novas) {
+        for (int banda = 0; banda < BANDAS; banda++) {
+            if (antigas[banda] != novas[banda]) {
+                this.tirarDoBalde(banda, antigas[banda], comunidade);
+                this.baldes.get(banda).computeIfAbsent(novas[banda], chave -> new ArrayList<>()).add(comunidade);
+            }
+        }
+    }
+
+    /**
+     * Tira uma comunidade de um balde, descartando o balde caso ele fique vazio.
+     *
+     * @param banda       Índice da banda.
+     * @param chave       Chave do balde.
+     * @param comunidade  Comunidade.
+     */
+
+    private void tirarDoBalde(int banda, long chave, Comunidade comunidade) {
+        List<Comunidade> balde = this.baldes.get(banda).get(chave);
+        if (balde != null && balde.remove(comunidade) && balde.isEmpty()) {
+            this.baldes.get(banda).remove(chave);
+        }
+    }
+
+    /**
+     * Espalha os bits de um valor de 64 bits (função de finalização do SplitMix64).
+     *
+     * @param valor  Valor a ser espalhado.
+     * @return       Valor com os bits espalhados.
+     */
+
+    private static long espalhar(long valor) {
+        valor = (valor ^ (valor >>> 30)) * 0xBF58476D1CE4E5B9L;
+        valor = (valor ^ (valor >>> 27)) * 0x94D049BB133111EBL;
+        return valor ^ (valor >>> 31);
+    }
+
+    /**
+     * Assinatura MinHash de uma comunidade e a chave de cada uma das suas bandas.
+     */
+
+    private static class Assinatura {
+        private final int[] minimos = new int[FUNCOES];
+        private final long[] chaves = new long[BANDAS];
+
+        private Assinatura(Comunidade comunidade) {
+            Arrays.fill(this.minimos, Integer.MAX_VALUE);
+            comunidade.getMapaDeMembros().paraCada(this::minimizar);
+            this.calcularChaves();
+        }
+
+        private boolean acrescentar(int id) {
+            if (!this.minimizar(id)) {
+                return false;
+            }
+            this.calcularChaves();
+            return true;
+        }
+
+        private boolean minimizar(int id) {
+            boolean mudou = false;
+            for (int i = 0; i < FUNCOES; i++) {
+                int hash = (int) (espalhar(id ^ SEMENTES[i]) >>> 33);
+                if (hash < this.minimos[i]) {
+                    this.minimos[i] = hash;
+                    mudou = true;
+                }
+            }
+            return mudou;
+        }
+
+        private void calcularChaves() {
+            for (int banda = 0; banda < BANDAS; banda++) {
+                long chave = banda;
+                for (int i = banda * LINHAS; i < (banda + 1) * LINHAS; i++) {
+                    chave = espalhar(chave * 31 + this.minimos[i]);
+                }
+                this.chaves[banda] = chave;
+            }
+        }
+
+        private int posicoesIguais(Assinatura outra) {
+            int iguais = 0;
+            for (int i = 0; i < FUNCOES; i++) {
+                if (this.minimos[i] == outra.minimos[i]) {
+                    iguais++;
+                }
+            }
+            return iguais;
+        }
+    }
+}
@@ -0,0 +1,806 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.ufal.ic.p2.jackut.Utilidade.Configuracao;
+
+
+/**
+ * Fila de recados de um usuário formada por segmentos de tamanho fixo.
+ *
+ * O segmento mais antigo é o de leitura e os mais novos ficam em memória na cauda. Quando a
+ * quantidade de recados em memória passa do limite configurado, os segmentos mais antigos da
+ * cauda são gravados em um arquivo do usuário em "BaseDeDados/transbordo" e só voltam para a
+ * memória, um por vez, quando o segmento de leitura se esgota. Assim a memória ocupada por um
+ * usuário que nunca lê seus recados não cresce com a quantidade de recados recebidos. Uma caixa
+ * vazia não ocupa nenhum segmento: o primeiro só é criado quando chega o primeiro recado.
+ *
+ * Os recados gravados em disco guardam apenas o id do remetente no {@link GrafoDeRelacoes} e o texto.
+ *
+ * A caixa conta quantos recados não lidos cada remetente deixou e mantém, no grafo, a relação
+ * do remetente com os destinatários que ainda têm recados dele. Quando um remetente é removido,
+ * os seus recados não são procurados: o remetente é marcado como descartado e os recados dele
+ * são pulados quando chegam ao início da fila ou são percorridos.
+ *
+ * {@link #congelar(GrafoDeRelacoes)} cria uma cópia somente leitura da caixa para as fotografias
+ * gravadas em outra thread: os recados em memória são copiados por referência e os gravados em
+ * disco continuam no arquivo de transbordo, lidos um segmento por vez durante a gravação.
+ * Enquanto uma fotografia retém o transbordo, os arquivos que a caixa deixaria de usar só são
+ * apagados depois que a gravação termina.
+ *
+ * @see Configuracao#getLimiteRecadosEmMemoria()
+ * @see GrafoDeRelacoes#getRecadosPendentes()
+ */
+
+public class CaixaDeRecados extends AbstractQueue<Recado> {
+    public static final int TAMANHO_SEGMENTO = 256;
+    public static final String PASTA_TRANSBORDO = "./BaseDeDados/transbordo";
+    private static final Segmento VAZIO = new Segmento(0);
+    private static final Recado[] SEM_RECADOS = new Recado[0];
+
+    private static final AtomicInteger retencoes = new AtomicInteger();
+    private static final ConcurrentLinkedQueue<Path> apagarDepois = new ConcurrentLinkedQueue<>();
+
+    private final User dono;
+    private final int limiteEmMemoria;
+
+    private Segmento leitura = VAZIO;
+    private final ArrayDeque<Segmento> cauda = new ArrayDeque<>();
+    private Segmento livre;
+
+    private final HashMap<Integer, Integer> porRemetente = new HashMap<>();
+    private final HashMap<Integer, Integer> descartados = new HashMap<>();
+    private int pendentesDescarte;
+
+    private int tamanho;
+    private int recadosEmDisco;
+    private Path arquivo;
+    private long posicaoDisco;
+    private long fimDisco;
+    private boolean transbordoDesativado;
+
+    /**
+     * Cria uma caixa de recados vazia.
+     *
+     * @param dono Usuário destinatário dos recados.
+     */
+
+    public CaixaDeRecados(User dono) {
+        this.dono = dono;
+        this.limiteEmMemoria = Configuracao.getLimiteRecadosEmMemoria();
+    }
+
+    /**
+     * Apaga os arquivos de transbordo deixados por execuções anteriores.
+     */
+
+    public static void limparTransbordo() {
+        File[] arquivos = new File(PASTA_TRANSBORDO).listFiles();
+        if (arquivos == null) {
+            return;
+        }
+
+        for (File arquivo : arquivos) {
+            arquivo.delete();
+        }
+    }
+
+    /**
+     * Impede que os arquivos de transbordo sejam apagados até a chamada correspondente de
+     * {@link #liberarTransbordo()}. Chamado ao capturar uma fotografia gravada em outra thread.
+     *
+     * @see #congelar(GrafoDeRelacoes)
+     */
+
+    public static void reterTransbordo() {
+        retencoes.incrementAndGet();
+    }
+
+    /**
+     * Libera os arquivos de transbordo retidos por uma fotografia, apagando os que as caixas
+     * deixaram de usar enquanto ela era gravada.
+     *
+     * @see #reterTransbordo()
+     */
+
+    public static void liberarTransbordo() {
+        if (retencoes.decrementAndGet() == 0) {
+            apagarPendentes();
+        }
+    }
+
+    /**
+     * Apaga os arquivos de transbordo cuja remoção foi adiada.
+     */
+
+    private static void apagarPendentes() {
+        Path arquivo;
+        while ((arquivo = apagarDepois.poll()) != null) {
+            arquivo.toFile().delete();
+        }
+    }
+
+    /**
+     * Retorna a quantidade de recados na caixa, inclusive os gravados em disco
+     * e sem contar os de remetentes descartados.
+     *
+     * @return Quantidade de recados.
+     */
+
+    @Override
+    public int size() {
+        return this.tamanho;
+    }
+
+    /**
+     * Adiciona um recado no fim da caixa, gravando em disco os segmentos excedentes.
+     *
+     * @param recado Recado a ser adicionado.
+     * @return       Sempre true.
+     */
+
+    @Override
+    public boolean offer(Recado recado) {
+        Segmento ultimo = this.cauda.peekLast();
+        if (ultimo == null && this.recadosEmDisco == 0) {
+            ultimo = this.leitura;
+        }
+
+        if (ultimo == null || ultimo.isCheio()) {
+            ultimo = this.novoSegmento();
+            this.cauda.addLast(ultimo);
+        }
+
+        ultimo.adicionar(recado);
+        this.tamanho++;
+        this.contarRecebido(recado.getRemetente());
+
+        this.transbordar();
+        return true;
+    }
+
+    /**
+     * Remove e retorna o recado mais antigo da caixa.
+     *
+     * @return Recado mais antigo, ou null caso a caixa esteja vazia.
+     */
+
+    @Override
+    public Recado poll() {
+        Recado recado = this.proximo();
+        if (recado == null) {
+            return null;
+        }
+
+        this.leitura.remover();
+        this.tamanho--;
+        this.contarLido(recado.getRemetente());
+        return recado;
+    }
+
+    /**
+     * Retorna o recado mais antigo da caixa sem removê-lo.
+     *
+     * @return Recado mais antigo, ou null caso a caixa esteja vazia.
+     */
+
+    @Override
+    public Recado peek() {
+        return this.proximo();
+    }
+
+    /**
+     * Descarta todos os recados de um remetente, sem percorrer a caixa.
+     * Os recados continuam nos segmentos e no disco até chegarem ao início da fila.
+     * A relação do remetente com esta caixa no grafo não é alterada, pois ela é
+     * apagada junto com o remetente.
+     *
+     * @param remetente  Remetente removido do sistema.
+     * @return           True se a caixa tinha recados do remetente.
+     */
+
+    public boolean descartarRemetente(User remetente) {
+        Integer quantidade = this.porRemetente.remove(remetente.getId());
+        if (quantidade == null) {
+            return false;
+        }
+
+        this.descartados.merge(remetente.getId(), quantidade, Integer::sum);
+        this.pendentesDescarte += quantidade;
+        this.tamanho -= quantidade;
+        return true;
+    }
+
+    /**
+     * Remove todos os recados da caixa e apaga o seu arquivo de transbordo.
+     */
+
+    @Override
+    public void clear() {
+        Adjacencia pendentes = this.dono.getGrafo().getRecadosPendentes();
+        for (int remetente : this.porRemetente.keySet()) {
+            pendentes.remover(remetente, this.dono.getId());
+        }
+
+        this.leitura = VAZIO;
+        this.cauda.clear();
+        this.apagarArquivo();
+        this.porRemetente.clear();
+        this.descartados.clear();
+        this.pendentesDescarte = 0;
+        this.recadosEmDisco = 0;
+        this.tamanho = 0;
+    }
+
+    /**
+     * Cria uma cópia somente leitura da caixa, que não é afetada pelas alterações seguintes.
+     * Os recados em memória são copiados por referência; os recados em disco não são lidos, a
+     * cópia guarda apenas o trecho do arquivo de transbordo em que eles estão. O arquivo deve
+     * estar retido por {@link #reterTransbordo()} enquanto a cópia for percorrida.
+     *
+     * @param grafo  Grafo usado para encontrar os remetentes dos recados em disco, normalmente uma
+     *               cópia congelada do grafo do sistema.
+     * @return       Recados da caixa, do mais antigo ao mais novo.
+     *
+     * @see GrafoDeRelacoes#congelar()
+     */
+
+    public Collection<Recado> congelar(GrafoDeRelacoes grafo) {
+        if (this.tamanho == 0) {
+            return Collections.emptyList();
+        }
+
+        Recado[] primeiros = Arrays.copyOfRange(this.leitura.itens, this.leitura.inicio, this.leitura.fim);
+
+        Recado[] ultimos = SEM_RECADOS;
+        if (!this.cauda.isEmpty()) {
+            int quantidade = 0;
+            for (Segmento segmento : this.cauda) {
+                quantidade += segmento.tamanho();
+            }
+
+            ultimos = new Recado[quantidade];
+            int posicao = 0;
+            for (Segmento segmento : this.cauda) {
+                System.arraycopy(segmento.itens, segmento.inicio, ultimos, posicao, segmento.tamanho());
+                posicao += segmento.tamanho();
+            }
+        }
+
+        Set<Integer> pular = this.pendentesDescarte > 0 ? new HashSet<>(this.descartados.keySet()) : Collections.emptySet();
+        return new CaixaCongelada(this.dono, grafo, this.tamanho, primeiros, this.recadosEmDisco > 0 ? this.arquivo : null,
+                this.posicaoDisco, this.fimDisco, ultimos, pular);
+    }
+
+    /**
+     * Percorre os recados do mais antigo ao mais novo, sem removê-los.
+     * Os segmentos em disco são lidos um por vez, sem voltar para a fila, em um segmento
+     * criado apenas quando a caixa tem recados em disco.
+     *
+     * @return Iterador dos recados.
+     */
+
+    @Override
+    public Iterator<Recado> iterator() {
+        return new Iterator<Recado>() {
+            private Segmento doDisco;
+            private final Iterator<Segmento> memoria = cauda.iterator();
+            private long proximoDisco = posicaoDisco;
+            private Segmento atual = leitura;
+            private int posicao = leitura.inicio;
+
+            @Override
+            public boolean hasNext() {
+                while (true) {
+                    if (this.posicao < this.atual.fim) {
+                        if (!isDescartado(this.atual.itens[this.posicao].getRemetente().getId())) {
+                            return true;
+                        }
+                        this.posicao++;
+                    } else if (this.proximoDisco < fimDisco) {
+                        if (this.doDisco == null) {
+                            this.doDisco = new Segmento();
+                        }
+                        this.doDisco.esvaziar();
+                        this.proximoDisco = lerDoDisco(this.proximoDisco, this.doDisco);
+                        this.atual = this.doDisco;
+                        this.posicao = this.atual.inicio;
+                    } else if (this.memoria.hasNext()) {
+                        this.atual = this.memoria.next();
+                        this.posicao = this.atual.inicio;
+                    } else {
+                        return false;
+                    }
+                }
+            }
+
+            @Override
+            public Recado next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.atual.itens[this.posicao++];
+            }
+        };
+    }
+
+    /**
+     * Retorna o primeiro recado válido do segmento de leitura, retirando antes os recados
+     * de remetentes descartados que estiverem no início da fila.
+     *
+     * @return Primeiro recado válido, ou null caso a caixa esteja vazia.
+     */
+
+    private Recado proximo() {
+        while (true) {
+            this.prepararLeitura();
+            if (this.leitura.isVazio()) {
+                return null;
+            }
+
+            Recado recado = this.leitura.primeiro();
+            if (!this.consumirDescarte(recado.getRemetente().getId())) {
+                return recado;
+            }
+            this.leitura.remover();
+        }
+    }
+
+    /**
+     * Conta um recado recebido de um remetente, ligando o remetente a esta caixa no grafo
+     * quando for o primeiro recado pendente dele.
+     *
+     * @param remetente Remetente do recado.
+     */
+
+    private void contarRecebido(User remetente) {
+        if (this.porRemetente.merge(remetente.getId(), 1, Integer::sum) == 1) {
+            this.dono.getGrafo().getRecadosPendentes().adicionar(remetente.getId(), this.dono.getId());
+        }
+    }
+
+    /**
+     * Conta um recado lido de um remetente, desligando o remetente desta caixa no grafo
+     * quando não houver mais recados pendentes dele.
+     *
+     * @param remetente Remetente do recado.
+     */
+
+    private void contarLido(User remetente) {
+        int id = remetente.getId();
+        if (this.porRemetente.merge(id, -1, Integer::sum) == 0) {
+            this.porRemetente.remove(id);
+            this.dono.getGrafo().getRecadosPendentes().remover(id, this.dono.getId());
+        }
+    }
+
+    /**
+     * Verifica se o remetente de um recado foi descartado.
+     *
+     * @param remetente  Id do remetente.
+     * @return           True se os recados do remetente devem ser pulados.
+     */
+
+    private boolean isDescartado(int remetente) {
+        return this.pendentesDescarte > 0 && this.descartados.containsKey(remetente);
+    }
+
+    /**
+     * Retira um recado de remetente descartado da contagem de recados a descartar.
+     *
+     * @param remetente  Id do remetente do recado.
+     * @return           True se o recado é de um remetente descartado.
+     */
+
+    private boolean consumirDescarte(int remetente) {
+        if (!this.isDescartado(remetente)) {
+            return false;
+        }
+
+        int restantes = this.descartados.get(remetente) - 1;
+        if (restantes == 0) {
+            this.descartados.remove(remetente);
+        } else {
+            this.descartados.put(remetente, restantes);
+        }
+        this.pendentesDescarte--;
+        return true;
+    }
+
+    /**
+     * Garante que o segmento de leitura tenha o próximo recado, trazendo de volta o segmento
+     * mais antigo do disco ou, se não houver nenhum, o primeiro da cauda.
+     */
+
+    private void prepararLeitura() {
+        while (this.leitura.isVazio()) {
+            Segmento proximo = this.recadosEmDisco > 0 ? this.carregarSegmento() : this.cauda.pollFirst();
+            if (proximo == null) {
+                return;
+            }
+
+            if (this.leitura != VAZIO) {
+                this.leitura.esvaziar();
+                this.livre = this.leitura;
+            }
+            this.leitura = proximo;
+        }
+    }
+
+    /**
+     * Grava em disco os segmentos mais antigos da cauda enquanto a memória passar do limite.
+     * O último segmento, que ainda recebe recados, nunca é gravado.
+     */
+
+    private void transbordar() {
+        while (!this.transbordoDesativado && this.cauda.size() > 1
+                && this.tamanho + this.pendentesDescarte - this.recadosEmDisco > this.limiteEmMemoria) {
+            Segmento segmento = this.cauda.pollFirst();
+
+            if (!this.gravarSegmento(segmento)) {
+                this.cauda.addFirst(segmento);
+                this.transbordoDesativado = true;
+                return;
+            }
+
+            segmento.esvaziar();
+            this.livre = segmento;
+        }
+    }
+
+    /**
+     * Retorna um segmento vazio, reaproveitando o último segmento descartado.
+     *
+     * @return Segmento vazio.
+     */
+
+    private Segmento novoSegmento() {
+        Segmento segmento = this.livre != null ? this.livre : new Segmento();
+        this.livre = null;
+        return segmento;
+    }
+
+    /**
+     * Acrescenta um segmento ao fim do arquivo de transbordo.
+     * Cada segmento é gravado como o seu tamanho em bytes, a quantidade de recados e,
+     * para cada recado, o id do remetente e o texto em UTF-8.
+     *
+     * @param segmento  Segmento a ser gravado.
+     * @return          True se o segmento foi gravado.
+     */
+
+    private boolean gravarSegmento(Segmento segmento) {
+        try {
+            if (this.arquivo == null) {
+                Files.createDirectories(Paths.get(PASTA_TRANSBORDO));
+                this.arquivo = Files.createTempFile(Paths.get(PASTA_TRANSBORDO), "recados-", ".bin");
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(segmento.tamanho());
+            for (int i = segmento.inicio; i < segmento.fim; i++) {
+                byte[] texto = segmento.itens[i].getRecado().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(segmento.itens[i].getRemetente().getId());
+                out.writeInt(texto.length);
+                out.write(texto);
+            }
+
+            byte[] dados = bytes.toByteArray();
+            int tamanhoDados = dados.length - 4;
+            dados[0] = (byte) (tamanhoDados >>> 24);
+            dados[1] = (byte) (tamanhoDados >>> 16);
+            dados[2] = (byte) (tamanhoDados >>> 8);
+            dados[3] = (byte) tamanhoDados;
+
+            Files.write(this.arquivo, dados, StandardOpenOption.APPEND);
+            this.fimDisco += dados.length;
+            this.recadosEmDisco += segmento.tamanho();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Erro ao gravar os recados de " + this.dono.getLogin() + " em disco");
+            return false;
+        }
+    }
+
+    /**
+     * Lê o segmento mais antigo do arquivo de transbordo, retirando-o do disco.
+     * O arquivo é apagado quando todos os seus segmentos forem lidos.
+     *
+     * @return Segmento lido, sem os recados de remetentes descartados.
+     */
+
+    private Segmento carregarSegmento() {
+        Segmento segmento = this.novoSegmento();
+
+        try {
+            this.posicaoDisco = this.lerSegmento(this.arquivo, this.posicaoDisco, segmento, true);
+        } catch (IOException e) {
+            System.out.println("Erro ao ler os recados de " + this.dono.getLogin() + " do disco");
+            this.tamanho -= Math.min(this.tamanho, this.recadosEmDisco);
+            this.recadosEmDisco = 0;
+        }
+
+        if (this.recadosEmDisco == 0) {
+            this.apagarArquivo();
+        }
+        return segmento;
+    }
+
+    /**
+     * Lê um segmento do arquivo de transbordo sem retirá-lo do disco.
+     *
+     * @param posicao   Posição do segmento no arquivo.
+     * @param segmento  Segmento vazio que receberá os recados.
+     * @return          Posição do próximo segmento, ou o fim do arquivo caso ele não possa ser lido.
+     */
+
+    private long lerDoDisco(long posicao, Segmento segmento) {
+        try {
+            return this.lerSegmento(this.arquivo, posicao, segmento, false);
+        } catch (IOException e) {
+            System.out.println("Erro ao ler os recados de " + this.dono.getLogin() + " do disco");
+            return this.fimDisco;
+        }
+    }
+
+    /**
+     * Lê um segmento do arquivo de transbordo, pulando os recados de remetentes descartados.
+     *
+     * @param arquivo   Arquivo de transbordo.
+     * @param posicao   Posição do segmento no arquivo.
+     * @param segmento  Segmento vazio que receberá os recados.
+     * @param retirar   True se o segmento está saindo do disco e voltando para a fila.
+     * @return          Posição do próximo segmento no arquivo.
+     *
+     * @throws IOException Exceção lançada caso o arquivo não possa ser lido.
+     */
+
+    private long lerSegmento(Path arquivo, long posicao, Segmento segmento, boolean retirar) throws IOException {
+        return lerSegmento(arquivo, posicao, (remetente, texto) -> {
+            if (retirar) {
+                this.recadosEmDisco--;
+                if (this.consumirDescarte(remetente)) {
+                    return;
+                }
+            } else if (this.isDescartado(remetente)) {
+                return;
+            }
+
+            User user = this.dono.getGrafo().getUsuario(remetente);
+            segmento.adicionar(new Recado(user, this.dono, texto));
+        });
+    }
+
+    /**
+     * Lê um segmento do arquivo de transbordo, entregando cada recado gravado nele.
+     *
+     * @param arquivo   Arquivo de transbordo.
+     * @param posicao   Posição do segmento no arquivo.
+     * @param leitor    Recebe o id do remetente e o texto de cada recado, na ordem em que foram gravados.
+     * @return          Posição do próximo segmento no arquivo.
+     *
+     * @throws IOException Exceção lançada caso o arquivo não possa ser lido.
+     */
+
+    private static long lerSegmento(Path arquivo, long posicao, LeitorDeRecados leitor) throws IOException {
+        try (RandomAccessFile entrada = new RandomAccessFile(arquivo.toFile(), "r")) {
+            entrada.seek(posicao);
+            byte[] dados = new byte[entrada.readInt()];
+            entrada.readFully(dados);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(dados));
+            int quantidade = in.readInt();
+            for (int i = 0; i < quantidade; i++) {
+                int remetente = in.readInt();
+                byte[] texto = new byte[in.readInt()];
+                in.readFully(texto);
+
+                leitor.ler(remetente, new String(texto, StandardCharsets.UTF_8));
+            }
+            return entrada.getFilePointer();
+        }
+    }
+
+    /**
+     * Recebe os recados lidos de um segmento do arquivo de transbordo.
+     */
+
+    private interface LeitorDeRecados {
+        void ler(int remetente, String texto);
+    }
+
+    /**
+     * Cópia somente leitura de uma caixa de recados.
+     * Os recados em disco são lidos do arquivo de transbordo um segmento por vez, à medida que
+     * a cópia é percorrida, e descartados em seguida.
+     *
+     * @see #congelar(GrafoDeRelacoes)
+     */
+
+    private static class CaixaCongelada extends AbstractCollection<Recado> {
+        private final User dono;
+        private final GrafoDeRelacoes grafo;
+        private final int tamanho;
+        private final Recado[] primeiros;
+        private final Path arquivo;
+        private final long inicioDisco;
+        private final long fimDisco;
+        private final Recado[] ultimos;
+        private final Set<Integer> descartados;
+
+        private CaixaCongelada(User dono, GrafoDeRelacoes grafo, int tamanho, Recado[] primeiros, Path arquivo,
+                               long inicioDisco, long fimDisco, Recado[] ultimos, Set<Integer> descartados) {
+            this.dono = dono;
+            this.grafo = grafo;
+            this.tamanho = tamanho;
+            this.primeiros = primeiros;
+            this.arquivo = arquivo;
+            this.inicioDisco = inicioDisco;
+            this.fimDisco = fimDisco;
+            this.ultimos = ultimos;
+            this.descartados = descartados;
+        }
+
+        @Override
+        public int size() {
+            return this.tamanho;
+        }
+
+        @Override
+        public Iterator<Recado> iterator() {
+            return new Iterator<Recado>() {
+                private final ArrayDeque<Recado> doDisco = new ArrayDeque<>();
+                private long proximoDisco = arquivo == null ? fimDisco : inicioDisco;
+                private Recado[] atual = primeiros;
+                private int posicao;
+                private Recado proximo;
+
+                @Override
+                public boolean hasNext() {
+                    while (this.proximo == null) {
+                        if (this.atual != null && this.posicao < this.atual.length) {
+                            Recado recado = this.atual[this.posicao++];
+                            if (!descartados.contains(recado.getRemetente().getId())) {
+                                this.proximo = recado;
+                            }
+                        } else if (!this.doDisco.isEmpty()) {
+                            this.proximo = this.doDisco.pollFirst();
+                        } else if (this.proximoDisco < fimDisco) {
+                            this.atual = null;
+                            this.lerDoDisco();
+                        } else if (this.atual != ultimos) {
+                            this.atual = ultimos;
+                            this.posicao = 0;
+                        } else {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public Recado next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    Recado recado = this.proximo;
+                    this.proximo = null;
+                    return recado;
+                }
+
+                private void lerDoDisco() {
+                    try {
+                        this.proximoDisco = lerSegmento(arquivo, this.proximoDisco, (remetente, texto) -> {
+                            if (!descartados.contains(remetente)) {
+                                this.doDisco.addLast(new Recado(grafo.getUsuario(remetente), dono, texto));
+                            }
+                        });
+                    } catch (IOException e) {
+                        System.out.println("Erro ao ler os recados de " + dono.getLogin() + " do disco");
+                        this.proximoDisco = fimDisco;
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Apaga o arquivo de transbordo da caixa, caso exista. Se alguma fotografia retém o
+     * transbordo, a remoção é adiada até o fim da gravação.
+     */
+
+    private void apagarArquivo() {
+        if (this.arquivo != null) {
+            if (retencoes.get() > 0) {
+                apagarDepois.add(this.arquivo);
+                if (retencoes.get() == 0) {
+                    apagarPendentes();
+                }
+            } else {
+                this.arquivo.toFile().delete();
+            }
+            this.arquivo = null;
+        }
+        this.posicaoDisco = 0;
+        this.fimDisco = 0;
+    }
+
+    /**
+     * Segmento de tamanho fixo da caixa de recados.
+     * Os recados ocupam as posições de inicio (inclusive) a fim (exclusive).
+     * O segmento {@link #VAZIO}, sem posições, é o de leitura das caixas que ainda não têm recados.
+     */
+
+    private static class Segmento {
+        private final Recado[] itens;
+        private int inicio;
+        private int fim;
+
+        private Segmento() {
+            this(TAMANHO_SEGMENTO);
+        }
+
+        private Segmento(int capacidade) {
+            this.itens = new Recado[capacidade];
+        }
+
+        private int tamanho() {
+            return this.fim - this.inicio;
+        }
+
+        private boolean isVazio() {
+            return this.inicio == this.fim;
+        }
+
+        private boolean isCheio() {
+            return this.fim == this.itens.length;
+        }
+
+        private void adicionar(Recado recado) {
+            this.itens[this.fim++] = recado;
+        }
+
+        private Recado primeiro() {
+            return this.itens[this.inicio];
+        }
+
+        private Recado remover() {
+            Recado recado = this.itens[this.inicio];
+            this.itens[this.inicio++] = null;
+            return recado;
+        }
+
+        private void esvaziar() {
+            Arrays.fill(this.itens, this.inicio, this.fim, null);
+            this.inicio = 0;
+            this.fim = 0;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.Arrays;
+
+
+/**
+ * Busca o menor caminho de amizades entre dois usuários do {@link GrafoDeRelacoes}
+ * ("como eu chego até fulano").
+ *
+ * A busca em largura parte dos dois usuários ao mesmo tempo e, a cada passo, expande a camada
+ * do lado com a menor fronteira; o caminho é encontrado quando as duas buscas se tocam. As
+ * marcas de visita ficam em um vetor de int reaproveitado entre as buscas de uma thread: cada
+ * busca usa um número de época novo, então nada precisa ser zerado entre uma busca e outra.
+ *
+ * A busca desiste quando o caminho precisaria ter mais amizades do que a profundidade máxima
+ * ou quando o tempo máximo se esgota. O tempo é verificado ao fim de cada camada e, dentro de uma
+ * camada grande, a cada {@code VERIFICAR_TEMPO} visitas; com tempo zero só os amigos diretos,
+ * encontrados na primeira camada, são alcançados.
+ */
+
+public class CaminhosDeAmizade {
+    private static final int VERIFICAR_TEMPO = 4096;
+
+    private final GrafoDeRelacoes grafo;
+    private final ThreadLocal<Estado> estados = ThreadLocal.withInitial(Estado::new);
+
+    /**
+     * Cria a busca de caminhos sobre as amizades de um grafo.
+     *
+     * @param grafo Grafo com as amizades.
+     */
+
+    public CaminhosDeAmizade(GrafoDeRelacoes grafo) {
+        this.grafo = grafo;
+    }
+
+    /**
+     * Busca o menor caminho de amizades entre dois usuários.
+     *
+     * @param origem       Id do primeiro usuário.
+     * @param destino      Id do segundo usuário.
+     * @param profundidade Quantidade máxima de amizades no caminho.
+     * @param tempoMaximo  Tempo máximo da busca, em milissegundos.
+     * @return             Ids dos usuários do caminho, da origem ao destino, ou um vetor vazio
+     *                     caso não exista caminho dentro dos limites.
+     */
+
+    public int[] buscar(int origem, int destino, int profundidade, long tempoMaximo) {
+        if (origem == destino) {
+            return new int[]{origem};
+        }
+
+        Adjacencia amigos = this.grafo.getAmigos();
+        long prazo = System.nanoTime() + tempoMaximo * 1_000_000L;
+        Estado estado = this.estados.get();
+        estado.iniciar(this.grafo.getQuantidade());
+
+        Lado frente = new Lado(estado.filaFrente, estado.epoca, origem);
+        Lado tras = new Lado(estado.filaTras, estado.epoca + 1, destino);
+        estado.visitar(origem, frente.marca, -1);
+        estado.visitar(destino, tras.marca, -1);
+
+        int visitas = 0;
+        while (frente.temCamada() && tras.temCamada() && frente.nivel + tras.nivel < profundidade) {
+            Lado lado = frente.tamanhoCamada() <= tras.tamanhoCamada() ? frente : tras;
+            Lado outro = lado == frente ? tras : frente;
+
+            int fimCamada = lado.fim;
+            for (int i = lado.inicio; i < fimCamada; i++) {
+                int user = lado.fila[i];
+                int posicoes = amigos.posicoes(user);
+                for (int j = 0; j < posicoes; j++) {
+                    int amigo = amigos.valor(user, j);
+                    if (amigo < 0 || estado.marcas[amigo] == lado.marca) {
+                        continue;
+                    }
+
+                    if (estado.marcas[amigo] == outro.marca) {
+                        return lado == frente
+                                ? estado.montarCaminho(user, amigo)
+                                : estado.montarCaminho(amigo, user);
+                    }
+
+                    estado.visitar(amigo, lado.marca, user);
+                    lado.fila[lado.fim++] = amigo;
+
+                    if (++visitas % VERIFICAR_TEMPO == 0 && System.nanoTime() > prazo) {
+                        return new int[0];
+                    }
+                }
+            }
+
+            lado.inicio = fimCamada;
+            lado.nivel++;
+
+            if (System.nanoTime() - prazo >= 0) {
+                return new int[0];
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Vetores de uma thread, reaproveitados entre as buscas.
+     * Um id está visitado pela origem quando a sua marca é igual à época da busca, e pelo destino
+     * quando é igual à época mais um.
+     */
+
+    private static class Estado {
+        private int[] marcas = new int[0];
+        private int[] anteriores = new int[0];
+        private int[] filaFrente = new int[0];
+        private int[] filaTras = new int[0];
+        private int epoca = -1;
+
+        private void iniciar(int ids) {
+            if (this.marcas.length < ids) {
+                this.marcas = new int[ids];
+                this.anteriores = new int[ids];
+                this.filaFrente = new int[ids];
+                this.filaTras = new int[ids];
+                this.epoca = -1;
+            }
+
+            if (this.epoca >= Integer.MAX_VALUE - 2) {
+                Arrays.fill(this.marcas, 0);
+                this.epoca = -1;
+            }
+            this.epoca += 2;
+        }
+
+        private void visitar(int id, int marca, int anterior) {
+            this.marcas[id] = marca;
+            this.anteriores[id] = anterior;
+        }
+
+        /**
+         * Monta o caminho a partir da amizade em que as duas buscas se encontraram.
+         *
+         * @param ladoOrigem   Id visitado pela busca que partiu da origem.
+         * @param ladoDestino  Id visitado pela busca que partiu do destino.
+         * @return             Ids do caminho, da origem ao destino.
+         */
+
+        private int[] montarCaminho(int ladoOrigem, int ladoDestino) {
+            int tamanho = 0;
+            for (int id = ladoOrigem; id >= 0; id = this.anteriores[id]) {
+                tamanho++;
+            }
+            for (int id = ladoDestino; id >= 0; id = this.anteriores[id]) {
+                tamanho++;
+            }
+
+            int[] caminho = new int[tamanho];
+            int posicao = 0;
+            for (int id = ladoOrigem; id >= 0; id = this.anteriores[id]) {
+                caminho[posicao++] = id;
+            }
+            for (int i = 0, j = posicao - 1; i < j; i++, j--) {
+                int troca = caminho[i];
+                caminho[i] = caminho[j];
+                caminho[j] = troca;
+            }
+            for (int id = ladoDestino; id >= 0; id = this.anteriores[id]) {
+                caminho[posicao++] = id;
+            }
+            return caminho;
+        }
+    }
+
+    /**
+     * Uma das duas buscas: a fila de visitados, a camada atual ({@code inicio} a {@code fim}),
+     * a marca de visita e o nível da camada.
+     */
+
+    private static class Lado {
+        private final int[] fila;
+        private final int marca;
+        private int inicio;
+        private int fim;
+        private int nivel;
+
+        private Lado(int[] fila, int marca, int partida) {
+            this.fila = fila;
+            this.marca = marca;
+            this.fila[0] = partida;
+            this.fim = 1;
+        }
+
+        private boolean temCamada() {
+            return this.inicio < this.fim;
+        }
+
+        private int tamanhoCamada() {
+            return this.fim - this.inicio;
+        }
+    }
+}
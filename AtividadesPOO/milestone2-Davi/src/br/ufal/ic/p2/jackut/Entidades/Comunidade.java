@@ -1,19 +1,50 @@
 package br.ufal.ic.p2.jackut.Entidades;
 
+import br.ufal.ic.p2.jackut.Utilidade.CacheDeTexto;
 import br.ufal.ic.p2.jackut.Utilidade.UtilidadeString;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 
 /**
  * Classe que representa uma comunidade.
+ *
+ * Os membros são guardados pelos seus ids no grafo de relações: um {@link MapaDeBits} responde
+ * se um usuário é membro e permite cruzar os membros de comunidades diferentes, enquanto um vetor
+ * de ids mantém a ordem em que os membros entraram, usada nas listagens. Comunidades com muitos
+ * membros ganham um índice (id → posição no vetor), então remover um membro não depende da
+ * quantidade de membros.
+ *
+ * As mensagens enviadas para a comunidade ficam em um único mural, apenas acrescido; cada
+ * membro guarda só um {@link CursorDeMensagens} com a posição da próxima mensagem que ainda
+ * não leu. Enviar uma mensagem não depende da quantidade de membros.
+ *
+ * A listagem dos membros em texto fica em cache até a próxima entrada ou saída de um membro.
  */
 
 public class Comunidade {
+    private static final int LIMITE_INDICE = 32;
+
     private final User dono;
     private final String nome;
     private final String descricao;
-    private final ArrayList<User> membros = new ArrayList<>();
+    private final GrafoDeRelacoes grafo;
+    private final MapaDeBits membros = new MapaDeBits();
+    private int[] ordemMembros = new int[4];
+    private int posicoesOrdem;
+    private IndiceDePosicoes posicoesMembros;
+    private int versaoMembros;
+    private final CacheDeTexto textoMembros = new CacheDeTexto();
+    private final ArrayList<Mensagem> mural = new ArrayList<>();
+    private boolean alterada = true;
+    private boolean muralAlterado = true;
 
     /**
      * Cria uma nova Comunidade
@@ -28,7 +59,8 @@ public class Comunidade {
         this.dono = dono;
         this.nome = nome;
         this.descricao = descricao;
-        this.membros.add(dono);
+        this.grafo = dono.getGrafo();
+        this.adicionarMembro(dono);
     }
 
     /**
@@ -62,13 +94,104 @@ public class Comunidade {
     }
 
     /**
-     * Retorna uma lista com os membros que participam da comunidade
+     * Retorna os membros que participam da comunidade, na ordem em que entraram.
+     *
+     * @return Coleção somente leitura com os membros da comunidade
+     */
+
+    public Collection<User> getMembros() {
+        return new AbstractCollection<User>() {
+            @Override
+            public int size() {
+                return (int) membros.cardinalidade();
+            }
+
+            @Override
+            public Iterator<User> iterator() {
+                return new Iterator<User>() {
+                    private int posicao = this.avancar(0);
+
+                    private int avancar(int inicio) {
+                        int i = inicio;
+                        while (i < posicoesOrdem && ordemMembros[i] < 0) {
+                            i++;
+                        }
+                        return i;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.posicao < posicoesOrdem;
+                    }
+
+                    @Override
+                    public User next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        User membro = grafo.getUsuario(ordemMembros[this.posicao]);
+                        this.posicao = this.avancar(this.posicao + 1);
+                        return membro;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Retorna uma cópia dos ids dos membros, na ordem em que entraram.
+     *
+     * @return Ids dos membros da comunidade.
+     */
+
+    public int[] copiarIdsMembros() {
+        int[] ids = new int[(int) this.membros.cardinalidade()];
+        int total = 0;
+        for (int i = 0; i < this.posicoesOrdem; i++) {
+            if (this.ordemMembros[i] >= 0) {
+                ids[total++] = this.ordemMembros[i];
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Retorna o conjunto com os ids dos membros da comunidade.
+     *
+     * @return Conjunto de ids dos membros
+     *
+     * @see MapaDeBits
+     */
+
+    public MapaDeBits getMapaDeMembros() {
+        return this.membros;
+    }
+
+    /**
+     * Verifica se um usuário é membro da comunidade, sem percorrer os membros.
      *
-     * @return Lista de membros da comunidade
+     * @param user User a ser verificado
+     * @return     True se o usuário for membro, false caso contrário
      */
 
-    public ArrayList<User> getMembros() {
-        return membros;
+    public boolean contemMembro(User user) {
+        return user.getGrafo() == this.grafo && this.membros.contem(user.getId());
+    }
+
+    /**
+     * Retorna os membros desta comunidade que também são membros de outra.
+     *
+     * @param outra Outra comunidade
+     * @return      Membros em comum, em ordem de cadastro no sistema
+     */
+
+    public Collection<User> getMembrosEmComum(Comunidade outra) {
+        MapaDeBits emComum = this.membros.e(outra.membros);
+
+        Collection<User> resultado = new ArrayList<>((int) emComum.cardinalidade());
+        emComum.paraCada(id -> resultado.add(this.grafo.getUsuario(id)));
+        return resultado;
     }
 
     /**
@@ -80,41 +203,191 @@ public class Comunidade {
      */
 
     public String getMembrosString() {
-        return UtilidadeString.formatArrayList(membros);
+        String texto = this.textoMembros.obter(this.versaoMembros);
+        if (texto != null) {
+            return texto;
+        }
+        return this.textoMembros.guardar(this.versaoMembros, UtilidadeString.formatArrayList(this.getMembros()));
     }
 
     /**
-     * Adiciona uma lista de User como membros da comunidade.
-     * A lista de membros atual é substituída pela nova lista.
+     * Adiciona um membro na lista de membros da comunidade.
+     * Um usuário que já é membro não é adicionado de novo.
      *
-     * @param membros Lista de membros a serem adicionados
+     * @param user User a ser adicionado
      */
 
-    public void setMembros(ArrayList<User> membros) {
-        this.membros.clear();
-        this.membros.addAll(membros);
+    public void adicionarMembro(User user) {
+        if (!this.membros.adicionar(user.getId())) {
+            return;
+        }
+
+        if (this.posicoesOrdem == this.ordemMembros.length) {
+            this.ordemMembros = Arrays.copyOf(this.ordemMembros, this.ordemMembros.length * 2);
+        }
+        this.ordemMembros[this.posicoesOrdem++] = user.getId();
+
+        if (this.posicoesMembros != null) {
+            this.posicoesMembros.colocar(user.getId(), this.posicoesOrdem - 1);
+        } else if (this.posicoesOrdem > LIMITE_INDICE) {
+            this.criarIndiceMembros();
+        }
+        this.versaoMembros++;
+        this.alterada = true;
     }
 
     /**
-     * Adiciona um membro na lista de membros da comunidade.
+     * Remove um membro da comunidade.
+     * A posição do membro na ordem de entrada, encontrada pelo índice, é marcada como vazia,
+     * e a ordem é reorganizada quando metade dela está vazia.
      *
-     * @param user User a ser adicionado
+     * @param user User a ser removido
      */
 
-    public void adicionarMembro(User user) {
-        this.membros.add(user);
+    public void removerMembro(User user) {
+        if (!this.contemMembro(user) || !this.membros.remover(user.getId())) {
+            return;
+        }
+
+        int posicao = this.posicaoMembro(user.getId());
+        if (posicao >= 0) {
+            this.ordemMembros[posicao] = -1;
+        }
+        if (this.posicoesMembros != null) {
+            this.posicoesMembros.remover(user.getId());
+        }
+
+        if (this.membros.cardinalidade() * 2 < this.posicoesOrdem) {
+            int total = 0;
+            for (int i = 0; i < this.posicoesOrdem; i++) {
+                if (this.ordemMembros[i] >= 0) {
+                    this.ordemMembros[total++] = this.ordemMembros[i];
+                }
+            }
+            this.posicoesOrdem = total;
+
+            this.posicoesMembros = null;
+            if (total > LIMITE_INDICE) {
+                this.criarIndiceMembros();
+            }
+        }
+        this.versaoMembros++;
+        this.alterada = true;
     }
 
     /**
-     * Envia uma mensagem para todos os membros da comunidade.
+     * Retorna a posição de um membro na ordem de entrada.
+     * Sem índice a ordem tem no máximo {@code LIMITE_INDICE} posições e é percorrida.
+     *
+     * @param id  Id do membro.
+     * @return    Posição do membro, ou -1 caso ele não esteja na ordem.
+     */
+
+    private int posicaoMembro(int id) {
+        if (this.posicoesMembros != null) {
+            return this.posicoesMembros.buscar(id);
+        }
+
+        for (int i = 0; i < this.posicoesOrdem; i++) {
+            if (this.ordemMembros[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cria o índice (id → posição) da ordem de entrada dos membros.
+     */
+
+    private void criarIndiceMembros() {
+        this.posicoesMembros = new IndiceDePosicoes(this.posicoesOrdem);
+        for (int i = 0; i < this.posicoesOrdem; i++) {
+            if (this.ordemMembros[i] >= 0) {
+                this.posicoesMembros.colocar(this.ordemMembros[i], i);
+            }
+        }
+    }
+
+    /**
+     * Envia uma mensagem para todos os membros da comunidade, acrescentando-a ao mural.
+     * Cada membro a lê quando o seu cursor chegar a ela.
      *
      * @param mensagem Mensagem a ser enviada
+     *
+     * @see CursorDeMensagens
      */
 
     public void enviarMensagem(Mensagem mensagem) {
-        for (User membro : membros) {
-            membro.receberMensagem(mensagem);
-        }
+        this.mural.add(mensagem);
+        this.muralAlterado = true;
+    }
+
+    /**
+     * Retorna a quantidade de mensagens do mural.
+     *
+     * @return Quantidade de mensagens
+     */
+
+    public int getQuantidadeMensagens() {
+        return this.mural.size();
+    }
+
+    /**
+     * Retorna a mensagem em uma posição do mural.
+     *
+     * @param posicao Posição da mensagem
+     * @return        Mensagem na posição especificada
+     */
+
+    public Mensagem getMensagem(int posicao) {
+        return this.mural.get(posicao);
+    }
+
+    /**
+     * Retorna as mensagens do mural, na ordem em que foram enviadas.
+     *
+     * @return Lista somente leitura com as mensagens
+     */
+
+    public List<Mensagem> getMural() {
+        return Collections.unmodifiableList(this.mural);
+    }
+
+    /**
+     * Retorna se o mural foi alterado desde a última vez que foi salvo.
+     *
+     * @return True se o mural foi alterado, false caso contrário.
+     */
+
+    public boolean isMuralAlterado() {
+        return this.muralAlterado;
+    }
+
+    /**
+     * Marca o mural como salvo.
+     */
+
+    public void limparAlteracaoMural() {
+        this.muralAlterado = false;
+    }
+
+    /**
+     * Retorna se a comunidade foi alterada desde a última vez que foi salva.
+     *
+     * @return True se a comunidade foi alterada, false caso contrário.
+     */
+
+    public boolean isAlterada() {
+        return this.alterada;
+    }
+
+    /**
+     * Marca a comunidade como salva.
+     */
+
+    public void limparAlteracao() {
+        this.alterada = false;
     }
 
     /**
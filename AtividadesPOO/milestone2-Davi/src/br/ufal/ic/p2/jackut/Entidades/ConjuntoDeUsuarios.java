@@ -0,0 +1,99 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Visão somente leitura das relações de um usuário em uma {@link Adjacencia},
+ * convertendo os ids guardados de volta em usuários, na ordem de inserção.
+ *
+ * @see GrafoDeRelacoes
+ */
+
+public class ConjuntoDeUsuarios extends AbstractSet<User> {
+    private final GrafoDeRelacoes grafo;
+    private final Adjacencia adjacencia;
+    private final int origem;
+
+    /**
+     * Cria a visão das relações de um usuário.
+     *
+     * @param grafo       Grafo que guarda os usuários.
+     * @param adjacencia  Estrutura de adjacência da relação.
+     * @param origem      Id do usuário.
+     */
+
+    public ConjuntoDeUsuarios(GrafoDeRelacoes grafo, Adjacencia adjacencia, int origem) {
+        this.grafo = grafo;
+        this.adjacencia = adjacencia;
+        this.origem = origem;
+    }
+
+    /**
+     * Retorna a quantidade de usuários relacionados.
+     *
+     * @return Quantidade de usuários.
+     */
+
+    @Override
+    public int size() {
+        return this.adjacencia.tamanho(this.origem);
+    }
+
+    /**
+     * Verifica se um usuário está relacionado, sem percorrer a relação.
+     *
+     * @param objeto  Usuário a ser verificado.
+     * @return        True se o usuário estiver relacionado.
+     */
+
+    @Override
+    public boolean contains(Object objeto) {
+        if (!(objeto instanceof User)) {
+            return false;
+        }
+
+        User user = (User) objeto;
+        return user.getGrafo() == this.grafo && this.adjacencia.contem(this.origem, user.getId());
+    }
+
+    /**
+     * Percorre os usuários relacionados, na ordem em que as relações foram criadas.
+     *
+     * @return Iterador dos usuários.
+     */
+
+    @Override
+    public Iterator<User> iterator() {
+        return new Iterator<User>() {
+            private int posicao = this.avancar(0);
+
+            private int avancar(int inicio) {
+                int posicoes = adjacencia.posicoes(origem);
+                int i = inicio;
+                while (i < posicoes && adjacencia.valor(origem, i) < 0) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.posicao < adjacencia.posicoes(origem);
+            }
+
+            @Override
+            public User next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                User user = grafo.getUsuario(adjacencia.valor(origem, this.posicao));
+                this.posicao = this.avancar(this.posicao + 1);
+                return user;
+            }
+        };
+    }
+}
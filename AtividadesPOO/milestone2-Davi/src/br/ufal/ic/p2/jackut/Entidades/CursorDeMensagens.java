@@ -0,0 +1,82 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+
+/**
+ * Posição de leitura de um membro no mural de mensagens de uma comunidade.
+ *
+ * O cursor aponta para a próxima mensagem que o membro ainda não leu; as mensagens
+ * do mural a partir dessa posição são as mensagens pendentes do membro.
+ *
+ * @see Comunidade
+ * @see User#lerMensagem()
+ */
+
+public class CursorDeMensagens {
+    private final Comunidade comunidade;
+    private int posicao;
+
+    /**
+     * Cria um cursor na posição especificada do mural da comunidade.
+     *
+     * @param comunidade  Comunidade do mural.
+     * @param posicao     Posição da próxima mensagem a ser lida.
+     */
+
+    public CursorDeMensagens(Comunidade comunidade, int posicao) {
+        this.comunidade = comunidade;
+        this.posicao = posicao;
+    }
+
+    /**
+     * Retorna a comunidade do mural.
+     *
+     * @return Comunidade do mural.
+     */
+
+    public Comunidade getComunidade() {
+        return this.comunidade;
+    }
+
+    /**
+     * Retorna a posição da próxima mensagem a ser lida.
+     *
+     * @return Posição no mural.
+     */
+
+    public int getPosicao() {
+        return this.posicao;
+    }
+
+    /**
+     * Move o cursor para uma posição do mural, limitada às mensagens existentes.
+     *
+     * @param posicao Posição da próxima mensagem a ser lida.
+     */
+
+    public void setPosicao(int posicao) {
+        this.posicao = Math.max(0, Math.min(posicao, this.comunidade.getQuantidadeMensagens()));
+    }
+
+    /**
+     * Retorna a próxima mensagem a ser lida, sem avançar o cursor.
+     *
+     * @return Próxima mensagem, ou null caso todas já tenham sido lidas.
+     */
+
+    public Mensagem getProxima() {
+        if (this.posicao >= this.comunidade.getQuantidadeMensagens()) {
+            return null;
+        }
+        return this.comunidade.getMensagem(this.posicao);
+    }
+
+    /**
+     * Retorna a próxima mensagem a ser lida e avança o cursor.
+     *
+     * @return Mensagem lida.
+     */
+
+    public Mensagem avancar() {
+        return this.comunidade.getMensagem(this.posicao++);
+    }
+}
@@ -0,0 +1,325 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
+
+
+/**
+ * Grafo com todas as relações entre os usuários do sistema.
+ *
+ * Cada usuário recebe um id inteiro sequencial ao ser adicionado ao sistema, e cada tipo de
+ * relação (amizade, solicitações de amizade e os tipos de {@link TiposRelacionamento}) é
+ * guardado em uma {@link Adjacencia} própria, só com ids. Os conjuntos retornados pelos
+ * getters de {@link User} são visões sobre estas estruturas.
+ *
+ * Os atributos de perfil dos usuários ficam na {@link TabelaDePerfis} do grafo, indexada pelos
+ * mesmos ids.
+ *
+ * {@link #congelar()} cria uma cópia somente leitura do grafo, usada para gravar e compactar as
+ * relações em outra thread enquanto o grafo continua sendo alterado.
+ *
+ * @see Adjacencia
+ * @see ConjuntoDeUsuarios
+ */
+
+public class GrafoDeRelacoes {
+    private final Adjacencia amigos;
+    private final Adjacencia solicitacoesEnviadas;
+    private final Adjacencia solicitacoesRecebidas;
+    private final Adjacencia recadosPendentes;
+    private final EnumMap<TiposRelacionamento, Adjacencia> relacoes = new EnumMap<>(TiposRelacionamento.class);
+    private final TabelaDePerfis perfis;
+    private final SugestoesDeAmizade sugestoes = new SugestoesDeAmizade(this);
+    private final AnaliseDeAmizades analise = new AnaliseDeAmizades(this);
+    private final CaminhosDeAmizade caminhos = new CaminhosDeAmizade(this);
+
+    private User[] usuarios;
+    private int quantidade;
+
+    private final GrafoDeRelacoes original;
+    private int compactacoes;
+
+    /**
+     * Cria um grafo vazio, com uma estrutura de adjacência para cada tipo de relação.
+     */
+
+    public GrafoDeRelacoes() {
+        this.amigos = new Adjacencia();
+        this.solicitacoesEnviadas = new Adjacencia();
+        this.solicitacoesRecebidas = new Adjacencia();
+        this.recadosPendentes = new Adjacencia();
+        for (TiposRelacionamento tipo : TiposRelacionamento.values()) {
+            this.relacoes.put(tipo, new Adjacencia());
+        }
+        this.perfis = new TabelaDePerfis();
+        this.usuarios = new User[16];
+        this.original = null;
+    }
+
+    /**
+     * Cria uma cópia congelada de um grafo.
+     *
+     * @param original Grafo a ser copiado.
+     *
+     * @see #congelar()
+     */
+
+    private GrafoDeRelacoes(GrafoDeRelacoes original) {
+        this.amigos = original.amigos.congelar();
+        this.solicitacoesEnviadas = original.solicitacoesEnviadas.congelar();
+        this.solicitacoesRecebidas = original.solicitacoesRecebidas.congelar();
+        this.recadosPendentes = original.recadosPendentes.congelar();
+        for (TiposRelacionamento tipo : TiposRelacionamento.values()) {
+            this.relacoes.put(tipo, original.relacoes.get(tipo).congelar());
+        }
+        this.perfis = original.perfis.congelar();
+        this.usuarios = Arrays.copyOf(original.usuarios, original.quantidade);
+        this.quantidade = original.quantidade;
+        this.original = original;
+        this.compactacoes = original.compactacoes;
+    }
+
+    /**
+     * Cria uma cópia somente leitura do grafo, com as relações, os atributos de perfil e os
+     * usuários de agora. A cópia não é afetada pelas alterações seguintes do grafo e pode ser
+     * lida em outra thread.
+     *
+     * O custo não depende da quantidade de relações: os vetores CSR são compartilhados e só as
+     * linhas alteradas desde a última compactação são copiadas.
+     *
+     * @return Cópia congelada do grafo.
+     *
+     * @see Adjacencia#congelar()
+     * @see TabelaDePerfis#congelar()
+     */
+
+    public GrafoDeRelacoes congelar() {
+        return new GrafoDeRelacoes(this);
+    }
+
+    /**
+     * Atribui ao usuário o próximo id e o vincula a este grafo.
+     *
+     * @param user Usuário adicionado ao sistema.
+     */
+
+    public void registrar(User user) {
+        if (this.quantidade == this.usuarios.length) {
+            this.usuarios = Arrays.copyOf(this.usuarios, this.usuarios.length * 2);
+        }
+
+        this.usuarios[this.quantidade] = user;
+        user.vincular(this, this.quantidade);
+        this.quantidade++;
+    }
+
+    /**
+     * Remove as relações e os atributos de perfil do usuário e libera o seu id.
+     * As relações de outros usuários com ele devem ser removidas antes.
+     *
+     * @param user Usuário removido do sistema.
+     */
+
+    public void removerUsuario(User user) {
+        int id = user.getId();
+        for (Adjacencia adjacencia : this.todas()) {
+            adjacencia.esvaziar(id);
+        }
+        this.perfis.removerUsuario(id);
+        this.usuarios[id] = null;
+    }
+
+    /**
+     * Retorna o usuário com o id especificado.
+     *
+     * @param id  Id do usuário.
+     * @return    Usuário, ou null caso o id tenha sido liberado.
+     */
+
+    public User getUsuario(int id) {
+        return this.usuarios[id];
+    }
+
+    /**
+     * Retorna a quantidade de ids já atribuídos, incluindo os liberados.
+     *
+     * @return Maior id atribuído mais um.
+     */
+
+    public int getQuantidade() {
+        return this.quantidade;
+    }
+
+    /**
+     * Retorna o cálculo de sugestões de amizade sobre este grafo.
+     *
+     * @return Sugestões de amizade.
+     */
+
+    public SugestoesDeAmizade getSugestoes() {
+        return this.sugestoes;
+    }
+
+    /**
+     * Retorna as análises (amigos em comum e triângulos) sobre as amizades deste grafo.
+     *
+     * @return Análises das amizades.
+     */
+
+    public AnaliseDeAmizades getAnalise() {
+        return this.analise;
+    }
+
+    /**
+     * Retorna a busca de caminhos entre usuários pelas amizades deste grafo.
+     *
+     * @return Busca de caminhos de amizade.
+     */
+
+    public CaminhosDeAmizade getCaminhos() {
+        return this.caminhos;
+    }
+
+    /**
+     * Retorna a tabela com os atributos de perfil dos usuários.
+     *
+     * @return Tabela de perfis.
+     *
+     * @see Perfil
+     */
+
+    public TabelaDePerfis getPerfis() {
+        return this.perfis;
+    }
+
+    /**
+     * Retorna a estrutura de adjacência das amizades.
+     *
+     * @return Adjacência das amizades.
+     */
+
+    public Adjacencia getAmigos() {
+        return this.amigos;
+    }
+
+    /**
+     * Retorna a estrutura de adjacência das solicitações de amizade enviadas.
+     *
+     * @return Adjacência das solicitações enviadas.
+     */
+
+    public Adjacencia getSolicitacoesEnviadas() {
+        return this.solicitacoesEnviadas;
+    }
+
+    /**
+     * Retorna a estrutura de adjacência das solicitações de amizade recebidas.
+     *
+     * @return Adjacência das solicitações recebidas.
+     */
+
+    public Adjacencia getSolicitacoesRecebidas() {
+        return this.solicitacoesRecebidas;
+    }
+
+    /**
+     * Retorna a estrutura de adjacência que liga cada remetente aos usuários que ainda
+     * têm recados dele para ler.
+     *
+     * @return Adjacência dos recados pendentes.
+     *
+     * @see CaixaDeRecados
+     */
+
+    public Adjacencia getRecadosPendentes() {
+        return this.recadosPendentes;
+    }
+
+    /**
+     * Retorna a estrutura de adjacência de um tipo de relação.
+     *
+     * @param tipo  Tipo da relação.
+     * @return      Adjacência do tipo de relação.
+     *
+     * @see TiposRelacionamento
+     */
+
+    public Adjacencia getRelacao(TiposRelacionamento tipo) {
+        return this.relacoes.get(tipo);
+    }
+
+    /**
+     * Compacta todas as estruturas de adjacência no formato CSR.
+     *
+     * @see Adjacencia#compactar()
+     */
+
+    public void compactar() {
+        for (Adjacencia adjacencia : this.todas()) {
+            adjacencia.compactar();
+        }
+        this.compactacoes++;
+    }
+
+    /**
+     * Instala a compactação feita sobre uma cópia congelada deste grafo, normalmente em outra
+     * thread. As linhas alteradas depois do congelamento continuam como estão.
+     *
+     * A compactação é descartada se a cópia não veio deste grafo ou se este grafo já foi
+     * compactado de novo depois do congelamento.
+     *
+     * @param compactado Cópia congelada deste grafo, compactada uma única vez.
+     *
+     * @see Adjacencia#instalar(Adjacencia)
+     */
+
+    public void instalarCompactacao(GrafoDeRelacoes compactado) {
+        if (compactado.original != this || compactado.compactacoes != this.compactacoes + 1) {
+            return;
+        }
+
+        List<Adjacencia> atuais = this.todas();
+        List<Adjacencia> compactadas = compactado.todas();
+        for (int i = 0; i < atuais.size(); i++) {
+            atuais.get(i).instalar(compactadas.get(i));
+        }
+        this.compactacoes++;
+    }
+
+    /**
+     * Retorna um relatório com a quantidade de relações e a memória ocupada por elas.
+     *
+     * @return Relatório com as relações, os bytes estimados e os bytes por relação.
+     */
+
+    public String getRelatorio() {
+        long arestas = 0;
+        long bytes = 4L * this.usuarios.length;
+        for (Adjacencia adjacencia : this.todas()) {
+            arestas += adjacencia.getArestas();
+            bytes += adjacencia.getBytes();
+        }
+
+        return String.format("relacoes=%d bytes=%d bytesPorRelacao=%.2f",
+                arestas, bytes, arestas == 0 ? 0.0 : (double) bytes / arestas);
+    }
+
+    /**
+     * Retorna todas as estruturas de adjacência do grafo.
+     *
+     * @return Lista com as estruturas de adjacência.
+     */
+
+    private List<Adjacencia> todas() {
+        List<Adjacencia> todas = new ArrayList<>(this.relacoes.values());
+        todas.add(this.amigos);
+        todas.add(this.solicitacoesEnviadas);
+        todas.add(this.solicitacoesRecebidas);
+        todas.add(this.recadosPendentes);
+        return todas;
+    }
+}
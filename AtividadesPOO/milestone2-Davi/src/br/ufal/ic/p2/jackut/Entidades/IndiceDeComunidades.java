@@ -0,0 +1,159 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import br.ufal.ic.p2.jackut.Utilidade.UtilidadeString;
+import br.ufal.ic.p2.jackut.tipos.TiposBusca;
+
+
+/**
+ * Índice invertido das palavras do nome e da descrição das comunidades.
+ *
+ * Cada comunidade recebe um id ao entrar no índice, e cada palavra guarda o {@link MapaDeBits}
+ * com os ids das comunidades em que aparece. As palavras passam por
+ * {@link UtilidadeString#separarPalavras(String)}, então a busca ignora acentos, maiúsculas e
+ * pontuação. Os resultados são ordenados pela quantidade de membros (maior primeiro) e, em
+ * caso de empate, pelo nome.
+ */
+
+public class IndiceDeComunidades {
+    private static final Comparator<Comunidade> RANKING = Comparator
+            .comparingLong((Comunidade comunidade) -> comunidade.getMapaDeMembros().cardinalidade()).reversed()
+            .thenComparing(Comunidade::getNome);
+
+    private final HashMap<String, MapaDeBits> ocorrencias = new HashMap<>();
+    private final HashMap<String, Integer> idsPorNome = new HashMap<>();
+    private Comunidade[] comunidades = new Comunidade[16];
+    private int quantidade;
+
+    /**
+     * Adiciona as palavras de uma comunidade ao índice.
+     *
+     * @param comunidade Comunidade a ser indexada.
+     */
+
+    public void adicionar(Comunidade comunidade) {
+        if (this.idsPorNome.containsKey(comunidade.getNome())) {
+            return;
+        }
+
+        if (this.quantidade == this.comunidades.length) {
+            this.comunidades = Arrays.copyOf(this.comunidades, this.quantidade * 2);
+        }
+
+        int id = this.quantidade++;
+        this.comunidades[id] = comunidade;
+        this.idsPorNome.put(comunidade.getNome(), id);
+
+        for (String palavra : palavras(comunidade)) {
+            this.ocorrencias.computeIfAbsent(palavra, chave -> new MapaDeBits()).adicionar(id);
+        }
+    }
+
+    /**
+     * Retira as palavras de uma comunidade do índice.
+     *
+     * @param comunidade Comunidade removida do sistema.
+     */
+
+    public void remover(Comunidade comunidade) {
+        Integer id = this.idsPorNome.remove(comunidade.getNome());
+        if (id == null) {
+            return;
+        }
+
+        for (String palavra : palavras(comunidade)) {
+            MapaDeBits ids = this.ocorrencias.get(palavra);
+            if (ids != null && ids.remover(id) && ids.isVazio()) {
+                this.ocorrencias.remove(palavra);
+            }
+        }
+        this.comunidades[id] = null;
+    }
+
+    /**
+     * Busca as comunidades que contêm as palavras da consulta.
+     *
+     * @param consulta    Palavras procuradas.
+     * @param operador    {@link TiposBusca#E} para exigir todas as palavras, {@link TiposBusca#OU} para qualquer uma.
+     * @param inicio      Quantidade de resultados a pular.
+     * @param quantidade  Quantidade máxima de resultados.
+     * @return            Comunidades encontradas, das mais populares para as menos populares.
+     */
+
+    public List<Comunidade> buscar(String consulta, TiposBusca operador, int inicio, int quantidade) {
+        MapaDeBits encontradas = this.combinar(new LinkedHashSet<>(UtilidadeString.separarPalavras(consulta)), operador);
+        if (encontradas == null) {
+            return Collections.emptyList();
+        }
+
+        int limite = (int) Math.min(Integer.MAX_VALUE, (long) inicio + quantidade);
+        PriorityQueue<Comunidade> melhores = new PriorityQueue<>(RANKING.reversed());
+        encontradas.paraCada(id -> {
+            melhores.offer(this.comunidades[id]);
+            if (melhores.size() > limite) {
+                melhores.poll();
+            }
+        });
+
+        List<Comunidade> ordenadas = new ArrayList<>(melhores);
+        ordenadas.sort(RANKING);
+        return inicio >= ordenadas.size() ? Collections.emptyList() : ordenadas.subList(inicio, ordenadas.size());
+    }
+
+    /**
+     * Combina as listas de ocorrências das palavras da consulta. Na interseção as listas são
+     * percorridas da menor para a maior, e a busca para assim que uma palavra não é encontrada.
+     *
+     * @param palavras  Palavras da consulta, sem repetição.
+     * @param operador  Operador da busca.
+     * @return          Ids das comunidades encontradas, ou null caso nenhuma seja encontrada.
+     */
+
+    private MapaDeBits combinar(Set<String> palavras, TiposBusca operador) {
+        List<MapaDeBits> listas = new ArrayList<>(palavras.size());
+        for (String palavra : palavras) {
+            MapaDeBits ids = this.ocorrencias.get(palavra);
+            if (ids != null) {
+                listas.add(ids);
+            } else if (operador == TiposBusca.E) {
+                return null;
+            }
+        }
+
+        if (listas.isEmpty()) {
+            return null;
+        }
+
+        if (operador == TiposBusca.E) {
+            listas.sort(Comparator.comparingLong(MapaDeBits::cardinalidade));
+        }
+
+        MapaDeBits resultado = listas.get(0);
+        for (int i = 1; i < listas.size() && !resultado.isVazio(); i++) {
+            resultado = operador == TiposBusca.E ? resultado.e(listas.get(i)) : resultado.ou(listas.get(i));
+        }
+        return resultado.isVazio() ? null : resultado;
+    }
+
+    /**
+     * Retorna as palavras do nome e da descrição de uma comunidade, sem repetição.
+     *
+     * @param comunidade  Comunidade.
+     * @return            Palavras da comunidade.
+     */
+
+    private static Set<String> palavras(Comunidade comunidade) {
+        Set<String> palavras = new LinkedHashSet<>(UtilidadeString.separarPalavras(comunidade.getNome()));
+        palavras.addAll(UtilidadeString.separarPalavras(comunidade.getDescricao()));
+        return palavras;
+    }
+}
@@ -0,0 +1,141 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.Arrays;
+
+
+/**
+ * Tabela de espalhamento de endereçamento aberto entre ids e posições em um vetor de ids,
+ * usada pelas linhas grandes da {@link Adjacencia} e pela ordem dos membros de uma {@link Comunidade}.
+ * As remoções deslocam as chaves seguintes, então a tabela nunca acumula marcas de remoção.
+ */
+
+class IndiceDePosicoes {
+    private static final int VAZIO = -1;
+
+    private int[] chaves;
+    private int[] valores;
+    private int quantidade;
+
+    /**
+     * Cria um índice com espaço para a quantidade de chaves especificada.
+     *
+     * @param quantidadeEsperada Quantidade de chaves esperada.
+     */
+
+    IndiceDePosicoes(int quantidadeEsperada) {
+        this.alocar(Integer.highestOneBit(Math.max(8, quantidadeEsperada * 2) - 1) << 1);
+    }
+
+    /**
+     * Retorna a posição associada a um id.
+     *
+     * @param chave  Id procurado.
+     * @return       Posição associada, ou -1 caso o id não esteja no índice.
+     */
+
+    int buscar(int chave) {
+        int mascara = this.chaves.length - 1;
+        for (int i = espalhar(chave) & mascara; this.chaves[i] != VAZIO; i = (i + 1) & mascara) {
+            if (this.chaves[i] == chave) {
+                return this.valores[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Associa uma posição a um id.
+     *
+     * @param chave  Id.
+     * @param valor  Posição do id na linha.
+     */
+
+    void colocar(int chave, int valor) {
+        if ((this.quantidade + 1) * 2 > this.chaves.length) {
+            int[] chavesAntigas = this.chaves;
+            int[] valoresAntigos = this.valores;
+            this.alocar(chavesAntigas.length * 2);
+            for (int i = 0; i < chavesAntigas.length; i++) {
+                if (chavesAntigas[i] != VAZIO) {
+                    this.colocar(chavesAntigas[i], valoresAntigos[i]);
+                }
+            }
+        }
+
+        int mascara = this.chaves.length - 1;
+        int i = espalhar(chave) & mascara;
+        while (this.chaves[i] != VAZIO && this.chaves[i] != chave) {
+            i = (i + 1) & mascara;
+        }
+
+        if (this.chaves[i] == VAZIO) {
+            this.quantidade++;
+        }
+        this.chaves[i] = chave;
+        this.valores[i] = valor;
+    }
+
+    /**
+     * Remove um id do índice.
+     *
+     * @param chave Id a ser removido.
+     */
+
+    void remover(int chave) {
+        int mascara = this.chaves.length - 1;
+        int i = espalhar(chave) & mascara;
+        while (this.chaves[i] != chave) {
+            if (this.chaves[i] == VAZIO) {
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+
+        this.quantidade--;
+        for (int j = (i + 1) & mascara; this.chaves[j] != VAZIO; j = (j + 1) & mascara) {
+            int ideal = espalhar(this.chaves[j]) & mascara;
+            boolean alcancavel = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+            if (!alcancavel) {
+                this.chaves[i] = this.chaves[j];
+                this.valores[i] = this.valores[j];
+                i = j;
+            }
+        }
+        this.chaves[i] = VAZIO;
+    }
+
+    /**
+     * Estima a memória ocupada pelo índice, em bytes.
+     *
+     * @return Quantidade aproximada de bytes.
+     */
+
+    long getBytes() {
+        return 48 + 8L * this.chaves.length;
+    }
+
+    /**
+     * Aloca tabelas vazias com a capacidade especificada.
+     *
+     * @param capacidade Capacidade das tabelas, potência de 2.
+     */
+
+    private void alocar(int capacidade) {
+        this.chaves = new int[capacidade];
+        this.valores = new int[capacidade];
+        this.quantidade = 0;
+        Arrays.fill(this.chaves, VAZIO);
+    }
+
+    /**
+     * Espalha os bits de um id para distribuir ids sequenciais pela tabela.
+     *
+     * @param chave  Id.
+     * @return       Valor espalhado.
+     */
+
+    private static int espalhar(int chave) {
+        int h = chave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,631 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Conjunto compactado de ids inteiros de usuários, no estilo dos roaring bitmaps.
+ *
+ * Os ids são agrupados pelos seus 16 bits mais altos; cada grupo é guardado em um contêiner
+ * com os 16 bits mais baixos. Um contêiner com poucos ids é um vetor ordenado de {@code char}
+ * (2 bytes por id); acima de {@value #LIMITE_VETOR} ids ele vira um mapa de 65536 bits (8 KiB).
+ * Assim, verificar um id custa uma busca binária entre os grupos e outra no contêiner, e as
+ * operações de conjunto trabalham contêiner a contêiner, palavra a palavra quando possível.
+ *
+ * Os ids são sempre percorridos em ordem crescente.
+ *
+ * @see Comunidade
+ */
+
+public class MapaDeBits {
+    private static final int LIMITE_VETOR = 4096;
+
+    private char[] chaves = new char[0];
+    private Conteiner[] conteineres = new Conteiner[0];
+    private int quantidade;
+    private long cardinalidade;
+
+    /**
+     * Verifica se um id está no conjunto.
+     *
+     * @param id  Id a ser verificado.
+     * @return    True se o id estiver no conjunto.
+     */
+
+    public boolean contem(int id) {
+        int i = this.buscarChave((char) (id >>> 16));
+        return i >= 0 && this.conteineres[i].contem((char) id);
+    }
+
+    /**
+     * Adiciona um id ao conjunto.
+     *
+     * @param id  Id a ser adicionado.
+     * @return    True se o id foi adicionado, false se ele já estava no conjunto.
+     */
+
+    public boolean adicionar(int id) {
+        char chave = (char) (id >>> 16);
+        int i = this.buscarChave(chave);
+
+        if (i < 0) {
+            i = -i - 1;
+            this.inserirConteiner(i, chave, new Conteiner());
+        }
+
+        if (this.conteineres[i].adicionar((char) id)) {
+            this.cardinalidade++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove um id do conjunto.
+     *
+     * @param id  Id a ser removido.
+     * @return    True se o id foi removido, false se ele não estava no conjunto.
+     */
+
+    public boolean remover(int id) {
+        int i = this.buscarChave((char) (id >>> 16));
+        if (i < 0 || !this.conteineres[i].remover((char) id)) {
+            return false;
+        }
+
+        this.cardinalidade--;
+        if (this.conteineres[i].cardinalidade == 0) {
+            System.arraycopy(this.chaves, i + 1, this.chaves, i, this.quantidade - i - 1);
+            System.arraycopy(this.conteineres, i + 1, this.conteineres, i, this.quantidade - i - 1);
+            this.conteineres[--this.quantidade] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Retorna a quantidade de ids do conjunto.
+     *
+     * @return Quantidade de ids.
+     */
+
+    public long cardinalidade() {
+        return this.cardinalidade;
+    }
+
+    /**
+     * Verifica se o conjunto está vazio.
+     *
+     * @return True se o conjunto estiver vazio.
+     */
+
+    public boolean isVazio() {
+        return this.cardinalidade == 0;
+    }
+
+    /**
+     * Retorna a interseção deste conjunto com outro.
+     *
+     * @param outro  Outro conjunto.
+     * @return       Novo conjunto com os ids presentes nos dois.
+     */
+
+    public MapaDeBits e(MapaDeBits outro) {
+        MapaDeBits resultado = new MapaDeBits();
+        int i = 0;
+        int j = 0;
+
+        while (i < this.quantidade && j < outro.quantidade) {
+            if (this.chaves[i] < outro.chaves[j]) {
+                i++;
+            } else if (this.chaves[i] > outro.chaves[j]) {
+                j++;
+            } else {
+                Conteiner conteiner = Conteiner.e(this.conteineres[i], outro.conteineres[j]);
+                if (conteiner.cardinalidade > 0) {
+                    resultado.anexarConteiner(this.chaves[i], conteiner);
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Retorna a união deste conjunto com outro.
+     *
+     * @param outro  Outro conjunto.
+     * @return       Novo conjunto com os ids presentes em pelo menos um dos dois.
+     */
+
+    public MapaDeBits ou(MapaDeBits outro) {
+        MapaDeBits resultado = new MapaDeBits();
+        int i = 0;
+        int j = 0;
+
+        while (i < this.quantidade || j < outro.quantidade) {
+            if (j == outro.quantidade || (i < this.quantidade && this.chaves[i] < outro.chaves[j])) {
+                resultado.anexarConteiner(this.chaves[i], this.conteineres[i].copiar());
+                i++;
+            } else if (i == this.quantidade || this.chaves[i] > outro.chaves[j]) {
+                resultado.anexarConteiner(outro.chaves[j], outro.conteineres[j].copiar());
+                j++;
+            } else {
+                resultado.anexarConteiner(this.chaves[i], Conteiner.ou(this.conteineres[i], outro.conteineres[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Conta os ids presentes neste conjunto e em outro, sem montar a interseção.
+     *
+     * @param outro  Outro conjunto.
+     * @return       Quantidade de ids em comum.
+     */
+
+    public long cardinalidadeE(MapaDeBits outro) {
+        long total = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < this.quantidade && j < outro.quantidade) {
+            if (this.chaves[i] < outro.chaves[j]) {
+                i++;
+            } else if (this.chaves[i] > outro.chaves[j]) {
+                j++;
+            } else {
+                total += Conteiner.cardinalidadeE(this.conteineres[i], outro.conteineres[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Executa uma ação para cada id do conjunto, em ordem crescente.
+     *
+     * @param acao Ação executada para cada id.
+     */
+
+    public void paraCada(IntConsumer acao) {
+        for (int i = 0; i < this.quantidade; i++) {
+            this.conteineres[i].paraCada(this.chaves[i] << 16, acao);
+        }
+    }
+
+    /**
+     * Executa uma ação para uma faixa dos ids do conjunto, em ordem crescente.
+     * Os contêineres anteriores à faixa são pulados pela sua cardinalidade, sem serem percorridos,
+     * e o percurso para assim que o limite é atingido.
+     *
+     * @param pular   Quantidade de ids a pular.
+     * @param limite  Quantidade máxima de ids visitados.
+     * @param acao    Ação executada para cada id da faixa.
+     */
+
+    public void paraCada(long pular, int limite, IntConsumer acao) {
+        for (int i = 0; i < this.quantidade && limite > 0; i++) {
+            Conteiner conteiner = this.conteineres[i];
+            if (pular >= conteiner.cardinalidade) {
+                pular -= conteiner.cardinalidade;
+                continue;
+            }
+
+            limite -= conteiner.paraCada(this.chaves[i] << 16, (int) pular, limite, acao);
+            pular = 0;
+        }
+    }
+
+    /**
+     * Estima a memória ocupada pelo conjunto, em bytes.
+     *
+     * @return Quantidade aproximada de bytes.
+     */
+
+    public long getBytes() {
+        long bytes = 2L * this.chaves.length + 8L * this.conteineres.length;
+        for (int i = 0; i < this.quantidade; i++) {
+            bytes += this.conteineres[i].getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Procura o contêiner de um grupo de ids.
+     *
+     * @param chave  16 bits mais altos dos ids do grupo.
+     * @return       Posição do contêiner, ou (-(ponto de inserção) - 1) caso ele não exista.
+     */
+
+    private int buscarChave(char chave) {
+        return Arrays.binarySearch(this.chaves, 0, this.quantidade, chave);
+    }
+
+    /**
+     * Insere um contêiner na posição especificada, mantendo as chaves ordenadas.
+     *
+     * @param posicao    Posição do novo contêiner.
+     * @param chave      16 bits mais altos dos ids do contêiner.
+     * @param conteiner  Contêiner a ser inserido.
+     */
+
+    private void inserirConteiner(int posicao, char chave, Conteiner conteiner) {
+        if (this.quantidade == this.chaves.length) {
+            int capacidade = Math.max(4, this.chaves.length * 2);
+            this.chaves = Arrays.copyOf(this.chaves, capacidade);
+            this.conteineres = Arrays.copyOf(this.conteineres, capacidade);
+        }
+
+        System.arraycopy(this.chaves, posicao, this.chaves, posicao + 1, this.quantidade - posicao);
+        System.arraycopy(this.conteineres, posicao, this.conteineres, posicao + 1, this.quantidade - posicao);
+        this.chaves[posicao] = chave;
+        this.conteineres[posicao] = conteiner;
+        this.quantidade++;
+    }
+
+    /**
+     * Anexa um contêiner depois de todos os outros.
+     * AVISO: A chave deve ser maior que todas as chaves do conjunto.
+     *
+     * @param chave      16 bits mais altos dos ids do contêiner.
+     * @param conteiner  Contêiner a ser anexado.
+     */
+
+    private void anexarConteiner(char chave, Conteiner conteiner) {
+        this.inserirConteiner(this.quantidade, chave, conteiner);
+        this.cardinalidade += conteiner.cardinalidade;
+    }
+
+    /**
+     * Contêiner com os 16 bits mais baixos dos ids de um grupo.
+     * Guarda os valores em um vetor ordenado ({@code valores}) ou em um mapa de bits ({@code bits}).
+     */
+
+    private static class Conteiner {
+        private char[] valores = new char[4];
+        private long[] bits;
+        private int cardinalidade;
+
+        /**
+         * Verifica se um valor está no contêiner.
+         *
+         * @param valor  Valor a ser verificado.
+         * @return       True se o valor estiver no contêiner.
+         */
+
+        boolean contem(char valor) {
+            if (this.bits != null) {
+                return (this.bits[valor >>> 6] & (1L << valor)) != 0;
+            }
+            return Arrays.binarySearch(this.valores, 0, this.cardinalidade, valor) >= 0;
+        }
+
+        /**
+         * Adiciona um valor ao contêiner, convertendo-o em mapa de bits quando o vetor fica grande demais.
+         *
+         * @param valor  Valor a ser adicionado.
+         * @return       True se o valor foi adicionado.
+         */
+
+        boolean adicionar(char valor) {
+            if (this.bits != null) {
+                long palavra = this.bits[valor >>> 6];
+                long bit = 1L << valor;
+                if ((palavra & bit) != 0) {
+                    return false;
+                }
+                this.bits[valor >>> 6] = palavra | bit;
+                this.cardinalidade++;
+                return true;
+            }
+
+            int posicao = Arrays.binarySearch(this.valores, 0, this.cardinalidade, valor);
+            if (posicao >= 0) {
+                return false;
+            }
+
+            if (this.cardinalidade == LIMITE_VETOR) {
+                this.converterEmBits();
+                return this.adicionar(valor);
+            }
+
+            posicao = -posicao - 1;
+            if (this.cardinalidade == this.valores.length) {
+                this.valores = Arrays.copyOf(this.valores, Math.min(LIMITE_VETOR, this.valores.length * 2));
+            }
+            System.arraycopy(this.valores, posicao, this.valores, posicao + 1, this.cardinalidade - posicao);
+            this.valores[posicao] = valor;
+            this.cardinalidade++;
+            return true;
+        }
+
+        /**
+         * Remove um valor do contêiner, voltando a um vetor quando o mapa de bits fica esparso.
+         *
+         * @param valor  Valor a ser removido.
+         * @return       True se o valor foi removido.
+         */
+
+        boolean remover(char valor) {
+            if (this.bits != null) {
+                long palavra = this.bits[valor >>> 6];
+                long bit = 1L << valor;
+                if ((palavra & bit) == 0) {
+                    return false;
+                }
+                this.bits[valor >>> 6] = palavra & ~bit;
+                this.cardinalidade--;
+                if (this.cardinalidade <= LIMITE_VETOR / 2) {
+                    this.converterEmVetor();
+                }
+                return true;
+            }
+
+            int posicao = Arrays.binarySearch(this.valores, 0, this.cardinalidade, valor);
+            if (posicao < 0) {
+                return false;
+            }
+
+            System.arraycopy(this.valores, posicao + 1, this.valores, posicao, this.cardinalidade - posicao - 1);
+            this.cardinalidade--;
+            return true;
+        }
+
+        /**
+         * Executa uma ação para cada valor do contêiner, em ordem crescente.
+         *
+         * @param base  16 bits mais altos já deslocados, somados a cada valor.
+         * @param acao  Ação executada para cada id.
+         */
+
+        void paraCada(int base, IntConsumer acao) {
+            if (this.bits == null) {
+                for (int i = 0; i < this.cardinalidade; i++) {
+                    acao.accept(base | this.valores[i]);
+                }
+                return;
+            }
+
+            for (int i = 0; i < this.bits.length; i++) {
+                long palavra = this.bits[i];
+                while (palavra != 0) {
+                    acao.accept(base | (i << 6) | Long.numberOfTrailingZeros(palavra));
+                    palavra &= palavra - 1;
+                }
+            }
+        }
+
+        /**
+         * Executa uma ação para uma faixa dos valores do contêiner, em ordem crescente.
+         * No mapa de bits, as palavras anteriores à faixa são puladas pela contagem dos seus bits.
+         *
+         * @param base    16 bits mais altos já deslocados, somados a cada valor.
+         * @param pular   Quantidade de valores a pular, menor que a cardinalidade.
+         * @param limite  Quantidade máxima de valores visitados.
+         * @param acao    Ação executada para cada id.
+         * @return        Quantidade de valores visitados.
+         */
+
+        int paraCada(int base, int pular, int limite, IntConsumer acao) {
+            int visitados = 0;
+
+            if (this.bits == null) {
+                for (int i = pular; i < this.cardinalidade && visitados < limite; i++, visitados++) {
+                    acao.accept(base | this.valores[i]);
+                }
+                return visitados;
+            }
+
+            for (int i = 0; i < this.bits.length && visitados < limite; i++) {
+                long palavra = this.bits[i];
+                int bits = Long.bitCount(palavra);
+                if (pular >= bits) {
+                    pular -= bits;
+                    continue;
+                }
+
+                for (; pular > 0; pular--) {
+                    palavra &= palavra - 1;
+                }
+                while (palavra != 0 && visitados < limite) {
+                    acao.accept(base | (i << 6) | Long.numberOfTrailingZeros(palavra));
+                    palavra &= palavra - 1;
+                    visitados++;
+                }
+            }
+            return visitados;
+        }
+
+        /**
+         * Retorna uma cópia independente do contêiner.
+         *
+         * @return Cópia do contêiner.
+         */
+
+        Conteiner copiar() {
+            Conteiner copia = new Conteiner();
+            copia.cardinalidade = this.cardinalidade;
+            if (this.bits != null) {
+                copia.bits = this.bits.clone();
+                copia.valores = null;
+            } else {
+                copia.valores = Arrays.copyOf(this.valores, Math.max(4, this.cardinalidade));
+            }
+            return copia;
+        }
+
+        /**
+         * Estima a memória ocupada pelo contêiner, em bytes.
+         *
+         * @return Quantidade aproximada de bytes.
+         */
+
+        long getBytes() {
+            return 32 + (this.bits != null ? 8L * this.bits.length : 2L * this.valores.length);
+        }
+
+        /**
+         * Retorna a interseção de dois contêineres.
+         *
+         * @param a  Primeiro contêiner.
+         * @param b  Segundo contêiner.
+         * @return   Novo contêiner com os valores presentes nos dois.
+         */
+
+        static Conteiner e(Conteiner a, Conteiner b) {
+            Conteiner resultado = new Conteiner();
+
+            if (a.bits != null && b.bits != null) {
+                long[] bits = new long[a.bits.length];
+                int total = 0;
+                for (int i = 0; i < bits.length; i++) {
+                    bits[i] = a.bits[i] & b.bits[i];
+                    total += Long.bitCount(bits[i]);
+                }
+
+                resultado.bits = bits;
+                resultado.valores = null;
+                resultado.cardinalidade = total;
+                if (total <= LIMITE_VETOR) {
+                    resultado.converterEmVetor();
+                }
+                return resultado;
+            }
+
+            Conteiner menor = a.bits == null && (b.bits != null || a.cardinalidade <= b.cardinalidade) ? a : b;
+            Conteiner maior = menor == a ? b : a;
+
+            resultado.valores = new char[Math.max(4, menor.cardinalidade)];
+            for (int i = 0; i < menor.cardinalidade; i++) {
+                if (maior.contem(menor.valores[i])) {
+                    resultado.valores[resultado.cardinalidade++] = menor.valores[i];
+                }
+            }
+            return resultado;
+        }
+
+        /**
+         * Retorna a união de dois contêineres.
+         *
+         * @param a  Primeiro contêiner.
+         * @param b  Segundo contêiner.
+         * @return   Novo contêiner com os valores presentes em pelo menos um dos dois.
+         */
+
+        static Conteiner ou(Conteiner a, Conteiner b) {
+            Conteiner resultado = new Conteiner();
+
+            if (a.bits == null && b.bits == null && a.cardinalidade + b.cardinalidade <= LIMITE_VETOR) {
+                char[] valores = new char[Math.max(4, a.cardinalidade + b.cardinalidade)];
+                int i = 0;
+                int j = 0;
+                int total = 0;
+                while (i < a.cardinalidade || j < b.cardinalidade) {
+                    if (j == b.cardinalidade || (i < a.cardinalidade && a.valores[i] < b.valores[j])) {
+                        valores[total++] = a.valores[i++];
+                    } else if (i == a.cardinalidade || a.valores[i] > b.valores[j]) {
+                        valores[total++] = b.valores[j++];
+                    } else {
+                        valores[total++] = a.valores[i++];
+                        j++;
+                    }
+                }
+
+                resultado.valores = valores;
+                resultado.cardinalidade = total;
+                return resultado;
+            }
+
+            long[] bits = new long[1 << 10];
+            for (Conteiner conteiner : new Conteiner[]{a, b}) {
+                if (conteiner.bits != null) {
+                    for (int i = 0; i < bits.length; i++) {
+                        bits[i] |= conteiner.bits[i];
+                    }
+                } else {
+                    for (int i = 0; i < conteiner.cardinalidade; i++) {
+                        char valor = conteiner.valores[i];
+                        bits[valor >>> 6] |= 1L << valor;
+                    }
+                }
+            }
+
+            int total = 0;
+            for (long palavra : bits) {
+                total += Long.bitCount(palavra);
+            }
+
+            resultado.bits = bits;
+            resultado.valores = null;
+            resultado.cardinalidade = total;
+            if (total <= LIMITE_VETOR) {
+                resultado.converterEmVetor();
+            }
+            return resultado;
+        }
+
+        /**
+         * Conta os valores presentes nos dois contêineres.
+         *
+         * @param a  Primeiro contêiner.
+         * @param b  Segundo contêiner.
+         * @return   Quantidade de valores em comum.
+         */
+
+        static int cardinalidadeE(Conteiner a, Conteiner b) {
+            int total = 0;
+
+            if (a.bits != null && b.bits != null) {
+                for (int i = 0; i < a.bits.length; i++) {
+                    total += Long.bitCount(a.bits[i] & b.bits[i]);
+                }
+                return total;
+            }
+
+            Conteiner menor = a.bits == null && (b.bits != null || a.cardinalidade <= b.cardinalidade) ? a : b;
+            Conteiner maior = menor == a ? b : a;
+            for (int i = 0; i < menor.cardinalidade; i++) {
+                if (maior.contem(menor.valores[i])) {
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Converte o vetor ordenado em mapa de bits.
+         */
+
+        private void converterEmBits() {
+            this.bits = new long[1 << 10];
+            for (int i = 0; i < this.cardinalidade; i++) {
+                char valor = this.valores[i];
+                this.bits[valor >>> 6] |= 1L << valor;
+            }
+            this.valores = null;
+        }
+
+        /**
+         * Converte o mapa de bits em vetor ordenado.
+         */
+
+        private void converterEmVetor() {
+            char[] novos = new char[Math.max(4, this.cardinalidade)];
+            int total = 0;
+            for (int i = 0; i < this.bits.length; i++) {
+                long palavra = this.bits[i];
+                while (palavra != 0) {
+                    novos[total++] = (char) ((i << 6) | Long.numberOfTrailingZeros(palavra));
+                    palavra &= palavra - 1;
+                }
+            }
+            this.valores = novos;
+            this.bits = null;
+        }
+    }
+}
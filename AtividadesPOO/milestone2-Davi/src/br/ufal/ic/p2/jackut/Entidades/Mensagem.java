@@ -3,19 +3,25 @@ package br.ufal.ic.p2.jackut.Entidades;
 
 /**
  * Classe que representa uma mensagem.
+ *
+ * A sequência indica a ordem de chegada da mensagem no sistema, usada para intercalar
+ * as mensagens de comunidades diferentes na leitura.
  */
 
 public class Mensagem {
     private final String mensagem;
+    private final long sequencia;
 
     /**
      * Constrói uma nova {@code Mensagem} do Jackut.
      *
-     * @param mensagem Mensagem
+     * @param mensagem   Mensagem
+     * @param sequencia  Ordem de chegada da mensagem no sistema
      */
 
-    public Mensagem(String mensagem) {
+    public Mensagem(String mensagem, long sequencia) {
         this.mensagem = mensagem;
+        this.sequencia = sequencia;
     }
 
     /**
@@ -27,4 +33,14 @@ public class Mensagem {
     public String getMensagem() {
         return this.mensagem;
     }
+
+    /**
+     * Retorna a ordem de chegada da mensagem no sistema.
+     *
+     * @return Sequência da mensagem
+     */
+
+    public long getSequencia() {
+        return this.sequencia;
+    }
 }
@@ -1,17 +1,42 @@
 package br.ufal.ic.p2.jackut.Entidades;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import br.ufal.ic.p2.jackut.Exceptions.Perfil.*;
 
 
 /**
  * Classe que representa um perfil de usuário.
+ *
+ * Os atributos ficam na {@link TabelaDePerfis} do sistema, na linha do id do usuário; o perfil
+ * é apenas uma visão dessa linha. Atributos preenchidos antes de o usuário ser adicionado ao
+ * sistema (durante a leitura dos arquivos) ficam guardados no perfil até ele receber um id.
  */
 
 public class Perfil {
-    private final Map<String, String> atributos = new HashMap<>();
+    private static final String[] VAZIO = new String[0];
+
+    private final User dono;
+    private String[] pendentes = VAZIO;
+    private boolean alterado = true;
+
+    /**
+     * Cria o perfil de um usuário.
+     *
+     * @param dono Usuário dono do perfil.
+     */
+
+    public Perfil(User dono) {
+        this.dono = dono;
+    }
 
     /**
      * Retorna o valor de um atributo do perfil.
@@ -23,21 +48,28 @@ public class Perfil {
      */
 
     public String getAtributo(String chave) throws AtributoNaoPreenchidoException {
-        if (this.atributos.containsKey(chave)) {
-            return this.atributos.get(chave);
-        } else {
+        String valor = this.buscar(chave);
+        if (valor == null) {
             throw new AtributoNaoPreenchidoException();
         }
+        return valor;
     }
 
     /**
      * Retorna todos os atributos do perfil.
      *
-     * @return Map com todos os atributos do perfil.
+     * @return Map somente leitura com todos os atributos do perfil.
      */
 
     public Map<String, String> getAtributos() {
-        return this.atributos;
+        if (this.dono.getGrafo() == null) {
+            Map<String, String> atributos = new LinkedHashMap<>();
+            for (int i = 0; i < this.pendentes.length; i += 2) {
+                atributos.put(this.pendentes[i], this.pendentes[i + 1]);
+            }
+            return Collections.unmodifiableMap(atributos);
+        }
+        return new Atributos();
     }
 
     /**
@@ -48,6 +80,135 @@ public class Perfil {
      */
 
     public void setAtributo(String chave, String valor) {
-        this.atributos.put(chave, valor);
+        if (this.dono.getGrafo() == null) {
+            this.pendentes = Arrays.copyOf(this.pendentes, this.pendentes.length + 2);
+            this.pendentes[this.pendentes.length - 2] = chave;
+            this.pendentes[this.pendentes.length - 1] = valor;
+        } else {
+            this.tabela().setAtributo(this.dono.getId(), chave, valor);
+        }
+        this.alterado = true;
+    }
+
+    /**
+     * Move para a tabela de perfis os atributos preenchidos antes de o usuário receber um id.
+     * AVISO: Método utilizado apenas por {@link User} ao ser vinculado ao grafo.
+     */
+
+    void vincular() {
+        for (int i = 0; i < this.pendentes.length; i += 2) {
+            this.tabela().setAtributo(this.dono.getId(), this.pendentes[i], this.pendentes[i + 1]);
+        }
+        this.pendentes = VAZIO;
+    }
+
+    /**
+     * Retorna se o perfil foi alterado desde a última vez que foi salvo.
+     *
+     * @return True se o perfil foi alterado, false caso contrário.
+     */
+
+    public boolean isAlterado() {
+        return this.alterado;
+    }
+
+    /**
+     * Marca o perfil como salvo.
+     */
+
+    public void limparAlteracao() {
+        this.alterado = false;
+    }
+
+    /**
+     * Retorna a tabela de perfis do sistema.
+     *
+     * @return Tabela de perfis.
+     */
+
+    private TabelaDePerfis tabela() {
+        return this.dono.getGrafo().getPerfis();
+    }
+
+    /**
+     * Procura o valor de um atributo, na tabela ou entre os atributos pendentes.
+     *
+     * @param chave  Chave do atributo.
+     * @return       Valor do atributo, ou null caso não tenha sido preenchido.
+     */
+
+    private String buscar(String chave) {
+        if (this.dono.getGrafo() != null) {
+            return this.tabela().getAtributo(this.dono.getId(), chave);
+        }
+
+        for (int i = this.pendentes.length - 2; i >= 0; i -= 2) {
+            if (this.pendentes[i].equals(chave)) {
+                return this.pendentes[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visão somente leitura da linha do usuário na tabela de perfis, na ordem das colunas.
+     */
+
+    private class Atributos extends AbstractMap<String, String> {
+
+        @Override
+        public String get(Object chave) {
+            return chave instanceof String ? buscar((String) chave) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object chave) {
+            return this.get(chave) != null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            return new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public int size() {
+                    return tabela().quantidadeAtributos(dono.getId());
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    TabelaDePerfis tabela = tabela();
+                    int id = dono.getId();
+
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private int coluna = this.avancar(0);
+
+                        private int avancar(int inicio) {
+                            int i = inicio;
+                            while (i < tabela.getQuantidadeColunas() && tabela.getValor(i, id) == null) {
+                                i++;
+                            }
+                            return i;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return this.coluna < tabela.getQuantidadeColunas();
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (!this.hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Map.Entry<String, String> atributo = new AbstractMap.SimpleImmutableEntry<>(
+                                    tabela.getNome(this.coluna), tabela.getValor(this.coluna, id));
+                            this.coluna = this.avancar(this.coluna + 1);
+                            return atributo;
+                        }
+                    };
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,343 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
+
+
+/**
+ * Sugestões de amizade ("pessoas que você talvez conheça") calculadas sobre os amigos do
+ * {@link GrafoDeRelacoes}.
+ *
+ * Os candidatos de um usuário são os amigos dos seus amigos, ordenados pela quantidade de
+ * amigos em comum e, em caso de empate, pelo id (ordem de cadastro). Ficam de fora o próprio
+ * usuário, os seus amigos, os seus inimigos e quem tem uma solicitação de amizade pendente com
+ * ele. A travessia conta os amigos em comum em um vetor de int reaproveitado por thread e para
+ * depois de {@link #LIMITE_VISITAS} relações; os melhores candidatos são escolhidos com um heap
+ * de tamanho fixo.
+ *
+ * As sugestões calculadas ficam guardadas por usuário até que uma amizade seja criada ou desfeita
+ * ({@link #invalidar()}) ou que os inimigos e as solicitações do usuário mudem.
+ */
+
+public class SugestoesDeAmizade {
+    public static final int LIMITE_VISITAS = 1_000_000;
+    private static final int BLOQUEADO = -1;
+    private static final int LOTE = 1024;
+
+    private final GrafoDeRelacoes grafo;
+    private final ThreadLocal<Contadores> contadores = ThreadLocal.withInitial(Contadores::new);
+    private Entrada[] entradas = new Entrada[0];
+    private volatile long geracao;
+
+    /**
+     * Cria o cálculo de sugestões de um grafo.
+     *
+     * @param grafo Grafo com as amizades.
+     */
+
+    public SugestoesDeAmizade(GrafoDeRelacoes grafo) {
+        this.grafo = grafo;
+    }
+
+    /**
+     * Descarta todas as sugestões guardadas.
+     * Chamado sempre que uma amizade é criada ou desfeita.
+     */
+
+    public void invalidar() {
+        this.geracao++;
+    }
+
+    /**
+     * Retorna as sugestões de amizade de um usuário, usando as guardadas quando ainda válidas.
+     *
+     * @param id          Id do usuário.
+     * @param quantidade  Quantidade máxima de sugestões.
+     * @return            Ids dos usuários sugeridos, do mais para o menos recomendado.
+     */
+
+    public int[] sugerir(int id, int quantidade) {
+        long geracaoAtual = this.geracao;
+        long exclusoes = this.versaoExclusoes(id);
+
+        Entrada entrada = id < this.entradas.length ? this.entradas[id] : null;
+        if (entrada != null && entrada.isValida(geracaoAtual, exclusoes, quantidade)) {
+            return Arrays.copyOf(entrada.ids, Math.min(quantidade, entrada.ids.length));
+        }
+
+        if (id >= this.entradas.length) {
+            this.entradas = Arrays.copyOf(this.entradas, Math.max(id + 1, this.grafo.getQuantidade()));
+        }
+        this.entradas[id] = new Entrada(geracaoAtual, exclusoes, quantidade, this.calcular(id, quantidade));
+        return this.entradas[id].ids.clone();
+    }
+
+    /**
+     * Calcula e guarda as sugestões de todos os usuários, em paralelo no {@link ForkJoinPool}.
+     *
+     * @param quantidade Quantidade máxima de sugestões por usuário.
+     */
+
+    public void precalcular(int quantidade) {
+        int total = this.grafo.getQuantidade();
+        if (this.entradas.length < total) {
+            this.entradas = Arrays.copyOf(this.entradas, total);
+        }
+
+        ForkJoinPool.commonPool().invoke(new Lote(this.geracao, quantidade, 0, total));
+    }
+
+    /**
+     * Soma as versões das relações do usuário que excluem candidatos: inimigos e solicitações.
+     * As versões só aumentam, então a soma muda sempre que alguma dessas relações muda.
+     *
+     * @param id  Id do usuário.
+     * @return    Soma das versões.
+     */
+
+    private long versaoExclusoes(int id) {
+        return (long) this.grafo.getRelacao(TiposRelacionamento.INIMIGO).getVersao(id)
+                + this.grafo.getSolicitacoesEnviadas().getVersao(id)
+                + this.grafo.getSolicitacoesRecebidas().getVersao(id);
+    }
+
+    /**
+     * Calcula as sugestões de amizade de um usuário percorrendo os amigos dos seus amigos.
+     *
+     * @param id          Id do usuário.
+     * @param quantidade  Quantidade máxima de sugestões.
+     * @return            Ids dos usuários sugeridos, do mais para o menos recomendado.
+     */
+
+    private int[] calcular(int id, int quantidade) {
+        Adjacencia amigos = this.grafo.getAmigos();
+        Contadores contadores = this.contadores.get();
+        contadores.preparar(this.grafo.getQuantidade());
+
+        contadores.bloquear(id);
+        contadores.bloquearLinha(amigos, id);
+        contadores.bloquearLinha(this.grafo.getRelacao(TiposRelacionamento.INIMIGO), id);
+        contadores.bloquearLinha(this.grafo.getSolicitacoesEnviadas(), id);
+        contadores.bloquearLinha(this.grafo.getSolicitacoesRecebidas(), id);
+
+        int visitas = 0;
+        int posicoes = amigos.posicoes(id);
+        for (int i = 0; i < posicoes && visitas < LIMITE_VISITAS; i++) {
+            int amigo = amigos.valor(id, i);
+            if (amigo < 0) {
+                continue;
+            }
+
+            int posicoesAmigo = amigos.posicoes(amigo);
+            for (int j = 0; j < posicoesAmigo && visitas < LIMITE_VISITAS; j++, visitas++) {
+                int candidato = amigos.valor(amigo, j);
+                if (candidato >= 0) {
+                    contadores.contar(candidato);
+                }
+            }
+        }
+
+        MelhoresCandidatos melhores = new MelhoresCandidatos(quantidade);
+        for (int i = 0; i < contadores.quantidadeTocados; i++) {
+            int candidato = contadores.tocados[i];
+            int emComum = contadores.contagem[candidato];
+            if (emComum > 0 && this.grafo.getUsuario(candidato) != null) {
+                melhores.oferecer(candidato, emComum);
+            }
+        }
+
+        contadores.limpar();
+        return melhores.getIds();
+    }
+
+    /**
+     * Sugestões guardadas de um usuário e as versões do grafo em que foram calculadas.
+     */
+
+    private static class Entrada {
+        private final long geracao;
+        private final long exclusoes;
+        private final int quantidade;
+        private final int[] ids;
+
+        private Entrada(long geracao, long exclusoes, int quantidade, int[] ids) {
+            this.geracao = geracao;
+            this.exclusoes = exclusoes;
+            this.quantidade = quantidade;
+            this.ids = ids;
+        }
+
+        private boolean isValida(long geracao, long exclusoes, int quantidade) {
+            return this.geracao == geracao && this.exclusoes == exclusoes
+                    && (quantidade <= this.quantidade || this.ids.length < this.quantidade);
+        }
+    }
+
+    /**
+     * Contagem de amigos em comum por id, reaproveitada entre os cálculos de uma mesma thread.
+     * Só as posições tocadas são zeradas ao fim de cada cálculo.
+     */
+
+    private static class Contadores {
+        private int[] contagem = new int[0];
+        private int[] tocados = new int[16];
+        private int quantidadeTocados;
+
+        private void preparar(int ids) {
+            if (this.contagem.length < ids) {
+                this.contagem = new int[ids];
+            }
+        }
+
+        private void tocar(int id) {
+            if (this.quantidadeTocados == this.tocados.length) {
+                this.tocados = Arrays.copyOf(this.tocados, this.tocados.length * 2);
+            }
+            this.tocados[this.quantidadeTocados++] = id;
+        }
+
+        private void bloquear(int id) {
+            if (this.contagem[id] == 0) {
+                this.tocar(id);
+            }
+            this.contagem[id] = BLOQUEADO;
+        }
+
+        private void bloquearLinha(Adjacencia adjacencia, int id) {
+            int posicoes = adjacencia.posicoes(id);
+            for (int i = 0; i < posicoes; i++) {
+                int destino = adjacencia.valor(id, i);
+                if (destino >= 0) {
+                    this.bloquear(destino);
+                }
+            }
+        }
+
+        private void contar(int id) {
+            if (this.contagem[id] == BLOQUEADO) {
+                return;
+            }
+            if (this.contagem[id]++ == 0) {
+                this.tocar(id);
+            }
+        }
+
+        private void limpar() {
+            for (int i = 0; i < this.quantidadeTocados; i++) {
+                this.contagem[this.tocados[i]] = 0;
+            }
+            this.quantidadeTocados = 0;
+        }
+    }
+
+    /**
+     * Heap mínimo de tamanho fixo com os melhores candidatos encontrados até o momento.
+     * Cada candidato é guardado em um long: amigos em comum nos 32 bits altos e o id invertido
+     * nos 32 bits baixos, para que ids menores ganhem os empates.
+     */
+
+    private static class MelhoresCandidatos {
+        private final long[] chaves;
+        private int tamanho;
+
+        private MelhoresCandidatos(int limite) {
+            this.chaves = new long[limite];
+        }
+
+        private void oferecer(int id, int emComum) {
+            long chave = ((long) emComum << 32) | (Integer.MAX_VALUE - id);
+            if (this.tamanho < this.chaves.length) {
+                this.chaves[this.tamanho] = chave;
+                this.subir(this.tamanho++);
+            } else if (this.tamanho > 0 && chave > this.chaves[0]) {
+                this.chaves[0] = chave;
+                this.descer(0);
+            }
+        }
+
+        private void subir(int posicao) {
+            while (posicao > 0) {
+                int pai = (posicao - 1) / 2;
+                if (this.chaves[pai] <= this.chaves[posicao]) {
+                    return;
+                }
+                this.trocar(pai, posicao);
+                posicao = pai;
+            }
+        }
+
+        private void descer(int posicao) {
+            while (true) {
+                int menor = posicao;
+                int esquerda = 2 * posicao + 1;
+                if (esquerda < this.tamanho && this.chaves[esquerda] < this.chaves[menor]) {
+                    menor = esquerda;
+                }
+                if (esquerda + 1 < this.tamanho && this.chaves[esquerda + 1] < this.chaves[menor]) {
+                    menor = esquerda + 1;
+                }
+                if (menor == posicao) {
+                    return;
+                }
+                this.trocar(posicao, menor);
+                posicao = menor;
+            }
+        }
+
+        private void trocar(int i, int j) {
+            long chave = this.chaves[i];
+            this.chaves[i] = this.chaves[j];
+            this.chaves[j] = chave;
+        }
+
+        private int[] getIds() {
+            long[] ordenadas = Arrays.copyOf(this.chaves, this.tamanho);
+            Arrays.sort(ordenadas);
+
+            int[] ids = new int[ordenadas.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = Integer.MAX_VALUE - (int) ordenadas[ordenadas.length - 1 - i];
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Tarefa que calcula as sugestões de um intervalo de ids, dividindo-o em lotes de {@link #LOTE}.
+     */
+
+    private class Lote extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long geracao;
+        private final int quantidade;
+        private final int inicio;
+        private final int fim;
+
+        private Lote(long geracao, int quantidade, int inicio, int fim) {
+            this.geracao = geracao;
+            this.quantidade = quantidade;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.fim - this.inicio > LOTE) {
+                int meio = (this.inicio + this.fim) >>> 1;
+                invokeAll(new Lote(this.geracao, this.quantidade, this.inicio, meio),
+                        new Lote(this.geracao, this.quantidade, meio, this.fim));
+                return;
+            }
+
+            for (int id = this.inicio; id < this.fim; id++) {
+                if (grafo.getUsuario(id) != null) {
+                    entradas[id] = new Entrada(this.geracao, versaoExclusoes(id), this.quantidade, calcular(id, this.quantidade));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package br.ufal.ic.p2.jackut.Entidades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import br.ufal.ic.p2.jackut.Utilidade.Configuracao;
+
+
+/**
+ * Tabela com os atributos de perfil de todos os usuários do sistema, organizada em colunas.
+ *
+ * Cada nome de atributo usado por algum usuário vira uma coluna, na ordem em que apareceu.
+ * Uma coluna é um vetor indexado pelo id do usuário no {@link GrafoDeRelacoes}, com null
+ * onde o usuário não preencheu o atributo. Os valores repetidos de uma coluna (estado civil,
+ * cidade, ...) são guardados uma única vez: até {@link #LIMITE_VALORES_COMUNS} valores
+ * diferentes por coluna são compartilhados entre os usuários.
+ *
+ * As colunas configuradas em {@link Configuracao#getAtributosIndexados()} têm um índice de
+ * valor para o conjunto de ids que o preenchem, usado nas buscas por igualdade; as de
+ * {@link Configuracao#getAtributosOrdenados()} mantêm esse índice ordenado, o que permite
+ * também buscas por intervalo e por prefixo. Os índices são atualizados a cada alteração de
+ * atributo; colunas sem índice são percorridas inteiras.
+ *
+ * @see Perfil
+ */
+
+public class TabelaDePerfis {
+    public static final int LIMITE_VALORES_COMUNS = 1024;
+
+    private final HashMap<String, Coluna> colunasPorNome = new HashMap<>();
+    private final List<Coluna> colunas = new ArrayList<>();
+    private final Set<String> indexados = Configuracao.getAtributosIndexados();
+    private final Set<String> ordenados = Configuracao.getAtributosOrdenados();
+    private boolean indicesSuspensos;
+
+    /**
+     * Retorna a quantidade de atributos diferentes usados pelos usuários.
+     *
+     * @return Quantidade de colunas.
+     */
+
+    public int getQuantidadeColunas() {
+        return this.colunas.size();
+    }
+
+    /**
+     * Retorna o nome do atributo de uma coluna.
+     *
+     * @param coluna  Índice da coluna.
+     * @return        Nome do atributo.
+     */
+
+    public String getNome(int coluna) {
+        return this.colunas.get(coluna).nome;
+    }
+
+    /**
+     * Retorna o valor de uma coluna para um usuário.
+     *
+     * @param coluna  Índice da coluna.
+     * @param id      Id do usuário.
+     * @return        Valor do atributo, ou null caso o usuário não o tenha preenchido.
+     */
+
+    public String getValor(int coluna, int id) {
+        return this.colunas.get(coluna).obter(id);
+    }
+
+    /**
+     * Retorna o valor de um atributo de um usuário.
+     *
+     * @param id     Id do usuário.
+     * @param chave  Nome do atributo.
+     * @return       Valor do atributo, ou null caso o usuário não o tenha preenchido.
+     */
+
+    public String getAtributo(int id, String chave) {
+        Coluna coluna = this.colunasPorNome.get(chave);
+        return coluna == null ? null : coluna.obter(id);
+    }
+
+    /**
+     * Preenche um atributo de um usuário, criando a coluna caso seja o primeiro uso do atributo.
+     *
+     * @param id     Id do usuário.
+     * @param chave  Nome do atributo.
+     * @param valor  Valor do atributo.
+     */
+
+    public void setAtributo(int id, String chave, String valor) {
+        Coluna coluna = this.colunasPorNome.get(chave);
+        if (coluna == null) {
+            coluna = new Coluna(chave, this.criarIndice(chave));
+            this.colunasPorNome.put(chave, coluna);
+            this.colunas.add(coluna);
+        }
+
+        coluna.guardar(id, valor);
+    }
+
+    /**
+     * Retorna a quantidade de atributos preenchidos por um usuário.
+     *
+     * @param id  Id do usuário.
+     * @return    Quantidade de atributos preenchidos.
+     */
+
+    public int quantidadeAtributos(int id) {
+        int quantidade = 0;
+        for (Coluna coluna : this.colunas) {
+            if (coluna.obter(id) != null) {
+                quantidade++;
+            }
+        }
+        return quantidade;
+    }
+
+    /**
+     * Apaga todos os atributos de um usuário removido do sistema.
+     *
+     * @param id Id do usuário.
+     */
+
+    public void removerUsuario(int id) {
+        for (Coluna coluna : this.colunas) {
+            coluna.apagar(id);
+        }
+    }
+
+    /**
+     * Cria uma cópia somente leitura da tabela, sem os índices, que não é afetada pelas
+     * alterações seguintes. Cada coluna é copiada como um vetor de referências aos valores.
+     *
+     * @return Cópia congelada da tabela.
+     *
+     * @see GrafoDeRelacoes#congelar()
+     */
+
+    public TabelaDePerfis congelar() {
+        TabelaDePerfis copia = new TabelaDePerfis();
+        copia.indicesSuspensos = true;
+        for (Coluna coluna : this.colunas) {
+            Coluna nova = new Coluna(coluna.nome, null);
+            nova.valores = coluna.valores.clone();
+            copia.colunasPorNome.put(nova.nome, nova);
+            copia.colunas.add(nova);
+        }
+        return copia;
+    }
+
+    /**
+     * Estima a memória ocupada pela tabela, sem contar o texto dos valores.
+     *
+     * @return Quantidade aproximada de bytes.
+     */
+
+    public long getBytes() {
+        long bytes = 0;
+        for (Coluna coluna : this.colunas) {
+            bytes += 16 + 4L * coluna.valores.length + 48L * coluna.comuns.size();
+            if (coluna.indice != null) {
+                for (MapaDeBits ids : coluna.indice.values()) {
+                    bytes += 48 + ids.getBytes();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Deixa de atualizar os índices a cada alteração, até {@link #reconstruirIndices()}.
+     * Usado durante a leitura dos arquivos, quando todos os atributos são preenchidos de uma vez.
+     */
+
+    public void suspenderIndices() {
+        this.indicesSuspensos = true;
+        for (Coluna coluna : this.colunas) {
+            coluna.indice = null;
+        }
+    }
+
+    /**
+     * Reconstrói os índices de todas as colunas a partir dos valores atuais, em paralelo
+     * (uma coluna por tarefa), e volta a atualizá-los a cada alteração.
+     */
+
+    public void reconstruirIndices() {
+        this.indicesSuspensos = false;
+        this.colunas.parallelStream().forEach(coluna -> coluna.reconstruirIndice(this.criarIndice(coluna.nome)));
+    }
+
+    /**
+     * Busca os usuários com um atributo igual ao valor especificado, em ordem de id.
+     *
+     * @param chave       Nome do atributo.
+     * @param valor       Valor procurado.
+     * @param inicio      Quantidade de resultados a pular.
+     * @param quantidade  Quantidade máxima de resultados.
+     * @return            Ids dos usuários encontrados.
+     */
+
+    public int[] buscarIgual(String chave, String valor, int inicio, int quantidade) {
+        Pagina pagina = new Pagina(inicio, quantidade);
+        Coluna coluna = this.colunasPorNome.get(chave);
+        if (coluna == null) {
+            return pagina.getIds();
+        }
+
+        if (coluna.indice != null) {
+            MapaDeBits ids = coluna.indice.get(valor);
+            if (ids != null) {
+                pagina.adicionarTodos(ids);
+            }
+            return pagina.getIds();
+        }
+
+        for (int id = 0; id < coluna.valores.length && !pagina.isCheia(); id++) {
+            if (valor.equals(coluna.valores[id])) {
+                pagina.adicionar(id);
+            }
+        }
+        return pagina.getIds();
+    }
+
+    /**
+     * Busca os usuários com um atributo entre dois valores (inclusive), em ordem de valor e de id.
+     *
+     * @param chave       Nome do atributo.
+     * @param de          Menor valor aceito.
+     * @param ate         Maior valor aceito.
+     * @param inicio      Quantidade de resultados a pular.
+     * @param quantidade  Quantidade máxima de resultados.
+     * @return            Ids dos usuários encontrados.
+     */
+
+    public int[] buscarIntervalo(String chave, String de, String ate, int inicio, int quantidade) {
+        Pagina pagina = new Pagina(inicio, quantidade);
+        Coluna coluna = this.colunasPorNome.get(chave);
+        if (coluna == null || de.compareTo(ate) > 0) {
+            return pagina.getIds();
+        }
+
+        if (coluna.indice instanceof NavigableMap) {
+            NavigableMap<String, MapaDeBits> indice = (NavigableMap<String, MapaDeBits>) coluna.indice;
+            for (MapaDeBits ids : indice.subMap(de, true, ate, true).values()) {
+                if (pagina.isCheia()) {
+                    break;
+                }
+                pagina.adicionarTodos(ids);
+            }
+            return pagina.getIds();
+        }
+
+        List<Integer> encontrados = new ArrayList<>();
+        for (int id = 0; id < coluna.valores.length; id++) {
+            String valor = coluna.valores[id];
+            if (valor != null && valor.compareTo(de) >= 0 && valor.compareTo(ate) <= 0) {
+                encontrados.add(id);
+            }
+        }
+        return coluna.ordenar(encontrados, pagina);
+    }
+
+    /**
+     * Busca os usuários com um atributo que começa pelo prefixo especificado, em ordem de valor e de id.
+     *
+     * @param chave       Nome do atributo.
+     * @param prefixo     Prefixo procurado.
+     * @param inicio      Quantidade de resultados a pular.
+     * @param quantidade  Quantidade máxima de resultados.
+     * @return            Ids dos usuários encontrados.
+     */
+
+    public int[] buscarPrefixo(String chave, String prefixo, int inicio, int quantidade) {
+        Pagina pagina = new Pagina(inicio, quantidade);
+        Coluna coluna = this.colunasPorNome.get(chave);
+        if (coluna == null) {
+            return pagina.getIds();
+        }
+
+        if (coluna.indice instanceof NavigableMap) {
+            NavigableMap<String, MapaDeBits> indice = (NavigableMap<String, MapaDeBits>) coluna.indice;
+            for (Map.Entry<String, MapaDeBits> entrada : indice.tailMap(prefixo, true).entrySet()) {
+                if (pagina.isCheia() || !entrada.getKey().startsWith(prefixo)) {
+                    break;
+                }
+                pagina.adicionarTodos(entrada.getValue());
+            }
+            return pagina.getIds();
+        }
+
+        List<Integer> encontrados = new ArrayList<>();
+        for (int id = 0; id < coluna.valores.length; id++) {
+            String valor = coluna.valores[id];
+            if (valor != null && valor.startsWith(prefixo)) {
+                encontrados.add(id);
+            }
+        }
+        return coluna.ordenar(encontrados, pagina);
+    }
+
+    /**
+     * Cria o índice de uma coluna de acordo com a configuração.
+     *
+     * @param chave  Nome do atributo.
+     * @return       Índice vazio, ou null caso a coluna não seja indexada ou os índices estejam suspensos.
+     */
+
+    private Map<String, MapaDeBits> criarIndice(String chave) {
+        if (this.indicesSuspensos) {
+            return null;
+        }
+        if (this.ordenados.contains(chave)) {
+            return new TreeMap<>();
+        }
+        if (this.indexados.contains("*") || this.indexados.contains(chave)) {
+            return new HashMap<>();
+        }
+        return null;
+    }
+
+    /**
+     * Coluna de um atributo, indexada pelo id do usuário.
+     */
+
+    private static class Coluna {
+        private final String nome;
+        private final HashMap<String, String> comuns = new HashMap<>();
+        private String[] valores = new String[0];
+        private Map<String, MapaDeBits> indice;
+
+        private Coluna(String nome, Map<String, MapaDeBits> indice) {
+            this.nome = nome;
+            this.indice = indice;
+        }
+
+        private String obter(int id) {
+            return id < this.valores.length ? this.valores[id] : null;
+        }
+
+        private void guardar(int id, String valor) {
+            if (id >= this.valores.length) {
+                this.valores = Arrays.copyOf(this.valores, Math.max(id + 1, Math.max(16, this.valores.length * 2)));
+            }
+
+            String comum = this.comuns.get(valor);
+            if (comum == null && this.comuns.size() < LIMITE_VALORES_COMUNS) {
+                this.comuns.put(valor, valor);
+                comum = valor;
+            }
+
+            this.desindexar(id);
+            this.valores[id] = comum != null ? comum : valor;
+            this.indexar(id);
+        }
+
+        private void apagar(int id) {
+            if (id < this.valores.length) {
+                this.desindexar(id);
+                this.valores[id] = null;
+            }
+        }
+
+        private void indexar(int id) {
+            if (this.indice != null && this.valores[id] != null) {
+                this.indice.computeIfAbsent(this.valores[id], valor -> new MapaDeBits()).adicionar(id);
+            }
+        }
+
+        private void desindexar(int id) {
+            if (this.indice == null || this.valores[id] == null) {
+                return;
+            }
+
+            MapaDeBits ids = this.indice.get(this.valores[id]);
+            if (ids != null && ids.remover(id) && ids.isVazio()) {
+                this.indice.remove(this.valores[id]);
+            }
+        }
+
+        private void reconstruirIndice(Map<String, MapaDeBits> novo) {
+            this.indice = novo;
+            for (int id = 0; id < this.valores.length; id++) {
+                this.indexar(id);
+            }
+        }
+
+        private int[] ordenar(List<Integer> ids, Pagina pagina) {
+            ids.sort(Comparator.<Integer, String>comparing(id -> this.valores[id]).thenComparing(id -> id));
+            for (int i = 0; i < ids.size() && !pagina.isCheia(); i++) {
+                pagina.adicionar(ids.get(i));
+            }
+            return pagina.getIds();
+        }
+    }
+
+    /**
+     * Ids de uma página de resultados: os primeiros {@code inicio} ids recebidos são pulados e
+     * os {@code quantidade} seguintes são guardados. Um conjunto de ids inteiro é pulado pela sua
+     * cardinalidade, e só os ids da página são percorridos.
+     */
+
+    private static class Pagina {
+        private int pular;
+        private final int limite;
+        private int[] ids = new int[0];
+        private int quantidade;
+
+        private Pagina(int inicio, int limite) {
+            this.pular = inicio;
+            this.limite = limite;
+        }
+
+        private boolean isCheia() {
+            return this.quantidade >= this.limite;
+        }
+
+        private void adicionar(int id) {
+            if (this.pular > 0) {
+                this.pular--;
+                return;
+            }
+            if (!this.isCheia()) {
+                this.guardar(id);
+            }
+        }
+
+        private void adicionarTodos(MapaDeBits ids) {
+            long cardinalidade = ids.cardinalidade();
+            if (this.pular >= cardinalidade) {
+                this.pular -= cardinalidade;
+                return;
+            }
+
+            ids.paraCada(this.pular, this.limite - this.quantidade, this::guardar);
+            this.pular = 0;
+        }
+
+        private void guardar(int id) {
+            if (this.quantidade == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, Math.min(this.limite, Math.max(16, this.ids.length * 2)));
+            }
+            this.ids[this.quantidade++] = id;
+        }
+
+        private int[] getIds() {
+            return Arrays.copyOf(this.ids, this.quantidade);
+        }
+    }
+}
@@ -1,18 +1,35 @@
 package br.ufal.ic.p2.jackut.Entidades;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Queue;
+import java.util.Set;
 
 import br.ufal.ic.p2.jackut.Exceptions.Comunidade.SemMensagensException;
 import br.ufal.ic.p2.jackut.Exceptions.Perfil.AtributoNaoPreenchidoException;
 import br.ufal.ic.p2.jackut.Exceptions.Recado.SemRecadosException;
 import br.ufal.ic.p2.jackut.Exceptions.Sistema.LoginOuSenhaInvalidoException;
+import br.ufal.ic.p2.jackut.Utilidade.CacheDeTexto;
 import br.ufal.ic.p2.jackut.Utilidade.UtilidadeString;
+import br.ufal.ic.p2.jackut.tipos.TiposArquivo;
+import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
+
+import static br.ufal.ic.p2.jackut.tipos.TiposArquivo.*;
 
 
 /**
  * Classe para criar um usuario
+ *
+ * As relações com outros usuários ficam no {@link GrafoDeRelacoes} do sistema, indexadas pelo id
+ * inteiro que o User recebe ao ser adicionado. Os getters de relações retornam visões somente
+ * leitura desse grafo, na ordem em que as relações foram criadas; verificar, adicionar e remover
+ * uma relação não depende da quantidade de relações.
+ *
+ * As listagens em texto de amigos, fãs, paqueras e comunidades ficam em cache até que a
+ * coleção correspondente seja alterada. Os caches só são criados na primeira listagem.
  */
 
 public class User {
@@ -20,25 +37,24 @@ public class User {
     private final String senha;
     private final String nome;
 
-    private final Perfil perfil = new Perfil();
-
-    private final ArrayList<User> amigos = new ArrayList<>();
-    private final ArrayList<User> solicitacoesEnviadas = new ArrayList<>();
-    private final ArrayList<User> solicitacoesRecebidas = new ArrayList<>();
+    private final Perfil perfil = new Perfil(this);
 
-    private final Queue<Recado> recados = new LinkedList<>();
+    private GrafoDeRelacoes grafo;
+    private int id = -1;
 
-    private final ArrayList<Comunidade> comunidadesProprietarias = new ArrayList<>();
-    private final ArrayList<Comunidade> comunidadesParticipantes = new ArrayList<>();
-    private final Queue<Mensagem> mensagens = new LinkedList<>();
+    private final CaixaDeRecados recados = new CaixaDeRecados(this);
 
-    private final ArrayList<User> idolos = new ArrayList<>();
-    private final ArrayList<User> fas = new ArrayList<>();
+    private final LinkedHashSet<Comunidade> comunidadesProprietarias = new LinkedHashSet<>();
+    private final LinkedHashSet<Comunidade> comunidadesParticipantes = new LinkedHashSet<>();
+    private final LinkedHashMap<Comunidade, CursorDeMensagens> cursores = new LinkedHashMap<>();
+    private int versaoComunidades;
 
-    private final ArrayList<User> paqueras = new ArrayList<>();
-    private final ArrayList<User> paquerasRecebidas = new ArrayList<>();
+    private CacheDeTexto textoAmigos;
+    private CacheDeTexto textoFas;
+    private CacheDeTexto textoPaqueras;
+    private CacheDeTexto textoComunidades;
 
-    private final ArrayList<User> inimigos = new ArrayList<>();
+    private final EnumSet<TiposArquivo> alteracoes = EnumSet.of(USUARIOS, AMIGOS, RECADOS, CURSORES, RELACOES);
 
     /**
      * Cria um novo User
@@ -97,6 +113,84 @@ public class User {
         return this.nome;
     }
 
+    /**
+     * Retorna o id inteiro do User no grafo de relações.
+     *
+     * @return Id do User, ou -1 caso ele ainda não tenha sido adicionado ao sistema.
+     *
+     * @see GrafoDeRelacoes
+     */
+
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Retorna o grafo de relações ao qual o User pertence.
+     *
+     * @return Grafo de relações, ou null caso o User ainda não tenha sido adicionado ao sistema.
+     */
+
+    public GrafoDeRelacoes getGrafo() {
+        return this.grafo;
+    }
+
+    /**
+     * Vincula o User ao grafo de relações do sistema.
+     * AVISO: Método utilizado apenas por {@link GrafoDeRelacoes#registrar(User)}.
+     *
+     * @param grafo  Grafo de relações.
+     * @param id     Id atribuído ao User.
+     */
+
+    void vincular(GrafoDeRelacoes grafo, int id) {
+        this.grafo = grafo;
+        this.id = id;
+        this.perfil.vincular();
+    }
+
+    /**
+     * Retorna a visão das relações do User em uma estrutura de adjacência.
+     *
+     * @param adjacencia  Estrutura de adjacência da relação.
+     * @return            Conjunto com os usuários relacionados.
+     *
+     * @see ConjuntoDeUsuarios
+     */
+
+    private Set<User> visao(Adjacencia adjacencia) {
+        return new ConjuntoDeUsuarios(this.grafo, adjacencia, this.id);
+    }
+
+    /**
+     * Retorna a estrutura de adjacência de um tipo de relação.
+     *
+     * @param tipo  Tipo da relação.
+     * @return      Adjacência do tipo de relação.
+     */
+
+    private Adjacencia relacao(TiposRelacionamento tipo) {
+        return this.grafo.getRelacao(tipo);
+    }
+
+    /**
+     * Retorna as relações do User em uma estrutura de adjacência formatadas como uma String,
+     * reaproveitando a String do cache enquanto a linha do User não for alterada.
+     *
+     * @param cache       Cache da listagem.
+     * @param adjacencia  Estrutura de adjacência da relação.
+     * @return            Relações formatadas em uma String.
+     */
+
+    private String renderizar(CacheDeTexto cache, Adjacencia adjacencia) {
+        int versao = adjacencia.getVersao(this.id);
+        String texto = cache.obter(versao);
+        if (texto != null) {
+            return texto;
+        }
+        return cache.guardar(versao, UtilidadeString.formatArrayList(this.visao(adjacencia)));
+    }
+
     /**
      * Retorna o perfil do User.
      *
@@ -132,8 +226,8 @@ public class User {
      * @return Lista de amigos do User.
      */
 
-    public ArrayList<User> getAmigos() {
-        return this.amigos;
+    public Set<User> getAmigos() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.grafo.getAmigos());
     }
 
     /**
@@ -145,7 +239,10 @@ public class User {
      */
 
     public String getAmigosString() {
-        return UtilidadeString.formatArrayList(this.amigos);
+        if (this.grafo == null) {return "{}";}
+        if (this.textoAmigos == null) {this.textoAmigos = new CacheDeTexto();}
+
+        return this.renderizar(this.textoAmigos, this.grafo.getAmigos());
     }
 
     /**
@@ -154,8 +251,8 @@ public class User {
      * @return Lista de solicitações de amizade enviadas pelo User
      */
 
-    public ArrayList<User> getSolicitacoesEnviadas() {
-        return this.solicitacoesEnviadas;
+    public Set<User> getSolicitacoesEnviadas() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.grafo.getSolicitacoesEnviadas());
     }
 
     /**
@@ -164,8 +261,8 @@ public class User {
      * @return Lista de solicitações de amizade que o User recebeu.
      */
 
-    public ArrayList<User> getSolicitacoesRecebidas() {
-        return this.solicitacoesRecebidas;
+    public Set<User> getSolicitacoesRecebidas() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.grafo.getSolicitacoesRecebidas());
     }
 
     /**
@@ -181,39 +278,88 @@ public class User {
     }
 
     /**
-     * Retorna a lista de comunidades das quais o User é dono.
+     * Retorna uma cópia somente leitura dos recados que o User ainda não leu, sem ler os
+     * recados gravados em disco.
      *
-     * @return Lista de comunidades das quais o User é dono.
+     * @param grafo Grafo usado para encontrar os remetentes dos recados em disco.
+     * @return      Recados não lidos, do mais antigo ao mais novo.
+     *
+     * @see CaixaDeRecados#congelar(GrafoDeRelacoes)
+     */
+
+    public Collection<Recado> congelarRecados(GrafoDeRelacoes grafo) {
+        return this.recados.congelar(grafo);
+    }
+
+    /**
+     * Retorna as comunidades das quais o User é dono, na ordem em que foram criadas.
+     *
+     * @return Comunidades das quais o User é dono.
      *
      * @see Comunidade
      */
 
-    public ArrayList<Comunidade> getComunidadesProprietarias() {
+    public Set<Comunidade> getComunidadesProprietarias() {
         return this.comunidadesProprietarias;
     }
 
     /**
-     * Retorna a lista de comunidades das quais o User é participante.
+     * Retorna as comunidades das quais o User é participante, na ordem em que ele entrou.
      *
-     * @return Lista de comunidades das quais o User é participante.
+     * @return Comunidades das quais o User é participante.
      *
      * @see Comunidade
      */
 
-    public ArrayList<Comunidade> getComunidadesParticipantes() {
+    public Set<Comunidade> getComunidadesParticipantes() {
         return this.comunidadesParticipantes;
     }
 
     /**
-     * Retorna a fila de mensagens do User.
+     * Retorna as comunidades das quais o User é participante formatadas como uma String.
      *
-     * @return Fila de mensagens do User.
+     * @return Comunidades do User formatadas em uma String.
      *
-     * @see Mensagem
+     * @see UtilidadeString
      */
 
-    public Queue<Mensagem> getMensagens() {
-        return this.mensagens;
+    public String getComunidadesString() {
+        if (this.textoComunidades == null) {this.textoComunidades = new CacheDeTexto();}
+
+        String texto = this.textoComunidades.obter(this.versaoComunidades);
+        if (texto != null) {
+            return texto;
+        }
+        return this.textoComunidades.guardar(this.versaoComunidades,
+                UtilidadeString.formatArrayList(this.comunidadesParticipantes));
+    }
+
+    /**
+     * Retorna os cursores de leitura do User nos murais das comunidades que ele participa.
+     *
+     * @return Cursores do User, na ordem em que ele entrou nas comunidades.
+     *
+     * @see CursorDeMensagens
+     */
+
+    public Collection<CursorDeMensagens> getCursores() {
+        return this.cursores.values();
+    }
+
+    /**
+     * Move o cursor de leitura do User no mural de uma comunidade que ele participa.
+     * AVISO: Método utilizado apenas para carregar os dados do arquivo.
+     *
+     * @param comunidade  Comunidade do mural.
+     * @param posicao     Posição da próxima mensagem a ser lida.
+     */
+
+    public void posicionarCursor(Comunidade comunidade, int posicao) {
+        CursorDeMensagens cursor = this.cursores.get(comunidade);
+        if (cursor != null) {
+            cursor.setPosicao(posicao);
+            this.alteracoes.add(CURSORES);
+        }
     }
 
     /**
@@ -222,8 +368,8 @@ public class User {
      * @return Lista de ídolos do User.
      */
 
-    public ArrayList<User> getIdolos() {
-        return this.idolos;
+    public Set<User> getIdolos() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.relacao(TiposRelacionamento.IDOLO));
     }
 
     /**
@@ -232,8 +378,8 @@ public class User {
      * @return Lista de fãs do User.
      */
 
-    public ArrayList<User> getFas() {
-        return this.fas;
+    public Set<User> getFas() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.relacao(TiposRelacionamento.FA));
     }
 
     /**
@@ -245,7 +391,10 @@ public class User {
      */
 
     public String getFasString() {
-        return UtilidadeString.formatArrayList(this.fas);
+        if (this.grafo == null) {return "{}";}
+        if (this.textoFas == null) {this.textoFas = new CacheDeTexto();}
+
+        return this.renderizar(this.textoFas, this.relacao(TiposRelacionamento.FA));
     }
 
     /**
@@ -254,8 +403,8 @@ public class User {
      * @return Lista de paqueras do User.
      */
 
-    public ArrayList<User> getPaqueras() {
-        return this.paqueras;
+    public Set<User> getPaqueras() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.relacao(TiposRelacionamento.PAQUERA));
     }
 
     /**
@@ -264,8 +413,8 @@ public class User {
      * @return Lista de paqueras recebidas do User.
      */
 
-    public ArrayList<User> getPaquerasRecebidas() {
-        return this.paquerasRecebidas;
+    public Set<User> getPaquerasRecebidas() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.relacao(TiposRelacionamento.PAQUERARECEBIDA));
     }
 
     /**
@@ -277,7 +426,10 @@ public class User {
      */
 
     public String getPaquerasString() {
-        return UtilidadeString.formatArrayList(this.paqueras);
+        if (this.grafo == null) {return "{}";}
+        if (this.textoPaqueras == null) {this.textoPaqueras = new CacheDeTexto();}
+
+        return this.renderizar(this.textoPaqueras, this.relacao(TiposRelacionamento.PAQUERA));
     }
 
     /**
@@ -286,8 +438,8 @@ public class User {
      * @return Lista de inimigos do User.
      */
 
-    public ArrayList<User> getInimigos() {
-        return this.inimigos;
+    public Set<User> getInimigos() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.relacao(TiposRelacionamento.INIMIGO));
     }
 
     /**
@@ -297,8 +449,8 @@ public class User {
      */
 
     public void setAmigo(User amigo) {
-        if (!this.amigos.contains(amigo)) {
-            this.amigos.add(amigo);
+        if (this.grafo.getAmigos().adicionar(this.id, amigo.id)) {
+            this.alteracoes.add(AMIGOS);
         }
     }
 
@@ -309,23 +461,25 @@ public class User {
      */
 
     public void setDonoComunidade(Comunidade comunidade) {
-        if (this.comunidadesProprietarias.contains(comunidade)) {
-            return;
-        }
-
         this.comunidadesProprietarias.add(comunidade);
     }
 
     /**
      * Adiciona uma comunidade dentro da lista de comunidades que o User participa.
+     * O cursor de leitura do mural começa no fim, então o User só recebe as mensagens
+     * enviadas depois de entrar na comunidade.
      *
      * @param comunidade Comunidade a ser adicionada.
      */
 
     public void setParticipanteComunidade(Comunidade comunidade) {
-        if (this.comunidadesParticipantes.contains(comunidade)) {return;}
+        if (!this.comunidadesParticipantes.add(comunidade)) {return;}
 
-        this.comunidadesParticipantes.add(comunidade);
+        this.versaoComunidades++;
+
+        this.cursores.put(comunidade, new CursorDeMensagens(comunidade, comunidade.getQuantidadeMensagens()));
+        this.alteracoes.add(USUARIOS);
+        this.alteracoes.add(CURSORES);
     }
 
     /**
@@ -334,7 +488,10 @@ public class User {
      * @param idolo Ídolo a ser adicionado.
      */
 
-    public void setIdolo(User idolo) {this.idolos.add(idolo);}
+    public void setIdolo(User idolo) {
+        this.relacao(TiposRelacionamento.IDOLO).adicionar(this.id, idolo.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Adiciona um User na lista de fãs de outro User.
@@ -342,7 +499,10 @@ public class User {
      * @param fa Fã a ser adicionado.
      */
 
-    public void setFa(User fa) {this.fas.add(fa);}
+    public void setFa(User fa) {
+        this.relacao(TiposRelacionamento.FA).adicionar(this.id, fa.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Adiciona um User na lista de paqueras de outro User.
@@ -350,7 +510,10 @@ public class User {
      * @param paquera Paquera a ser adicionado.
      */
 
-    public void setPaquera(User paquera) {this.paqueras.add(paquera);}
+    public void setPaquera(User paquera) {
+        this.relacao(TiposRelacionamento.PAQUERA).adicionar(this.id, paquera.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Adiciona um User na lista de paqueras recebidas de outro User.
@@ -358,7 +521,10 @@ public class User {
      * @param user Usuário a ser adicionado.
      */
 
-    public void setPaquerasRecebidas(User user) {this.paquerasRecebidas.add(user);}
+    public void setPaquerasRecebidas(User user) {
+        this.relacao(TiposRelacionamento.PAQUERARECEBIDA).adicionar(this.id, user.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Adiciona um User na lista de inimigos do User que chamou o metodo.
@@ -366,15 +532,45 @@ public class User {
      * @param inimigo Inimigo a ser adicionado.
      */
 
-    public void setInimigo(User inimigo) {this.inimigos.add(inimigo);}
+    public void setInimigo(User inimigo) {
+        this.relacao(TiposRelacionamento.INIMIGO).adicionar(this.id, inimigo.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
-     * Remove um recado da fila de recados do User que chamou o metodo.
+     * Retorna os usuários que ainda têm recados do User para ler.
      *
-     * @param recado Recado a ser removido.
+     * @return Usuários com recados não lidos do User.
+     *
+     * @see GrafoDeRelacoes#getRecadosPendentes()
      */
 
-    public void removerRecado(Recado recado) {this.recados.remove(recado);}
+    public Set<User> getDestinatariosDeRecados() {
+        return this.grafo == null ? Collections.emptySet() : this.visao(this.grafo.getRecadosPendentes());
+    }
+
+    /**
+     * Descarta da fila de recados do User todos os recados enviados por um usuário removido.
+     *
+     * @param remetente Remetente dos recados a serem descartados.
+     *
+     * @see CaixaDeRecados#descartarRemetente
+     */
+
+    public void removerRecadosDe(User remetente) {
+        if (this.recados.descartarRemetente(remetente)) {
+            this.alteracoes.add(RECADOS);
+        }
+    }
+
+    /**
+     * Remove todos os recados da fila de recados do User, apagando os que estão em disco.
+     */
+
+    public void esvaziarRecados() {
+        this.recados.clear();
+        this.alteracoes.add(RECADOS);
+    }
 
     /**
      * Remove um amigo da lista de amigos do User que chamou o metodo.
@@ -382,7 +578,11 @@ public class User {
      * @param user Usuário que não sera mais amigo.
      */
 
-    public void removerAmigo(User user) {this.amigos.remove(user);}
+    public void removerAmigo(User user) {
+        this.grafo.getAmigos().remover(this.id, user.id);
+        this.grafo.getSugestoes().invalidar();
+        this.alteracoes.add(AMIGOS);
+    }
 
     /**
      * Remove um fã da lista de fãs do User que chamou o metodo.
@@ -390,7 +590,10 @@ public class User {
      * @param user Usuário que não é mais ídolo.
      */
 
-    public void removerFa(User user) {this.fas.remove(user);}
+    public void removerFa(User user) {
+        this.relacao(TiposRelacionamento.FA).remover(this.id, user.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Remove um ídolo da lista de ídolos do User que chamou o metodo.
@@ -398,7 +601,10 @@ public class User {
      * @param user Usuário que não é mais ídolo.
      */
 
-    public void removerIdolo(User user) {this.idolos.remove(user);}
+    public void removerIdolo(User user) {
+        this.relacao(TiposRelacionamento.IDOLO).remover(this.id, user.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Remove uma paquera da lista de paqueras do User que chamou o metodo.
@@ -406,7 +612,10 @@ public class User {
      * @param user Usuário que não é mais paquera.
      */
 
-    public void removerPaquera(User user) {this.paqueras.remove(user);}
+    public void removerPaquera(User user) {
+        this.relacao(TiposRelacionamento.PAQUERA).remover(this.id, user.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Remove uma paquera da lista de paqueras recebidas do User que chamou o metodo.
@@ -414,7 +623,10 @@ public class User {
      * @param user Usuário que não é mais paquera.
      */
 
-    public void removerPaqueraRecebida(User user) {this.paquerasRecebidas.remove(user);}
+    public void removerPaqueraRecebida(User user) {
+        this.relacao(TiposRelacionamento.PAQUERARECEBIDA).remover(this.id, user.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Remove um inimigo da lista de inimigos do User que chamou o metodo.
@@ -422,7 +634,10 @@ public class User {
      * @param user Usuário que não é mais inimigo.
      */
 
-    public void removerInimigo(User user) {this.inimigos.remove(user);}
+    public void removerInimigo(User user) {
+        this.relacao(TiposRelacionamento.INIMIGO).remover(this.id, user.id);
+        this.alteracoes.add(RELACOES);
+    }
 
     /**
      * Remove uma solicitação de amizade da lista de solicitações enviadas do User que chamou o metodo para o User que foi passado como parametro no metodo.
@@ -430,7 +645,10 @@ public class User {
      * @param user Usuário que não receberá mais a solicitação.
      */
 
-    public void removerSolicitacaoEnviada(User user) {this.solicitacoesEnviadas.remove(user);}
+    public void removerSolicitacaoEnviada(User user) {
+        this.grafo.getSolicitacoesEnviadas().remover(this.id, user.id);
+        this.alteracoes.add(AMIGOS);
+    }
 
     /**
      * Remove uma solicitação de amizade da lista de solicitações recebidas do User que chamou o metodo.
@@ -438,7 +656,7 @@ public class User {
      * @param user Usuário que não receberá mais a solicitação.
      */
 
-    public void removerSolicitacaoRecebida(User user) {this.solicitacoesRecebidas.remove(user);}
+    public void removerSolicitacaoRecebida(User user) {this.grafo.getSolicitacoesRecebidas().remover(this.id, user.id);}
 
     /**
      * Verifica se a senha que foi passada como parametro é igual à senha do User que chamou o metodo.
@@ -457,8 +675,9 @@ public class User {
      */
 
     public void enviarSolicitacao(User user) {
-        this.solicitacoesEnviadas.add(user);
-        user.solicitacoesRecebidas.add(this);
+        this.grafo.getSolicitacoesEnviadas().adicionar(this.id, user.id);
+        this.grafo.getSolicitacoesRecebidas().adicionar(user.id, this.id);
+        this.alteracoes.add(AMIGOS);
     }
 
     /**
@@ -469,10 +688,13 @@ public class User {
      */
 
     public void aceitarSolicitacao(User user) {
-        this.amigos.add(user);
-        this.solicitacoesRecebidas.remove(user);
-        user.amigos.add(this);
-        user.solicitacoesEnviadas.remove(this);
+        this.grafo.getAmigos().adicionar(this.id, user.id);
+        this.grafo.getSolicitacoesRecebidas().remover(this.id, user.id);
+        this.alteracoes.add(AMIGOS);
+        this.grafo.getAmigos().adicionar(user.id, this.id);
+        this.grafo.getSolicitacoesEnviadas().remover(user.id, this.id);
+        user.alteracoes.add(AMIGOS);
+        this.grafo.getSugestoes().invalidar();
     }
 
     /**
@@ -486,6 +708,7 @@ public class User {
     public Recado lerRecado() throws SemRecadosException {
         if (this.recados.isEmpty()) {throw new SemRecadosException();}
 
+        this.alteracoes.add(RECADOS);
         return this.recados.poll();
     }
 
@@ -495,37 +718,89 @@ public class User {
      * @param recado Recado a ser adicionado.
      */
 
-    public void receberRecado(Recado recado) {this.recados.add(recado);}
+    public void receberRecado(Recado recado) {
+        this.recados.add(recado);
+        this.alteracoes.add(RECADOS);
+    }
+
+    /**
+     * Retorna a mensagem mais antiga que o User ainda não leu entre todas as comunidades
+     * que ele participa, e logo após avança o cursor daquela comunidade.
+     * As mensagens de comunidades diferentes são intercaladas pela ordem de chegada.
+     *
+     * @return A mensagem não lida mais antiga do User.
+     *
+     * @throws SemMensagensException Exceção lançada caso o User não tenha mensagens para ler.
+     *
+     * @see CursorDeMensagens
+     */
+
+    public Mensagem lerMensagem() throws SemMensagensException {
+        CursorDeMensagens proximo = null;
+        long sequencia = Long.MAX_VALUE;
+
+        for (CursorDeMensagens cursor : this.cursores.values()) {
+            Mensagem mensagem = cursor.getProxima();
+            if (mensagem != null && mensagem.getSequencia() < sequencia) {
+                proximo = cursor;
+                sequencia = mensagem.getSequencia();
+            }
+        }
+
+        if (proximo == null) {throw new SemMensagensException();}
+
+        this.alteracoes.add(CURSORES);
+        return proximo.avancar();
+    }
 
     /**
-     * Recebe uma mensagem de uma comunidade.
+     * Remove uma comunidade da lista de comunidades em que o User faz parte.
      *
-     * @param mensagem Mensagem a ser recebida.
+     * @param comunidade Comunidade em que o User não irá mais fazer parte.
      */
 
-    public void receberMensagem(Mensagem mensagem) {this.mensagens.add(mensagem);}
+    public void sairComunidade(Comunidade comunidade) {
+        if (this.comunidadesParticipantes.remove(comunidade)) {
+            this.versaoComunidades++;
+        }
+        this.cursores.remove(comunidade);
+        this.alteracoes.add(USUARIOS);
+        this.alteracoes.add(CURSORES);
+    }
 
     /**
-     * Retorna a primeira mensagem da fila de mensagens do User, e logo após o remove da fila de mensagens.
+     * Retorna se os dados do User gravados no arquivo especificado foram alterados
+     * desde a última vez que foram salvos.
      *
-     * @return A primeira mensagem da fila de mensagens do User.
+     * @param arquivo  Arquivo da base de dados.
+     * @return         True se os dados foram alterados, false caso contrário.
      *
-     * @throws SemMensagensException Exceção lançada caso o User não tenha mensagens na fila.
+     * @see TiposArquivo
      */
 
-    public Mensagem lerMensagem() throws SemMensagensException {
-        if (this.mensagens.isEmpty()) {throw new SemMensagensException();}
+    public boolean isAlterado(TiposArquivo arquivo) {
+        if (arquivo == USUARIOS && this.perfil.isAlterado()) {
+            return true;
+        }
 
-        return this.mensagens.poll();
+        return this.alteracoes.contains(arquivo);
     }
 
     /**
-     * Remove uma comunidade da lista de comunidades em que o User faz parte.
+     * Marca os dados do User gravados no arquivo especificado como salvos.
      *
-     * @param comunidade Comunidade em que o User não irá mais fazer parte.
+     * @param arquivo Arquivo da base de dados.
+     *
+     * @see TiposArquivo
      */
 
-    public void sairComunidade(Comunidade comunidade) {this.comunidadesParticipantes.remove(comunidade);}
+    public void limparAlteracao(TiposArquivo arquivo) {
+        if (arquivo == USUARIOS) {
+            this.perfil.limparAlteracao();
+        }
+
+        this.alteracoes.remove(arquivo);
+    }
 
     /**
      * Retorna uma String que representa o User
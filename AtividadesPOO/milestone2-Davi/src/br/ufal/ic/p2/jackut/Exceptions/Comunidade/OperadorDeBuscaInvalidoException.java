@@ -0,0 +1,12 @@
+package br.ufal.ic.p2.jackut.Exceptions.Comunidade;
+
+
+/**
+ * Exceção que indica que o operador de uma busca de comunidades não é "e" nem "ou".
+ */
+
+public class OperadorDeBuscaInvalidoException extends RuntimeException {
+    public OperadorDeBuscaInvalidoException() {
+        super("Operador de busca inválido.");
+    }
+}
@@ -0,0 +1,12 @@
+package br.ufal.ic.p2.jackut.Exceptions.Perfil;
+
+
+/**
+ * Exceção que indica que a página pedida em uma busca de usuários é inválida.
+ */
+
+public class PaginaInvalidaException extends RuntimeException {
+    public PaginaInvalidaException() {
+        super("Página inválida.");
+    }
+}
@@ -0,0 +1,13 @@
+package br.ufal.ic.p2.jackut.Exceptions.Sistema;
+
+
+/**
+ * Exceção que indica que o nome de arquivo pedido para um relatório é vazio ou aponta para
+ * fora da pasta de relatórios.
+ */
+
+public class NomeDeArquivoInvalidoException extends RuntimeException {
+    public NomeDeArquivoInvalidoException() {
+        super("Nome de arquivo inválido.");
+    }
+}
@@ -0,0 +1,12 @@
+package br.ufal.ic.p2.jackut.Exceptions.Usuario;
+
+
+/**
+ * Exceção que indica que a quantidade de sugestões pedida não é positiva.
+ */
+
+public class QuantidadeInvalidaException extends RuntimeException {
+    public QuantidadeInvalidaException() {
+        super("Quantidade inválida.");
+    }
+}
@@ -0,0 +1,201 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import br.ufal.ic.p2.jackut.Entidades.Comunidade;
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+
+
+/**
+ * Métodos comuns às medições de desempenho.
+ *
+ * As medições gravam e apagam a pasta ./BaseDeDados, então só rodam em uma pasta sem base de dados.
+ */
+
+final class Medicao {
+    private static final Path PASTA = Paths.get("./BaseDeDados");
+
+    private Medicao() {}
+
+    /**
+     * Verifica se a pasta atual não tem base de dados, para que a medição não apague dados reais.
+     *
+     * @return True se a medição pode rodar.
+     */
+
+    static boolean podeIniciar() {
+        if (Files.exists(PASTA)) {
+            System.out.println("A medicao grava e apaga ./BaseDeDados; execute-a em uma pasta sem base de dados.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Apaga a pasta ./BaseDeDados e todo o seu conteúdo.
+     */
+
+    static void apagarBase() {
+        if (!Files.exists(PASTA)) {
+            return;
+        }
+
+        try (Stream<Path> caminhos = Files.walk(PASTA)) {
+            caminhos.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            System.out.println("Erro ao apagar a pasta ./BaseDeDados");
+        }
+    }
+
+    /**
+     * Retorna o tamanho de um arquivo da base de dados.
+     *
+     * @param arquivo  Nome do arquivo.
+     * @return         Tamanho em bytes, ou zero caso ele não exista.
+     */
+
+    static long tamanho(String arquivo) {
+        return new File("./BaseDeDados/" + arquivo).length();
+    }
+
+    /**
+     * Retorna a memória ocupada no heap depois de pedir coletas de lixo à JVM.
+     *
+     * @return Bytes ocupados no heap.
+     */
+
+    static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Executa uma tarefa várias vezes e retorna a mediana das durações.
+     *
+     * @param repeticoes  Quantidade de execuções medidas.
+     * @param tarefa      Tarefa medida.
+     * @return            Mediana das durações, em milissegundos.
+     */
+
+    static double mediana(int repeticoes, Runnable tarefa) {
+        double[] duracoes = new double[repeticoes];
+        for (int i = 0; i < repeticoes; i++) {
+            long inicio = System.nanoTime();
+            tarefa.run();
+            duracoes[i] = (System.nanoTime() - inicio) / 1e6;
+        }
+
+        Arrays.sort(duracoes);
+        return duracoes[repeticoes / 2];
+    }
+
+    /**
+     * Preenche um sistema vazio com uma rede sintética e determinística:
+     * <ul>
+     *     <li>dois atributos de perfil com valores repetidos (cidade e estado civil);</li>
+     *     <li>cada usuário amigo dos quatro seguintes, fã de um usuário e com três recados;</li>
+     *     <li>uma comunidade a cada {@code usuariosPorComunidade} usuários, com duas mensagens, e
+     *         cada usuário membro de duas comunidades.</li>
+     * </ul>
+     *
+     * @param sessionService         Sistema a ser preenchido.
+     * @param usuarios               Quantidade de usuários.
+     * @param usuariosPorComunidade  Quantidade de usuários por comunidade criada.
+     */
+
+    static void gerarRede(SessionService sessionService, int usuarios, int usuariosPorComunidade) {
+        String[] cidades = {"Maceio", "Arapiraca", "Recife", "Joao Pessoa", "Campina Grande", "Natal", "Aracaju", "Salvador"};
+        String[] estados = {"solteiro", "casado", "divorciado", "viuvo"};
+
+        User[] users = new User[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            users[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+            sessionService.setUsuario(users[i]);
+            sessionService.editarPerfil(users[i], "cidade", cidades[i % cidades.length]);
+            sessionService.editarPerfil(users[i], "estadoCivil", estados[(i / 3) % estados.length]);
+        }
+
+        for (int i = 0; i < usuarios; i++) {
+            User user = users[i];
+            for (int d = 1; d <= 4; d++) {
+                User amigo = users[(i + d) % usuarios];
+                ignorarRepetida(() -> sessionService.adicionarAmigo(user, amigo));
+                ignorarRepetida(() -> sessionService.adicionarAmigo(amigo, user));
+            }
+
+            User idolo = users[(int) ((i * 13L + 1) % usuarios)];
+            ignorarRepetida(() -> sessionService.adicionarIdolo(user, idolo));
+
+            for (int k = 1; k <= 3; k++) {
+                User remetente = users[(int) ((i + 7L * k) % usuarios)];
+                String recado = "Oi " + user.getNome() + ", tudo bem? Recado numero " + k;
+                ignorarRepetida(() -> sessionService.enviarRecado(remetente, user, recado));
+            }
+        }
+
+        int comunidades = Math.max(1, usuarios / usuariosPorComunidade);
+        for (int c = 0; c < comunidades; c++) {
+            sessionService.criarComunidade(users[c * usuariosPorComunidade], "Comunidade " + c,
+                    "Comunidade numero " + c + " de " + cidades[c % cidades.length]);
+        }
+
+        for (int i = 0; i < usuarios; i++) {
+            User user = users[i];
+            String primeira = "Comunidade " + (i % comunidades);
+            String segunda = "Comunidade " + ((i * 7L + 3) % comunidades);
+            ignorarRepetida(() -> sessionService.adicionarComunidade(user, primeira));
+            ignorarRepetida(() -> sessionService.adicionarComunidade(user, segunda));
+        }
+
+        for (int c = 0; c < comunidades; c++) {
+            Comunidade comunidade = sessionService.getComunidade("Comunidade " + c);
+            sessionService.enviarMensagem(comunidade, "Bem-vindos a comunidade " + c);
+            sessionService.enviarMensagem(comunidade, "Encontro da comunidade " + c + " no sabado");
+        }
+    }
+
+    /**
+     * Executa uma operação do gerador ignorando as relações repetidas, que a rede sintética
+     * pode produzir quando há poucos usuários.
+     *
+     * @param operacao Operação a ser executada.
+     */
+
+    private static void ignorarRepetida(Operacao operacao) {
+        try {
+            operacao.executar();
+        } catch (Exception e) {}
+    }
+
+    /**
+     * Operação do gerador que pode lançar as exceções do sistema.
+     */
+
+    private interface Operacao {
+        void executar() throws Exception;
+    }
+
+    /**
+     * Lê um argumento inteiro, usando o valor padrão caso ele não tenha sido passado.
+     *
+     * @param args     Argumentos da linha de comando.
+     * @param posicao  Posição do argumento.
+     * @param padrao   Valor padrão.
+     * @return         Valor do argumento.
+     */
+
+    static int argumento(String[] args, int posicao, int padrao) {
+        return args.length > posicao ? Integer.parseInt(args[posicao]) : padrao;
+    }
+}
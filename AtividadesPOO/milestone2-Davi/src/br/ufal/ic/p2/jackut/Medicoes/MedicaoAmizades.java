@@ -0,0 +1,350 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.ToIntBiFunction;
+
+import br.ufal.ic.p2.jackut.Entidades.Adjacencia;
+import br.ufal.ic.p2.jackut.Entidades.AnaliseDeAmizades;
+import br.ufal.ic.p2.jackut.Entidades.GrafoDeRelacoes;
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+import br.ufal.ic.p2.jackut.Utilidade.EscritaDeArquivos;
+
+
+/**
+ * Mede as análises de amizades em um grafo com distribuição de graus em lei de potência, como o
+ * de uma rede social real: poucos usuários populares com milhares de amigos e a maioria com poucos.
+ *
+ * O grafo é gerado por ligação preferencial: cada novo usuário fica amigo de {@code amizades}
+ * usuários já existentes, escolhidos com probabilidade proporcional à quantidade de amigos de
+ * cada um. São medidos:
+ * <ul>
+ *     <li>{@code getAmigosEmComum} e {@code amigosEmComum} entre pares de usuários com poucos
+ *         amigos, cruzados por intercalação, e entre pares com um usuário popular, cruzados por
+ *         mapa de bits; nos mesmos pares também é medida uma intercalação simples das duas listas
+ *         ordenadas, para comparar os dois métodos;</li>
+ *     <li>a contagem de triângulos de todos os usuários, um a um por {@code triangulos} e em
+ *         paralelo por {@code triangulosDoGrafo};</li>
+ *     <li>{@code gerarRelatorioDeAmizades}, incluindo a gravação do relatório.</li>
+ * </ul>
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoAmizades [usuarios] [amizades] [repeticoes]}
+ *
+ * @see AnaliseDeAmizades
+ */
+
+public class MedicaoAmizades {
+    private static final int PARES = 20_000;
+    private static final String RELATORIO = "amizades.txt";
+
+    /**
+     * Gera o grafo e mede as análises de amizades.
+     *
+     * @param args Quantidade de usuários (padrão 100000), de amizades criadas por usuário
+     *             (padrão 5) e de repetições por medição (padrão 5).
+     *
+     * @throws Exception Exceção lançada caso alguma amizade não possa ser criada.
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int usuarios = Medicao.argumento(args, 0, 100_000);
+        int amizades = Medicao.argumento(args, 1, 5);
+        int repeticoes = Medicao.argumento(args, 2, 5);
+
+        SessionService sessionService = new SessionService();
+        long inicio = System.nanoTime();
+        User[] users = gerarGrafo(sessionService, usuarios, amizades);
+        GrafoDeRelacoes grafo = sessionService.getGrafo();
+        grafo.compactar();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        Adjacencia amigos = grafo.getAmigos();
+        int maiorGrau = 0;
+        int populares = 0;
+        for (User user : users) {
+            int grau = amigos.tamanho(user.getId());
+            maiorGrau = Math.max(maiorGrau, grau);
+            if (grau >= AnaliseDeAmizades.LIMITE_BITS) {
+                populares++;
+            }
+        }
+
+        System.out.printf("%d usuarios, %d amizades geradas em %.1f s; maior grau %d, %d usuarios com %d amigos ou mais; %d processador(es)%n",
+                usuarios, (long) (usuarios - amizades - 1) * amizades + (long) amizades * (amizades + 1) / 2,
+                segundos, maiorGrau, populares, AnaliseDeAmizades.LIMITE_BITS,
+                Runtime.getRuntime().availableProcessors());
+
+        AnaliseDeAmizades analise = grafo.getAnalise();
+
+        System.out.println("amigos em comum (us/consulta)   pares  getAmigosEmComum  amigosEmComum  intercalacao");
+        for (boolean comPopular : new boolean[]{false, true}) {
+            User[][] pares = escolherPares(users, grafo, comPopular);
+            double formatado = medirConsultas(pares, repeticoes,
+                    (user1, user2) -> sessionService.getAmigosEmComum(user1, user2).length());
+            double escolhido = medirConsultas(pares, repeticoes,
+                    (user1, user2) -> analise.amigosEmComum(user1.getId(), user2.getId()).length);
+            double intercalado = medirConsultas(pares, repeticoes,
+                    (user1, user2) -> intercalar(amigos, user1.getId(), user2.getId()));
+
+            if (contarComuns(pares, analise, amigos) != 0) {
+                System.out.println("Erro ao comparar os amigos em comum com a intercalacao");
+            }
+
+            System.out.printf("%-30s %6d  %16.2f  %13.2f  %12.2f%n",
+                    comPopular ? "com popular (>= " + AnaliseDeAmizades.LIMITE_BITS + " amigos)"
+                            : "poucos amigos (< " + AnaliseDeAmizades.LIMITE_BITS + " amigos)",
+                    pares.length, formatado, escolhido, intercalado);
+        }
+
+        long[] soma = new long[2];
+
+        double sequencial = Medicao.mediana(repeticoes, () -> {
+            long total = 0;
+            for (User user : users) {
+                total += analise.triangulos(user.getId());
+            }
+            soma[0] = total;
+        });
+        double paralelo = Medicao.mediana(repeticoes, () -> {
+            long total = 0;
+            for (long triangulos : analise.triangulosDoGrafo()) {
+                total += triangulos;
+            }
+            soma[1] = total;
+        });
+
+        if (soma[0] != soma[1]) {
+            System.out.println("Erro ao contar os triangulos: " + soma[0] + " um a um, " + soma[1] + " em paralelo");
+        }
+
+        System.out.printf("triangulos (%d no total)   mediana (ms)%n", soma[1] / 3);
+        System.out.printf("um a um (triangulos)         %10.1f%n", sequencial);
+        System.out.printf("paralelo (triangulosDoGrafo) %10.1f%n", paralelo);
+
+        double relatorio = Medicao.mediana(repeticoes, () -> {
+            try {
+                sessionService.gerarRelatorioDeAmizades(RELATORIO);
+            } catch (Exception e) {
+                System.out.println("Erro ao gerar o relatorio de amizades");
+            }
+        });
+        System.out.printf("gerarRelatorioDeAmizades     %10.1f  (%d bytes)%n", relatorio,
+                Medicao.tamanho(EscritaDeArquivos.PASTA_RELATORIOS + "/" + RELATORIO));
+
+        Medicao.apagarBase();
+    }
+
+    /**
+     * Gera um grafo de amizades por ligação preferencial. Os primeiros {@code amizades + 1}
+     * usuários são todos amigos entre si; cada usuário seguinte fica amigo de {@code amizades}
+     * usuários distintos, sorteados entre as pontas das amizades já criadas, de modo que um
+     * usuário com mais amigos tem mais chances de ser sorteado.
+     *
+     * @param sessionService  Sistema vazio a ser preenchido.
+     * @param usuarios        Quantidade de usuários.
+     * @param amizades        Quantidade de amizades criadas por cada novo usuário.
+     * @return                Usuários criados, na ordem de criação.
+     *
+     * @throws Exception Exceção lançada caso alguma amizade não possa ser criada.
+     */
+
+    private static User[] gerarGrafo(SessionService sessionService, int usuarios, int amizades) throws Exception {
+        Random random = new Random(42);
+        User[] users = new User[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            users[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+            sessionService.setUsuario(users[i]);
+        }
+
+        int[] pontas = new int[2 * (usuarios + 1) * amizades];
+        int quantidade = 0;
+
+        for (int i = 0; i <= amizades; i++) {
+            for (int j = 0; j < i; j++) {
+                adicionarAmizade(sessionService, users[i], users[j]);
+                pontas[quantidade++] = i;
+                pontas[quantidade++] = j;
+            }
+        }
+
+        int[] escolhidos = new int[amizades];
+        for (int i = amizades + 1; i < usuarios; i++) {
+            int total = 0;
+            while (total < amizades) {
+                int candidato = pontas[random.nextInt(quantidade)];
+                boolean repetido = false;
+                for (int k = 0; k < total; k++) {
+                    repetido |= escolhidos[k] == candidato;
+                }
+                if (!repetido) {
+                    escolhidos[total++] = candidato;
+                }
+            }
+
+            for (int k = 0; k < amizades; k++) {
+                adicionarAmizade(sessionService, users[i], users[escolhidos[k]]);
+                pontas[quantidade++] = i;
+                pontas[quantidade++] = escolhidos[k];
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Cria uma amizade entre dois usuários: um convida e o outro aceita.
+     *
+     * @param sessionService  Sistema com os usuários.
+     * @param user            Usuário que convida.
+     * @param amigo           Usuário que aceita.
+     *
+     * @throws Exception Exceção lançada caso a amizade não possa ser criada.
+     */
+
+    private static void adicionarAmizade(SessionService sessionService, User user, User amigo) throws Exception {
+        sessionService.adicionarAmigo(user, amigo);
+        sessionService.adicionarAmigo(amigo, user);
+    }
+
+    /**
+     * Sorteia pares de amigos, para que tenham amigos em comum: sem usuários populares, os dois
+     * têm menos de {@link AnaliseDeAmizades#LIMITE_BITS} amigos e são cruzados por intercalação;
+     * com usuários populares, o segundo tem pelo menos essa quantidade e vira um mapa de bits.
+     *
+     * @param users      Usuários do sistema.
+     * @param grafo      Grafo com as amizades.
+     * @param populares  True para pares com um usuário popular.
+     * @return           Até {@code PARES} pares de usuários.
+     */
+
+    private static User[][] escolherPares(User[] users, GrafoDeRelacoes grafo, boolean populares) {
+        Adjacencia amigos = grafo.getAmigos();
+        Random random = new Random(populares ? 7 : 13);
+        User[][] pares = new User[PARES][];
+        int quantidade = 0;
+
+        for (int tentativa = 0; tentativa < PARES * 100 && quantidade < PARES; tentativa++) {
+            int id = users[random.nextInt(users.length)].getId();
+            int posicoes = amigos.posicoes(id);
+            if (amigos.tamanho(id) >= AnaliseDeAmizades.LIMITE_BITS || posicoes == 0) {
+                continue;
+            }
+
+            int amigo = amigos.valor(id, random.nextInt(posicoes));
+            if (amigo < 0 || (amigos.tamanho(amigo) >= AnaliseDeAmizades.LIMITE_BITS) != populares) {
+                continue;
+            }
+            pares[quantidade++] = new User[]{grafo.getUsuario(id), grafo.getUsuario(amigo)};
+        }
+        return Arrays.copyOf(pares, quantidade);
+    }
+
+    /**
+     * Consulta todos os pares várias vezes e retorna a mediana por consulta.
+     * A primeira passada serve de aquecimento para o compilador da JVM.
+     *
+     * @param pares       Pares de usuários consultados.
+     * @param repeticoes  Quantidade de repetições.
+     * @param consulta    Consulta medida, que retorna um tamanho para que o resultado seja usado.
+     * @return            Mediana da duração por consulta, em microssegundos.
+     */
+
+    private static double medirConsultas(User[][] pares, int repeticoes, ToIntBiFunction<User, User> consulta) {
+        if (pares.length == 0) {
+            return 0.0;
+        }
+
+        long[] total = new long[1];
+        Runnable consultas = () -> {
+            for (User[] par : pares) {
+                total[0] += consulta.applyAsInt(par[0], par[1]);
+            }
+        };
+        consultas.run();
+        double mediana = Medicao.mediana(repeticoes, consultas) * 1e3 / pares.length;
+
+        if (total[0] < 0) {
+            System.out.println("Erro ao consultar os amigos em comum");
+        }
+        return mediana;
+    }
+
+    /**
+     * Conta os pares em que a análise e a intercalação simples discordam.
+     *
+     * @param pares    Pares de usuários.
+     * @param analise  Análises de amizades.
+     * @param amigos   Amizades do grafo.
+     * @return         Quantidade de pares com resultados diferentes.
+     */
+
+    private static int contarComuns(User[][] pares, AnaliseDeAmizades analise, Adjacencia amigos) {
+        int diferentes = 0;
+        for (User[] par : pares) {
+            if (analise.amigosEmComum(par[0].getId(), par[1].getId()).length
+                    != intercalar(amigos, par[0].getId(), par[1].getId())) {
+                diferentes++;
+            }
+        }
+        return diferentes;
+    }
+
+    /**
+     * Conta os amigos em comum de dois usuários ordenando as duas listas de amigos e percorrendo
+     * as duas ao mesmo tempo, sem mapa de bits, qualquer que seja o tamanho das listas.
+     *
+     * @param amigos  Amizades do grafo.
+     * @param id1     Id do primeiro usuário.
+     * @param id2     Id do segundo usuário.
+     * @return        Quantidade de amigos em comum.
+     */
+
+    private static int intercalar(Adjacencia amigos, int id1, int id2) {
+        int[] a = ordenados(amigos, id1);
+        int[] b = ordenados(amigos, id2);
+
+        int comuns = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                comuns++;
+                i++;
+                j++;
+            }
+        }
+        return comuns;
+    }
+
+    /**
+     * Retorna os amigos de um usuário em ordem crescente de id.
+     *
+     * @param amigos  Amizades do grafo.
+     * @param id      Id do usuário.
+     * @return        Ids dos amigos.
+     */
+
+    private static int[] ordenados(Adjacencia amigos, int id) {
+        int posicoes = amigos.posicoes(id);
+        int[] ids = new int[posicoes];
+        int quantidade = 0;
+        for (int i = 0; i < posicoes; i++) {
+            int amigo = amigos.valor(id, i);
+            if (amigo >= 0) {
+                ids[quantidade++] = amigo;
+            }
+        }
+
+        ids = Arrays.copyOf(ids, quantidade);
+        Arrays.sort(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,62 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+import br.ufal.ic.p2.jackut.Utilidade.Configuracao;
+import br.ufal.ic.p2.jackut.tipos.TiposArquivo;
+import br.ufal.ic.p2.jackut.tipos.TiposCompressao;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+
+
+/**
+ * Compara os arquivos de texto gravados sem compressão e com cada tipo de compressão:
+ * bytes no disco, tempo de gravação da fotografia e tempo de inicialização.
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoCompressao [usuarios] [repeticoes]}
+ *
+ * @see Configuracao#getCompressao()
+ */
+
+public class MedicaoCompressao {
+
+    /**
+     * Gera uma rede sintética e a grava e carrega com cada tipo de compressão.
+     *
+     * @param args Quantidade de usuários (padrão 200000) e de repetições (padrão 5).
+     */
+
+    public static void main(String[] args) {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int usuarios = Medicao.argumento(args, 0, 200_000);
+        int repeticoes = Medicao.argumento(args, 1, 5);
+
+        SessionService gerado = new SessionService();
+        Medicao.gerarRede(gerado, usuarios, 20);
+        gerado.getDiario().fechar();
+
+        System.out.printf("%d usuarios%n", usuarios);
+        for (TiposCompressao compressao : TiposCompressao.values()) {
+            System.setProperty("jackut.compressao", compressao.name().toLowerCase());
+
+            double gravacao = Medicao.mediana(repeticoes, () -> gerado.salvarSnapshot(TiposFormato.TEXTO));
+            gerado.getDiario().fechar();
+
+            long bytes = 0;
+            StringBuilder arquivos = new StringBuilder();
+            for (TiposArquivo arquivo : TiposArquivo.values()) {
+                bytes += Medicao.tamanho(arquivo.getNome());
+                arquivos.append(String.format(" %s=%.1fMB", arquivo.getNome(), Medicao.tamanho(arquivo.getNome()) / 1e6));
+            }
+
+            new SessionService();
+            double leitura = Medicao.mediana(repeticoes, SessionService::new);
+
+            System.out.printf("%-8s %7.1f MB, gravacao %8.1f ms, inicializacao %8.1f ms:%s%n",
+                    compressao.name().toLowerCase(), bytes / 1e6, gravacao, leitura, arquivos);
+        }
+
+        Medicao.apagarBase();
+    }
+}
@@ -0,0 +1,75 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+
+
+/**
+ * Mede o tempo de inicialização de bases com quantidades crescentes de comunidades, para mostrar
+ * que a ligação dos membros às comunidades cresce com a quantidade de participações.
+ *
+ * Cada base tem um usuário por comunidade, e cada usuário é dono de uma comunidade e membro de
+ * outras {@code participacoes}.
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoComunidades [participacoes] [repeticoes]}
+ */
+
+public class MedicaoComunidades {
+    private static final int[] COMUNIDADES = {10_000, 30_000, 100_000};
+
+    /**
+     * Mede a inicialização com 10 mil, 30 mil e 100 mil comunidades.
+     *
+     * @param args Participações por usuário (padrão 10) e repetições por base (padrão 5).
+     */
+
+    public static void main(String[] args) {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int participacoes = Medicao.argumento(args, 0, 10);
+        int repeticoes = Medicao.argumento(args, 1, 5);
+
+        for (int comunidades : COMUNIDADES) {
+            SessionService gerado = new SessionService();
+            gerar(gerado, comunidades, participacoes);
+            gerado.salvarSnapshot(TiposFormato.TEXTO);
+            gerado.getDiario().fechar();
+
+            new SessionService();
+            double mediana = Medicao.mediana(repeticoes, SessionService::new);
+
+            long membros = (long) comunidades * (participacoes + 1);
+            System.out.printf("%7d comunidades, %8d participacoes: %8.1f ms (%.0f ns por participacao)%n",
+                    comunidades, membros, mediana, mediana * 1e6 / membros);
+
+            Medicao.apagarBase();
+        }
+    }
+
+    /**
+     * Cria as comunidades e as participações de uma base.
+     *
+     * @param sessionService  Sistema vazio.
+     * @param comunidades     Quantidade de comunidades (e de usuários).
+     * @param participacoes   Comunidades de que cada usuário participa, além da sua.
+     */
+
+    private static void gerar(SessionService sessionService, int comunidades, int participacoes) {
+        User[] users = new User[comunidades];
+        for (int i = 0; i < comunidades; i++) {
+            users[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+            sessionService.setUsuario(users[i]);
+            sessionService.criarComunidade(users[i], "Comunidade " + i, "Comunidade numero " + i);
+        }
+
+        for (int i = 0; i < comunidades; i++) {
+            for (int p = 1; p <= participacoes; p++) {
+                long comunidade = (i + p * 7919L) % comunidades;
+                sessionService.adicionarComunidade(users[i], "Comunidade " + comunidade);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import java.util.Arrays;
+
+import br.ufal.ic.p2.jackut.Utilidade.DiarioDeOperacoes;
+import br.ufal.ic.p2.jackut.Utilidade.EscritaDeArquivos;
+import br.ufal.ic.p2.jackut.tipos.TiposOperacao;
+
+
+/**
+ * Mede o registro de operações no diário com quantidades crescentes de threads: operações
+ * confirmadas por segundo, tamanho médio dos grupos sincronizados juntos e tempo de espera
+ * de cada operação até a sua sincronização com o disco.
+ *
+ * Com uma thread, que é o caso da Facade, cada operação paga uma sincronização inteira.
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoDiario [operacoes por thread]}
+ *
+ * @see DiarioDeOperacoes
+ */
+
+public class MedicaoDiario {
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    /**
+     * Registra as operações com 1, 2, 4, 8 e 16 threads.
+     *
+     * @param args Operações registradas por cada thread (padrão 500).
+     *
+     * @throws InterruptedException Exceção lançada caso a thread principal seja interrompida.
+     */
+
+    public static void main(String[] args) throws InterruptedException {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int operacoes = Medicao.argumento(args, 0, 500);
+        EscritaDeArquivos.criarPasta();
+
+        System.out.println("threads  operacoes/s  grupo medio  espera p50  espera p99");
+        for (int threads : THREADS) {
+            DiarioDeOperacoes diario = new DiarioDeOperacoes();
+            long[] esperas = new long[threads * operacoes];
+            Thread[] escritores = new Thread[threads];
+
+            long inicio = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int primeira = t * operacoes;
+                escritores[t] = new Thread(() -> {
+                    for (int i = 0; i < operacoes; i++) {
+                        long antes = System.nanoTime();
+                        diario.registrar(TiposOperacao.ENVIAR_RECADO, "usuario" + i, "usuario" + (i + 1), "Recado numero " + i);
+                        esperas[primeira + i] = System.nanoTime() - antes;
+                    }
+                });
+                escritores[t].start();
+            }
+            for (Thread escritor : escritores) {
+                escritor.join();
+            }
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            diario.fechar();
+
+            Arrays.sort(esperas);
+            System.out.printf("%7d  %11.0f  %11.1f  %7.2f ms  %7.2f ms%n", threads, esperas.length / segundos,
+                    (double) esperas.length / diario.getSincronizacoes(),
+                    esperas[esperas.length / 2] / 1e6, esperas[esperas.length * 99 / 100] / 1e6);
+
+            Medicao.apagarBase();
+            EscritaDeArquivos.criarPasta();
+        }
+
+        Medicao.apagarBase();
+    }
+}
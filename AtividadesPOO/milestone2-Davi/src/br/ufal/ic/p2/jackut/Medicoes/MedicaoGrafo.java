@@ -0,0 +1,93 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+
+
+/**
+ * Mede os bytes de heap ocupados por relação em um grafo gerado, antes e depois da compactação
+ * das estruturas de adjacência no formato CSR.
+ *
+ * Cada usuário se torna fã de {@code relacoes} outros usuários; cada relação aparece na linha
+ * de ídolos de quem a criou e na linha de fãs do ídolo. A memória é medida com os usuários já
+ * criados, depois da primeira relação de cada usuário e depois de todas: a primeira relação
+ * também paga o estado por usuário criado junto com ela, e as demais custam só as arestas.
+ *
+ * Uso: {@code java -Xmx3g br.ufal.ic.p2.jackut.Medicoes.MedicaoGrafo [usuarios] [relacoes]}
+ *
+ * @see br.ufal.ic.p2.jackut.Entidades.GrafoDeRelacoes#compactar()
+ */
+
+public class MedicaoGrafo {
+
+    /**
+     * Gera o grafo e mede a memória ocupada pelas relações.
+     *
+     * @param args Quantidade de usuários (padrão 1000000) e de relações por usuário (padrão 10).
+     *
+     * @throws Exception Exceção lançada caso alguma relação não possa ser criada.
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int usuarios = Medicao.argumento(args, 0, 1_000_000);
+        int relacoes = Medicao.argumento(args, 1, 10);
+
+        SessionService sessionService = new SessionService();
+        User[] users = new User[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            users[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+            sessionService.setUsuario(users[i]);
+        }
+
+        long semRelacoes = Medicao.memoriaUsada();
+
+        long inicio = System.nanoTime();
+        adicionarIdolos(sessionService, users, 1, 1);
+        long primeira = Medicao.memoriaUsada();
+        adicionarIdolos(sessionService, users, 2, relacoes);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        long total = (long) usuarios * relacoes;
+        long demais = total - usuarios;
+        long crescendo = Medicao.memoriaUsada();
+        sessionService.getGrafo().compactar();
+        long compactado = Medicao.memoriaUsada();
+
+        System.out.printf("%d usuarios, %d relacoes criadas em %.1f s%n", usuarios, total, segundos);
+        System.out.printf("vetores crescendo: %8.1f MB no total (%.1f bytes por relacao), %.1f bytes por relacao alem da primeira%n",
+                (crescendo - semRelacoes) / 1e6, (double) (crescendo - semRelacoes) / total, (double) (crescendo - primeira) / demais);
+        System.out.printf("compactado (CSR):  %8.1f MB no total (%.1f bytes por relacao)%n",
+                (compactado - semRelacoes) / 1e6, (double) (compactado - semRelacoes) / total);
+        System.out.println(sessionService.getGrafo().getRelatorio());
+
+        if (users[0].getIdolos().size() != relacoes) {
+            System.out.println("Erro ao gerar as relacoes do usuario0");
+        }
+
+        Medicao.apagarBase();
+    }
+
+    /**
+     * Torna cada usuário fã dos usuários a uma distância de {@code r * 7919} posições, para r
+     * no intervalo especificado.
+     *
+     * @param sessionService  Sistema com os usuários.
+     * @param users           Usuários do sistema.
+     * @param primeira        Primeira relação de cada usuário.
+     * @param ultima          Última relação de cada usuário.
+     *
+     * @throws Exception Exceção lançada caso alguma relação não possa ser criada.
+     */
+
+    private static void adicionarIdolos(SessionService sessionService, User[] users, int primeira, int ultima) throws Exception {
+        for (int i = 0; i < users.length; i++) {
+            for (int r = primeira; r <= ultima; r++) {
+                sessionService.adicionarIdolo(users[i], users[(int) ((i + r * 7919L) % users.length)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import java.util.concurrent.ForkJoinPool;
+
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+import br.ufal.ic.p2.jackut.Utilidade.Configuracao;
+import br.ufal.ic.p2.jackut.tipos.TiposArquivo;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+import br.ufal.ic.p2.jackut.tipos.TiposLeitura;
+
+
+/**
+ * Mede o tempo de inicialização do sistema com cada modo de leitura dos arquivos de texto.
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoLeitura [usuarios] [repeticoes]}
+ *
+ * @see Configuracao#getLeitura()
+ */
+
+public class MedicaoLeitura {
+
+    /**
+     * Gera uma rede sintética, grava-a em texto e mede a inicialização com cada modo de leitura.
+     *
+     * @param args Quantidade de usuários (padrão 200000) e de repetições por modo (padrão 5).
+     */
+
+    public static void main(String[] args) {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int usuarios = Medicao.argumento(args, 0, 200_000);
+        int repeticoes = Medicao.argumento(args, 1, 5);
+
+        SessionService gerado = new SessionService();
+        Medicao.gerarRede(gerado, usuarios, 20);
+        gerado.salvarSnapshot(TiposFormato.TEXTO);
+        gerado.getDiario().fechar();
+
+        long bytes = 0;
+        StringBuilder arquivos = new StringBuilder();
+        for (TiposArquivo arquivo : TiposArquivo.values()) {
+            bytes += Medicao.tamanho(arquivo.getNome());
+            arquivos.append(String.format(" %s=%.1fMB", arquivo.getNome(), Medicao.tamanho(arquivo.getNome()) / 1e6));
+        }
+
+        System.out.printf("%d usuarios, %.1f MB em texto:%s%n", usuarios, bytes / 1e6, arquivos);
+        System.out.printf("%d processadores, paralelismo %d%n",
+                Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool().getParallelism());
+
+        for (TiposLeitura leitura : TiposLeitura.values()) {
+            System.setProperty("jackut.leitura", leitura.name().toLowerCase());
+            new SessionService();
+
+            double mediana = Medicao.mediana(repeticoes, SessionService::new);
+            System.out.printf("%-8s %8.1f ms%n", leitura.name().toLowerCase(), mediana);
+        }
+
+        Medicao.apagarBase();
+    }
+}
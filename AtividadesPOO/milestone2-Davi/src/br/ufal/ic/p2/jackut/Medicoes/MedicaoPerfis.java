@@ -0,0 +1,67 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+
+
+/**
+ * Mede os bytes de heap ocupados por usuário, com e sem atributos de perfil.
+ *
+ * Cada usuário preenche três atributos comuns: cidade (8 valores), estado civil (4 valores)
+ * e aniversário (336 valores). A memória é medida antes de criar os usuários, depois de
+ * criá-los e depois de preencher os perfis.
+ *
+ * Uso: {@code java -Xmx3g br.ufal.ic.p2.jackut.Medicoes.MedicaoPerfis [usuarios]}
+ *
+ * @see br.ufal.ic.p2.jackut.Entidades.TabelaDePerfis
+ */
+
+public class MedicaoPerfis {
+
+    /**
+     * Cria os usuários, preenche os perfis e mede a memória ocupada.
+     *
+     * @param args Quantidade de usuários (padrão 1000000).
+     *
+     * @throws Exception Exceção lançada caso algum usuário não possa ser criado.
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int usuarios = Medicao.argumento(args, 0, 1_000_000);
+        String[] cidades = {"Maceio", "Arapiraca", "Recife", "Joao Pessoa", "Campina Grande", "Natal", "Aracaju", "Salvador"};
+        String[] estados = {"solteiro", "casado", "divorciado", "viuvo"};
+
+        SessionService sessionService = new SessionService();
+        long vazio = Medicao.memoriaUsada();
+
+        User[] users = new User[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            users[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+            sessionService.setUsuario(users[i]);
+        }
+        long semPerfil = Medicao.memoriaUsada();
+
+        for (int i = 0; i < usuarios; i++) {
+            sessionService.editarPerfil(users[i], "cidade", cidades[i % cidades.length]);
+            sessionService.editarPerfil(users[i], "estadoCivil", estados[(i / 3) % estados.length]);
+            sessionService.editarPerfil(users[i], "aniversario", String.format("%02d/%02d", i % 28 + 1, (i / 28) % 12 + 1));
+        }
+        long comPerfil = Medicao.memoriaUsada();
+
+        System.out.printf("%d usuarios%n", usuarios);
+        System.out.printf("sem atributos:    %8.1f MB (%.1f bytes por usuario)%n",
+                (semPerfil - vazio) / 1e6, (double) (semPerfil - vazio) / usuarios);
+        System.out.printf("com 3 atributos:  %8.1f MB (%.1f bytes por usuario, %.1f so dos atributos)%n",
+                (comPerfil - vazio) / 1e6, (double) (comPerfil - vazio) / usuarios, (double) (comPerfil - semPerfil) / usuarios);
+
+        if (!users[usuarios - 1].getAtributo("cidade").equals(cidades[(usuarios - 1) % cidades.length])) {
+            System.out.println("Erro ao ler o atributo cidade");
+        }
+
+        Medicao.apagarBase();
+    }
+}
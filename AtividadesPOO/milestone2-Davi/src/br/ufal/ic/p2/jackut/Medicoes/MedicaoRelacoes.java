@@ -0,0 +1,105 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+
+
+/**
+ * Mede o custo de adicionar e de consultar relações de um usuário popular, com 10, mil e
+ * 100 mil fãs, para mostrar que {@code adicionarIdolo} e {@code ehFa} não crescem com a
+ * quantidade de relações.
+ *
+ * As consultas alternam fãs (acertos) e um usuário que não é fã (erro).
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoRelacoes [consultas] [repeticoes]}
+ */
+
+public class MedicaoRelacoes {
+    private static final int[] ARESTAS = {10, 1_000, 100_000};
+
+    /**
+     * Mede a adição e a consulta de relações com 10, mil e 100 mil fãs.
+     *
+     * @param args Consultas por medição (padrão 100000) e repetições por tamanho (padrão 5).
+     *
+     * @throws Exception Exceção lançada caso alguma relação não possa ser criada.
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int consultas = Medicao.argumento(args, 0, 100_000);
+        int repeticoes = Medicao.argumento(args, 1, 5);
+
+        medir(ARESTAS[1], consultas, repeticoes);
+
+        System.out.println("   fas  adicionar (ns/op)  consultar (ns/op)");
+        for (int arestas : ARESTAS) {
+            double[] medianas = medir(arestas, consultas, repeticoes);
+            System.out.printf("%6d  %17.1f  %17.1f%n", arestas, medianas[0], medianas[1]);
+        }
+
+        Medicao.apagarBase();
+    }
+
+    /**
+     * Cria um ídolo com a quantidade especificada de fãs e mede a adição dos fãs e as consultas.
+     * A primeira chamada serve de aquecimento para o compilador da JVM.
+     *
+     * @param arestas     Quantidade de fãs.
+     * @param consultas   Quantidade de consultas por repetição.
+     * @param repeticoes  Quantidade de repetições.
+     * @return            Medianas das durações por adição e por consulta, em nanossegundos.
+     *
+     * @throws Exception Exceção lançada caso alguma relação não possa ser criada.
+     */
+
+    private static double[] medir(int arestas, int consultas, int repeticoes) throws Exception {
+        double[] adicoes = new double[repeticoes];
+        double[] buscas = new double[repeticoes];
+        long encontrados = 0;
+
+        for (int r = 0; r < repeticoes; r++) {
+            SessionService sessionService = new SessionService();
+            User idolo = new User("idolo", "senha", "Idolo");
+            User estranho = new User("estranho", "senha", "Estranho");
+            sessionService.setUsuario(idolo);
+            sessionService.setUsuario(estranho);
+
+            User[] fas = new User[arestas];
+            for (int i = 0; i < arestas; i++) {
+                fas[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+                sessionService.setUsuario(fas[i]);
+            }
+
+            long inicio = System.nanoTime();
+            for (User fa : fas) {
+                sessionService.adicionarIdolo(fa, idolo);
+            }
+            adicoes[r] = (double) (System.nanoTime() - inicio) / arestas;
+
+            Set<User> fasDoIdolo = idolo.getFas();
+            inicio = System.nanoTime();
+            for (int i = 0; i < consultas; i++) {
+                User consultado = i % 2 == 0 ? fas[(int) ((i * 7919L) % arestas)] : estranho;
+                if (fasDoIdolo.contains(consultado)) {
+                    encontrados++;
+                }
+            }
+            buscas[r] = (double) (System.nanoTime() - inicio) / consultas;
+        }
+
+        if (encontrados != (long) repeticoes * ((consultas + 1) / 2)) {
+            System.out.println("Erro ao consultar os fas: " + encontrados + " encontrados");
+        }
+
+        Arrays.sort(adicoes);
+        Arrays.sort(buscas);
+        return new double[]{adicoes[repeticoes / 2], buscas[repeticoes / 2]};
+    }
+}
@@ -0,0 +1,101 @@
+package br.ufal.ic.p2.jackut.Medicoes;
+
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+
+
+/**
+ * Mede o tempo de remoção de contas em uma base com muitos recados, para mostrar que
+ * {@code removerUsuario} depende dos recados enviados pela conta removida e não do total de
+ * recados do sistema.
+ *
+ * Cada usuário envia {@code recados} recados, um para cada um dos usuários seguintes a uma
+ * distância de 7, 14, ... posições. As contas removidas são espalhadas pela base.
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Medicoes.MedicaoRemocao [usuarios] [recados] [remocoes]}
+ */
+
+public class MedicaoRemocao {
+
+    /**
+     * Gera a base, remove as contas e confere a quantidade de recados que sobraram.
+     *
+     * @param args Quantidade de usuários (padrão 200000), de recados enviados por usuário
+     *             (padrão 10) e de contas removidas (padrão 1000).
+     *
+     * @throws Exception Exceção lançada caso algum recado não possa ser enviado.
+     */
+
+    public static void main(String[] args) throws Exception {
+        if (!Medicao.podeIniciar()) {
+            return;
+        }
+
+        int usuarios = Medicao.argumento(args, 0, 200_000);
+        int recados = Medicao.argumento(args, 1, 10);
+        int remocoes = Medicao.argumento(args, 2, 1_000);
+
+        SessionService sessionService = new SessionService();
+        User[] users = new User[usuarios];
+        for (int i = 0; i < usuarios; i++) {
+            users[i] = new User("usuario" + i, "senha" + i, "Usuario " + i);
+            sessionService.setUsuario(users[i]);
+        }
+
+        for (int i = 0; i < usuarios; i++) {
+            for (int k = 1; k <= recados; k++) {
+                sessionService.enviarRecado(users[i], users[destinatario(i, k, usuarios)], "Recado numero " + k);
+            }
+        }
+
+        boolean[] removidos = new boolean[usuarios];
+        int passo = Math.max(1, usuarios / remocoes);
+        for (int r = 0; r < remocoes; r++) {
+            removidos[r * passo % usuarios] = true;
+        }
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < usuarios; i++) {
+            if (removidos[i]) {
+                sessionService.removerUsuario(users[i], null);
+            }
+        }
+        double ms = (System.nanoTime() - inicio) / 1e6;
+
+        long esperados = 0;
+        long restantes = 0;
+        for (int i = 0; i < usuarios; i++) {
+            if (removidos[i]) {
+                continue;
+            }
+            for (int k = 1; k <= recados; k++) {
+                if (!removidos[destinatario(i, k, usuarios)]) {
+                    esperados++;
+                }
+            }
+            restantes += users[i].getRecados().size();
+        }
+
+        System.out.printf("%d usuarios, %d recados: %d remocoes em %.1f ms (%.3f ms por remocao)%n",
+                usuarios, (long) usuarios * recados, remocoes, ms, ms / remocoes);
+
+        if (restantes != esperados) {
+            System.out.println("Erro ao remover os recados: " + restantes + " restantes, " + esperados + " esperados");
+        }
+
+        Medicao.apagarBase();
+    }
+
+    /**
+     * Retorna o destinatário do k-ésimo recado enviado por um usuário.
+     *
+     * @param remetente  Posição do remetente.
+     * @param k          Número do recado, a partir de 1.
+     * @param usuarios   Quantidade de usuários.
+     * @return           Posição do destinatário.
+     */
+
+    private static int destinatario(int remetente, int k, int usuarios) {
+        return (int) ((remetente + 7L * k) % usuarios);
+    }
+}
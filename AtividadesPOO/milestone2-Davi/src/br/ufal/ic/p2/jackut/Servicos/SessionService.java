@@ -1,6 +1,10 @@
 package br.ufal.ic.p2.jackut.Servicos;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -8,14 +12,27 @@ import br.ufal.ic.p2.jackut.Entidades.User;
 import br.ufal.ic.p2.jackut.Exceptions.Recado.SemRecadosException;
 import br.ufal.ic.p2.jackut.Utilidade.*;
 
+import br.ufal.ic.p2.jackut.Entidades.AnaliseDeAmizades;
+import br.ufal.ic.p2.jackut.Entidades.AssinaturasDeComunidades;
+import br.ufal.ic.p2.jackut.Entidades.CaixaDeRecados;
+import br.ufal.ic.p2.jackut.Entidades.CaminhosDeAmizade;
 import br.ufal.ic.p2.jackut.Entidades.Comunidade;
+import br.ufal.ic.p2.jackut.Entidades.GrafoDeRelacoes;
+import br.ufal.ic.p2.jackut.Entidades.IndiceDeComunidades;
 import br.ufal.ic.p2.jackut.Entidades.Mensagem;
 import br.ufal.ic.p2.jackut.Entidades.Recado;
+import br.ufal.ic.p2.jackut.Entidades.SugestoesDeAmizade;
 
 import br.ufal.ic.p2.jackut.Exceptions.Sistema.*;
 import br.ufal.ic.p2.jackut.Exceptions.Comunidade.*;
 import br.ufal.ic.p2.jackut.Exceptions.Usuario.*;
 import br.ufal.ic.p2.jackut.Exceptions.Recado.*;
+import br.ufal.ic.p2.jackut.Exceptions.Perfil.*;
+
+import br.ufal.ic.p2.jackut.tipos.TiposArquivo;
+import br.ufal.ic.p2.jackut.tipos.TiposBusca;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+import br.ufal.ic.p2.jackut.tipos.TiposOperacao;
 
 
 /**
@@ -23,9 +40,20 @@ import br.ufal.ic.p2.jackut.Exceptions.Recado.*;
  */
 
 public class SessionService {
-    private Map<String, User> usuarios = new HashMap<>();
+    private static final long LIMITE_COMPACTACAO_DIARIO = 10_000;
+
+    private Map<String, User> usuarios = new LinkedHashMap<>();
     private Map<String, User> sessoes = new HashMap<>();
-    private Map<String, Comunidade> comunidades = new HashMap<>();
+    private Map<String, Comunidade> comunidades = new LinkedHashMap<>();
+    private IndiceDeComunidades indiceComunidades = new IndiceDeComunidades();
+    private AssinaturasDeComunidades assinaturasComunidades = new AssinaturasDeComunidades();
+    private GrafoDeRelacoes grafo = new GrafoDeRelacoes();
+    private long sequenciaMensagens;
+
+    private final DiarioDeOperacoes diario = new DiarioDeOperacoes();
+    private final CheckpointEmSegundoPlano checkpoint = new CheckpointEmSegundoPlano(Configuracao.getIntervaloCheckpoint());
+    private final EnumSet<TiposArquivo> arquivosComRemocao = EnumSet.noneOf(TiposArquivo.class);
+    private TiposFormato formatoSnapshot;
 
     /**
      * Constrói um novo Sistema responsável por gerenciar os usuários e as sessões.
@@ -37,8 +65,134 @@ public class SessionService {
 
     public SessionService() {
         EscritaDeArquivos.criarPasta();
+        CheckpointEmSegundoPlano.aguardarGravacoes();
+        CaixaDeRecados.limparTransbordo();
+
+        this.grafo.getPerfis().suspenderIndices();
+        this.assinaturasComunidades.suspender();
+        this.formatoSnapshot = LeituraDeArquivos.lerArquivos(this);
+        this.grafo.getPerfis().reconstruirIndices();
+        this.assinaturasComunidades.reconstruir(this.comunidades.values());
+        this.grafo.compactar();
+    }
+
+    /**
+     * Retorna o diário de operações do sistema.
+     *
+     * @return Diário de operações.
+     *
+     * @see DiarioDeOperacoes
+     */
+
+    public DiarioDeOperacoes getDiario() {
+        return this.diario;
+    }
+
+    /**
+     * Retorna o grafo com as relações entre os usuários do sistema.
+     *
+     * @return Grafo de relações.
+     *
+     * @see GrafoDeRelacoes
+     */
+
+    public GrafoDeRelacoes getGrafo() {
+        return this.grafo;
+    }
+
+    /**
+     * Marca todos os usuários e comunidades como salvos.
+     * AVISO: Método utilizado apenas após carregar os dados do arquivo.
+     *
+     * @see EscritaDeArquivos#persistirDados
+     */
+
+    public void limparAlteracoes() {
+        for (User user : this.usuarios.values()) {
+            for (TiposArquivo arquivo : TiposArquivo.values()) {
+                user.limparAlteracao(arquivo);
+            }
+        }
+
+        for (Comunidade comunidade : this.comunidades.values()) {
+            comunidade.limparAlteracao();
+            comunidade.limparAlteracaoMural();
+        }
+
+        this.arquivosComRemocao.clear();
+    }
 
-        LeituraDeArquivos.lerArquivos(this);
+    /**
+     * Registra uma operação já realizada com sucesso no diário de operações.
+     * Se já for hora, captura uma fotografia para ser gravada em segundo plano.
+     * Antes disso, instala a compactação das relações feita pela última gravação, caso ela
+     * já tenha terminado.
+     *
+     * @param operacao  Tipo da operação.
+     * @param campos    Argumentos necessários para reproduzir a operação.
+     *
+     * @see DiarioDeOperacoes
+     * @see CheckpointEmSegundoPlano
+     */
+
+    public void registrarOperacao(TiposOperacao operacao, String... campos) {
+        this.diario.registrar(operacao, campos);
+
+        GrafoDeRelacoes compactado = this.checkpoint.consumirCompactacao();
+        if (compactado != null) {
+            this.grafo.instalarCompactacao(compactado);
+        }
+
+        if (this.checkpoint.deveIniciar()) {
+            this.iniciarCheckpoint();
+        }
+    }
+
+    /**
+     * Captura uma fotografia do sistema e a entrega ao gravador em segundo plano.
+     * Apenas a captura, que copia referências e não serializa nada, é feita nesta thread; o
+     * diário é rotacionado para que as próximas operações não se misturem às já contidas na
+     * fotografia. A serialização e a compactação das relações são feitas em segundo plano.
+     *
+     * @see Fotografia#capturar
+     * @see CheckpointEmSegundoPlano
+     */
+
+    private void iniciarCheckpoint() {
+        long inicio = System.nanoTime();
+        TiposFormato formato = Configuracao.getFormato();
+
+        Fotografia fotografia = Fotografia.capturar(formato, this.usuarios, this.comunidades, this.grafo);
+        long sequencia = this.diario.rotacionar();
+
+        this.limparAlteracoes();
+        this.formatoSnapshot = formato;
+
+        this.checkpoint.iniciar(fotografia, this.diario, sequencia, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Retorna o relatório das fotografias gravadas em segundo plano.
+     *
+     * @return Relatório com a duração e os bytes gravados da última fotografia.
+     *
+     * @see CheckpointEmSegundoPlano#getRelatorio()
+     */
+
+    public String getRelatorioCheckpoint() {
+        return this.checkpoint.getRelatorio();
+    }
+
+    /**
+     * Retorna o relatório dos caches das listagens em texto.
+     *
+     * @return Relatório com os acertos e as falhas dos caches.
+     *
+     * @see CacheDeTexto#getRelatorio()
+     */
+
+    public String getRelatorioTextos() {
+        return CacheDeTexto.getRelatorio();
     }
 
     /**
@@ -140,6 +294,25 @@ public class SessionService {
         return comunidade.getMembrosString();
     }
 
+    /**
+     * Retorna os membros que duas comunidades têm em comum em formato de String.
+     *
+     * @param nome1  Nome da primeira comunidade.
+     * @param nome2  Nome da segunda comunidade.
+     * @return       Membros presentes nas duas comunidades, em ordem de cadastro no sistema.
+     *
+     * @throws ComunidadeNaoExisteException Exceção lançada caso alguma das comunidades não exista.
+     *
+     * @see Comunidade#getMembrosEmComum(Comunidade)
+     */
+
+    public String getMembrosEmComum(String nome1, String nome2) throws ComunidadeNaoExisteException {
+        Comunidade comunidade1 = this.getComunidade(nome1);
+        Comunidade comunidade2 = this.getComunidade(nome2);
+
+        return UtilidadeString.formatArrayList(comunidade1.getMembrosEmComum(comunidade2));
+    }
+
     /**
      * Retorna as comunidades das quais o usuário é membro em formato de String.
      *
@@ -148,7 +321,138 @@ public class SessionService {
      */
 
     public String getComunidades(User user) {
-        return UtilidadeString.formatArrayList(user.getComunidadesParticipantes());
+        return user.getComunidadesString();
+    }
+
+    /**
+     * Retorna as sugestões de amizade do usuário (amigos de amigos), das com mais amigos em comum
+     * para as com menos.
+     *
+     * @param user        O usuário que receberá as sugestões.
+     * @param quantidade  Quantidade máxima de sugestões.
+     * @return            Logins sugeridos formatados como uma String.
+     *
+     * @throws QuantidadeInvalidaException Exceção lançada caso a quantidade não seja positiva.
+     *
+     * @see SugestoesDeAmizade
+     */
+
+    public String getSugestoesDeAmizade(User user, int quantidade) throws QuantidadeInvalidaException {
+        if (quantidade < 1) {
+            throw new QuantidadeInvalidaException();
+        }
+
+        return this.formatarLogins(this.grafo.getSugestoes().sugerir(user.getId(), quantidade));
+    }
+
+    /**
+     * Calcula em paralelo e guarda as sugestões de amizade de todos os usuários.
+     *
+     * @param quantidade Quantidade máxima de sugestões por usuário.
+     *
+     * @throws QuantidadeInvalidaException Exceção lançada caso a quantidade não seja positiva.
+     *
+     * @see SugestoesDeAmizade
+     */
+
+    public void precalcularSugestoesDeAmizade(int quantidade) throws QuantidadeInvalidaException {
+        if (quantidade < 1) {
+            throw new QuantidadeInvalidaException();
+        }
+
+        this.grafo.getSugestoes().precalcular(quantidade);
+    }
+
+    /**
+     * Retorna os amigos que dois usuários têm em comum.
+     *
+     * @param user1  Primeiro usuário.
+     * @param user2  Segundo usuário.
+     * @return       Amigos em comum formatados como uma String.
+     *
+     * @see AnaliseDeAmizades
+     */
+
+    public String getAmigosEmComum(User user1, User user2) {
+        return this.formatarLogins(this.grafo.getAnalise().amigosEmComum(user1.getId(), user2.getId()));
+    }
+
+    /**
+     * Retorna o menor caminho de amizades entre dois usuários.
+     *
+     * @param user1  Usuário de origem.
+     * @param user2  Usuário de destino.
+     * @return       Logins do caminho, da origem ao destino, formatados como uma String; vazio caso
+     *               não exista caminho dentro da profundidade e do tempo máximos.
+     *
+     * @see CaminhosDeAmizade
+     */
+
+    public String getCaminhoDeAmizade(User user1, User user2) {
+        return this.formatarLogins(this.grafo.getCaminhos().buscar(user1.getId(), user2.getId(),
+                Configuracao.getProfundidadeMaximaCaminho(), Configuracao.getTempoMaximoCaminho()));
+    }
+
+    /**
+     * Retorna o menor caminho de amizades entre dois usuários, com limites escolhidos por quem consulta.
+     *
+     * @param user1         Usuário de origem.
+     * @param user2         Usuário de destino.
+     * @param profundidade  Quantidade máxima de amizades no caminho.
+     * @param tempoMaximo   Tempo máximo da busca, em milissegundos.
+     * @return              Logins do caminho, da origem ao destino, formatados como uma String; vazio
+     *                      caso não exista caminho dentro desses limites.
+     *
+     * @throws QuantidadeInvalidaException Exceção lançada caso a profundidade não seja positiva ou o tempo seja negativo.
+     *
+     * @see CaminhosDeAmizade
+     */
+
+    public String getCaminhoDeAmizade(User user1, User user2, int profundidade, long tempoMaximo)
+            throws QuantidadeInvalidaException {
+        if (profundidade < 1 || tempoMaximo < 0) {
+            throw new QuantidadeInvalidaException();
+        }
+
+        return this.formatarLogins(this.grafo.getCaminhos().buscar(user1.getId(), user2.getId(),
+                profundidade, tempoMaximo));
+    }
+
+    /**
+     * Retorna o coeficiente de agrupamento do usuário: a fração dos pares de amigos dele que
+     * também são amigos entre si.
+     *
+     * @param user  O usuário.
+     * @return      Coeficiente entre 0 e 1.
+     *
+     * @see AnaliseDeAmizades
+     */
+
+    public double getCoeficienteDeAgrupamento(User user) {
+        return AnaliseDeAmizades.coeficiente(this.grafo.getAnalise().triangulos(user.getId()),
+                this.grafo.getAmigos().tamanho(user.getId()));
+    }
+
+    /**
+     * Conta em paralelo os triângulos de todos os usuários e grava o relatório de amizades.
+     * O nome do arquivo não pode conter separadores de pastas, para que o relatório nunca
+     * saia da pasta de relatórios nem substitua um arquivo da base de dados.
+     *
+     * @param arquivo Nome do arquivo do relatório, na pasta BaseDeDados/Relatorios.
+     *
+     * @throws NomeDeArquivoInvalidoException Exceção lançada caso o nome seja vazio, "." ou "..",
+     *                                        ou contenha um separador de pastas.
+     *
+     * @see EscritaDeArquivos#salvarRelatorioDeAmizades(String, GrafoDeRelacoes, long[])
+     */
+
+    public void gerarRelatorioDeAmizades(String arquivo) throws NomeDeArquivoInvalidoException {
+        if (arquivo == null || arquivo.isBlank() || arquivo.equals(".") || arquivo.equals("..")
+                || arquivo.indexOf('/') >= 0 || arquivo.indexOf('\\') >= 0 || arquivo.indexOf('\0') >= 0) {
+            throw new NomeDeArquivoInvalidoException();
+        }
+
+        EscritaDeArquivos.salvarRelatorioDeAmizades(arquivo, this.grafo, this.grafo.getAnalise().triangulosDoGrafo());
     }
 
     /**
@@ -161,7 +465,7 @@ public class SessionService {
      */
 
     public String getFas(User user) {
-        return UtilidadeString.formatArrayList(user.getFas());
+        return user.getFasString();
     }
 
     /**
@@ -174,11 +478,149 @@ public class SessionService {
      */
 
     public String getPaqueras(User user) {
-        return UtilidadeString.formatArrayList(user.getPaqueras());
+        return user.getPaquerasString();
+    }
+
+    /**
+     * Busca os usuários com um atributo de perfil igual ao valor especificado, em ordem de cadastro.
+     *
+     * @param atributo  Nome do atributo.
+     * @param valor     Valor procurado.
+     * @param pagina    Número da página, a partir de 1.
+     * @param tamanho   Quantidade de usuários por página.
+     * @return          Logins dos usuários da página formatados como uma String.
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos.
+     */
+
+    public String buscarUsuarios(String atributo, String valor, int pagina, int tamanho) throws PaginaInvalidaException {
+        int inicio = this.inicioPagina(pagina, tamanho);
+
+        return this.formatarLogins(this.grafo.getPerfis().buscarIgual(atributo, valor, inicio, tamanho));
+    }
+
+    /**
+     * Busca os usuários com um atributo de perfil entre dois valores (inclusive), em ordem de valor.
+     *
+     * @param atributo  Nome do atributo.
+     * @param de        Menor valor aceito.
+     * @param ate       Maior valor aceito.
+     * @param pagina    Número da página, a partir de 1.
+     * @param tamanho   Quantidade de usuários por página.
+     * @return          Logins dos usuários da página formatados como uma String.
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos.
+     */
+
+    public String buscarUsuariosPorIntervalo(String atributo, String de, String ate, int pagina, int tamanho)
+            throws PaginaInvalidaException {
+        int inicio = this.inicioPagina(pagina, tamanho);
+
+        return this.formatarLogins(this.grafo.getPerfis().buscarIntervalo(atributo, de, ate, inicio, tamanho));
+    }
+
+    /**
+     * Busca os usuários com um atributo de perfil que começa pelo prefixo especificado, em ordem de valor.
+     *
+     * @param atributo  Nome do atributo.
+     * @param prefixo   Prefixo procurado.
+     * @param pagina    Número da página, a partir de 1.
+     * @param tamanho   Quantidade de usuários por página.
+     * @return          Logins dos usuários da página formatados como uma String.
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos.
+     */
+
+    public String buscarUsuariosPorPrefixo(String atributo, String prefixo, int pagina, int tamanho)
+            throws PaginaInvalidaException {
+        int inicio = this.inicioPagina(pagina, tamanho);
+
+        return this.formatarLogins(this.grafo.getPerfis().buscarPrefixo(atributo, prefixo, inicio, tamanho));
+    }
+
+    /**
+     * Busca as comunidades cujo nome ou descrição contêm as palavras da consulta, das mais
+     * populares para as menos populares.
+     *
+     * @param consulta  Palavras procuradas.
+     * @param operador  "e" para exigir todas as palavras, "ou" para qualquer uma.
+     * @param pagina    Número da página, a partir de 1.
+     * @param tamanho   Quantidade de comunidades por página.
+     * @return          Nomes das comunidades da página formatados como uma String.
+     *
+     * @throws OperadorDeBuscaInvalidoException Exceção lançada caso o operador não seja "e" nem "ou".
+     * @throws PaginaInvalidaException          Exceção lançada caso a página ou o tamanho não sejam positivos.
+     */
+
+    public String buscarComunidades(String consulta, String operador, int pagina, int tamanho)
+            throws OperadorDeBuscaInvalidoException, PaginaInvalidaException {
+        TiposBusca tipo;
+        try {
+            tipo = TiposBusca.valueOf(operador.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new OperadorDeBuscaInvalidoException();
+        }
+        int inicio = this.inicioPagina(pagina, tamanho);
+
+        return UtilidadeString.formatArrayList(this.indiceComunidades.buscar(consulta, tipo, inicio, tamanho));
+    }
+
+    /**
+     * Recomenda comunidades com membros parecidos com os das comunidades que o usuário participa.
+     *
+     * @param user        O usuário que receberá as recomendações.
+     * @param quantidade  Quantidade máxima de recomendações.
+     * @return            Nomes das comunidades recomendadas formatados como uma String.
+     *
+     * @throws QuantidadeInvalidaException Exceção lançada caso a quantidade não seja positiva.
+     *
+     * @see AssinaturasDeComunidades
+     */
+
+    public String getComunidadesRecomendadas(User user, int quantidade) throws QuantidadeInvalidaException {
+        if (quantidade < 1) {
+            throw new QuantidadeInvalidaException();
+        }
+
+        return UtilidadeString.formatArrayList(this.assinaturasComunidades.recomendar(user, quantidade));
+    }
+
+    /**
+     * Calcula quantos resultados devem ser pulados para chegar a uma página.
+     *
+     * @param pagina   Número da página, a partir de 1.
+     * @param tamanho  Quantidade de resultados por página.
+     * @return         Quantidade de resultados a pular.
+     *
+     * @throws PaginaInvalidaException Exceção lançada caso a página ou o tamanho não sejam positivos.
+     */
+
+    private int inicioPagina(int pagina, int tamanho) throws PaginaInvalidaException {
+        if (pagina < 1 || tamanho < 1 || (long) (pagina - 1) * tamanho > Integer.MAX_VALUE) {
+            throw new PaginaInvalidaException();
+        }
+        return (pagina - 1) * tamanho;
     }
 
     /**
-     * Adiciona um usuário ao sistema.
+     * Formata os logins dos usuários com os ids especificados.
+     *
+     * @param ids  Ids dos usuários no grafo de relações.
+     * @return     Logins formatados como uma String.
+     *
+     * @see UtilidadeString
+     */
+
+    private String formatarLogins(int[] ids) {
+        List<User> encontrados = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            encontrados.add(this.grafo.getUsuario(id));
+        }
+        return UtilidadeString.formatArrayList(encontrados);
+    }
+
+    /**
+     * Adiciona um usuário ao sistema, atribuindo a ele o próximo id do grafo de relações.
      *
      * @param user Usuário a ser adicionado.
      *
@@ -195,6 +637,7 @@ public class SessionService {
         }
 
         this.usuarios.put(login, user);
+        this.grafo.registrar(user);
     }
 
     /**
@@ -227,6 +670,18 @@ public class SessionService {
         }
     }
 
+    /**
+     * Modifica o valor de um atributo do perfil do usuário.
+     *
+     * @param user      Usuário que terá o perfil editado.
+     * @param atributo  Atributo a ser modificado.
+     * @param valor     Novo valor do atributo.
+     */
+
+    public void editarPerfil(User user, String atributo, String valor) {
+        user.getPerfil().setAtributo(atributo, valor);
+    }
+
     /**
      * Adiciona um amigo ao usuário
      * O amigo não será adicionado caso ele não seja amigo, já tenha solicitado amizade ou já tenha recebido uma solicitação de amizade do usuário.
@@ -314,6 +769,8 @@ public class SessionService {
 
         Comunidade comunidade = new Comunidade(dono, nome, descricao);
         this.comunidades.put(nome, comunidade);
+        this.indiceComunidades.adicionar(comunidade);
+        this.assinaturasComunidades.adicionar(comunidade);
 
         dono.setDonoComunidade(comunidade);
         dono.setParticipanteComunidade(comunidade);
@@ -331,6 +788,8 @@ public class SessionService {
 
     public void setComunidade(String nome, Comunidade comunidade) {
         this.comunidades.put(nome, comunidade);
+        this.indiceComunidades.adicionar(comunidade);
+        this.assinaturasComunidades.adicionar(comunidade);
     }
 
 
@@ -348,11 +807,12 @@ public class SessionService {
             throws ComunidadeNaoExisteException, UsuarioJaNaComunidadeException {
         Comunidade comunidade = this.getComunidade(nome);
 
-        if (user.getComunidadesParticipantes().contains(comunidade)) {
+        if (comunidade.contemMembro(user)) {
             throw new UsuarioJaNaComunidadeException();
         }
 
         comunidade.adicionarMembro(user);
+        this.assinaturasComunidades.adicionarMembro(comunidade, user);
         user.setParticipanteComunidade(comunidade);
     }
 
@@ -372,18 +832,35 @@ public class SessionService {
 
     /**
      * Envia uma mensagem para uma comunidade.
-     * A mensagem será enviada para todos os membros da comunidade.
+     * A mensagem é acrescentada ao mural da comunidade, de onde todos os membros a leem.
      *
      * @param comunidade  A comunidade para a qual a mensagem será enviada.
      * @param msg         A mensagem a ser enviada.
      */
 
     public void enviarMensagem(Comunidade comunidade, String msg) {
-        Mensagem mensagem = new Mensagem(msg);
+        Mensagem mensagem = new Mensagem(msg, ++this.sequenciaMensagens);
 
         comunidade.enviarMensagem(mensagem);
     }
 
+    /**
+     * Continua a sequência das mensagens a partir da maior sequência presente nos murais.
+     * AVISO: Método utilizado apenas após carregar os dados do arquivo.
+     *
+     * @see Mensagem#getSequencia()
+     */
+
+    public void restaurarSequenciaMensagens() {
+        for (Comunidade comunidade : this.comunidades.values()) {
+            int quantidade = comunidade.getQuantidadeMensagens();
+            if (quantidade > 0) {
+                this.sequenciaMensagens = Math.max(this.sequenciaMensagens,
+                        comunidade.getMensagem(quantidade - 1).getSequencia());
+            }
+        }
+    }
+
     /**
      * Adiciona um usuário como fã de outro.
      *
@@ -497,16 +974,20 @@ public class SessionService {
             amigo.removerAmigo(user);
         }
 
-        for (User fa : user.getIdolos()) {
-            fa.removerFa(user);
+        for (User idolo : user.getIdolos()) {
+            idolo.removerFa(user);
+        }
+
+        for (User fa : user.getFas()) {
+            fa.removerIdolo(user);
         }
 
         for (User paquera : user.getPaqueras()) {
-            paquera.removerPaquera(user);
+            paquera.removerPaqueraRecebida(user);
         }
 
         for (User paqueraRecebida : user.getPaquerasRecebidas()) {
-            paqueraRecebida.removerPaqueraRecebida(user);
+            paqueraRecebida.removerPaquera(user);
         }
 
         for (User inimigo : user.getInimigos()) {
@@ -514,32 +995,38 @@ public class SessionService {
         }
 
         for (User solicitacaoEnviada : user.getSolicitacoesEnviadas()) {
-            solicitacaoEnviada.removerSolicitacaoEnviada(user);
+            solicitacaoEnviada.removerSolicitacaoRecebida(user);
         }
 
         for (User solicitacaoRecebida : user.getSolicitacoesRecebidas()) {
-            solicitacaoRecebida.removerSolicitacaoRecebida(user);
+            solicitacaoRecebida.removerSolicitacaoEnviada(user);
         }
 
-        for (Comunidade comunidade : this.comunidades.values()) {
-            if (comunidade.getDono().equals(user)) {
-                for (User membro : comunidade.getMembros()) {
-                    membro.sairComunidade(comunidade);
-                }
-                this.comunidades.remove(comunidade.getNome());
-            }
+        for (Comunidade comunidade : user.getComunidadesParticipantes()) {
+            comunidade.removerMembro(user);
+            this.assinaturasComunidades.removerMembro(comunidade);
         }
 
-        for (User destinatario : this.usuarios.values()) {
-            for (Recado recado : destinatario.getRecados()) {
-                if (recado.getRemetente().equals(user)) {
-                    destinatario.removerRecado(recado);
-                }
+        for (Comunidade comunidade : user.getComunidadesProprietarias()) {
+            for (User membro : comunidade.getMembros()) {
+                membro.sairComunidade(comunidade);
             }
+            this.comunidades.remove(comunidade.getNome());
+            this.indiceComunidades.remover(comunidade);
+            this.assinaturasComunidades.remover(comunidade);
+            this.arquivosComRemocao.add(TiposArquivo.COMUNIDADES);
+        }
+
+        for (User destinatario : user.getDestinatariosDeRecados()) {
+            destinatario.removerRecadosDe(user);
         }
+        user.esvaziarRecados();
 
         this.usuarios.remove(user.getLogin());
         this.sessoes.remove(id);
+        this.grafo.removerUsuario(user);
+
+        this.arquivosComRemocao.addAll(EnumSet.complementOf(EnumSet.of(TiposArquivo.COMUNIDADES)));
     }
 
     /**
@@ -547,21 +1034,96 @@ public class SessionService {
      */
 
     public void zerarSistema() {
-        this.usuarios = new HashMap<>();
-        this.sessoes = new HashMap<>();
-        this.comunidades = new HashMap<>();
+        this.checkpoint.aguardar();
+        this.checkpoint.consumirCompactacao();
 
-        EscritaDeArquivos.limparArquivos();
+        this.usuarios = new LinkedHashMap<>();
+        this.sessoes = new HashMap<>();
+        this.comunidades = new LinkedHashMap<>();
+        this.indiceComunidades = new IndiceDeComunidades();
+        this.assinaturasComunidades = new AssinaturasDeComunidades();
+        this.grafo = new GrafoDeRelacoes();
+        this.sequenciaMensagens = 0;
+        CaixaDeRecados.limparTransbordo();
+
+        GeracaoDeArquivos geracao = new GeracaoDeArquivos();
+        EscritaDeArquivos.limparArquivos(geracao);
+        if (this.diario.marcarCheckpoint(TiposFormato.TEXTO, geracao)) {
+            EscritaDeArquivos.apagarOutroFormato(TiposFormato.TEXTO);
+            this.formatoSnapshot = TiposFormato.TEXTO;
+        }
+        this.arquivosComRemocao.clear();
     }
 
     /**
-     * Grava o cadastro em arquivo e encerra o programa.
+     * Encerra o sistema, fechando o diário de operações.
+     *
+     * Todas as alterações já estão gravadas no diário, então os arquivos do banco de dados
+     * só são atualizados (e o diário esvaziado) quando o diário acumula operações demais.
+     * Nesse caso, se a fotografia já está em texto, apenas os registros alterados desde a
+     * última gravação são serializados.
      *
-     * Salva apenas os usuários cadastrados.
+     * Uma fotografia sendo gravada em segundo plano é aguardada antes. Se alguma dessas
+     * gravações falhou, ou se algum registro do diário não pôde ser gravado, a fotografia é
+     * regravada por completo.
+     *
+     * @see DiarioDeOperacoes#houveFalha()
+     * @see CheckpointEmSegundoPlano
+     * @see Configuracao#getFormato()
      */
 
     public void encerrarSistema() {
+        this.checkpoint.encerrar();
+        boolean falhou = this.checkpoint.consumirFalha() || this.diario.houveFalha();
+
+        if (falhou || this.diario.getPendentes() >= LIMITE_COMPACTACAO_DIARIO) {
+            TiposFormato formato = Configuracao.getFormato();
+
+            if (!falhou && formato == TiposFormato.TEXTO && this.formatoSnapshot == TiposFormato.TEXTO) {
+                EscritaDeArquivos.criarPasta();
+                GeracaoDeArquivos geracao = new GeracaoDeArquivos();
+                EscritaDeArquivos.persistirDados(geracao, this.usuarios, this.comunidades, this.grafo,
+                        this.arquivosComRemocao);
+                if (this.diario.marcarCheckpoint(formato, geracao)) {
+                    this.arquivosComRemocao.clear();
+                }
+            } else {
+                this.salvarSnapshot(formato);
+            }
+        }
+
+        this.diario.fechar();
+    }
+
+    /**
+     * Grava uma fotografia completa do sistema no formato especificado, substituindo
+     * a fotografia atual (inclusive se ela estiver em outro formato) e esvaziando o diário.
+     * Os arquivos são gravados em uma nova geração; se ela não puder ser publicada, a fotografia
+     * atual e o diário continuam valendo.
+     *
+     * @param formato Formato da nova fotografia.
+     *
+     * @see TiposFormato
+     * @see ConversorDeFormatos
+     */
+
+    public void salvarSnapshot(TiposFormato formato) {
+        this.checkpoint.aguardar();
         EscritaDeArquivos.criarPasta();
-        EscritaDeArquivos.persistirDados(this.usuarios, this.comunidades);
+
+        GeracaoDeArquivos geracao = new GeracaoDeArquivos();
+        Fotografia fotografia = Fotografia.atual(formato, this.usuarios, this.comunidades, this.grafo);
+        if (formato == TiposFormato.BINARIO) {
+            EscritaDeArquivos.salvarSnapshotBinario(geracao, fotografia);
+        } else {
+            EscritaDeArquivos.salvarSnapshotTexto(geracao, fotografia);
+        }
+
+        this.grafo.compactar();
+        if (this.diario.marcarCheckpoint(formato, geracao)) {
+            this.limparAlteracoes();
+            EscritaDeArquivos.apagarOutroFormato(formato);
+            this.formatoSnapshot = formato;
+        }
     }
 }
@@ -0,0 +1,197 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import br.ufal.ic.p2.jackut.tipos.TiposCompressao;
+
+
+/**
+ * Classe com métodos utilitários para a leitura dos arquivos de texto comprimidos da base de dados.
+ *
+ * Os arquivos comprimidos mantêm o nome dos arquivos de texto e são reconhecidos pela assinatura
+ * no início do arquivo, de forma que a base pode conter arquivos comprimidos e não comprimidos.
+ * A assinatura começa com o byte 0x89, que não pode iniciar um texto em UTF-8, então nenhum
+ * arquivo de texto é confundido com um arquivo comprimido.
+ *
+ * Arquivos gravados com a assinatura antiga ("JKZ1", que é texto válido) só são tratados como
+ * comprimidos se o tipo de compressão e o tamanho de todos os blocos forem válidos.
+ *
+ * @see SaidaComprimida
+ * @see Configuracao#getCompressao()
+ */
+
+public class ArquivoComprimido {
+    public static final int ASSINATURA = 0x894A4B5A;
+    public static final int ASSINATURA_V1 = 0x4A4B5A31;
+    private static final int TAMANHO_MAXIMO_BLOCO = 1 << 30;
+
+    /**
+     * Verifica se um arquivo da base de dados está comprimido.
+     *
+     * @param file  Arquivo a ser verificado.
+     * @return      True se o arquivo começa com a assinatura de arquivo comprimido, ou com a
+     *              assinatura antiga seguida de blocos válidos.
+     */
+
+    public static boolean isComprimido(File file) {
+        int assinatura;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            assinatura = in.readInt();
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (assinatura != ASSINATURA_V1) {
+            return assinatura == ASSINATURA;
+        }
+
+        try {
+            percorrerBlocos(file, (in, codec, tamanhoOriginal, tamanhoComprimido) -> in.skipNBytes(tamanhoComprimido));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Abre um arquivo de texto da base de dados para leitura, comprimido ou não.
+     *
+     * @param file  Arquivo a ser lido.
+     * @return      Leitor do conteúdo do arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível ler o arquivo.
+     */
+
+    public static BufferedReader abrirLeitor(File file) throws IOException {
+        if (!isComprimido(file)) {
+            return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        }
+
+        List<InputStream> blocos = new ArrayList<>();
+        for (byte[] bloco : lerBlocos(file)) {
+            blocos.add(new ByteArrayInputStream(bloco));
+        }
+
+        InputStream conteudo = new SequenceInputStream(Collections.enumeration(blocos));
+        return new BufferedReader(new InputStreamReader(conteudo, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lê e descomprime os blocos de um arquivo comprimido.
+     * Os blocos são lidos em sequência e descomprimidos em paralelo no {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param file  Arquivo comprimido.
+     * @return      Blocos descomprimidos, na ordem do arquivo.
+     *
+     * @throws IOException Exceção lançada caso o arquivo não possa ser lido ou esteja corrompido.
+     */
+
+    public static List<byte[]> lerBlocos(File file) throws IOException {
+        List<ForkJoinTask<byte[]>> tarefas = new ArrayList<>();
+
+        percorrerBlocos(file, (in, codec, tamanhoOriginal, tamanhoComprimido) -> {
+            byte[] comprimido = new byte[tamanhoComprimido];
+            in.readFully(comprimido);
+
+            tarefas.add(ForkJoinTask.adapt(() -> codec.descomprimir(comprimido, tamanhoOriginal)).fork());
+        });
+
+        List<byte[]> blocos = new ArrayList<>();
+        try {
+            for (ForkJoinTask<byte[]> tarefa : tarefas) {
+                blocos.add(tarefa.join());
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Erro ao descomprimir o arquivo " + file.getName(), e);
+        }
+        return blocos;
+    }
+
+    /**
+     * Lê o cabeçalho de um arquivo comprimido e percorre os seus blocos, validando o tipo de
+     * compressão e o tamanho de cada bloco antes de entregá-lo à leitura.
+     *
+     * @param file     Arquivo comprimido.
+     * @param leitura  Lê (ou pula) os bytes comprimidos de cada bloco.
+     *
+     * @throws IOException Exceção lançada caso o arquivo não possa ser lido ou esteja corrompido.
+     */
+
+    private static void percorrerBlocos(File file, LeituraDeBloco leitura) throws IOException {
+        long restantes = file.length();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (restantes < 5) {
+                throw corrompido(file, "cabeçalho incompleto");
+            }
+
+            int assinatura = in.readInt();
+            if (assinatura != ASSINATURA && assinatura != ASSINATURA_V1) {
+                throw new IOException("Arquivo " + file.getName() + " não está comprimido.");
+            }
+
+            int tipo = in.readUnsignedByte();
+            if (tipo == TiposCompressao.NENHUMA.ordinal() || tipo >= TiposCompressao.values().length) {
+                throw corrompido(file, "tipo de compressão desconhecido (" + tipo + ")");
+            }
+
+            CodecDeCompressao codec = CodecDeCompressao.de(TiposCompressao.values()[tipo]);
+            restantes -= 5;
+
+            while (restantes > 0) {
+                if (restantes < 8) {
+                    throw corrompido(file, "cabeçalho de bloco incompleto");
+                }
+
+                int tamanhoOriginal = in.readInt();
+                int tamanhoComprimido = in.readInt();
+                restantes -= 8;
+
+                if (tamanhoOriginal < 0 || tamanhoOriginal > TAMANHO_MAXIMO_BLOCO) {
+                    throw corrompido(file, "tamanho original de bloco inválido (" + tamanhoOriginal + ")");
+                }
+                if (tamanhoComprimido < 0 || tamanhoComprimido > restantes) {
+                    throw corrompido(file, "tamanho comprimido de bloco inválido (" + tamanhoComprimido + ")");
+                }
+
+                leitura.ler(in, codec, tamanhoOriginal, tamanhoComprimido);
+                restantes -= tamanhoComprimido;
+            }
+        }
+    }
+
+    /**
+     * Cria a exceção de um arquivo comprimido corrompido.
+     *
+     * @param file    Arquivo comprimido.
+     * @param motivo  Problema encontrado.
+     * @return        Exceção com o nome do arquivo e o problema.
+     */
+
+    private static IOException corrompido(File file, String motivo) {
+        return new IOException("Arquivo comprimido " + file.getName() + " corrompido: " + motivo + ".");
+    }
+
+    /**
+     * Lê os bytes comprimidos de um bloco já validado.
+     */
+
+    private interface LeituraDeBloco {
+        void ler(DataInputStream in, CodecDeCompressao codec, int tamanhoOriginal, int tamanhoComprimido)
+                throws IOException;
+    }
+}
@@ -0,0 +1,80 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Guarda a última String gerada para uma coleção, junto com a versão da coleção naquele momento.
+ *
+ * Quem usa o cache incrementa a versão da coleção a cada alteração; enquanto a versão não muda,
+ * {@link #obter(long)} devolve a mesma String sem gerar nada de novo. Os acertos e as falhas
+ * de todos os caches são somados para o relatório.
+ *
+ * @see UtilidadeString#formatArrayList
+ */
+
+public class CacheDeTexto {
+    private static final LongAdder acertos = new LongAdder();
+    private static final LongAdder falhas = new LongAdder();
+
+    private volatile Entrada entrada;
+
+    /**
+     * Retorna a String guardada, caso ela tenha sido gerada na versão especificada.
+     *
+     * @param versao  Versão atual da coleção.
+     * @return        String guardada, ou null caso a coleção tenha mudado.
+     */
+
+    public String obter(long versao) {
+        Entrada atual = this.entrada;
+        if (atual != null && atual.versao == versao) {
+            acertos.increment();
+            return atual.texto;
+        }
+
+        falhas.increment();
+        return null;
+    }
+
+    /**
+     * Guarda a String gerada para uma versão da coleção.
+     *
+     * @param versao  Versão da coleção usada para gerar a String.
+     * @param texto   String gerada.
+     * @return        A própria String, para ser retornada por quem chamou.
+     */
+
+    public String guardar(long versao, String texto) {
+        this.entrada = new Entrada(versao, texto);
+        return texto;
+    }
+
+    /**
+     * Retorna um relatório com os acertos e as falhas de todos os caches de texto.
+     *
+     * @return Relatório com os acertos, as falhas e a taxa de acerto.
+     */
+
+    public static String getRelatorio() {
+        long quantidadeAcertos = acertos.sum();
+        long total = quantidadeAcertos + falhas.sum();
+
+        return String.format("acertos=%d falhas=%d taxaDeAcerto=%.2f",
+                quantidadeAcertos, total - quantidadeAcertos, total == 0 ? 0.0 : (double) quantidadeAcertos / total);
+    }
+
+    /**
+     * String guardada e a versão da coleção em que ela foi gerada.
+     */
+
+    private static class Entrada {
+        private final long versao;
+        private final String texto;
+
+        private Entrada(long versao, String texto) {
+            this.versao = versao;
+            this.texto = texto;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import br.ufal.ic.p2.jackut.Entidades.GrafoDeRelacoes;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+
+
+/**
+ * Grava periodicamente fotografias do sistema em uma thread separada.
+ *
+ * A fotografia é capturada pela thread que atende as requisições, logo após uma operação ser
+ * registrada no diário, e a serialização e a gravação dos arquivos são feitas em segundo plano.
+ * Assim as requisições só ficam paradas durante a captura, que apenas copia referências.
+ *
+ * Depois de gravar, a mesma thread compacta as relações do grafo congelado da fotografia. A
+ * compactação é entregue por {@link #consumirCompactacao()} e instalada no grafo do sistema pela
+ * thread que atende as requisições.
+ *
+ * Na captura o diário é rotacionado: as operações já contidas na fotografia vão para
+ * "diario.anterior.txt", que só é apagado depois que a fotografia for publicada no checkpoint.
+ *
+ * @see Fotografia
+ * @see GrafoDeRelacoes#instalarCompactacao(GrafoDeRelacoes)
+ * @see GeracaoDeArquivos
+ * @see DiarioDeOperacoes#rotacionar()
+ * @see Configuracao#getIntervaloCheckpoint()
+ */
+
+public class CheckpointEmSegundoPlano {
+    private static volatile Future<?> ultimaGravacao;
+
+    private final long intervalo;
+
+    private ExecutorService executor;
+    private Future<?> emAndamento;
+    private long ultimoInicio = System.currentTimeMillis();
+    private volatile boolean falhou;
+    private final AtomicReference<GrafoDeRelacoes> compactado = new AtomicReference<>();
+
+    private volatile long quantidade;
+    private volatile long duracaoCaptura;
+    private volatile long duracaoGravacao;
+    private volatile long bytesGravados;
+    private volatile long duracaoCompactacao;
+
+    /**
+     * Constrói um novo gravador de fotografias em segundo plano.
+     *
+     * @param intervalo Intervalo mínimo entre duas fotografias, em milissegundos. Zero desativa o gravador.
+     */
+
+    public CheckpointEmSegundoPlano(long intervalo) {
+        this.intervalo = intervalo;
+    }
+
+    /**
+     * Verifica se já é hora de capturar uma nova fotografia.
+     * Uma nova fotografia nunca é iniciada enquanto a anterior ainda está sendo gravada.
+     *
+     * @return True se uma fotografia deve ser capturada.
+     */
+
+    public boolean deveIniciar() {
+        if (this.intervalo <= 0) {
+            return false;
+        }
+
+        if (this.emAndamento != null && !this.emAndamento.isDone()) {
+            return false;
+        }
+
+        return System.currentTimeMillis() - this.ultimoInicio >= this.intervalo;
+    }
+
+    /**
+     * Grava em segundo plano uma fotografia já capturada e depois compacta as relações do seu grafo.
+     *
+     * @param fotografia      Fotografia capturada.
+     * @param diario          Diário de operações do sistema.
+     * @param sequencia       Sequência da última operação contida na fotografia.
+     * @param duracaoCaptura  Tempo gasto na captura, em nanossegundos.
+     */
+
+    public void iniciar(Fotografia fotografia, DiarioDeOperacoes diario, long sequencia, long duracaoCaptura) {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadExecutor(tarefa -> {
+                Thread thread = new Thread(tarefa, "jackut-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        this.ultimoInicio = System.currentTimeMillis();
+        this.duracaoCaptura = duracaoCaptura;
+
+        this.emAndamento = ultimaGravacao = this.executor.submit(() -> {
+            long inicio = System.nanoTime();
+
+            try {
+                GeracaoDeArquivos geracao = new GeracaoDeArquivos();
+                long bytes = fotografia.gravar(geracao);
+
+                diario.concluirCheckpoint(sequencia, fotografia.getFormato(), geracao);
+                EscritaDeArquivos.apagarOutroFormato(fotografia.getFormato());
+
+                this.bytesGravados = bytes;
+                this.duracaoGravacao = System.nanoTime() - inicio;
+                this.quantidade++;
+            } catch (IOException e) {
+                this.falhou = true;
+                System.out.println("Erro ao gravar o checkpoint em segundo plano");
+            } finally {
+                fotografia.liberar();
+            }
+
+            long inicioCompactacao = System.nanoTime();
+            GrafoDeRelacoes grafo = fotografia.getGrafo();
+            grafo.compactar();
+            this.duracaoCompactacao = System.nanoTime() - inicioCompactacao;
+            this.compactado.set(grafo);
+        });
+    }
+
+    /**
+     * Retorna as relações compactadas pela última gravação, caso ainda não tenham sido consumidas.
+     *
+     * @return Grafo congelado e compactado, ou null caso não exista.
+     *
+     * @see GrafoDeRelacoes#instalarCompactacao(GrafoDeRelacoes)
+     */
+
+    public GrafoDeRelacoes consumirCompactacao() {
+        return this.compactado.getAndSet(null);
+    }
+
+    /**
+     * Aguarda a última gravação iniciada no processo, mesmo que por outra instância do sistema.
+     * Chamado antes da leitura da base de dados: uma instância abandonada sem
+     * {@code encerrarSistema} pode ainda estar publicando uma fotografia na mesma pasta.
+     */
+
+    public static void aguardarGravacoes() {
+        Future<?> gravacao = ultimaGravacao;
+        if (gravacao == null) {
+            return;
+        }
+
+        try {
+            gravacao.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {}
+    }
+
+    /**
+     * Aguarda a gravação em andamento, caso exista.
+     */
+
+    public void aguardar() {
+        if (this.emAndamento == null) {
+            return;
+        }
+
+        try {
+            this.emAndamento.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            this.falhou = true;
+        }
+        this.emAndamento = null;
+    }
+
+    /**
+     * Aguarda a gravação em andamento e encerra a thread de gravação.
+     * Uma nova fotografia cria a thread novamente.
+     */
+
+    public void encerrar() {
+        this.aguardar();
+
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Retorna se alguma gravação falhou desde a última chamada, limpando a marcação.
+     * Após uma falha os arquivos podem estar incompletos e precisam ser gravados por completo.
+     *
+     * @return True se alguma gravação falhou.
+     */
+
+    public boolean consumirFalha() {
+        boolean falha = this.falhou;
+        this.falhou = false;
+        return falha;
+    }
+
+    /**
+     * Retorna um relatório da última fotografia gravada em segundo plano.
+     *
+     * @return Quantidade de fotografias, bytes gravados e duração da captura, da gravação e da compactação.
+     */
+
+    public String getRelatorio() {
+        return String.format("%d checkpoint(s); ultimo: %d bytes, captura %.3f ms, gravacao %.3f ms, compactacao %.3f ms",
+                this.quantidade, this.bytesGravados, this.duracaoCaptura / 1e6, this.duracaoGravacao / 1e6,
+                this.duracaoCompactacao / 1e6);
+    }
+}
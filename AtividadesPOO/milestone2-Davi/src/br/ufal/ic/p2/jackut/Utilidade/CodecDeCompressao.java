@@ -0,0 +1,57 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.IOException;
+
+import br.ufal.ic.p2.jackut.tipos.TiposCompressao;
+
+
+/**
+ * Algoritmo de compressão usado nos blocos dos arquivos comprimidos da base de dados.
+ *
+ * Para adicionar um novo algoritmo basta implementar esta interface, adicionar uma
+ * constante ao final de {@link TiposCompressao} e associá-la em {@link #de(TiposCompressao)}.
+ *
+ * @see SaidaComprimida
+ * @see ArquivoComprimido
+ */
+
+public interface CodecDeCompressao {
+
+    /**
+     * Comprime um bloco.
+     *
+     * @param dados    Buffer com os dados do bloco.
+     * @param tamanho  Quantidade de bytes do bloco, a partir do início do buffer.
+     * @return         Bloco comprimido.
+     */
+
+    byte[] comprimir(byte[] dados, int tamanho);
+
+    /**
+     * Descomprime um bloco.
+     *
+     * @param dados            Bloco comprimido.
+     * @param tamanhoOriginal  Tamanho do bloco antes da compressão.
+     * @return                 Bloco descomprimido.
+     *
+     * @throws IOException Exceção lançada caso o bloco esteja corrompido.
+     */
+
+    byte[] descomprimir(byte[] dados, int tamanhoOriginal) throws IOException;
+
+    /**
+     * Retorna o codec do tipo de compressão especificado.
+     *
+     * @param tipo  Tipo de compressão.
+     * @return      Codec do tipo, ou null caso o tipo seja {@link TiposCompressao#NENHUMA}.
+     */
+
+    static CodecDeCompressao de(TiposCompressao tipo) {
+        switch (tipo) {
+            case DEFLATE:
+                return new CodecDeflate();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Codec de compressão que usa o Deflate de {@code java.util.zip}.
+ *
+ * @see CodecDeCompressao
+ */
+
+public class CodecDeflate implements CodecDeCompressao {
+
+    /**
+     * Comprime um bloco com o {@link Deflater}.
+     *
+     * @param dados    Buffer com os dados do bloco.
+     * @param tamanho  Quantidade de bytes do bloco, a partir do início do buffer.
+     * @return         Bloco comprimido.
+     */
+
+    @Override
+    public byte[] comprimir(byte[] dados, int tamanho) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(dados, 0, tamanho);
+        deflater.finish();
+
+        ByteArrayOutputStream comprimido = new ByteArrayOutputStream(tamanho / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            comprimido.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        return comprimido.toByteArray();
+    }
+
+    /**
+     * Descomprime um bloco com o {@link Inflater}.
+     *
+     * @param dados            Bloco comprimido.
+     * @param tamanhoOriginal  Tamanho do bloco antes da compressão.
+     * @return                 Bloco descomprimido.
+     *
+     * @throws IOException Exceção lançada caso o bloco esteja corrompido.
+     */
+
+    @Override
+    public byte[] descomprimir(byte[] dados, int tamanhoOriginal) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(dados);
+
+        byte[] bloco = new byte[tamanhoOriginal];
+        int lidos = 0;
+
+        try {
+            while (lidos < tamanhoOriginal) {
+                int quantidade = inflater.inflate(bloco, lidos, tamanhoOriginal - lidos);
+                if (quantidade == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                lidos += quantidade;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloco comprimido corrompido.", e);
+        } finally {
+            inflater.end();
+        }
+
+        if (lidos != tamanhoOriginal) {
+            throw new IOException("Bloco comprimido corrompido.");
+        }
+        return bloco;
+    }
+}
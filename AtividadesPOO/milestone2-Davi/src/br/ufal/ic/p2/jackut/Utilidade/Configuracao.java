@@ -0,0 +1,157 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import br.ufal.ic.p2.jackut.tipos.TiposCompressao;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+import br.ufal.ic.p2.jackut.tipos.TiposLeitura;
+
+
+/**
+ * Classe com as configurações do sistema.
+ *
+ * As configurações são lidas das propriedades da JVM, por exemplo
+ * {@code java -Djackut.formato=binario ...}.
+ */
+
+public class Configuracao {
+
+    /**
+     * Retorna o formato em que as fotografias da base de dados devem ser gravadas.
+     * Propriedade {@code jackut.formato}: "texto" (padrão) ou "binario".
+     *
+     * @return Formato das fotografias.
+     *
+     * @see TiposFormato
+     */
+
+    public static TiposFormato getFormato() {
+        return TiposFormato.valueOf(System.getProperty("jackut.formato", "texto").toUpperCase());
+    }
+
+    /**
+     * Retorna como os arquivos de texto da base de dados devem ser lidos.
+     * Propriedade {@code jackut.leitura}: "padrao" (padrão), "mapeada" ou "paralela".
+     *
+     * @return Modo de leitura.
+     *
+     * @see TiposLeitura
+     * @see LeitorMapeado
+     */
+
+    public static TiposLeitura getLeitura() {
+        return TiposLeitura.valueOf(System.getProperty("jackut.leitura", "padrao").toUpperCase());
+    }
+
+    /**
+     * Retorna a compressão usada ao gravar os arquivos de texto da base de dados.
+     * Propriedade {@code jackut.compressao}: "nenhuma" (padrão) ou "deflate".
+     * A leitura reconhece arquivos comprimidos e não comprimidos independentemente desta configuração.
+     *
+     * @return Tipo de compressão.
+     *
+     * @see TiposCompressao
+     * @see SaidaComprimida
+     */
+
+    public static TiposCompressao getCompressao() {
+        return TiposCompressao.valueOf(System.getProperty("jackut.compressao", "nenhuma").toUpperCase());
+    }
+
+    /**
+     * Retorna o intervalo mínimo entre duas fotografias gravadas em segundo plano.
+     * Propriedade {@code jackut.checkpoint.intervalo}, em milissegundos: 60000 (padrão);
+     * zero desativa a gravação em segundo plano.
+     *
+     * @return Intervalo entre fotografias, em milissegundos.
+     *
+     * @see CheckpointEmSegundoPlano
+     */
+
+    public static long getIntervaloCheckpoint() {
+        return Long.parseLong(System.getProperty("jackut.checkpoint.intervalo", "60000"));
+    }
+
+    /**
+     * Retorna quantos recados não lidos de um usuário podem ficar em memória antes que os
+     * mais antigos sejam gravados em disco.
+     * Propriedade {@code jackut.recados.memoria}: 4096 (padrão).
+     *
+     * @return Limite de recados em memória por usuário.
+     *
+     * @see br.ufal.ic.p2.jackut.Entidades.CaixaDeRecados
+     */
+
+    public static int getLimiteRecadosEmMemoria() {
+        return Integer.parseInt(System.getProperty("jackut.recados.memoria", "4096"));
+    }
+
+    /**
+     * Retorna a quantidade máxima de amizades em um caminho entre dois usuários.
+     * Propriedade {@code jackut.caminho.profundidade}: 6 (padrão).
+     *
+     * @return Profundidade máxima da busca de caminhos.
+     *
+     * @see br.ufal.ic.p2.jackut.Entidades.CaminhosDeAmizade
+     */
+
+    public static int getProfundidadeMaximaCaminho() {
+        return Integer.parseInt(System.getProperty("jackut.caminho.profundidade", "6"));
+    }
+
+    /**
+     * Retorna o tempo máximo de uma busca de caminho entre dois usuários.
+     * Propriedade {@code jackut.caminho.tempo}, em milissegundos: 100 (padrão).
+     *
+     * @return Tempo máximo da busca de caminhos, em milissegundos.
+     *
+     * @see br.ufal.ic.p2.jackut.Entidades.CaminhosDeAmizade
+     */
+
+    public static long getTempoMaximoCaminho() {
+        return Long.parseLong(System.getProperty("jackut.caminho.tempo", "100"));
+    }
+
+    /**
+     * Retorna os atributos de perfil com índice de valor, usado nas buscas por igualdade.
+     * Propriedade {@code jackut.perfil.indices}: nomes separados por vírgula; "*" (padrão)
+     * indexa todos os atributos e uma lista vazia desativa os índices.
+     *
+     * @return Nomes dos atributos indexados.
+     *
+     * @see br.ufal.ic.p2.jackut.Entidades.TabelaDePerfis
+     */
+
+    public static Set<String> getAtributosIndexados() {
+        return lerLista(System.getProperty("jackut.perfil.indices", "*"));
+    }
+
+    /**
+     * Retorna os atributos de perfil com índice ordenado, usado nas buscas por igualdade,
+     * por intervalo e por prefixo.
+     * Propriedade {@code jackut.perfil.ordenados}: nomes separados por vírgula; vazia (padrão).
+     *
+     * @return Nomes dos atributos com índice ordenado.
+     *
+     * @see br.ufal.ic.p2.jackut.Entidades.TabelaDePerfis
+     */
+
+    public static Set<String> getAtributosOrdenados() {
+        return lerLista(System.getProperty("jackut.perfil.ordenados", ""));
+    }
+
+    /**
+     * Separa uma lista de nomes separados por vírgula, ignorando os nomes vazios.
+     *
+     * @param lista  Lista de nomes.
+     * @return       Conjunto com os nomes.
+     */
+
+    private static Set<String> lerLista(String lista) {
+        Set<String> nomes = new HashSet<>(Arrays.asList(lista.split(",")));
+        nomes.remove("");
+        return nomes;
+    }
+}
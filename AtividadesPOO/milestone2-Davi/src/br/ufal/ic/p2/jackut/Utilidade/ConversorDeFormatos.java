@@ -0,0 +1,46 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import br.ufal.ic.p2.jackut.Servicos.SessionService;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+
+
+/**
+ * Classe que converte a base de dados entre o formato de texto e o formato binário.
+ *
+ * Uso: {@code java br.ufal.ic.p2.jackut.Utilidade.ConversorDeFormatos binario|texto}
+ */
+
+public class ConversorDeFormatos {
+
+    /**
+     * Converte a base de dados para o formato especificado.
+     * A base atual é lida no formato em que estiver, junto com o diário, e gravada
+     * por completo no novo formato. Os arquivos do formato antigo são apagados.
+     *
+     * @param formato Formato de destino.
+     *
+     * @see SessionService#salvarSnapshot
+     */
+
+    public static void converter(TiposFormato formato) {
+        SessionService sessionService = new SessionService();
+
+        sessionService.salvarSnapshot(formato);
+        sessionService.getDiario().fechar();
+    }
+
+    /**
+     * Converte a base de dados para o formato passado como argumento.
+     *
+     * @param args Formato de destino: "texto" ou "binario".
+     */
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Uso: ConversorDeFormatos binario|texto");
+            return;
+        }
+
+        converter(TiposFormato.valueOf(args[0].toUpperCase()));
+    }
+}
@@ -0,0 +1,335 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+import br.ufal.ic.p2.jackut.tipos.TiposOperacao;
+
+
+/**
+ * Diário (write-ahead log) das operações que alteram o sistema.
+ *
+ * Cada operação bem sucedida é anexada ao arquivo "diario.txt" como um registro
+ * {@code sequencia;OPERACAO;campos...}. Na inicialização o diário é reproduzido por cima
+ * da última fotografia salva em BaseDeDados, de forma que nenhuma alteração depende
+ * de um {@code encerrarSistema} bem sucedido.
+ *
+ * O arquivo "checkpoint.txt" guarda a sequência da última operação já contida na fotografia
+ * e o formato em que a fotografia foi gravada; registros com sequência menor ou igual a ela
+ * são ignorados na reprodução. A fotografia e o checkpoint mudam juntos: os arquivos são gravados
+ * em uma nova geração e passam a valer na mesma renomeação que grava o checkpoint.
+ *
+ * @see GeracaoDeArquivos
+ *
+ * Enquanto uma fotografia é gravada em segundo plano, as operações anteriores a ela ficam em
+ * "diario.anterior.txt", reproduzido antes de "diario.txt".
+ *
+ * Uma operação só é considerada registrada depois que o diário é sincronizado com o disco.
+ * As sincronizações são feitas em grupo: enquanto uma thread sincroniza o arquivo, as outras
+ * continuam anexando registros e, ao terminar, uma única sincronização cobre todos eles.
+ *
+ * O agrupamento só acontece com várias threads registrando ao mesmo tempo. A Facade é atendida
+ * por uma única thread (o SessionService não é thread-safe), então cada operação paga a sua
+ * própria sincronização: é o preço de não perder nenhuma operação confirmada em uma queda.
+ * O custo está medido em {@code Medicoes.MedicaoDiario}.
+ *
+ * Se um registro não puder ser anexado ou sincronizado, a operação continua valendo na memória,
+ * mas pode não ser reproduzida a partir do diário. A falha fica marcada ({@link #houveFalha()})
+ * até que uma fotografia com todas as operações seja publicada por {@link #marcarCheckpoint}.
+ *
+ * @see TiposOperacao
+ * @see LeituraDeArquivos
+ */
+
+public class DiarioDeOperacoes {
+    public static final String ARQUIVO = "diario.txt";
+    public static final String ARQUIVO_ANTERIOR = "diario.anterior.txt";
+    public static final String ARQUIVO_CHECKPOINT = "checkpoint.txt";
+
+    private BufferedWriter escritor;
+    private FileChannel canal;
+    private long sequencia;
+    private long sequenciaSincronizada;
+    private boolean sincronizando;
+    private long pendentes;
+    private long sincronizacoes;
+    private boolean falhou;
+
+    /**
+     * Restaura o estado do diário após a sua reprodução na inicialização do sistema.
+     *
+     * @param sequencia  Maior sequência encontrada no diário ou no checkpoint.
+     * @param pendentes  Quantidade de registros ainda não contidos na fotografia.
+     */
+
+    public synchronized void restaurar(long sequencia, long pendentes) {
+        this.sequencia = sequencia;
+        this.sequenciaSincronizada = sequencia;
+        this.pendentes = pendentes;
+    }
+
+    /**
+     * Retorna a quantidade de operações registradas desde a última fotografia.
+     *
+     * @return Quantidade de operações pendentes.
+     */
+
+    public synchronized long getPendentes() {
+        return this.pendentes;
+    }
+
+    /**
+     * Retorna quantas sincronizações do diário com o disco foram feitas.
+     * Dividindo os registros por este valor obtém-se o tamanho médio dos grupos.
+     *
+     * @return Quantidade de sincronizações.
+     */
+
+    public synchronized long getSincronizacoes() {
+        return this.sincronizacoes;
+    }
+
+    /**
+     * Retorna se algum registro do diário não pôde ser anexado ou sincronizado desde a última
+     * fotografia publicada por {@link #marcarCheckpoint}. Nesse caso o diário não basta para
+     * reconstruir o sistema, e uma fotografia completa precisa ser gravada.
+     *
+     * @return True se algum registro falhou.
+     */
+
+    public synchronized boolean houveFalha() {
+        return this.falhou;
+    }
+
+    /**
+     * Anexa uma operação ao diário e aguarda até que ela esteja sincronizada com o disco.
+     * Se o registro falhar, o arquivo é fechado para ser reaberto no próximo registro, e a
+     * falha é marcada.
+     *
+     * @param operacao  Tipo da operação.
+     * @param campos    Argumentos necessários para reproduzir a operação.
+     *
+     * @see UtilidadeString#juntarRegistro(String...)
+     * @see #sincronizar(long)
+     */
+
+    public void registrar(TiposOperacao operacao, String... campos) {
+        long sequenciaRegistro;
+
+        synchronized (this) {
+            String[] registro = new String[campos.length + 2];
+            registro[0] = String.valueOf(++this.sequencia);
+            registro[1] = operacao.name();
+            System.arraycopy(campos, 0, registro, 2, campos.length);
+
+            try {
+                if (this.escritor == null) {
+                    FileOutputStream saida = new FileOutputStream(new File("./BaseDeDados/" + ARQUIVO), true);
+                    this.canal = saida.getChannel();
+                    this.escritor = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8));
+                }
+
+                this.escritor.write(UtilidadeString.juntarRegistro(registro));
+                this.escritor.newLine();
+                this.escritor.flush();
+                this.pendentes++;
+            } catch (IOException e) {
+                System.out.println("Erro ao escrever o arquivo " + ARQUIVO);
+                this.falhou = true;
+                this.descartarEscritor();
+                return;
+            }
+
+            sequenciaRegistro = this.sequencia;
+        }
+
+        this.sincronizar(sequenciaRegistro);
+    }
+
+    /**
+     * Aguarda até que o registro com a sequência especificada esteja sincronizado com o disco.
+     *
+     * Se outra thread já está sincronizando o diário, espera ela terminar; caso o registro
+     * ainda não tenha sido coberto, esta thread sincroniza de uma vez todos os registros
+     * anexados até o momento.
+     *
+     * @param sequenciaRegistro Sequência do registro.
+     */
+
+    private void sincronizar(long sequenciaRegistro) {
+        FileChannel canalSincronizado;
+        long alvo;
+
+        synchronized (this) {
+            while (this.sincronizando && this.sequenciaSincronizada < sequenciaRegistro) {
+                try {
+                    this.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            if (this.sequenciaSincronizada >= sequenciaRegistro || this.canal == null) {
+                return;
+            }
+
+            this.sincronizando = true;
+            canalSincronizado = this.canal;
+            alvo = this.sequencia;
+        }
+
+        boolean erro = false;
+        try {
+            canalSincronizado.force(false);
+        } catch (IOException e) {
+            System.out.println("Erro ao escrever o arquivo " + ARQUIVO);
+            erro = true;
+        } finally {
+            synchronized (this) {
+                this.falhou |= erro;
+                this.sequenciaSincronizada = Math.max(this.sequenciaSincronizada, alvo);
+                this.sincronizando = false;
+                this.sincronizacoes++;
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Publica a geração de arquivos da fotografia, marcando todas as operações registradas
+     * até agora como contidas nela, e esvazia o diário.
+     * Se a geração não puder ser publicada, a fotografia anterior e o diário continuam valendo.
+     *
+     * @param formato  Formato em que a fotografia foi gravada.
+     * @param geracao  Arquivos da fotografia.
+     * @return         True se a fotografia foi publicada.
+     *
+     * @see TiposFormato
+     * @see GeracaoDeArquivos#publicar(long, TiposFormato)
+     */
+
+    public synchronized boolean marcarCheckpoint(TiposFormato formato, GeracaoDeArquivos geracao) {
+        this.fechar();
+
+        try {
+            geracao.publicar(this.sequencia, formato);
+        } catch (IOException e) {
+            System.out.println("Erro ao gravar o arquivo " + ARQUIVO_CHECKPOINT);
+            return false;
+        }
+
+        EscritaDeArquivos.escreverArquivo(ARQUIVO, "");
+        new File("./BaseDeDados/" + ARQUIVO_ANTERIOR).delete();
+        this.pendentes = 0;
+        this.falhou = false;
+        return true;
+    }
+
+    /**
+     * Separa as operações registradas até agora em "diario.anterior.txt", para que uma fotografia
+     * capturada neste momento possa ser gravada enquanto novas operações são registradas.
+     * Se o arquivo anterior ainda existir (uma gravação anterior falhou), as operações são
+     * anexadas a ele.
+     *
+     * @return Sequência da última operação registrada.
+     *
+     * @see #concluirCheckpoint(long, TiposFormato, GeracaoDeArquivos)
+     */
+
+    public synchronized long rotacionar() {
+        this.fechar();
+
+        Path atual = Paths.get("./BaseDeDados/" + ARQUIVO);
+        Path anterior = Paths.get("./BaseDeDados/" + ARQUIVO_ANTERIOR);
+
+        try {
+            if (Files.exists(anterior)) {
+                Files.write(anterior, Files.readAllBytes(atual), StandardOpenOption.APPEND);
+                Files.delete(atual);
+            } else {
+                Files.move(atual, anterior);
+            }
+        } catch (IOException e) {
+            System.out.println("Erro ao escrever o arquivo " + ARQUIVO_ANTERIOR);
+        }
+
+        this.pendentes = 0;
+        return this.sequencia;
+    }
+
+    /**
+     * Publica a geração de arquivos de uma fotografia capturada após {@link #rotacionar()} e apaga
+     * "diario.anterior.txt", cujas operações já estão contidas na fotografia.
+     *
+     * @param sequencia  Sequência da última operação contida na fotografia.
+     * @param formato    Formato em que a fotografia foi gravada.
+     * @param geracao    Arquivos da fotografia.
+     *
+     * @throws IOException Exceção lançada caso não seja possível publicar a fotografia.
+     *
+     * @see GeracaoDeArquivos#publicar(long, TiposFormato)
+     */
+
+    public void concluirCheckpoint(long sequencia, TiposFormato formato, GeracaoDeArquivos geracao) throws IOException {
+        geracao.publicar(sequencia, formato);
+        Files.deleteIfExists(Paths.get("./BaseDeDados/" + ARQUIVO_ANTERIOR));
+    }
+
+    /**
+     * Fecha o arquivo do diário, aguardando uma sincronização em andamento.
+     * Um novo registro reabre o arquivo.
+     */
+
+    public synchronized void fechar() {
+        while (this.sincronizando) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (this.escritor == null) {
+            return;
+        }
+
+        try {
+            this.escritor.flush();
+            this.canal.force(false);
+            this.escritor.close();
+        } catch (IOException e) {
+            System.out.println("Erro ao fechar o arquivo " + ARQUIVO);
+            this.falhou = true;
+        }
+        this.escritor = null;
+        this.canal = null;
+        this.sequenciaSincronizada = this.sequencia;
+    }
+
+    /**
+     * Fecha o arquivo do diário depois de uma falha, sem tentar sincronizá-lo.
+     * Um novo registro reabre o arquivo.
+     */
+
+    private void descartarEscritor() {
+        if (this.escritor != null) {
+            try {
+                this.escritor.close();
+            } catch (IOException e) {}
+        }
+        this.escritor = null;
+        this.canal = null;
+    }
+}
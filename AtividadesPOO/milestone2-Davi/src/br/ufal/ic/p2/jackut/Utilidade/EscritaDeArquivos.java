@@ -1,17 +1,46 @@
 package br.ufal.ic.p2.jackut.Utilidade;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+import br.ufal.ic.p2.jackut.Entidades.AnaliseDeAmizades;
 import br.ufal.ic.p2.jackut.Entidades.Comunidade;
+import br.ufal.ic.p2.jackut.Entidades.CursorDeMensagens;
+import br.ufal.ic.p2.jackut.Entidades.GrafoDeRelacoes;
 import br.ufal.ic.p2.jackut.Entidades.Mensagem;
 import br.ufal.ic.p2.jackut.Entidades.Recado;
+import br.ufal.ic.p2.jackut.Entidades.TabelaDePerfis;
 import br.ufal.ic.p2.jackut.Entidades.User;
 
+import static br.ufal.ic.p2.jackut.tipos.TiposArquivo.*;
 import static br.ufal.ic.p2.jackut.tipos.TiposRelacionamento.*;
+import br.ufal.ic.p2.jackut.tipos.TiposArquivo;
+import br.ufal.ic.p2.jackut.tipos.TiposCompressao;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
 import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
 
 
@@ -20,6 +49,13 @@ import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
  */
 
 public class EscritaDeArquivos {
+    public static final String ARQUIVO_BINARIO = "snapshot.bin";
+    public static final int ASSINATURA_BINARIO = 0x4A4B5433;
+    public static final int ASSINATURA_BINARIO_V2 = 0x4A4B5432;
+    public static final int ASSINATURA_BINARIO_V1 = 0x4A4B5431;
+    public static final String PASTA_RELATORIOS = "Relatorios";
+
+    private static final TiposRelacionamento[] ORDEM_RELACOES = {IDOLO, FA, PAQUERA, PAQUERARECEBIDA, INIMIGO};
 
     /**
      * Cria a pasta BaseDeDados caso ela não exista.
@@ -44,187 +80,827 @@ public class EscritaDeArquivos {
 
     public static void escreverArquivo(String arquivo, String conteudo) {
         try{
-            File file = new File("./BaseDeDados/" + arquivo);
-            file.createNewFile();
-
-            FileWriter fw = new FileWriter(file);
-            BufferedWriter bw = new BufferedWriter(fw);
-            bw.write(conteudo);
-            bw.flush();
-            bw.close();
-            fw.close();
+            gravarArquivo(arquivo, conteudo.getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
             System.out.println("Erro ao escrever o arquivo " + arquivo);
         }
     }
 
     /**
-     * Salva os usuários no arquivo "usuarios.txt".
+     * Grava os bytes passados em um arquivo da base de dados, substituindo o seu conteúdo.
+     *
+     * @param arquivo   Nome do arquivo.
+     * @param conteudo  Conteúdo do arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever o arquivo.
+     *
+     * @see #gravarArquivo(String, Gravacao)
+     */
+
+    public static void gravarArquivo(String arquivo, byte[] conteudo) throws IOException {
+        gravarArquivo(arquivo, out -> out.write(conteudo));
+    }
+
+    /**
+     * Grava um arquivo da base de dados de forma atômica.
+     *
+     * O conteúdo é escrito em um arquivo temporário, sincronizado com o disco e só então
+     * renomeado por cima do arquivo original. Uma queda no meio da gravação deixa o arquivo
+     * original intacto, nunca um arquivo pela metade.
+     *
+     * @param arquivo   Nome do arquivo.
+     * @param gravacao  Escreve o conteúdo do arquivo.
      *
-     * @param usuarios  Map com os usuários.
+     * @throws IOException Exceção lançada caso não seja possível escrever o arquivo.
+     */
+
+    static void gravarArquivo(String arquivo, Gravacao gravacao) throws IOException {
+        Path destino = Paths.get("./BaseDeDados/" + arquivo);
+        Path temporario = Paths.get("./BaseDeDados/" + arquivo + ".tmp");
+
+        try (FileOutputStream fos = new FileOutputStream(temporario.toFile());
+             BufferedOutputStream out = new BufferedOutputStream(fos)) {
+            gravacao.escrever(out);
+            out.flush();
+            fos.getChannel().force(true);
+        }
+
+        try {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        sincronizarPasta();
+    }
+
+    /**
+     * Sincroniza a pasta BaseDeDados com o disco, tornando as renomeações duráveis.
+     * Em sistemas que não permitem abrir pastas (Windows) a sincronização é ignorada.
+     */
+
+    static void sincronizarPasta() {
+        try (FileChannel pasta = FileChannel.open(Paths.get("./BaseDeDados"), StandardOpenOption.READ)) {
+            pasta.force(true);
+        } catch (IOException e) {}
+    }
+
+    /**
+     * Grava um arquivo de texto da base de dados em uma nova geração de arquivos,
+     * comprimindo-o caso a compressão esteja ativada.
+     *
+     * @param geracao   Geração em que o arquivo é gravado.
+     * @param arquivo   Nome do arquivo.
+     * @param gravacao  Escreve os registros do arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever o arquivo.
+     *
+     * @see Configuracao#getCompressao()
+     * @see SaidaComprimida
+     * @see GeracaoDeArquivos
+     */
+
+    private static void gravarRegistros(GeracaoDeArquivos geracao, String arquivo, GravacaoDeRegistros gravacao)
+            throws IOException {
+        TiposCompressao compressao = Configuracao.getCompressao();
+
+        geracao.gravar(arquivo, out -> {
+            OutputStream destino = compressao == TiposCompressao.NENHUMA ? out : new SaidaComprimida(out, compressao);
+            EscritorDeRegistros escritor = new EscritorDeRegistros(destino);
+
+            gravacao.escrever(escritor);
+            escritor.terminar();
+            destino.flush();
+        });
+    }
+
+    /**
+     * Escreve o conteúdo de um arquivo em um stream.
+     */
+
+    interface Gravacao {
+        void escrever(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Escreve os registros de um arquivo de texto.
      */
 
-    public static void salvarUsuarios(Map<String, User> usuarios) {
-        StringBuilder usuariosData = new StringBuilder();
-        for (User user : usuarios.values()) {
-            usuariosData.append(user.getLogin()).append(";")
-                    .append(user.getSenha()).append(";")
-                    .append(user.getNome()).append(";");
+    private interface GravacaoDeRegistros {
+        void escrever(EscritorDeRegistros escritor) throws IOException;
+    }
+
+    /**
+     * Escreve as linhas de um registro lido de uma fotografia, uma por vez.
+     */
 
-            for (String atributo : user.getPerfil().getAtributos().keySet()) {
-                usuariosData.append(atributo).append(":")
-                        .append(user.getPerfil().getAtributo(atributo)).append(";");
+    private interface SerializadorDeFotografia<T> {
+        void escrever(Fotografia fotografia, EscritorDeRegistros escritor, T registro) throws IOException;
+    }
+
+    /**
+     * Escreve a linha de um usuário do arquivo "usuarios.txt".
+     *
+     * @param fotografia  Fotografia de onde o usuário é lido.
+     * @param escritor    Escritor onde a linha será escrita.
+     * @param user        Usuário a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private static void escreverUsuario(Fotografia fotografia, EscritorDeRegistros escritor, User user)
+            throws IOException {
+        StringBuilder dados = escritor.novaLinha();
+        dados.append(user.getLogin()).append(";")
+                .append(user.getSenha()).append(";")
+                .append(user.getNome()).append(";");
+
+        TabelaDePerfis perfis = fotografia.getGrafo().getPerfis();
+        for (int coluna = 0; coluna < perfis.getQuantidadeColunas(); coluna++) {
+            String valor = perfis.getValor(coluna, user.getId());
+            if (valor != null) {
+                dados.append(perfis.getNome(coluna)).append(":").append(valor).append(";");
             }
+        }
+
+        dados.append(UtilidadeString.formatArrayList(fotografia.getParticipacoes(user)));
+        escritor.concluirLinha();
+    }
+
+    /**
+     * Escreve a linha de amigos de um usuário do arquivo "amigos.txt",
+     * seguida das solicitações de amizade enviadas e ainda não aceitas.
+     *
+     * @param fotografia  Fotografia de onde o usuário é lido.
+     * @param escritor    Escritor onde a linha será escrita.
+     * @param user        Usuário a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private static void escreverAmigos(Fotografia fotografia, EscritorDeRegistros escritor, User user)
+            throws IOException {
+        GrafoDeRelacoes grafo = fotografia.getGrafo();
+        escritor.novaLinha().append(user.getLogin()).append(";")
+                .append(UtilidadeString.formatArrayList(fotografia.getRelacionados(grafo.getAmigos(), user))).append(";")
+                .append(UtilidadeString.formatArrayList(
+                        fotografia.getRelacionados(grafo.getSolicitacoesEnviadas(), user)));
+        escritor.concluirLinha();
+    }
+
+    /**
+     * Escreve as linhas de recados de um usuário do arquivo "recados.txt".
+     *
+     * @param fotografia  Fotografia de onde o usuário é lido.
+     * @param escritor    Escritor onde as linhas serão escritas.
+     * @param user        Usuário a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
 
-            usuariosData.append(UtilidadeString.formatArrayList(user.getComunidadesParticipantes())).append("\n");
+    private static void escreverRecados(Fotografia fotografia, EscritorDeRegistros escritor, User user)
+            throws IOException {
+        for (Recado recado : fotografia.getRecados(user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(recado.getRemetente().getLogin()).append(";")
+                    .append(recado.getRecado());
+            escritor.concluirLinha();
         }
+    }
+
+    /**
+     * Escreve a linha de uma comunidade do arquivo "comunidades.txt".
+     *
+     * @param fotografia  Fotografia de onde a comunidade é lida.
+     * @param escritor    Escritor onde a linha será escrita.
+     * @param comunidade  Comunidade a ser escrita.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
 
-        escreverArquivo("usuarios.txt", usuariosData.toString());
+    private static void escreverComunidade(Fotografia fotografia, EscritorDeRegistros escritor, Comunidade comunidade)
+            throws IOException {
+        escritor.novaLinha().append(comunidade.getDono().getLogin()).append(";")
+                .append(comunidade.getNome()).append(";")
+                .append(comunidade.getDescricao()).append(";")
+                .append(UtilidadeString.formatArrayList(fotografia.getMembros(comunidade)));
+        escritor.concluirLinha();
     }
 
     /**
-     * Salva os amigos dos usuários no arquivo "amigos.txt".
+     * Escreve as linhas do mural de uma comunidade do arquivo "mensagens.txt",
+     * cada uma com a sequência da mensagem.
+     *
+     * @param fotografia  Fotografia de onde a comunidade é lida.
+     * @param escritor    Escritor onde as linhas serão escritas.
+     * @param comunidade  Comunidade a ser escrita.
      *
-     * @param usuarios  Map com os usuários.
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
      */
 
-    public static void salvarAmigos(Map<String, User> usuarios) {
-        StringBuilder amigosData = new StringBuilder();
-        for (User user : usuarios.values()) {
-            String amigos = user.getAmigosString();
-            amigosData.append(user.getLogin()).append(";").append(amigos).append("\n");
+    private static void escreverMensagens(Fotografia fotografia, EscritorDeRegistros escritor, Comunidade comunidade)
+            throws IOException {
+        for (Mensagem mensagem : fotografia.getMural(comunidade)) {
+            escritor.novaLinha().append(comunidade.getNome()).append(";")
+                    .append(mensagem.getSequencia()).append(";")
+                    .append(mensagem.getMensagem());
+            escritor.concluirLinha();
         }
+    }
 
-        escreverArquivo("amigos.txt", amigosData.toString());
+    /**
+     * Escreve as linhas de cursores de um usuário do arquivo "cursores.txt",
+     * uma para cada comunidade que ele participa.
+     *
+     * @param fotografia  Fotografia de onde o usuário é lido.
+     * @param escritor    Escritor onde as linhas serão escritas.
+     * @param user        Usuário a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     *
+     * @see CursorDeMensagens
+     */
+
+    private static void escreverCursores(Fotografia fotografia, EscritorDeRegistros escritor, User user)
+            throws IOException {
+        for (CursorDeMensagens cursor : fotografia.getCursores(user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(cursor.getComunidade().getNome()).append(";")
+                    .append(cursor.getPosicao());
+            escritor.concluirLinha();
+        }
     }
 
     /**
-     * Salva os recados dos usuários no arquivo "recados.txt".
+     * Escreve as linhas de relações de um usuário do arquivo "relacoes.txt".
+     *
+     * @param fotografia  Fotografia de onde o usuário é lido.
+     * @param escritor    Escritor onde as linhas serão escritas.
+     * @param user        Usuário a ser escrito.
      *
-     * @param usuarios  Map com os usuários.
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     *
+     * @see TiposRelacionamento
      */
 
-    public static void salvarRecados(Map<String, User> usuarios) {
-        StringBuilder recadosData = new StringBuilder();
-        for (User user : usuarios.values()) {
-            for (Recado recado : user.getRecados()) {
-                recadosData.append(user.getLogin()).append(";")
-                        .append(recado.getRemetente().getLogin()).append(";")
-                        .append(recado.getRecado()).append("\n");
-            }
+    private static void escreverRelacoes(Fotografia fotografia, EscritorDeRegistros escritor, User user)
+            throws IOException {
+        GrafoDeRelacoes grafo = fotografia.getGrafo();
+
+        for (User idolo : fotografia.getRelacionados(grafo.getRelacao(IDOLO), user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(idolo.getLogin()).append(";")
+                    .append(IDOLO);
+            escritor.concluirLinha();
+        }
+
+        for (User fa : fotografia.getRelacionados(grafo.getRelacao(FA), user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(fa.getLogin()).append(";")
+                    .append(FA);
+            escritor.concluirLinha();
+        }
+
+        for (User paquera : fotografia.getRelacionados(grafo.getRelacao(PAQUERA), user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(paquera.getLogin()).append(";")
+                    .append(PAQUERA);
+            escritor.concluirLinha();
+        }
+
+        for (User paquerasRecebidas : fotografia.getRelacionados(grafo.getRelacao(PAQUERARECEBIDA), user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(paquerasRecebidas.getLogin()).append(";")
+                    .append(PAQUERARECEBIDA);
+            escritor.concluirLinha();
+        }
+
+        for (User inimigos : fotografia.getRelacionados(grafo.getRelacao(INIMIGO), user)) {
+            escritor.novaLinha().append(user.getLogin()).append(";")
+                    .append(inimigos.getLogin()).append(";")
+                    .append(INIMIGO);
+            escritor.concluirLinha();
+        }
+    }
+
+    /**
+     * Grava um arquivo da base de dados por completo, escrevendo os registros um a um
+     * diretamente no arquivo.
+     *
+     * @param geracao       Geração em que o arquivo é gravado.
+     * @param arquivo       Arquivo a ser gravado.
+     * @param fotografia    Fotografia de onde os registros são lidos.
+     * @param registros     Registros a serem escritos.
+     * @param serializador  Escreve as linhas de um registro.
+     * @param <T>           Tipo dos registros.
+     *
+     * @see EscritorDeRegistros
+     */
+
+    private static <T> void salvarRegistros(GeracaoDeArquivos geracao, TiposArquivo arquivo, Fotografia fotografia,
+                                            Collection<T> registros, SerializadorDeFotografia<T> serializador) {
+        try {
+            gravarRegistros(geracao, arquivo.getNome(),
+                    escritor -> escritor.escreverTodos(registros, lerDe(fotografia, serializador)));
+        } catch (IOException e) {
+            System.out.println("Erro ao escrever o arquivo " + arquivo.getNome());
         }
+    }
+
+    /**
+     * Adapta um serializador para ler os registros de uma fotografia.
+     *
+     * @param fotografia    Fotografia de onde os registros são lidos.
+     * @param serializador  Escreve as linhas de um registro.
+     * @param <T>           Tipo dos registros.
+     * @return              Serializador usado pelo {@link EscritorDeRegistros}.
+     */
+
+    private static <T> EscritorDeRegistros.Serializador<T> lerDe(Fotografia fotografia,
+                                                               SerializadorDeFotografia<T> serializador) {
+        return (escritor, registro) -> serializador.escrever(fotografia, escritor, registro);
+    }
+
+    /**
+     * Salva os usuários no arquivo "usuarios.txt".
+     *
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     */
+
+    public static void salvarUsuarios(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, USUARIOS, fotografia, fotografia.getUsuarios(), EscritaDeArquivos::escreverUsuario);
+    }
+
+    /**
+     * Salva os amigos dos usuários no arquivo "amigos.txt".
+     *
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     */
+
+    public static void salvarAmigos(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, AMIGOS, fotografia, fotografia.getUsuarios(), EscritaDeArquivos::escreverAmigos);
+    }
+
+    /**
+     * Salva os recados dos usuários no arquivo "recados.txt".
+     *
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     */
 
-        escreverArquivo("recados.txt", recadosData.toString());
+    public static void salvarRecados(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, RECADOS, fotografia, fotografia.getUsuarios(), EscritaDeArquivos::escreverRecados);
     }
 
     /**
      * Salva as comunidades dos usuários no arquivo "comunidades.txt".
      *
-     * @param comunidades  Map com as comunidades.
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     */
+
+    public static void salvarComunidades(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, COMUNIDADES, fotografia, fotografia.getComunidades(), EscritaDeArquivos::escreverComunidade);
+    }
+
+    /**
+     * Salva os murais de mensagens das comunidades no arquivo "mensagens.txt".
+     *
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     */
+
+    public static void salvarMensagens(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, MENSAGENS, fotografia, fotografia.getComunidades(), EscritaDeArquivos::escreverMensagens);
+    }
+
+    /**
+     * Salva os cursores de leitura dos usuários no arquivo "cursores.txt".
+     *
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     */
+
+    public static void salvarCursores(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, CURSORES, fotografia, fotografia.getUsuarios(), EscritaDeArquivos::escreverCursores);
+    }
+
+    /**
+     * Salva as relações dos usuários no arquivo "relacoes.txt".
+     *
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     *
+     * @see TiposRelacionamento
+     */
+
+    public static void salvarRelacoes(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarRegistros(geracao, RELACOES, fotografia, fotografia.getUsuarios(), EscritaDeArquivos::escreverRelacoes);
+    }
+
+    /**
+     * Persiste os dados, salvando-os em arquivos.
+     *
+     * Apenas os arquivos com registros alterados (ou com registros removidos) são gravados.
+     * Quando poucos registros de um arquivo foram alterados, o arquivo existente é remendado:
+     * as linhas dos registros que não mudaram são copiadas sem serem serializadas novamente.
+     * Os registros só são marcados como salvos quando a geração é publicada.
+     *
+     * @param geracao             Geração em que os arquivos são gravados.
+     * @param usuarios            Map com os usuários.
+     * @param comunidades         Map com as comunidades.
+     * @param grafo               Grafo de relações.
+     * @param arquivosComRemocao  Arquivos que tiveram registros removidos desde a última gravação.
+     *
+     * @see TiposArquivo
      */
 
-    public static void salvarComunidades(Map<String, Comunidade> comunidades) {
-        StringBuilder comunidadesData = new StringBuilder();
-        for (Comunidade comunidade : comunidades.values()) {
-            String membros = comunidade.getMembrosString();
-            comunidadesData.append(comunidade.getDono().getLogin()).append(";")
-                    .append(comunidade.getNome()).append(";")
-                    .append(comunidade.getDescricao()).append(";")
-                    .append(membros).append("\n");
+    public static void persistirDados(GeracaoDeArquivos geracao, Map<String, User> usuarios,
+                                      Map<String, Comunidade> comunidades, GrafoDeRelacoes grafo,
+                                      Set<TiposArquivo> arquivosComRemocao) {
+        Fotografia fotografia = Fotografia.atual(TiposFormato.TEXTO, usuarios, comunidades, grafo);
+
+        atualizarArquivo(geracao, USUARIOS, usuarios, 0, arquivosComRemocao.contains(USUARIOS),
+                user -> user.isAlterado(USUARIOS), user -> user.limparAlteracao(USUARIOS),
+                lerDe(fotografia, EscritaDeArquivos::escreverUsuario));
+        atualizarArquivo(geracao, AMIGOS, usuarios, 0, arquivosComRemocao.contains(AMIGOS),
+                user -> user.isAlterado(AMIGOS), user -> user.limparAlteracao(AMIGOS),
+                lerDe(fotografia, EscritaDeArquivos::escreverAmigos));
+        atualizarArquivo(geracao, RECADOS, usuarios, 0, arquivosComRemocao.contains(RECADOS),
+                user -> user.isAlterado(RECADOS), user -> user.limparAlteracao(RECADOS),
+                lerDe(fotografia, EscritaDeArquivos::escreverRecados));
+        atualizarArquivo(geracao, COMUNIDADES, comunidades, 1, arquivosComRemocao.contains(COMUNIDADES),
+                Comunidade::isAlterada, Comunidade::limparAlteracao,
+                lerDe(fotografia, EscritaDeArquivos::escreverComunidade));
+        atualizarArquivo(geracao, MENSAGENS, comunidades, 0, arquivosComRemocao.contains(MENSAGENS),
+                Comunidade::isMuralAlterado, Comunidade::limparAlteracaoMural,
+                lerDe(fotografia, EscritaDeArquivos::escreverMensagens));
+        atualizarArquivo(geracao, CURSORES, usuarios, 0, arquivosComRemocao.contains(CURSORES),
+                user -> user.isAlterado(CURSORES), user -> user.limparAlteracao(CURSORES),
+                lerDe(fotografia, EscritaDeArquivos::escreverCursores));
+        atualizarArquivo(geracao, RELACOES, usuarios, 0, arquivosComRemocao.contains(RELACOES),
+                user -> user.isAlterado(RELACOES), user -> user.limparAlteracao(RELACOES),
+                lerDe(fotografia, EscritaDeArquivos::escreverRelacoes));
+    }
+
+    /**
+     * Grava um arquivo da base de dados levando em conta apenas os registros alterados.
+     *
+     * Se nenhum registro foi alterado ou removido o arquivo não é tocado. Se menos de
+     * um quarto dos registros foi alterado, as linhas do arquivo atual são reaproveitadas
+     * à medida que são lidas:
+     * linhas de registros inalterados são copiadas, linhas de registros alterados são
+     * substituídas e linhas de registros que não existem mais são descartadas.
+     * Caso contrário o arquivo é regravado por completo.
+     *
+     * @param geracao       Geração em que o arquivo é gravado.
+     * @param arquivo       Arquivo a ser gravado.
+     * @param registros     Map com os registros, indexados pela chave gravada no arquivo.
+     * @param campoChave    Posição da chave do registro em cada linha do arquivo.
+     * @param houveRemocao  Indica se algum registro do arquivo foi removido.
+     * @param alterado      Verifica se um registro foi alterado.
+     * @param limpar        Marca um registro como salvo, depois que a geração é publicada.
+     * @param serializador  Escreve as linhas de um registro.
+     * @param <T>           Tipo dos registros.
+     */
+
+    private static <T> void atualizarArquivo(GeracaoDeArquivos geracao, TiposArquivo arquivo, Map<String, T> registros, int campoChave,
+                                             boolean houveRemocao, Predicate<T> alterado, Consumer<T> limpar,
+                                             EscritorDeRegistros.Serializador<T> serializador) {
+        Map<String, T> alterados = new LinkedHashMap<>();
+        for (Map.Entry<String, T> registro : registros.entrySet()) {
+            if (alterado.test(registro.getValue())) {
+                alterados.put(registro.getKey(), registro.getValue());
+            }
         }
 
-        escreverArquivo("comunidades.txt", comunidadesData.toString());
+        if (alterados.isEmpty() && !houveRemocao) {
+            return;
+        }
+
+        File file = new File("./BaseDeDados/" + arquivo.getNome());
+        boolean remendar = file.exists() && alterados.size() * 4 < registros.size();
+
+        try {
+            gravarRegistros(geracao, arquivo.getNome(), escritor -> {
+                if (remendar) {
+                    Set<String> escritos = new HashSet<>();
+                    String linha;
+
+                    try (BufferedReader br = ArquivoComprimido.abrirLeitor(file)) {
+                        while ((linha = br.readLine()) != null) {
+                            String chave = extrairCampo(linha, campoChave);
+                            T registro = registros.get(chave);
+
+                            if (registro == null) {
+                                continue;
+                            }
+
+                            if (!alterados.containsKey(chave)) {
+                                escritor.escreverLinha(linha);
+                            } else if (escritos.add(chave)) {
+                                escritor.escrever(registro, serializador);
+                            }
+                        }
+                    }
+
+                    for (Map.Entry<String, T> registro : alterados.entrySet()) {
+                        if (!escritos.contains(registro.getKey())) {
+                            escritor.escrever(registro.getValue(), serializador);
+                        }
+                    }
+                } else {
+                    escritor.escreverTodos(registros.values(), serializador);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Erro ao escrever o arquivo " + arquivo.getNome());
+            return;
+        }
+
+        geracao.aoPublicar(() -> {
+            for (T registro : alterados.values()) {
+                limpar.accept(registro);
+            }
+        });
     }
 
     /**
-     * Salva as mensagens dos usuários no arquivo "mensagens.txt".
+     * Retorna um campo de uma linha separada por ";" sem separar a linha inteira.
      *
-     * @param usuarios   Map com os usuários.
+     * @param linha   Linha do arquivo.
+     * @param indice  Posição do campo.
+     * @return        Campo na posição especificada, ou uma String vazia caso ele não exista.
      */
 
-    public static void salvarMensagens(Map<String, User> usuarios) {
-        StringBuilder mensagensData = new StringBuilder();
-        for (User user : usuarios.values()) {
-            for (Mensagem mensagem : user.getMensagens()) {
-                mensagensData.append(user.getLogin()).append(";")
-                        .append(mensagem.getMensagem()).append("\n");
+    private static String extrairCampo(String linha, int indice) {
+        int inicio = 0;
+        for (int i = 0; i < indice; i++) {
+            inicio = linha.indexOf(';', inicio) + 1;
+            if (inicio == 0) {
+                return "";
             }
         }
 
-        escreverArquivo("mensagens.txt", mensagensData.toString());
+        int fim = linha.indexOf(';', inicio);
+        return fim < 0 ? linha.substring(inicio) : linha.substring(inicio, fim);
     }
 
     /**
-     * Salva as relações dos usuários no arquivo "relacoes.txt".
+     * Salva todos os dados no arquivo binário "snapshot.bin".
      *
-     * @param usuarios  Map com os usuários.
+     * Cada login e cada nome de comunidade é gravado uma única vez em uma tabela de Strings;
+     * usuários, comunidades e relações passam a ser referenciados pela posição na tabela,
+     * gravada como varint. A ordem das seções é a mesma dos arquivos de texto, exceto pelo mural
+     * de mensagens de cada comunidade, gravado logo após ela.
      *
-     * @see TiposRelacionamento
+     * @param geracao     Geração em que o arquivo é gravado.
+     * @param fotografia  Fotografia a ser gravada.
+     *
+     * @see LeituraDeArquivos#lerSnapshotBinario
+     */
+
+    public static void salvarSnapshotBinario(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        try {
+            geracao.gravar(ARQUIVO_BINARIO, out -> escreverSnapshotBinario(new DataOutputStream(out), fotografia));
+        } catch (IOException e) {
+            System.out.println("Erro ao escrever o arquivo " + ARQUIVO_BINARIO);
+        }
+    }
+
+    /**
+     * Escreve a fotografia binária no stream passado.
+     *
+     * @param out         Stream de saída.
+     * @param fotografia  Fotografia a ser gravada.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     *
+     * @see #salvarSnapshotBinario
      */
 
-    public static void salvarRelacoes(Map<String, User> usuarios) {
-        StringBuilder relacoesData = new StringBuilder();
-        for (User user : usuarios.values()) {
-            for (User idolo : user.getIdolos()) {
-                relacoesData.append(user.getLogin()).append(";")
-                        .append(idolo.getLogin()).append(";")
-                        .append(IDOLO).append("\n");
+    private static void escreverSnapshotBinario(DataOutputStream out, Fotografia fotografia) throws IOException {
+        Collection<User> usuarios = fotografia.getUsuarios();
+        Collection<Comunidade> comunidades = fotografia.getComunidades();
+        GrafoDeRelacoes grafo = fotografia.getGrafo();
+        TabelaDePerfis perfis = grafo.getPerfis();
+        Map<Object, Integer> ids = new HashMap<>();
+
+        out.writeInt(ASSINATURA_BINARIO);
+
+        escreverVarint(out, usuarios.size() + comunidades.size());
+        for (User user : usuarios) {
+            ids.put(user, ids.size());
+            escreverTexto(out, user.getLogin());
+        }
+        for (Comunidade comunidade : comunidades) {
+            ids.put(comunidade, ids.size());
+            escreverTexto(out, comunidade.getNome());
+        }
+
+        escreverVarint(out, usuarios.size());
+        for (User user : usuarios) {
+            escreverTexto(out, user.getSenha());
+            escreverTexto(out, user.getNome());
+
+            escreverVarint(out, perfis.quantidadeAtributos(user.getId()));
+            for (int coluna = 0; coluna < perfis.getQuantidadeColunas(); coluna++) {
+                String valor = perfis.getValor(coluna, user.getId());
+                if (valor != null) {
+                    escreverTexto(out, perfis.getNome(coluna));
+                    escreverTexto(out, valor);
+                }
             }
 
-            for (User fa : user.getFas()) {
-                relacoesData.append(user.getLogin()).append(";")
-                        .append(fa.getLogin()).append(";")
-                        .append(FA).append("\n");
+            escreverIds(out, ids, fotografia.getParticipacoes(user));
+        }
+
+        for (User user : usuarios) {
+            escreverIds(out, ids, fotografia.getRelacionados(grafo.getAmigos(), user));
+            escreverIds(out, ids, fotografia.getRelacionados(grafo.getSolicitacoesEnviadas(), user));
+        }
+
+        for (User user : usuarios) {
+            Collection<Recado> recados = fotografia.getRecados(user);
+            escreverVarint(out, recados.size());
+            for (Recado recado : recados) {
+                escreverVarint(out, ids.get(recado.getRemetente()));
+                escreverTexto(out, recado.getRecado());
             }
+        }
 
-            for (User paquera : user.getPaqueras()) {
-                relacoesData.append(user.getLogin()).append(";")
-                        .append(paquera.getLogin()).append(";")
-                        .append(PAQUERA).append("\n");
+        escreverVarint(out, comunidades.size());
+        for (Comunidade comunidade : comunidades) {
+            escreverVarint(out, ids.get(comunidade));
+            escreverVarint(out, ids.get(comunidade.getDono()));
+            escreverTexto(out, comunidade.getDescricao());
+            escreverIds(out, ids, fotografia.getMembros(comunidade));
+
+            Collection<Mensagem> mural = fotografia.getMural(comunidade);
+            escreverVarint(out, mural.size());
+            for (Mensagem mensagem : mural) {
+                out.writeLong(mensagem.getSequencia());
+                escreverTexto(out, mensagem.getMensagem());
             }
+        }
 
-            for (User paquerasRecebidas : user.getPaquerasRecebidas()) {
-                relacoesData.append(user.getLogin()).append(";")
-                        .append(paquerasRecebidas.getLogin()).append(";")
-                        .append(PAQUERARECEBIDA).append("\n");
+        for (User user : usuarios) {
+            Collection<CursorDeMensagens> cursores = fotografia.getCursores(user);
+            escreverVarint(out, cursores.size());
+            for (CursorDeMensagens cursor : cursores) {
+                escreverVarint(out, ids.get(cursor.getComunidade()));
+                escreverVarint(out, cursor.getPosicao());
             }
+        }
 
-            for (User inimigos : user.getInimigos()) {
-                relacoesData.append(user.getLogin()).append(";")
-                        .append(inimigos.getLogin()).append(";")
-                        .append(INIMIGO).append("\n");
+        for (User user : usuarios) {
+            for (TiposRelacionamento tipo : ORDEM_RELACOES) {
+                escreverIds(out, ids, fotografia.getRelacionados(grafo.getRelacao(tipo), user));
             }
         }
+    }
+
+    /**
+     * Escreve um inteiro não negativo como varint (7 bits por byte, bit mais alto indicando continuação).
+     *
+     * @param out    Stream de saída.
+     * @param valor  Valor a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
 
-        escreverArquivo("relacoes.txt", relacoesData.toString());
+    private static void escreverVarint(DataOutputStream out, int valor) throws IOException {
+        while ((valor & ~0x7F) != 0) {
+            out.writeByte((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        out.writeByte(valor);
     }
 
     /**
-     * Persiste os dados, salvando-os em arquivos.
+     * Escreve uma String em UTF-8 precedida do seu tamanho em bytes.
+     *
+     * @param out    Stream de saída.
+     * @param texto  Texto a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private static void escreverTexto(DataOutputStream out, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        escreverVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Escreve uma lista de usuários ou comunidades como a quantidade seguida dos seus ids.
      *
-     * @param usuarios      Map com os usuários.
-     * @param comunidades   Map com as comunidades.
+     * @param out        Stream de saída.
+     * @param ids        Ids da tabela de Strings.
+     * @param elementos  Elementos a serem escritos.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private static void escreverIds(DataOutputStream out, Map<Object, Integer> ids, Collection<?> elementos)
+            throws IOException {
+        escreverVarint(out, elementos.size());
+        for (Object elemento : elementos) {
+            escreverVarint(out, ids.get(elemento));
+        }
+    }
+
+    /**
+     * Salva todos os dados nos arquivos de texto, regravando-os por completo.
+     *
+     * @param geracao     Geração em que os arquivos são gravados.
+     * @param fotografia  Fotografia a ser gravada.
      */
 
-    public static void persistirDados(Map<String, User> usuarios, Map<String, Comunidade> comunidades) {
-        salvarUsuarios(usuarios);
-        salvarAmigos(usuarios);
-        salvarRecados(usuarios);
-        salvarComunidades(comunidades);
-        salvarMensagens(usuarios);
-        salvarRelacoes(usuarios);
+    public static void salvarSnapshotTexto(GeracaoDeArquivos geracao, Fotografia fotografia) {
+        salvarUsuarios(geracao, fotografia);
+        salvarAmigos(geracao, fotografia);
+        salvarRecados(geracao, fotografia);
+        salvarComunidades(geracao, fotografia);
+        salvarMensagens(geracao, fotografia);
+        salvarCursores(geracao, fotografia);
+        salvarRelacoes(geracao, fotografia);
     }
 
     /**
-     * Carrega os usuários do arquivo "usuarios.txt".
+     * Apaga os arquivos da fotografia que não está no formato especificado.
+     *
+     * @param formato Formato da fotografia que deve ser mantida.
+     *
+     * @see TiposFormato
      */
 
-    public static void limparArquivos() {
-        escreverArquivo("usuarios.txt", "");
-        escreverArquivo("amigos.txt", "");
-        escreverArquivo("recados.txt", "");
-        escreverArquivo("comunidades.txt", "");
-        escreverArquivo("mensagens.txt", "");
-        escreverArquivo("relacoes.txt", "");
+    public static void apagarOutroFormato(TiposFormato formato) {
+        if (formato == TiposFormato.TEXTO) {
+            new File("./BaseDeDados/" + ARQUIVO_BINARIO).delete();
+        } else {
+            for (TiposArquivo arquivo : TiposArquivo.values()) {
+                new File("./BaseDeDados/" + arquivo.getNome()).delete();
+            }
+        }
+    }
+
+    /**
+     * Grava na pasta BaseDeDados/Relatorios um relatório com as amizades de cada usuário.
+     * Os relatórios ficam em uma pasta própria, separados dos arquivos da base de dados.
+     * Cada linha tem o login, a quantidade de amigos, a quantidade de triângulos (pares de amigos
+     * que também são amigos entre si) e o coeficiente de agrupamento, separados por ";".
+     *
+     * @param arquivo     Nome do arquivo do relatório, sem separadores de pastas.
+     * @param grafo       Grafo com as amizades.
+     * @param triangulos  Triângulos de cada usuário, indexados pelo id.
+     *
+     * @see AnaliseDeAmizades#triangulosDoGrafo()
+     */
+
+    public static void salvarRelatorioDeAmizades(String arquivo, GrafoDeRelacoes grafo, long[] triangulos) {
+        new File("./BaseDeDados/" + PASTA_RELATORIOS).mkdir();
+
+        try {
+            gravarArquivo(PASTA_RELATORIOS + "/" + arquivo, out -> {
+                Writer escritor = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                for (int id = 0; id < triangulos.length; id++) {
+                    User user = grafo.getUsuario(id);
+                    if (user == null) {
+                        continue;
+                    }
+
+                    int amigos = grafo.getAmigos().tamanho(id);
+                    escritor.write(UtilidadeString.juntarRegistro(user.getLogin(), String.valueOf(amigos),
+                            String.valueOf(triangulos[id]),
+                            String.format(Locale.ROOT, "%.6f", AnaliseDeAmizades.coeficiente(triangulos[id], amigos))));
+                    escritor.write('\n');
+                }
+                escritor.flush();
+            });
+        } catch (IOException e) {
+            System.out.println("Erro ao escrever o arquivo " + arquivo);
+        }
+    }
+
+    /**
+     * Grava os arquivos de texto vazios em uma nova geração de arquivos.
+     * A fotografia binária deve ser apagada depois que a geração for publicada.
+     *
+     * @param geracao Geração em que os arquivos são gravados.
+     *
+     * @see #apagarOutroFormato(TiposFormato)
+     */
+
+    public static void limparArquivos(GeracaoDeArquivos geracao) {
+        for (TiposArquivo arquivo : TiposArquivo.values()) {
+            try {
+                geracao.gravar(arquivo.getNome(), out -> {});
+            } catch (IOException e) {
+                System.out.println("Erro ao escrever o arquivo " + arquivo.getNome());
+            }
+        }
     }
 }
@@ -0,0 +1,187 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+
+/**
+ * Escreve registros de texto da base de dados diretamente em um stream.
+ *
+ * Cada linha de um registro é serializada em um StringBuilder reaproveitado e codificada em UTF-8
+ * em um buffer de bytes de tamanho fixo, descarregado no stream sempre que enche. Registros com
+ * muitas linhas, como uma caixa de recados ou um mural, nunca ficam inteiros na memória: a
+ * memória usada depende apenas da maior linha, e não do tamanho do registro ou do arquivo.
+ *
+ * @see EscritaDeArquivos
+ */
+
+public class EscritorDeRegistros {
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final OutputStream out;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(TAMANHO_BUFFER);
+    private final StringBuilder linha = new StringBuilder();
+
+    /**
+     * Constrói um novo escritor de registros.
+     *
+     * @param out Stream onde os registros serão escritos.
+     */
+
+    public EscritorDeRegistros(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Escreve as linhas de um registro no escritor, uma por vez.
+     *
+     * @param <T> Tipo do registro.
+     *
+     * @see #novaLinha()
+     * @see #concluirLinha()
+     */
+
+    public interface Serializador<T> {
+        void escrever(EscritorDeRegistros escritor, T registro) throws IOException;
+    }
+
+    /**
+     * Serializa e escreve um registro.
+     *
+     * @param registro      Registro a ser escrito.
+     * @param serializador  Escreve as linhas do registro.
+     * @param <T>           Tipo do registro.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public <T> void escrever(T registro, Serializador<T> serializador) throws IOException {
+        serializador.escrever(this, registro);
+    }
+
+    /**
+     * Serializa e escreve todos os registros de uma coleção.
+     *
+     * @param registros     Registros a serem escritos.
+     * @param serializador  Escreve as linhas de um registro.
+     * @param <T>           Tipo dos registros.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public <T> void escreverTodos(Collection<T> registros, Serializador<T> serializador) throws IOException {
+        for (T registro : registros) {
+            this.escrever(registro, serializador);
+        }
+    }
+
+    /**
+     * Esvazia e retorna o StringBuilder onde a próxima linha deve ser serializada.
+     *
+     * @return StringBuilder vazio.
+     *
+     * @see #concluirLinha()
+     */
+
+    public StringBuilder novaLinha() {
+        this.linha.setLength(0);
+        return this.linha;
+    }
+
+    /**
+     * Escreve a linha serializada desde o último {@link #novaLinha()}, seguida de uma quebra de linha.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public void concluirLinha() throws IOException {
+        this.linha.append('\n');
+        this.codificar(this.linha);
+    }
+
+    /**
+     * Escreve uma linha já serializada, seguida de uma quebra de linha.
+     *
+     * @param linha Linha a ser escrita.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public void escreverLinha(String linha) throws IOException {
+        this.codificar(linha);
+        this.codificar("\n");
+    }
+
+    /**
+     * Escreve um texto já serializado, com as quebras de linha dos seus registros.
+     *
+     * @param texto Texto a ser escrito.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public void escreverTexto(String texto) throws IOException {
+        this.codificar(texto);
+    }
+
+    /**
+     * Descarrega os bytes pendentes no stream.
+     * Deve ser chamado depois do último registro.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public void terminar() throws IOException {
+        while (this.encoder.encode(CharBuffer.allocate(0), this.bytes, true).isOverflow()) {
+            this.descarregar();
+        }
+        while (this.encoder.flush(this.bytes).isOverflow()) {
+            this.descarregar();
+        }
+
+        this.descarregar();
+        this.encoder.reset();
+    }
+
+    /**
+     * Codifica um texto no buffer de bytes, descarregando-o quando enche.
+     *
+     * @param texto Texto a ser codificado.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private void codificar(CharSequence texto) throws IOException {
+        CharBuffer caracteres = CharBuffer.wrap(texto);
+
+        while (true) {
+            CoderResult resultado = this.encoder.encode(caracteres, this.bytes, false);
+
+            if (!resultado.isOverflow()) {
+                break;
+            }
+            this.descarregar();
+        }
+    }
+
+    /**
+     * Escreve os bytes do buffer no stream e esvazia o buffer.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private void descarregar() throws IOException {
+        this.out.write(this.bytes.array(), 0, this.bytes.position());
+        this.bytes.clear();
+    }
+}
@@ -0,0 +1,340 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import br.ufal.ic.p2.jackut.Entidades.Adjacencia;
+import br.ufal.ic.p2.jackut.Entidades.CaixaDeRecados;
+import br.ufal.ic.p2.jackut.Entidades.Comunidade;
+import br.ufal.ic.p2.jackut.Entidades.ConjuntoDeUsuarios;
+import br.ufal.ic.p2.jackut.Entidades.CursorDeMensagens;
+import br.ufal.ic.p2.jackut.Entidades.GrafoDeRelacoes;
+import br.ufal.ic.p2.jackut.Entidades.Mensagem;
+import br.ufal.ic.p2.jackut.Entidades.Recado;
+import br.ufal.ic.p2.jackut.Entidades.User;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+
+
+/**
+ * Visão do sistema usada para gravar a base de dados.
+ *
+ * Uma fotografia capturada ({@link #capturar}) é tirada pela thread que atende as requisições e
+ * gravada depois, em outra thread. A captura não serializa nada: ela guarda referências ao que
+ * não muda mais (logins, nomes, recados, mensagens e os vetores CSR do grafo) e copia apenas as
+ * referências do que ainda pode mudar: a lista de usuários e de comunidades, as comunidades, os
+ * cursores e os recados em memória de cada usuário, os membros e o mural de cada comunidade e as
+ * linhas do grafo alteradas desde a última compactação. Os recados em disco não são lidos: eles
+ * são copiados do transbordo direto para o arquivo durante a gravação, e o transbordo fica retido
+ * até {@link #liberar()}. Depois de capturada, a fotografia não depende mais do estado atual do
+ * sistema.
+ *
+ * Uma fotografia atual ({@link #atual}) não copia nada e lê o próprio sistema; só pode ser gravada
+ * na thread que o altera.
+ *
+ * @see GrafoDeRelacoes#congelar()
+ * @see EscritaDeArquivos#salvarSnapshotTexto(GeracaoDeArquivos, Fotografia)
+ * @see EscritaDeArquivos#salvarSnapshotBinario(GeracaoDeArquivos, Fotografia)
+ */
+
+public class Fotografia {
+    private static final Comunidade[] SEM_COMUNIDADES = new Comunidade[0];
+    private static final CursorDeMensagens[] SEM_CURSORES = new CursorDeMensagens[0];
+
+    private final TiposFormato formato;
+    private final GrafoDeRelacoes grafo;
+    private final Collection<User> usuarios;
+    private final Collection<Comunidade> comunidades;
+
+    private Comunidade[][] participacoes;
+    private CursorDeMensagens[][] cursores;
+    private Collection<Recado>[] recados;
+
+    private Map<Comunidade, Integer> posicoesComunidades;
+    private int[][] membros;
+    private Mensagem[][] murais;
+
+    /**
+     * Constrói uma fotografia que lê diretamente os usuários, as comunidades e o grafo passados.
+     *
+     * @param formato      Formato em que a fotografia será gravada.
+     * @param usuarios     Usuários, na ordem do sistema.
+     * @param comunidades  Comunidades, na ordem do sistema.
+     * @param grafo        Grafo de relações.
+     */
+
+    private Fotografia(TiposFormato formato, Collection<User> usuarios, Collection<Comunidade> comunidades,
+                       GrafoDeRelacoes grafo) {
+        this.formato = formato;
+        this.grafo = grafo;
+        this.usuarios = usuarios;
+        this.comunidades = comunidades;
+    }
+
+    /**
+     * Captura uma fotografia do sistema, que pode ser gravada em outra thread enquanto o sistema
+     * continua sendo alterado. O custo depende da quantidade de usuários, comunidades e
+     * participações, mas não do texto dos recados e mensagens nem das relações já compactadas.
+     *
+     * @param formato      Formato em que a fotografia será gravada.
+     * @param usuarios     Map com os usuários.
+     * @param comunidades  Map com as comunidades.
+     * @param grafo        Grafo de relações, que é congelado.
+     * @return             Fotografia capturada.
+     *
+     * @see GrafoDeRelacoes#congelar()
+     */
+
+    public static Fotografia capturar(TiposFormato formato, Map<String, User> usuarios,
+                                      Map<String, Comunidade> comunidades, GrafoDeRelacoes grafo) {
+        User[] copiaUsuarios = usuarios.values().toArray(new User[0]);
+        Comunidade[] copiaComunidades = comunidades.values().toArray(SEM_COMUNIDADES);
+        GrafoDeRelacoes congelado = grafo.congelar();
+
+        Fotografia fotografia = new Fotografia(formato, Arrays.asList(copiaUsuarios),
+                Arrays.asList(copiaComunidades), congelado);
+        CaixaDeRecados.reterTransbordo();
+
+        fotografia.participacoes = new Comunidade[congelado.getQuantidade()][];
+        fotografia.cursores = new CursorDeMensagens[congelado.getQuantidade()][];
+        fotografia.recados = novasCaixas(congelado.getQuantidade());
+        for (User user : copiaUsuarios) {
+            int id = user.getId();
+            fotografia.participacoes[id] = user.getComunidadesParticipantes().toArray(SEM_COMUNIDADES);
+            fotografia.recados[id] = user.congelarRecados(congelado);
+
+            CursorDeMensagens[] copias = SEM_CURSORES;
+            if (!user.getCursores().isEmpty()) {
+                copias = new CursorDeMensagens[user.getCursores().size()];
+                int i = 0;
+                for (CursorDeMensagens cursor : user.getCursores()) {
+                    copias[i++] = new CursorDeMensagens(cursor.getComunidade(), cursor.getPosicao());
+                }
+            }
+            fotografia.cursores[id] = copias;
+        }
+
+        fotografia.posicoesComunidades = new HashMap<>();
+        fotografia.membros = new int[copiaComunidades.length][];
+        fotografia.murais = new Mensagem[copiaComunidades.length][];
+        for (int i = 0; i < copiaComunidades.length; i++) {
+            fotografia.posicoesComunidades.put(copiaComunidades[i], i);
+            fotografia.membros[i] = copiaComunidades[i].copiarIdsMembros();
+            fotografia.murais[i] = copiaComunidades[i].getMural().toArray(new Mensagem[0]);
+        }
+        return fotografia;
+    }
+
+    /**
+     * Cria uma fotografia que lê o estado atual do sistema, sem copiar nada.
+     * Deve ser gravada na mesma thread que altera o sistema, antes de qualquer alteração.
+     *
+     * @param formato      Formato em que a fotografia será gravada.
+     * @param usuarios     Map com os usuários.
+     * @param comunidades  Map com as comunidades.
+     * @param grafo        Grafo de relações.
+     * @return             Fotografia do estado atual.
+     */
+
+    public static Fotografia atual(TiposFormato formato, Map<String, User> usuarios,
+                                   Map<String, Comunidade> comunidades, GrafoDeRelacoes grafo) {
+        return new Fotografia(formato, usuarios.values(), comunidades.values(), grafo);
+    }
+
+    /**
+     * Cria o vetor com os recados de cada usuário.
+     *
+     * @param quantidade  Quantidade de ids do grafo.
+     * @return            Vetor vazio.
+     */
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Recado>[] novasCaixas(int quantidade) {
+        return (Collection<Recado>[]) new Collection<?>[quantidade];
+    }
+
+    /**
+     * Libera o transbordo de recados retido pela captura. Deve ser chamado uma única vez,
+     * depois que a fotografia for gravada ou descartada.
+     *
+     * @see CaixaDeRecados#liberarTransbordo()
+     */
+
+    public void liberar() {
+        if (this.isCapturada()) {
+            CaixaDeRecados.liberarTransbordo();
+        }
+    }
+
+    /**
+     * Verifica se a fotografia foi capturada ou se lê o estado atual do sistema.
+     *
+     * @return True se a fotografia foi capturada.
+     */
+
+    private boolean isCapturada() {
+        return this.participacoes != null;
+    }
+
+    /**
+     * Retorna o formato da fotografia.
+     *
+     * @return Formato da fotografia.
+     */
+
+    public TiposFormato getFormato() {
+        return this.formato;
+    }
+
+    /**
+     * Retorna o grafo de relações da fotografia.
+     *
+     * @return Grafo de relações.
+     */
+
+    public GrafoDeRelacoes getGrafo() {
+        return this.grafo;
+    }
+
+    /**
+     * Retorna os usuários da fotografia, na ordem do sistema.
+     *
+     * @return Coleção somente leitura com os usuários.
+     */
+
+    Collection<User> getUsuarios() {
+        return this.usuarios;
+    }
+
+    /**
+     * Retorna as comunidades da fotografia, na ordem do sistema.
+     *
+     * @return Coleção somente leitura com as comunidades.
+     */
+
+    Collection<Comunidade> getComunidades() {
+        return this.comunidades;
+    }
+
+    /**
+     * Retorna os usuários relacionados a um usuário em uma estrutura de adjacência do grafo
+     * da fotografia.
+     *
+     * @param adjacencia  Estrutura de adjacência do grafo da fotografia.
+     * @param user        Usuário de origem.
+     * @return            Conjunto com os usuários relacionados, na ordem das relações.
+     */
+
+    Set<User> getRelacionados(Adjacencia adjacencia, User user) {
+        return new ConjuntoDeUsuarios(this.grafo, adjacencia, user.getId());
+    }
+
+    /**
+     * Retorna as comunidades das quais um usuário participa, na ordem em que ele entrou.
+     *
+     * @param user  Usuário da fotografia.
+     * @return      Coleção somente leitura com as comunidades.
+     */
+
+    Collection<Comunidade> getParticipacoes(User user) {
+        if (!this.isCapturada()) {
+            return user.getComunidadesParticipantes();
+        }
+        return Arrays.asList(this.participacoes[user.getId()]);
+    }
+
+    /**
+     * Retorna os cursores de leitura de um usuário.
+     *
+     * @param user  Usuário da fotografia.
+     * @return      Coleção somente leitura com cópias dos cursores.
+     */
+
+    Collection<CursorDeMensagens> getCursores(User user) {
+        if (!this.isCapturada()) {
+            return user.getCursores();
+        }
+        return Arrays.asList(this.cursores[user.getId()]);
+    }
+
+    /**
+     * Retorna os recados não lidos de um usuário, do mais antigo ao mais novo.
+     *
+     * @param user  Usuário da fotografia.
+     * @return      Coleção somente leitura com os recados. Os recados em disco são lidos à medida
+     *              que a coleção é percorrida.
+     */
+
+    Collection<Recado> getRecados(User user) {
+        if (!this.isCapturada()) {
+            return user.getRecados();
+        }
+        return this.recados[user.getId()];
+    }
+
+    /**
+     * Retorna os membros de uma comunidade, na ordem em que entraram.
+     *
+     * @param comunidade  Comunidade da fotografia.
+     * @return            Coleção somente leitura com os membros.
+     */
+
+    Collection<User> getMembros(Comunidade comunidade) {
+        if (!this.isCapturada()) {
+            return comunidade.getMembros();
+        }
+
+        int[] ids = this.membros[this.posicoesComunidades.get(comunidade)];
+
+        return new AbstractList<User>() {
+            @Override
+            public User get(int indice) {
+                return grafo.getUsuario(ids[indice]);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        };
+    }
+
+    /**
+     * Retorna o mural de uma comunidade.
+     *
+     * @param comunidade  Comunidade da fotografia.
+     * @return            Coleção somente leitura com as mensagens, da mais antiga à mais nova.
+     */
+
+    Collection<Mensagem> getMural(Comunidade comunidade) {
+        if (!this.isCapturada()) {
+            return comunidade.getMural();
+        }
+        return Arrays.asList(this.murais[this.posicoesComunidades.get(comunidade)]);
+    }
+
+    /**
+     * Grava a fotografia em uma nova geração de arquivos, que ainda precisa ser publicada.
+     *
+     * @param geracao Geração em que os arquivos são gravados.
+     * @return        Quantidade de bytes gravados no disco.
+     *
+     * @throws IOException Exceção lançada caso não seja possível gravar algum arquivo.
+     *
+     * @see DiarioDeOperacoes#concluirCheckpoint(long, TiposFormato, GeracaoDeArquivos)
+     */
+
+    public long gravar(GeracaoDeArquivos geracao) throws IOException {
+        if (this.formato == TiposFormato.BINARIO) {
+            EscritaDeArquivos.salvarSnapshotBinario(geracao, this);
+        } else {
+            EscritaDeArquivos.salvarSnapshotTexto(geracao, this);
+        }
+
+        return geracao.getBytes();
+    }
+}
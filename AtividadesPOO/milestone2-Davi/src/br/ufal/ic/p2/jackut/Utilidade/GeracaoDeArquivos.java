@@ -0,0 +1,197 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import br.ufal.ic.p2.jackut.tipos.TiposArquivo;
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+
+
+/**
+ * Arquivos de uma nova fotografia, gravados ao lado dos atuais e publicados todos de uma vez.
+ *
+ * Cada arquivo é gravado em "&lt;arquivo&gt;.novo" e sincronizado com o disco, sem tocar o arquivo
+ * atual. A publicação grava o checkpoint com a sequência, o formato e a lista dos arquivos da
+ * geração: essa renomeação atômica é o momento em que a nova fotografia passa a valer. Só então
+ * cada "&lt;arquivo&gt;.novo" é renomeado por cima do atual e o checkpoint é regravado sem a lista.
+ *
+ * Se o sistema cair antes do checkpoint, os arquivos ".novo" são descartados e a fotografia anterior
+ * continua valendo junto com o seu diário. Se cair depois, a inicialização encontra a lista no
+ * checkpoint e termina as renomeações ({@link #retomar(String[])}). Assim os arquivos lidos sempre
+ * correspondem à sequência gravada no checkpoint, e o diário nunca é reproduzido por cima de uma
+ * fotografia que já contém as suas operações.
+ *
+ * @see DiarioDeOperacoes#marcarCheckpoint(TiposFormato, GeracaoDeArquivos)
+ * @see DiarioDeOperacoes#concluirCheckpoint(long, TiposFormato, GeracaoDeArquivos)
+ */
+
+public class GeracaoDeArquivos {
+    public static final String SUFIXO = ".novo";
+
+    private final List<String> arquivos = new ArrayList<>();
+    private final List<Runnable> aoPublicar = new ArrayList<>();
+    private boolean falhou;
+
+    /**
+     * Grava um arquivo da nova geração em "&lt;arquivo&gt;.novo" e o sincroniza com o disco.
+     * Se a gravação falhar, a geração não pode mais ser publicada.
+     *
+     * @param arquivo   Nome do arquivo.
+     * @param gravacao  Escreve o conteúdo do arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever o arquivo.
+     */
+
+    void gravar(String arquivo, EscritaDeArquivos.Gravacao gravacao) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream("./BaseDeDados/" + arquivo + SUFIXO);
+             BufferedOutputStream out = new BufferedOutputStream(fos)) {
+            gravacao.escrever(out);
+            out.flush();
+            fos.getChannel().force(true);
+        } catch (IOException e) {
+            this.falhou = true;
+            throw e;
+        }
+
+        this.arquivos.add(arquivo);
+    }
+
+    /**
+     * Registra uma ação a ser executada depois que a geração for publicada, como marcar como
+     * salvos os registros gravados nela.
+     *
+     * @param acao Ação a ser executada.
+     */
+
+    public void aoPublicar(Runnable acao) {
+        this.aoPublicar.add(acao);
+    }
+
+    /**
+     * Retorna o tamanho dos arquivos gravados na geração.
+     *
+     * @return Tamanho dos arquivos, em bytes.
+     */
+
+    public long getBytes() {
+        long bytes = 0;
+        for (String arquivo : this.arquivos) {
+            bytes += Paths.get("./BaseDeDados/" + arquivo + SUFIXO).toFile().length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Publica a geração: grava o checkpoint com a lista de arquivos, renomeia os arquivos novos
+     * por cima dos atuais e regrava o checkpoint sem a lista.
+     *
+     * @param sequencia  Sequência da última operação contida na geração.
+     * @param formato    Formato da fotografia.
+     *
+     * @throws IOException Exceção lançada caso algum arquivo da geração não tenha sido gravado
+     *                     ou não seja possível gravar o checkpoint.
+     */
+
+    public void publicar(long sequencia, TiposFormato formato) throws IOException {
+        if (this.falhou) {
+            throw new IOException("Geração de arquivos incompleta");
+        }
+
+        String checkpoint = UtilidadeString.juntarRegistro(String.valueOf(sequencia), formato.name());
+
+        if (!this.arquivos.isEmpty()) {
+            EscritaDeArquivos.sincronizarPasta();
+
+            List<String> registro = new ArrayList<>();
+            registro.add(String.valueOf(sequencia));
+            registro.add(formato.name());
+            registro.addAll(this.arquivos);
+            gravarCheckpoint(UtilidadeString.juntarRegistro(registro.toArray(new String[0])));
+
+            renomear(this.arquivos);
+        }
+
+        gravarCheckpoint(checkpoint);
+
+        for (Runnable acao : this.aoPublicar) {
+            acao.run();
+        }
+    }
+
+    /**
+     * Termina a publicação de uma geração interrompida, caso o checkpoint ainda tenha a lista
+     * de arquivos. Caso contrário, apaga os arquivos ".novo" de uma geração que não chegou a
+     * ser publicada. Chamado na inicialização, antes da leitura dos arquivos.
+     *
+     * @param checkpoint Campos do checkpoint: sequência, formato e os arquivos da geração.
+     */
+
+    public static void retomar(String[] checkpoint) {
+        if (checkpoint.length <= 2) {
+            new File("./BaseDeDados/" + EscritaDeArquivos.ARQUIVO_BINARIO + SUFIXO).delete();
+            for (TiposArquivo arquivo : TiposArquivo.values()) {
+                new File("./BaseDeDados/" + arquivo.getNome() + SUFIXO).delete();
+            }
+            return;
+        }
+
+        try {
+            renomear(Arrays.asList(checkpoint).subList(2, checkpoint.length));
+            gravarCheckpoint(UtilidadeString.juntarRegistro(checkpoint[0], checkpoint[1]));
+        } catch (IOException e) {
+            System.out.println("Erro ao concluir a gravação da fotografia");
+        }
+    }
+
+    /**
+     * Renomeia cada "&lt;arquivo&gt;.novo" por cima do arquivo atual. Arquivos já renomeados
+     * são ignorados.
+     *
+     * @param arquivos Nomes dos arquivos.
+     *
+     * @throws IOException Exceção lançada caso não seja possível renomear algum arquivo.
+     */
+
+    private static void renomear(List<String> arquivos) throws IOException {
+        for (String arquivo : arquivos) {
+            Path novo = Paths.get("./BaseDeDados/" + arquivo + SUFIXO);
+            Path destino = Paths.get("./BaseDeDados/" + arquivo);
+
+            if (!Files.exists(novo)) {
+                continue;
+            }
+
+            try {
+                Files.move(novo, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(novo, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        EscritaDeArquivos.sincronizarPasta();
+    }
+
+    /**
+     * Grava o checkpoint de forma atômica.
+     *
+     * @param registro Linha do checkpoint.
+     *
+     * @throws IOException Exceção lançada caso não seja possível gravar o checkpoint.
+     */
+
+    private static void gravarCheckpoint(String registro) throws IOException {
+        EscritaDeArquivos.gravarArquivo(DiarioDeOperacoes.ARQUIVO_CHECKPOINT,
+                registro.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,332 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+
+/**
+ * Leitor de arquivos da base de dados que mapeia o arquivo em memória com {@link FileChannel#map}
+ * e percorre as linhas diretamente no buffer mapeado.
+ *
+ * Nenhuma String é criada para a linha inteira nem para os campos: o leitor apenas guarda
+ * a posição de cada ";" da linha atual, e o chamador materializa somente os campos que
+ * realmente vai guardar. Arquivos maiores que a janela de mapeamento são percorridos
+ * em várias janelas, sempre começando em um início de linha.
+ *
+ * O leitor também pode percorrer apenas um trecho do arquivo, o que permite dividir
+ * arquivos grandes em blocos lidos em paralelo.
+ *
+ * @see #dividirEmBlocos(File, long)
+ */
+
+public class LeitorMapeado implements Closeable {
+    private static final long JANELA = 1L << 30;
+
+    private final FileChannel canal;
+    private final long fim;
+
+    private MappedByteBuffer buffer;
+    private long inicioJanela;
+    private int posicao;
+
+    private int inicioLinha;
+    private int fimLinha;
+    private int[] separadores = new int[16];
+    private int quantidadeSeparadores;
+
+    private byte[] bytes = new byte[256];
+
+    /**
+     * Abre e mapeia a primeira janela do arquivo.
+     *
+     * @param file Arquivo a ser lido.
+     *
+     * @throws IOException Exceção lançada caso não seja possível abrir o arquivo.
+     */
+
+    public LeitorMapeado(File file) throws IOException {
+        this(file, 0, file.length());
+    }
+
+    /**
+     * Abre o arquivo e mapeia a primeira janela do trecho especificado.
+     * O trecho deve começar em um início de linha e terminar em um fim de linha.
+     *
+     * @param file    Arquivo a ser lido.
+     * @param inicio  Posição inicial do trecho.
+     * @param fim     Posição final (exclusiva) do trecho.
+     *
+     * @throws IOException Exceção lançada caso não seja possível abrir o arquivo.
+     */
+
+    public LeitorMapeado(File file, long inicio, long fim) throws IOException {
+        this.canal = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.fim = Math.min(fim, this.canal.size());
+        this.mapear(Math.min(inicio, this.fim));
+    }
+
+    /**
+     * Divide um arquivo em blocos de aproximadamente o tamanho especificado,
+     * ajustando cada divisão para o início da linha seguinte.
+     *
+     * @param file          Arquivo a ser dividido.
+     * @param tamanhoBloco  Tamanho aproximado de cada bloco, em bytes.
+     * @return              Posições dos limites dos blocos, incluindo o início e o fim do arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível ler o arquivo.
+     */
+
+    public static long[] dividirEmBlocos(File file, long tamanhoBloco) throws IOException {
+        try (FileChannel canal = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            long[] limites = new long[(int) (tamanho / tamanhoBloco) + 2];
+            int quantidade = 1;
+
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long posicao = tamanhoBloco;
+
+            while (posicao < tamanho) {
+                long fimLinha = -1;
+                buffer.clear();
+
+                while (fimLinha < 0 && canal.read(buffer, posicao) > 0) {
+                    buffer.flip();
+                    for (int i = 0; i < buffer.limit(); i++) {
+                        if (buffer.get(i) == '\n') {
+                            fimLinha = posicao + i;
+                            break;
+                        }
+                    }
+                    posicao += buffer.limit();
+                    buffer.clear();
+                }
+
+                if (fimLinha < 0 || fimLinha + 1 >= tamanho) {
+                    break;
+                }
+
+                limites[quantidade++] = fimLinha + 1;
+                posicao = fimLinha + 1 + tamanhoBloco;
+            }
+
+            limites[quantidade++] = tamanho;
+            return Arrays.copyOf(limites, quantidade);
+        }
+    }
+
+    /**
+     * Mapeia uma janela do arquivo a partir da posição especificada.
+     *
+     * @param inicio Posição no arquivo onde a janela começa.
+     *
+     * @throws IOException Exceção lançada caso não seja possível mapear o arquivo.
+     */
+
+    private void mapear(long inicio) throws IOException {
+        this.inicioJanela = inicio;
+        this.buffer = this.canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(JANELA, this.fim - inicio));
+        this.posicao = 0;
+    }
+
+    /**
+     * Avança para a próxima linha do arquivo.
+     *
+     * @return True se uma nova linha foi encontrada, false no fim do arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível mapear a próxima janela do arquivo.
+     */
+
+    public boolean proximaLinha() throws IOException {
+        while (true) {
+            int limite = this.buffer.limit();
+
+            if (this.posicao >= limite) {
+                if (this.inicioJanela + limite >= this.fim) {
+                    return false;
+                }
+                this.mapear(this.inicioJanela + limite);
+                continue;
+            }
+
+            this.quantidadeSeparadores = 0;
+            int i = this.posicao;
+            while (i < limite) {
+                byte b = this.buffer.get(i);
+                if (b == '\n') break;
+                if (b == ';') this.adicionarSeparador(i);
+                i++;
+            }
+
+            if (i == limite && this.inicioJanela + limite < this.fim) {
+                if (this.posicao == 0) {
+                    throw new IOException("Linha maior que a janela de mapeamento.");
+                }
+                this.mapear(this.inicioJanela + this.posicao);
+                continue;
+            }
+
+            this.inicioLinha = this.posicao;
+            this.fimLinha = i > this.inicioLinha && this.buffer.get(i - 1) == '\r' ? i - 1 : i;
+            this.posicao = i + 1;
+
+            if (this.fimLinha > this.inicioLinha) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Guarda a posição de um ";" da linha atual.
+     *
+     * @param indice Posição do separador no buffer.
+     */
+
+    private void adicionarSeparador(int indice) {
+        if (this.quantidadeSeparadores == this.separadores.length) {
+            this.separadores = Arrays.copyOf(this.separadores, this.separadores.length * 2);
+        }
+        this.separadores[this.quantidadeSeparadores++] = indice;
+    }
+
+    /**
+     * Retorna a quantidade de campos da linha atual.
+     *
+     * @return Quantidade de campos.
+     */
+
+    public int quantidadeCampos() {
+        return this.quantidadeSeparadores + 1;
+    }
+
+    /**
+     * Retorna a posição no buffer onde o campo começa.
+     *
+     * @param campo  Índice do campo.
+     * @return       Posição inicial do campo.
+     */
+
+    public int inicioCampo(int campo) {
+        return campo == 0 ? this.inicioLinha : this.separadores[campo - 1] + 1;
+    }
+
+    /**
+     * Retorna a posição no buffer logo após o fim do campo.
+     *
+     * @param campo  Índice do campo.
+     * @return       Posição final (exclusiva) do campo.
+     */
+
+    public int fimCampo(int campo) {
+        return campo == this.quantidadeSeparadores ? this.fimLinha : this.separadores[campo];
+    }
+
+    /**
+     * Materializa um campo da linha atual como String.
+     *
+     * @param campo  Índice do campo.
+     * @return       Conteúdo do campo.
+     */
+
+    public String campo(int campo) {
+        return this.texto(this.inicioCampo(campo), this.fimCampo(campo));
+    }
+
+    /**
+     * Materializa um trecho do buffer como String.
+     *
+     * @param inicio  Posição inicial.
+     * @param fim     Posição final (exclusiva).
+     * @return        Trecho decodificado em UTF-8.
+     */
+
+    public String texto(int inicio, int fim) {
+        int tamanhoTrecho = fim - inicio;
+        if (tamanhoTrecho > this.bytes.length) {
+            this.bytes = new byte[Math.max(tamanhoTrecho, this.bytes.length * 2)];
+        }
+
+        this.buffer.get(inicio, this.bytes, 0, tamanhoTrecho);
+        return new String(this.bytes, 0, tamanhoTrecho, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Procura um byte dentro de um trecho do buffer.
+     *
+     * @param valor   Byte procurado.
+     * @param inicio  Posição inicial.
+     * @param fim     Posição final (exclusiva).
+     * @return        Posição do byte, ou -1 caso ele não seja encontrado.
+     */
+
+    public int indiceDe(byte valor, int inicio, int fim) {
+        for (int i = inicio; i < fim; i++) {
+            if (this.buffer.get(i) == valor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compara um campo com um texto ASCII sem materializar o campo.
+     *
+     * @param campo  Índice do campo.
+     * @param valor  Texto a ser comparado.
+     * @return       True se o campo for igual ao texto.
+     */
+
+    public boolean campoIgual(int campo, String valor) {
+        int inicio = this.inicioCampo(campo);
+        if (this.fimCampo(campo) - inicio != valor.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < valor.length(); i++) {
+            if (this.buffer.get(inicio + i) != valor.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Percorre os itens de um campo no formato {a,b,...,n}, materializando cada item.
+     *
+     * @param campo  Índice do campo.
+     * @param acao   Ação executada para cada item.
+     *
+     * @see UtilidadeString#formatArrayList
+     */
+
+    public void paraCadaItem(int campo, Consumer<String> acao) {
+        int inicio = this.inicioCampo(campo) + 1;
+        int fim = this.fimCampo(campo) - 1;
+
+        while (inicio < fim) {
+            int virgula = this.indiceDe((byte) ',', inicio, fim);
+            int fimItem = virgula < 0 ? fim : virgula;
+
+            acao.accept(this.texto(inicio, fimItem));
+            inicio = fimItem + 1;
+        }
+    }
+
+    /**
+     * Fecha o arquivo.
+     *
+     * @throws IOException Exceção lançada caso não seja possível fechar o arquivo.
+     */
+
+    @Override
+    public void close() throws IOException {
+        this.canal.close();
+    }
+}
@@ -1,21 +1,32 @@
 package br.ufal.ic.p2.jackut.Utilidade;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import br.ufal.ic.p2.jackut.Entidades.User;
 import br.ufal.ic.p2.jackut.Servicos.SessionService;
 
 import br.ufal.ic.p2.jackut.Exceptions.Comunidade.ComunidadeNaoExisteException;
-import br.ufal.ic.p2.jackut.Exceptions.Usuario.UsuarioEhInimigoException;
 
 import br.ufal.ic.p2.jackut.Entidades.Comunidade;
 import br.ufal.ic.p2.jackut.Entidades.Mensagem;
+import br.ufal.ic.p2.jackut.Entidades.Recado;
 
+import br.ufal.ic.p2.jackut.tipos.TiposFormato;
+import br.ufal.ic.p2.jackut.tipos.TiposLeitura;
+import br.ufal.ic.p2.jackut.tipos.TiposOperacao;
 import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
 
 /**
@@ -23,30 +34,390 @@ import br.ufal.ic.p2.jackut.tipos.TiposRelacionamento;
  */
 
 public class LeituraDeArquivos {
+    private static final long TAMANHO_BLOCO = 8L << 20;
 
     /**
      * Lê os arquivos do banco de dados carrega eles no sistema.
+     * A fotografia é lida no formato indicado pelo checkpoint e, em seguida, o diário é reproduzido.
+     *
+     * Os murais de mensagens e os cursores dos membros são lidos depois que as comunidades
+     * foram criadas e ligadas aos seus membros.
+     *
+     * @param sessionService Sistema a ser carregado.
+     * @return               Formato da fotografia que foi lida.
+     *
+     * @see TiposFormato
+     */
+
+    public static TiposFormato lerArquivos(SessionService sessionService) {
+        String[] checkpoint = lerCheckpoint();
+        TiposFormato formato = TiposFormato.valueOf(checkpoint[1]);
+
+        if (formato == TiposFormato.BINARIO) {
+            lerSnapshotBinario(sessionService);
+        } else {
+            Map<String, String[]> comunidades = new HashMap<>();
+
+            if (Configuracao.getLeitura() == TiposLeitura.PARALELA) {
+                lerArquivosParalelo(sessionService, comunidades);
+            } else {
+                lerArquivo("usuarios", sessionService, comunidades);
+                lerArquivo("amigos", sessionService, null);
+                lerArquivo("recados", sessionService, null);
+                lerArquivo("comunidades", sessionService, null);
+                lerArquivo("relacoes", sessionService, null);
+            }
+
+            vincularComunidades(sessionService, comunidades);
+
+            if (Configuracao.getLeitura() == TiposLeitura.PARALELA) {
+                lerArquivosParalelo(sessionService, null, "mensagens", "cursores");
+            } else {
+                lerArquivo("mensagens", sessionService, null);
+                lerArquivo("cursores", sessionService, null);
+            }
+        }
+
+        sessionService.restaurarSequenciaMensagens();
+        sessionService.limparAlteracoes();
+        lerDiario(sessionService, Long.parseLong(checkpoint[0]));
+
+        return formato;
+    }
+
+    /**
+     * Lê o arquivo binário "snapshot.bin" e o carrega no sistema.
      *
      * @param sessionService Sistema a ser carregado.
+     *
+     * @see EscritaDeArquivos#salvarSnapshotBinario
+     */
+
+    public static void lerSnapshotBinario(SessionService sessionService) {
+        File file = new File("./BaseDeDados/" + EscritaDeArquivos.ARQUIVO_BINARIO);
+
+        if (!file.exists()) return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int assinatura = in.readInt();
+            if (assinatura != EscritaDeArquivos.ASSINATURA_BINARIO && assinatura != EscritaDeArquivos.ASSINATURA_BINARIO_V2
+                    && assinatura != EscritaDeArquivos.ASSINATURA_BINARIO_V1) {
+                System.out.println("Erro ao ler o arquivo " + EscritaDeArquivos.ARQUIVO_BINARIO);
+                return;
+            }
+
+            String[] tabela = new String[lerVarint(in)];
+            for (int i = 0; i < tabela.length; i++) {
+                tabela[i] = lerTexto(in);
+            }
+
+            User[] usuarios = new User[lerVarint(in)];
+            int[][] comunidadesUsuarios = new int[usuarios.length][];
+            for (int i = 0; i < usuarios.length; i++) {
+                usuarios[i] = new User(tabela[i], lerTexto(in), lerTexto(in));
+
+                int atributos = lerVarint(in);
+                for (int j = 0; j < atributos; j++) {
+                    usuarios[i].getPerfil().setAtributo(lerTexto(in), lerTexto(in));
+                }
+
+                comunidadesUsuarios[i] = lerIds(in);
+                sessionService.setUsuario(usuarios[i]);
+            }
+
+            for (User user : usuarios) {
+                for (int amigo : lerIds(in)) {
+                    user.setAmigo(usuarios[amigo]);
+                }
+
+                if (assinatura != EscritaDeArquivos.ASSINATURA_BINARIO_V1) {
+                    for (int solicitacao : lerIds(in)) {
+                        user.enviarSolicitacao(usuarios[solicitacao]);
+                    }
+                }
+            }
+
+            for (User user : usuarios) {
+                int recados = lerVarint(in);
+                for (int j = 0; j < recados; j++) {
+                    User remetente = usuarios[lerVarint(in)];
+                    user.receberRecado(new Recado(remetente, user, lerTexto(in)));
+                }
+            }
+
+            Comunidade[] comunidades = new Comunidade[tabela.length];
+            int quantidadeComunidades = lerVarint(in);
+            for (int i = 0; i < quantidadeComunidades; i++) {
+                int id = lerVarint(in);
+                User dono = usuarios[lerVarint(in)];
+                Comunidade comunidade = new Comunidade(dono, tabela[id], lerTexto(in));
+
+                for (int membro : lerIds(in)) {
+                    if (usuarios[membro] != dono) {
+                        comunidade.adicionarMembro(usuarios[membro]);
+                    }
+                }
+
+                if (assinatura == EscritaDeArquivos.ASSINATURA_BINARIO) {
+                    int mensagens = lerVarint(in);
+                    for (int j = 0; j < mensagens; j++) {
+                        long sequencia = in.readLong();
+                        comunidade.enviarMensagem(new Mensagem(lerTexto(in), sequencia));
+                    }
+                }
+
+                dono.setDonoComunidade(comunidade);
+                sessionService.setComunidade(comunidade.getNome(), comunidade);
+                comunidades[id] = comunidade;
+            }
+
+            for (int i = 0; i < usuarios.length; i++) {
+                for (int comunidade : comunidadesUsuarios[i]) {
+                    usuarios[i].setParticipanteComunidade(comunidades[comunidade]);
+                }
+            }
+
+            for (User user : usuarios) {
+                int quantidade = lerVarint(in);
+                for (int j = 0; j < quantidade; j++) {
+                    if (assinatura == EscritaDeArquivos.ASSINATURA_BINARIO) {
+                        Comunidade comunidade = comunidades[lerVarint(in)];
+                        user.posicionarCursor(comunidade, lerVarint(in));
+                    } else {
+                        lerTexto(in);
+                    }
+                }
+            }
+
+            for (User user : usuarios) {
+                for (int idolo : lerIds(in)) user.setIdolo(usuarios[idolo]);
+                for (int fa : lerIds(in)) user.setFa(usuarios[fa]);
+                for (int paquera : lerIds(in)) user.setPaquera(usuarios[paquera]);
+                for (int paquera : lerIds(in)) user.setPaquerasRecebidas(usuarios[paquera]);
+                for (int inimigo : lerIds(in)) user.setInimigo(usuarios[inimigo]);
+            }
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o arquivo " + EscritaDeArquivos.ARQUIVO_BINARIO);
+        }
+    }
+
+    /**
+     * Lê um inteiro gravado como varint.
+     *
+     * @param in  Stream de entrada.
+     * @return    Valor lido.
+     *
+     * @throws IOException Exceção lançada caso não seja possível ler do stream.
+     */
+
+    private static int lerVarint(DataInputStream in) throws IOException {
+        int valor = 0;
+        int deslocamento = 0;
+        int b;
+
+        do {
+            b = in.readUnsignedByte();
+            valor |= (b & 0x7F) << deslocamento;
+            deslocamento += 7;
+        } while ((b & 0x80) != 0);
+
+        return valor;
+    }
+
+    /**
+     * Lê uma String em UTF-8 precedida do seu tamanho em bytes.
+     *
+     * @param in  Stream de entrada.
+     * @return    Texto lido.
+     *
+     * @throws IOException Exceção lançada caso não seja possível ler do stream.
+     */
+
+    private static String lerTexto(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[lerVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lê uma lista de ids gravada como a quantidade seguida dos ids.
+     *
+     * @param in  Stream de entrada.
+     * @return    Ids lidos.
+     *
+     * @throws IOException Exceção lançada caso não seja possível ler do stream.
+     */
+
+    private static int[] lerIds(DataInputStream in) throws IOException {
+        int[] ids = new int[lerVarint(in)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = lerVarint(in);
+        }
+        return ids;
+    }
+
+    /**
+     * Reproduz as operações do diário que ainda não estão contidas nos arquivos lidos,
+     * restaurando o estado do sistema no momento da última operação registrada.
+     * O diário anterior, deixado por uma gravação em segundo plano que não terminou, é lido primeiro.
+     *
+     * Cada registro é reproduzido no máximo uma vez: registros com sequência menor ou igual à do
+     * checkpoint já estão na fotografia, e registros com sequência menor ou igual à do último
+     * registro reproduzido são repetições. Enviar recados e mensagens ou lê-los não pode ser
+     * repetido sem alterar o estado, então esses registros são ignorados.
+     *
+     * Uma operação registrada já foi bem sucedida uma vez, então uma falha na reprodução indica
+     * que a fotografia e o diário não combinam; a falha é informada e a reprodução continua.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param checkpoint      Sequência da última operação contida na fotografia.
+     *
+     * @see DiarioDeOperacoes
+     */
+
+    public static void lerDiario(SessionService sessionService, long checkpoint) {
+        long sequencia = checkpoint;
+        long pendentes = 0;
+
+        for (String arquivo : new String[] {DiarioDeOperacoes.ARQUIVO_ANTERIOR, DiarioDeOperacoes.ARQUIVO}) {
+            File file = new File("./BaseDeDados/" + arquivo);
+
+            if (!file.exists()) continue;
+
+            String linha;
+
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                while ((linha = br.readLine()) != null) {
+                    String[] dados = UtilidadeString.separarRegistro(linha);
+
+                    long sequenciaRegistro;
+                    TiposOperacao operacao;
+                    try {
+                        sequenciaRegistro = Long.parseLong(dados[0]);
+                        operacao = TiposOperacao.valueOf(dados[1]);
+                    } catch (RuntimeException e) {
+                        break;
+                    }
+
+                    if (sequenciaRegistro <= sequencia) continue;
+
+                    try {
+                        reproduzirOperacao(sessionService, operacao, dados);
+                    } catch (Exception e) {
+                        System.out.println("Erro ao reproduzir a operação " + sequenciaRegistro + " (" + operacao
+                                + ") do arquivo " + arquivo + ": " + e.getMessage());
+                    }
+
+                    sequencia = sequenciaRegistro;
+                    pendentes++;
+                }
+            } catch (IOException e) {
+                System.out.println("Erro ao ler o arquivo " + arquivo);
+            }
+        }
+
+        sessionService.getDiario().restaurar(sequencia, pendentes);
+    }
+
+    /**
+     * Lê a sequência da última operação contida na fotografia e o formato da fotografia.
+     * Se o checkpoint ainda lista os arquivos de uma geração cuja publicação foi interrompida,
+     * a publicação é concluída antes da leitura da fotografia.
+     *
+     * @return Sequência e formato do checkpoint, ou {@code {"0", "TEXTO"}} caso ele não exista.
      */
 
-    public static void lerArquivos(SessionService sessionService) {
-        Map<String, String[]> comunidades = new HashMap<>();
+    private static String[] lerCheckpoint() {
+        String[] checkpoint = {"0", TiposFormato.TEXTO.name()};
+        File file = new File("./BaseDeDados/" + DiarioDeOperacoes.ARQUIVO_CHECKPOINT);
+
+        if (!file.exists()) return checkpoint;
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String linha = br.readLine();
+            if (linha != null && !linha.isBlank()) {
+                String[] dados = UtilidadeString.separarRegistro(linha.trim());
+                checkpoint[0] = String.valueOf(Long.parseLong(dados[0]));
+                if (dados.length > 1) {
+                    checkpoint[1] = TiposFormato.valueOf(dados[1]).name();
+                }
+                GeracaoDeArquivos.retomar(dados);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Erro ao ler o arquivo " + DiarioDeOperacoes.ARQUIVO_CHECKPOINT);
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Reaplica uma operação do diário no sistema.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param operacao        Tipo da operação.
+     * @param dados           Registro do diário (sequência, operação e argumentos).
+     *
+     * @throws Exception Exceção lançada pela operação reaplicada.
+     *
+     * @see TiposOperacao
+     */
 
-        lerArquivo("usuarios", sessionService, comunidades);
-        lerArquivo("amigos", sessionService, null);
-        lerArquivo("recados", sessionService, null);
-        lerArquivo("comunidades", sessionService, comunidades);
-        lerArquivo("mensagens", sessionService, null);
-        lerArquivo("relacoes", sessionService, null);
+    private static void reproduzirOperacao(SessionService sessionService, TiposOperacao operacao, String[] dados)
+            throws Exception {
+        switch (operacao) {
+            case CRIAR_USUARIO:
+                sessionService.setUsuario(new User(dados[2], dados[3], dados[4]));
+                break;
+            case EDITAR_PERFIL:
+                sessionService.editarPerfil(sessionService.getUsuario(dados[2]), dados[3], dados[4]);
+                break;
+            case ADICIONAR_AMIGO:
+                sessionService.adicionarAmigo(sessionService.getUsuario(dados[2]), sessionService.getUsuario(dados[3]));
+                break;
+            case ENVIAR_RECADO:
+                sessionService.enviarRecado(sessionService.getUsuario(dados[2]), sessionService.getUsuario(dados[3]), dados[4]);
+                break;
+            case LER_RECADO:
+                sessionService.lerRecado(sessionService.getUsuario(dados[2]));
+                break;
+            case CRIAR_COMUNIDADE:
+                sessionService.criarComunidade(sessionService.getUsuario(dados[2]), dados[3], dados[4]);
+                break;
+            case ADICIONAR_COMUNIDADE:
+                sessionService.adicionarComunidade(sessionService.getUsuario(dados[2]), dados[3]);
+                break;
+            case ENVIAR_MENSAGEM:
+                sessionService.enviarMensagem(sessionService.getComunidade(dados[2]), dados[3]);
+                break;
+            case LER_MENSAGEM:
+                sessionService.lerMensagem(sessionService.getUsuario(dados[2]));
+                break;
+            case ADICIONAR_IDOLO:
+                sessionService.adicionarIdolo(sessionService.getUsuario(dados[2]), sessionService.getUsuario(dados[3]));
+                break;
+            case ADICIONAR_PAQUERA:
+                sessionService.adicionarPaquera(sessionService.getUsuario(dados[2]), sessionService.getUsuario(dados[3]));
+                break;
+            case ADICIONAR_INIMIGO:
+                sessionService.adicionarInimigo(sessionService.getUsuario(dados[2]), sessionService.getUsuario(dados[3]));
+                break;
+            case REMOVER_USUARIO:
+                sessionService.removerUsuario(sessionService.getUsuario(dados[2]), null);
+                break;
+        }
     }
 
     /**
      * Lê um arquivo genérico com o nome passado e o carrega no sistema.
+     * Quando a leitura mapeada está habilitada o arquivo é lido por {@link #lerArquivoMapeado}.
+     * Arquivos comprimidos são sempre lidos pelo leitor de {@link ArquivoComprimido}, que
+     * descomprime os blocos em paralelo.
      *
      * @param arquivo      Nome do arquivo.
      * @param sessionService      Sistema a ser carregado.
      * @param comunidades  Mapa de comunidades.
+     *
+     * @see Configuracao#getLeitura()
      */
 
     public static void lerArquivo(String arquivo, SessionService sessionService, Map<String, String[]> comunidades) {
@@ -54,25 +425,284 @@ public class LeituraDeArquivos {
 
         if (!file.exists()) return;
 
+        if (Configuracao.getLeitura() != TiposLeitura.PADRAO && !ArquivoComprimido.isComprimido(file)) {
+            lerArquivoMapeado(file, arquivo, sessionService, comunidades);
+            return;
+        }
+
         String[] dados;
         String linha;
         
-        try (BufferedReader br = new BufferedReader(new FileReader(file))){
+        try (BufferedReader br = ArquivoComprimido.abrirLeitor(file)){
             while ((linha = br.readLine()) != null) {
                 dados = linha.split(";");
 
                 if(arquivo.equals("usuarios")) lerUsuarios(sessionService, dados, comunidades);
                 else if(arquivo.equals("amigos")) lerAmigos(sessionService, dados);
                 else if(arquivo.equals("recados")) lerRecados(sessionService, dados);
-                else if(arquivo.equals("comunidades")) lerComunidades(sessionService, dados, comunidades);
+                else if(arquivo.equals("comunidades")) lerComunidades(sessionService, dados);
                 else if(arquivo.equals("mensagens")) lerMensagens(sessionService, dados);
+                else if(arquivo.equals("cursores")) lerCursores(sessionService, dados);
                 else if(arquivo.equals("relacoes")) lerRelacoes(sessionService, dados);
             }
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o arquivo " + arquivo + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lê um arquivo mapeado em memória e o carrega no sistema.
+     *
+     * As linhas são percorridas diretamente no buffer mapeado, sem {@code readLine} nem {@code split}:
+     * apenas os logins, nomes, atributos e textos de recados e mensagens viram Strings.
+     *
+     * @param file            Arquivo a ser lido.
+     * @param arquivo         Nome do arquivo.
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Mapa de comunidades.
+     *
+     * @see LeitorMapeado
+     */
+
+    private static void lerArquivoMapeado(File file, String arquivo, SessionService sessionService,
+                                          Map<String, String[]> comunidades) {
+        try (LeitorMapeado leitor = new LeitorMapeado(file)) {
+            while (leitor.proximaLinha()) {
+                lerRegistroMapeado(leitor, arquivo, sessionService, comunidades).run();
+            }
         } catch (IOException e) {
             System.out.println("Erro ao ler o arquivo " + arquivo);
         }
     }
 
+    /**
+     * Lê os arquivos de texto do banco de dados em paralelo.
+     *
+     * O arquivo "usuarios.txt" é lido primeiro, pois todos os outros referenciam os usuários.
+     * Em seguida os blocos dos demais arquivos são interpretados ao mesmo tempo.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Mapa de comunidades.
+     *
+     * @see #interpretarEmBlocos
+     */
+
+    private static void lerArquivosParalelo(SessionService sessionService, Map<String, String[]> comunidades) {
+        lerArquivosParalelo(sessionService, comunidades, "usuarios");
+        lerArquivosParalelo(sessionService, comunidades, "amigos", "recados", "comunidades", "relacoes");
+    }
+
+    /**
+     * Lê arquivos de texto interpretando os blocos de todos eles em paralelo.
+     *
+     * Só a interpretação é paralela: as alterações são aplicadas pela thread que chamou o método,
+     * um arquivo depois do outro e na ordem das linhas. Arquivos diferentes alteram o mesmo
+     * usuário (as marcações de alteração, o grafo de relações), e essas estruturas não podem ser
+     * alteradas por duas threads ao mesmo tempo. As marcações deixadas pela leitura são limpas
+     * depois por {@link SessionService#limparAlteracoes()}.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Mapa de comunidades.
+     * @param arquivos        Nomes dos arquivos, na ordem em que são aplicados.
+     *
+     * @see #interpretarEmBlocos
+     */
+
+    private static void lerArquivosParalelo(SessionService sessionService, Map<String, String[]> comunidades,
+                                            String... arquivos) {
+        List<List<ForkJoinTask<List<Runnable>>>> interpretacoes = new ArrayList<>();
+        for (String arquivo : arquivos) {
+            interpretacoes.add(interpretarEmBlocos(arquivo, sessionService, comunidades));
+        }
+
+        for (int i = 0; i < arquivos.length; i++) {
+            List<ForkJoinTask<List<Runnable>>> blocos = interpretacoes.get(i);
+            if (blocos == null) {
+                lerArquivo(arquivos[i], sessionService, comunidades);
+                continue;
+            }
+
+            for (ForkJoinTask<List<Runnable>> bloco : blocos) {
+                for (Runnable alteracao : bloco.join()) {
+                    alteracao.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Divide um arquivo de texto em blocos e inicia a interpretação de cada um no {@link ForkJoinPool}.
+     *
+     * Cada bloco produz a lista de alterações das suas linhas, sem alterar o sistema; aplicá-las
+     * na ordem dos blocos preserva a ordem de listas como a de amigos e a fila de recados.
+     * Arquivos comprimidos não são divididos: são lidos por {@link #lerArquivo}, que já
+     * descomprime os blocos em paralelo.
+     *
+     * @param arquivo         Nome do arquivo.
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Mapa de comunidades.
+     * @return                Interpretação dos blocos, na ordem do arquivo; null caso o arquivo
+     *                        seja comprimido.
+     *
+     * @see LeitorMapeado#dividirEmBlocos(File, long)
+     */
+
+    private static List<ForkJoinTask<List<Runnable>>> interpretarEmBlocos(String arquivo, SessionService sessionService,
+                                                                         Map<String, String[]> comunidades) {
+        File file = new File("./BaseDeDados/" + arquivo + ".txt");
+        List<ForkJoinTask<List<Runnable>>> blocos = new ArrayList<>();
+
+        if (!file.exists()) return blocos;
+
+        if (ArquivoComprimido.isComprimido(file)) {
+            return null;
+        }
+
+        long[] limites;
+        try {
+            limites = LeitorMapeado.dividirEmBlocos(file, TAMANHO_BLOCO);
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o arquivo " + arquivo);
+            return blocos;
+        }
+
+        for (int i = 0; i < limites.length - 1; i++) {
+            long inicio = limites[i];
+            long fim = limites[i + 1];
+
+            blocos.add(ForkJoinPool.commonPool().submit(
+                    ForkJoinTask.adapt(() -> lerBlocoMapeado(file, inicio, fim, arquivo, sessionService, comunidades))));
+        }
+        return blocos;
+    }
+
+    /**
+     * Interpreta um bloco de um arquivo mapeado em memória sem alterar o sistema.
+     *
+     * @param file            Arquivo a ser lido.
+     * @param inicio          Posição inicial do bloco.
+     * @param fim             Posição final (exclusiva) do bloco.
+     * @param arquivo         Nome do arquivo.
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Mapa de comunidades.
+     * @return                Alterações a serem aplicadas, na ordem das linhas do bloco.
+     */
+
+    private static List<Runnable> lerBlocoMapeado(File file, long inicio, long fim, String arquivo,
+                                                  SessionService sessionService, Map<String, String[]> comunidades) {
+        List<Runnable> alteracoes = new ArrayList<>();
+
+        try (LeitorMapeado leitor = new LeitorMapeado(file, inicio, fim)) {
+            while (leitor.proximaLinha()) {
+                alteracoes.add(lerRegistroMapeado(leitor, arquivo, sessionService, comunidades));
+            }
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o arquivo " + arquivo);
+        }
+
+        return alteracoes;
+    }
+
+    /**
+     * Interpreta a linha atual de um leitor mapeado.
+     *
+     * Apenas os campos que serão guardados viram Strings. A alteração do sistema é devolvida
+     * em vez de aplicada, para que a interpretação possa ser feita em paralelo; objetos novos,
+     * como o usuário e seu perfil, já são criados aqui.
+     *
+     * @param leitor          Leitor posicionado na linha.
+     * @param arquivo         Nome do arquivo.
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Mapa de comunidades.
+     * @return                Alteração a ser aplicada no sistema.
+     */
+
+    private static Runnable lerRegistroMapeado(LeitorMapeado leitor, String arquivo, SessionService sessionService,
+                                               Map<String, String[]> comunidades) {
+        switch (arquivo) {
+            case "usuarios": {
+                int campos = leitor.quantidadeCampos();
+                User user = new User(leitor.campo(0), leitor.campo(1), campos > 2 ? leitor.campo(2) : "");
+
+                for (int i = 3; i < campos - 1; i++) {
+                    int inicio = leitor.inicioCampo(i);
+                    int fim = leitor.fimCampo(i);
+                    int separador = leitor.indiceDe((byte) ':', inicio, fim);
+
+                    user.getPerfil().setAtributo(leitor.texto(inicio, separador), leitor.texto(separador + 1, fim));
+                }
+
+                List<String> comunidadesUsuario = new ArrayList<>();
+                leitor.paraCadaItem(campos - 1, comunidadesUsuario::add);
+
+                return () -> {
+                    sessionService.setUsuario(user);
+                    comunidades.put(user.getLogin(), comunidadesUsuario.toArray(new String[0]));
+                };
+            }
+            case "amigos": {
+                User user = sessionService.getUsuario(leitor.campo(0));
+                List<User> amigos = new ArrayList<>();
+                leitor.paraCadaItem(1, amigo -> amigos.add(sessionService.getUsuario(amigo)));
+
+                List<User> solicitacoes = new ArrayList<>();
+                if (leitor.quantidadeCampos() > 2) {
+                    leitor.paraCadaItem(2, solicitacao -> solicitacoes.add(sessionService.getUsuario(solicitacao)));
+                }
+
+                return () -> {
+                    amigos.forEach(user::setAmigo);
+                    solicitacoes.forEach(user::enviarSolicitacao);
+                };
+            }
+            case "recados": {
+                String destinatario = leitor.campo(0);
+                String remetente = leitor.campo(1);
+                String recado = leitor.campo(2);
+
+                return () -> carregarRecado(sessionService, destinatario, remetente, recado);
+            }
+            case "comunidades": {
+                String dono = leitor.campo(0);
+                String nome = leitor.campo(1);
+                String descricao = leitor.campo(2);
+                List<String> membros = new ArrayList<>();
+                leitor.paraCadaItem(3, membros::add);
+
+                return () -> carregarComunidade(sessionService, dono, nome, descricao, membros.toArray(new String[0]));
+            }
+            case "mensagens": {
+                if (leitor.quantidadeCampos() < 3) {
+                    return () -> {};
+                }
+
+                String comunidade = leitor.campo(0);
+                Mensagem mensagem = new Mensagem(leitor.campo(2), Long.parseLong(leitor.campo(1)));
+
+                return () -> carregarMensagem(sessionService, comunidade, mensagem);
+            }
+            case "cursores": {
+                String login = leitor.campo(0);
+                String comunidade = leitor.campo(1);
+                int posicao = Integer.parseInt(leitor.campo(2));
+
+                return () -> carregarCursor(sessionService, login, comunidade, posicao);
+            }
+            case "relacoes":
+                for (TiposRelacionamento tipo : TiposRelacionamento.values()) {
+                    if (leitor.campoIgual(2, tipo.name())) {
+                        User user = sessionService.getUsuario(leitor.campo(0));
+                        User userAlvo = sessionService.getUsuario(leitor.campo(1));
+
+                        return () -> carregarRelacao(user, userAlvo, tipo);
+                    }
+                }
+                return () -> {};
+            default:
+                return () -> {};
+        }
+    }
+
     /**
      * Lê os usuários do arquivo "usuarios.txt".
      *
@@ -90,7 +720,7 @@ public class LeituraDeArquivos {
             nome = dados[2];
         }
 
-        User user = new User(login, senha, nome);
+        User user = carregarUsuario(sessionService, login, senha, nome);
 
         for (int i = 3; i < dados.length - 1; i++) {
             String[] atributo = dados[i].split(":");
@@ -102,7 +732,23 @@ public class LeituraDeArquivos {
                 .split(",");
 
         comunidades.put(login, comunidadesUsuario);
+    }
+
+    /**
+     * Cria um usuário lido da base de dados e o adiciona ao sistema.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param login           Login do usuário.
+     * @param senha           Senha do usuário.
+     * @param nome            Nome do usuário.
+     * @return                Usuário criado.
+     */
+
+    private static User carregarUsuario(SessionService sessionService, String login, String senha, String nome) {
+        User user = new User(login, senha, nome);
+
         sessionService.setUsuario(user);
+        return user;
     }
 
     /**
@@ -115,14 +761,20 @@ public class LeituraDeArquivos {
     private static void lerAmigos(SessionService sessionService, String[] dados) {
         User user = sessionService.getUsuario(dados[0]);
 
-        if (dados[1].length() <= 2) {
-            return;
+        if (dados[1].length() > 2) {
+            String[] amigos = dados[1].substring(1, dados[1].length() - 1).split(",");
+
+            for (String amigo : amigos) {
+                user.setAmigo(sessionService.getUsuario(amigo));
+            }
         }
 
-        String[] amigos = dados[1].substring(1, dados[1].length() - 1).split(",");
+        if (dados.length > 2 && dados[2].length() > 2) {
+            String[] solicitacoes = dados[2].substring(1, dados[2].length() - 1).split(",");
 
-        for (String amigo : amigos) {
-            user.setAmigo(sessionService.getUsuario(amigo));
+            for (String solicitacao : solicitacoes) {
+                user.enviarSolicitacao(sessionService.getUsuario(solicitacao));
+            }
         }
     }
 
@@ -134,13 +786,24 @@ public class LeituraDeArquivos {
      */
 
     private static void lerRecados(SessionService sessionService, String[] dados) {
-        User user = sessionService.getUsuario(dados[0]);
-        User amigo = sessionService.getUsuario(dados[1]);
-        String recado = dados[2];
+        carregarRecado(sessionService, dados[0], dados[1], dados[2]);
+    }
 
-        try {
-            sessionService.enviarRecado(amigo, user, recado);
-        } catch (UsuarioEhInimigoException e) {}
+    /**
+     * Entrega um recado lido da base de dados ao seu destinatário.
+     * O recado já foi aceito quando enviado, então as verificações de envio não são refeitas.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param destinatario    Login do destinatário.
+     * @param remetente       Login do remetente.
+     * @param recado          Texto do recado.
+     */
+
+    private static void carregarRecado(SessionService sessionService, String destinatario, String remetente, String recado) {
+        User user = sessionService.getUsuario(destinatario);
+        User amigo = sessionService.getUsuario(remetente);
+
+        user.receberRecado(new Recado(amigo, user, recado));
     }
 
     /**
@@ -148,20 +811,33 @@ public class LeituraDeArquivos {
      *
      * @param sessionService      Sistema a ser carregado.
      * @param dados        Dados do arquivo.
-     * @param comunidades  Mapa de comunidades.
      */
 
-    private static void lerComunidades(SessionService sessionService, String[] dados, Map<String, String[]> comunidades) {
-        User dono = sessionService.getUsuario(dados[0]);
-        String nome = dados[1];
-        String descricao = dados[2];
+    private static void lerComunidades(SessionService sessionService, String[] dados) {
+        String[] membros = dados[3].substring(1, dados[3].length() - 1).split(",");
+
+        carregarComunidade(sessionService, dados[0], dados[1], dados[2], membros);
+    }
+
+    /**
+     * Cria uma comunidade lida da base de dados, adiciona seus membros e a adiciona ao sistema.
+     * As comunidades de cada usuário são ligadas depois, em {@link #vincularComunidades}.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param loginDono       Login do dono da comunidade.
+     * @param nome            Nome da comunidade.
+     * @param descricao       Descrição da comunidade.
+     * @param membros         Logins dos membros da comunidade.
+     */
+
+    private static void carregarComunidade(SessionService sessionService, String loginDono, String nome, String descricao,
+                                           String[] membros) {
+        User dono = sessionService.getUsuario(loginDono);
 
         Comunidade novaComunidade = new Comunidade(dono, nome, descricao);
 
         dono.setDonoComunidade(novaComunidade);
 
-        String[] membros = dados[3].substring(1, dados[3].length() - 1).split(",");
-
         for (String membro : membros) {
             if (membro.equals(dono.getLogin())) {
                 continue;
@@ -171,31 +847,89 @@ public class LeituraDeArquivos {
         }
 
         sessionService.setComunidade(nome, novaComunidade);
+    }
 
-        try {
-            for (String login : comunidades.keySet()) {
-                User user = sessionService.getUsuario(login);
-                for (String comunidade : comunidades.get(login)) {
-                    user.setParticipanteComunidade(sessionService.getComunidade(comunidade));
+    /**
+     * Liga cada usuário às comunidades listadas no seu registro de "usuarios.txt".
+     *
+     * Executado uma única vez, depois que todas as comunidades foram criadas, de forma que
+     * cada participação é resolvida com uma única busca no mapa de comunidades.
+     * Nomes de comunidades que não existem mais são ignorados.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param comunidades     Nomes das comunidades de cada usuário, indexados pelo login.
+     */
+
+    private static void vincularComunidades(SessionService sessionService, Map<String, String[]> comunidades) {
+        for (Map.Entry<String, String[]> entrada : comunidades.entrySet()) {
+            User user = sessionService.getUsuario(entrada.getKey());
+
+            for (String nome : entrada.getValue()) {
+                if (nome.isEmpty()) {
+                    continue;
                 }
+
+                try {
+                    user.setParticipanteComunidade(sessionService.getComunidade(nome));
+                } catch (ComunidadeNaoExisteException e) {}
             }
-        } catch (ComunidadeNaoExisteException e) {}
+        }
     }
 
     /**
-     * Lê as mensagens dos usuários do arquivo "mensagens.txt".
+     * Lê os murais de mensagens das comunidades do arquivo "mensagens.txt".
+     * Linhas no formato antigo, com as mensagens de cada usuário, são ignoradas.
      *
      * @param sessionService  Sistema a ser carregado.
      * @param dados    Dados do arquivo.
      */
 
     private static void lerMensagens(SessionService sessionService, String[] dados) {
-        User user = sessionService.getUsuario(dados[0]);
-        String mensagem = dados[1];
+        if (dados.length < 3) {
+            return;
+        }
+
+        carregarMensagem(sessionService, dados[0], new Mensagem(dados[2], Long.parseLong(dados[1])));
+    }
 
-        Mensagem msg = new Mensagem(mensagem);
+    /**
+     * Acrescenta uma mensagem lida da base de dados ao mural da sua comunidade.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param nome            Nome da comunidade.
+     * @param mensagem        Mensagem lida.
+     */
 
-        user.receberMensagem(msg);
+    private static void carregarMensagem(SessionService sessionService, String nome, Mensagem mensagem) {
+        try {
+            sessionService.getComunidade(nome).enviarMensagem(mensagem);
+        } catch (ComunidadeNaoExisteException e) {}
+    }
+
+    /**
+     * Lê os cursores de leitura dos usuários do arquivo "cursores.txt".
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param dados    Dados do arquivo.
+     */
+
+    private static void lerCursores(SessionService sessionService, String[] dados) {
+        carregarCursor(sessionService, dados[0], dados[1], Integer.parseInt(dados[2]));
+    }
+
+    /**
+     * Restaura o cursor de leitura de um usuário no mural de uma comunidade que ele participa.
+     *
+     * @param sessionService  Sistema a ser carregado.
+     * @param login           Login do usuário.
+     * @param nome            Nome da comunidade.
+     * @param posicao         Posição da próxima mensagem a ser lida.
+     */
+
+    private static void carregarCursor(SessionService sessionService, String login, String nome, int posicao) {
+        try {
+            sessionService.getUsuario(login).posicionarCursor(sessionService.getComunidade(nome), posicao);
+        } catch (ComunidadeNaoExisteException e) {}
     }
 
     /**
@@ -212,6 +946,20 @@ public class LeituraDeArquivos {
         User userAlvo = sessionService.getUsuario(dados[1]);
         TiposRelacionamento tipo = TiposRelacionamento.valueOf(dados[2]);
 
+        carregarRelacao(user, userAlvo, tipo);
+    }
+
+    /**
+     * Restaura uma relação lida da base de dados.
+     *
+     * @param user      Usuário dono da relação.
+     * @param userAlvo  Usuário alvo da relação.
+     * @param tipo      Tipo da relação.
+     *
+     * @see TiposRelacionamento
+     */
+
+    private static void carregarRelacao(User user, User userAlvo, TiposRelacionamento tipo) {
         switch (tipo) {
             case IDOLO:
                 user.setIdolo(userAlvo);
@@ -0,0 +1,119 @@
+package br.ufal.ic.p2.jackut.Utilidade;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import br.ufal.ic.p2.jackut.tipos.TiposCompressao;
+
+
+/**
+ * Stream que grava um arquivo de texto da base de dados em blocos comprimidos.
+ *
+ * O arquivo começa com a assinatura {@link ArquivoComprimido#ASSINATURA} e o tipo de compressão,
+ * seguidos dos blocos, cada um precedido do seu tamanho original e do seu tamanho comprimido.
+ * Os blocos sempre terminam em uma quebra de linha, então cada um contém apenas registros
+ * inteiros e pode ser descomprimido independentemente dos outros.
+ *
+ * @see ArquivoComprimido#lerBlocos
+ */
+
+public class SaidaComprimida extends OutputStream {
+    private static final int TAMANHO_BLOCO = 256 * 1024;
+
+    private final DataOutputStream out;
+    private final CodecDeCompressao codec;
+
+    private byte[] pendentes = new byte[TAMANHO_BLOCO * 2];
+    private int quantidade;
+
+    /**
+     * Constrói uma nova saída comprimida e escreve o cabeçalho do arquivo.
+     *
+     * @param out   Stream onde os blocos serão escritos.
+     * @param tipo  Tipo de compressão.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    public SaidaComprimida(OutputStream out, TiposCompressao tipo) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.codec = CodecDeCompressao.de(tipo);
+
+        this.out.writeInt(ArquivoComprimido.ASSINATURA);
+        this.out.writeByte(tipo.ordinal());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    /**
+     * Acumula os bytes e comprime um bloco sempre que os bytes acumulados passam do tamanho
+     * do bloco. O bloco é cortado na última quebra de linha acumulada.
+     *
+     * @param b    Bytes a serem escritos.
+     * @param off  Posição inicial.
+     * @param len  Quantidade de bytes.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (this.quantidade + len > this.pendentes.length) {
+            this.pendentes = Arrays.copyOf(this.pendentes, Math.max(this.quantidade + len, this.pendentes.length * 2));
+        }
+
+        System.arraycopy(b, off, this.pendentes, this.quantidade, len);
+        this.quantidade += len;
+
+        if (this.quantidade < TAMANHO_BLOCO) {
+            return;
+        }
+
+        int corte = this.quantidade;
+        while (corte > 0 && this.pendentes[corte - 1] != '\n') {
+            corte--;
+        }
+
+        if (corte > 0) {
+            this.escreverBloco(corte);
+        }
+    }
+
+    /**
+     * Comprime os bytes restantes como o último bloco e descarrega o stream.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    @Override
+    public void flush() throws IOException {
+        if (this.quantidade > 0) {
+            this.escreverBloco(this.quantidade);
+        }
+        this.out.flush();
+    }
+
+    /**
+     * Comprime e escreve os primeiros bytes acumulados como um bloco.
+     *
+     * @param tamanho Quantidade de bytes do bloco.
+     *
+     * @throws IOException Exceção lançada caso não seja possível escrever no stream.
+     */
+
+    private void escreverBloco(int tamanho) throws IOException {
+        byte[] comprimido = this.codec.comprimir(this.pendentes, tamanho);
+
+        this.out.writeInt(tamanho);
+        this.out.writeInt(comprimido.length);
+        this.out.write(comprimido);
+
+        System.arraycopy(this.pendentes, tamanho, this.pendentes, 0, this.quantidade - tamanho);
+        this.quantidade -= tamanho;
+    }
+}
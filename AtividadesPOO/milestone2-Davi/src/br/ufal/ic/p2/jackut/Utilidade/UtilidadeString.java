@@ -1,6 +1,11 @@
 package br.ufal.ic.p2.jackut.Utilidade;
 
+import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 
 /**
@@ -8,29 +13,113 @@ import java.util.ArrayList;
  */
 
 public class UtilidadeString {
+    private static final Pattern ACENTOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
 
     /**
-     * Formata um ArrayList para uma String.
+     * Formata uma coleção para uma String, na ordem de iteração da coleção.
      * Tendo o seguinte formato: {1,2,...,n}.
      *
-     * @param arrayList ArrayList a ser formatado.
-     * @param <T>       Tipo do ArrayList.
-     * @return          String formatada.
+     * @param colecao Coleção a ser formatada.
+     * @param <T>     Tipo dos elementos da coleção.
+     * @return        String formatada.
      */
 
-    public static <T> String formatArrayList(ArrayList<T> arrayList) {
-        if (arrayList.isEmpty()) {
+    public static <T> String formatArrayList(Collection<T> colecao) {
+        if (colecao.isEmpty()) {
             return "{}";
         }
 
         StringBuilder formattedString = new StringBuilder("{");
-        for (int i = 0; i < arrayList.size(); i++) {
-            formattedString.append(arrayList.get(i).toString());
-            if (i != arrayList.size() - 1) {
+        boolean primeiro = true;
+        for (T elemento : colecao) {
+            if (!primeiro) {
                 formattedString.append(",");
             }
+            formattedString.append(elemento.toString());
+            primeiro = false;
         }
         formattedString.append("}");
         return formattedString.toString();
     }
+
+    /**
+     * Junta os campos de um registro em uma única linha separada por ";".
+     * A barra invertida, o ";" e as quebras de linha presentes nos campos são escapados,
+     * permitindo que recados e mensagens contenham qualquer texto.
+     *
+     * @param campos Campos do registro.
+     * @return       Linha com os campos escapados.
+     */
+
+    public static String juntarRegistro(String... campos) {
+        StringBuilder linha = new StringBuilder();
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) {
+                linha.append(";");
+            }
+
+            String campo = campos[i];
+            for (int j = 0; j < campo.length(); j++) {
+                char c = campo.charAt(j);
+                switch (c) {
+                    case '\\': linha.append("\\\\"); break;
+                    case ';': linha.append("\\;"); break;
+                    case '\n': linha.append("\\n"); break;
+                    case '\r': linha.append("\\r"); break;
+                    default: linha.append(c);
+                }
+            }
+        }
+        return linha.toString();
+    }
+
+    /**
+     * Separa uma linha gerada por {@link #juntarRegistro(String...)} nos seus campos originais.
+     *
+     * @param linha Linha a ser separada.
+     * @return      Campos do registro, já sem os escapes.
+     */
+
+    public static String[] separarRegistro(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+
+        for (int i = 0; i < linha.length(); i++) {
+            char c = linha.charAt(i);
+            if (c == '\\' && i + 1 < linha.length()) {
+                char proximo = linha.charAt(++i);
+                campo.append(proximo == 'n' ? '\n' : proximo == 'r' ? '\r' : proximo);
+            } else if (c == ';') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+
+        return campos.toArray(new String[0]);
+    }
+
+    /**
+     * Separa um texto em palavras para busca: sem acentos, em minúsculas e sem pontuação.
+     * Assim "Programação" e "programacao" geram a mesma palavra.
+     *
+     * @param texto Texto a ser separado.
+     * @return      Palavras do texto, na ordem em que aparecem.
+     */
+
+    public static List<String> separarPalavras(String texto) {
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        normalizado = ACENTOS.matcher(normalizado).replaceAll("").toLowerCase(Locale.ROOT);
+
+        List<String> palavras = new ArrayList<>();
+        for (String palavra : SEPARADORES.split(normalizado)) {
+            if (!palavra.isEmpty()) {
+                palavras.add(palavra);
+            }
+        }
+        return palavras;
+    }
 }
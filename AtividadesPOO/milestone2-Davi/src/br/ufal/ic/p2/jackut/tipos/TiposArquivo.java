@@ -0,0 +1,21 @@
+package br.ufal.ic.p2.jackut.tipos;
+
+public enum TiposArquivo {
+    USUARIOS("usuarios.txt"),
+    AMIGOS("amigos.txt"),
+    RECADOS("recados.txt"),
+    COMUNIDADES("comunidades.txt"),
+    MENSAGENS("mensagens.txt"),
+    CURSORES("cursores.txt"),
+    RELACOES("relacoes.txt");
+
+    private final String nome;
+
+    TiposArquivo(String nome) {
+        this.nome = nome;
+    }
+
+    public String getNome() {
+        return this.nome;
+    }
+}
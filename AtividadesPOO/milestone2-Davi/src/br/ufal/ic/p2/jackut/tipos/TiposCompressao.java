@@ -0,0 +1,6 @@
+package br.ufal.ic.p2.jackut.tipos;
+
+public enum TiposCompressao {
+    NENHUMA,
+    DEFLATE
+}
@@ -0,0 +1,7 @@
+package br.ufal.ic.p2.jackut.tipos;
+
+public enum TiposLeitura {
+    PADRAO,
+    MAPEADA,
+    PARALELA
+}
@@ -0,0 +1,17 @@
+package br.ufal.ic.p2.jackut.tipos;
+
+public enum TiposOperacao {
+    CRIAR_USUARIO,
+    EDITAR_PERFIL,
+    ADICIONAR_AMIGO,
+    ENVIAR_RECADO,
+    LER_RECADO,
+    CRIAR_COMUNIDADE,
+    ADICIONAR_COMUNIDADE,
+    ENVIAR_MENSAGEM,
+    LER_MENSAGEM,
+    ADICIONAR_IDOLO,
+    ADICIONAR_PAQUERA,
+    ADICIONAR_INIMIGO,
+    REMOVER_USUARIO
+}